@@ -0,0 +1,22 @@
+-- influence scores written by the analytics job (AnalyticsService.runInfluenceJob), the id is the id of the user
+create table if not exists user_scores (
+    id_user bigint primary key references users (id) on delete cascade,
+    page_rank double precision not null,
+    eigenvector_centrality double precision not null,
+    computed_at timestamp not null
+);
+
+-- top influencers (UserScoreDBRepository.findTopByPageRank/findTopByEigenvectorCentrality)
+create index if not exists user_scores_page_rank_idx on user_scores (page_rank desc);
+create index if not exists user_scores_eigenvector_centrality_idx on user_scores (eigenvector_centrality desc);
+
+-- communities written by the community detection job (AnalyticsService.runCommunityDetection),
+-- a community is identified by the smallest id of its users
+create table if not exists user_communities (
+    id_user bigint primary key references users (id) on delete cascade,
+    id_community bigint not null,
+    computed_at timestamp not null
+);
+
+-- members of a community (UserCommunityDBRepository.findMembersOf)
+create index if not exists user_communities_community_idx on user_communities (id_community, id_user);
@@ -0,0 +1,3 @@
+-- keyset pagination of the conversations (MessageDBRepository.getLatestMessagesBetween/getMessagesBefore/getMessagesAfter)
+create index if not exists messages_conversation_idx
+    on messages (least(id_from_user, id_to_user), greatest(id_from_user, id_to_user), sent_date, id);
@@ -0,0 +1,260 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import toysocialnetwork.toysocialnetworkfx.config.ApplicationContext;
+import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
+import toysocialnetwork.toysocialnetworkfx.domain.Sender;
+import toysocialnetwork.toysocialnetworkfx.domain.Status;
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.FriendshipValidator;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.UserValidator;
+import toysocialnetwork.toysocialnetworkfx.utils.SyntheticNetwork;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compares UserDBRepository.findAll, which loads the users and their friends with a single query,
+ * with the previous way of loading them: one query for the users, then one connection and one query
+ * for the friends of every user
+ * <p>
+ * The database is the one from the configuration of the application. The users and the friendships are written
+ * to a separate schema, created by the benchmark and dropped at the end, so the data of the application is not
+ * changed; the status and sender types must exist in the public schema. Every user gets 20 friends on average.
+ * <p>
+ * Run with {@code gradle benchmark -Pbenchmark=repository.database.UserLoadBenchmark --args='[users,...]
+ * [runs]'}, by default with 10000 and 100000 users and 3 measured runs
+ */
+public class UserLoadBenchmark {
+    private static final String SCHEMA = "user_load_benchmark";
+    private static final int[] DEFAULT_USER_COUNTS = {10_000, 100_000};
+    private static final int DEFAULT_REPETITIONS = 3;
+    private static final int AVERAGE_DEGREE = 20;
+
+    private UserLoadBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark and prints the best time of every way of loading the users
+     *
+     * @param args the numbers of users, separated by commas, and the number of measured runs, both optional
+     * @throws SQLException if the benchmark schema could not be created or dropped
+     */
+    public static void main(String[] args) throws SQLException {
+        int[] userCounts = DEFAULT_USER_COUNTS;
+        if (args.length > 0) {
+            String[] values = args[0].split(",");
+            userCounts = new int[values.length];
+            for (int k = 0; k < values.length; k++)
+                userCounts[k] = Integer.parseInt(values[k].trim());
+        }
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REPETITIONS;
+
+        Properties properties = new Properties();
+        properties.putAll(ApplicationContext.getConfigProperties());
+        properties.setProperty("data.db.connection.currentSchema", SCHEMA + ",public");
+
+        try (ConnectionPool connectionPool = new ConnectionPool(ConnectionPoolConfig.fromProperties(properties))) {
+            createSchema(connectionPool);
+            try {
+                for (int userCount : userCounts)
+                    run(connectionPool, userCount, repetitions);
+            } finally {
+                execute(connectionPool, "DROP SCHEMA " + SCHEMA + " CASCADE");
+            }
+        }
+    }
+
+    /**
+     * Stores a random network and measures both ways of loading it
+     *
+     * @param dataSource  the data source, using the benchmark schema
+     * @param userCount   the number of users
+     * @param repetitions the number of measured runs
+     * @throws SQLException if the tables could not be cleared
+     */
+    private static void run(DataSource dataSource, int userCount, int repetitions) throws SQLException {
+        execute(dataSource, "TRUNCATE TABLE friendships, users RESTART IDENTITY");
+
+        UserDBRepository userRepository = new UserDBRepository(new UserValidator(), dataSource);
+        FriendshipDBRepository friendshipRepository = new FriendshipDBRepository(new FriendshipValidator(),
+                dataSource);
+        long[][] friendIds = SyntheticNetwork.createFriendIds(userCount, AVERAGE_DEGREE, SyntheticNetwork.DEFAULT_SEED);
+        List<User> users = new ArrayList<>(userCount);
+        for (int k = 1; k <= userCount; k++)
+            users.add(new User("user" + k, "First" + k, "Last" + k, "password" + k));
+        if (!userRepository.saveAll(users).isEmpty())
+            throw new IllegalStateException("Could not save the users");
+
+        List<Friendship> friendships = new ArrayList<>();
+        LocalDateTime friendsFrom = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int k = 0; k < userCount; k++)
+            for (long friendId : friendIds[k])
+                if (friendId > k + 1) { // every pair once
+                    Friendship friendship = new Friendship(users.get(k).getId(),
+                            users.get((int) friendId - 1).getId(), friendsFrom);
+                    friendship.setStatus(Status.ACCEPTED);
+                    friendship.setSentBy(Sender.FIRST);
+                    friendships.add(friendship);
+                }
+        if (!friendshipRepository.saveAll(friendships).isEmpty())
+            throw new IllegalStateException("Could not save the friendships");
+
+        long singleQueryNanos = Long.MAX_VALUE;
+        long queryPerUserNanos = Long.MAX_VALUE;
+        boolean matching = true;
+        for (int run = 0; run <= repetitions; run++) {
+            long start = System.nanoTime();
+            List<User> loaded = new ArrayList<>();
+            userRepository.findAll().forEach(loaded::add);
+            long singleQueryEnd = System.nanoTime();
+            List<User> loadedOneByOne = findAllWithQueryPerUser(dataSource);
+            long queryPerUserEnd = System.nanoTime();
+
+            if (run > 0) { // the first run only warms up
+                singleQueryNanos = Math.min(singleQueryNanos, singleQueryEnd - start);
+                queryPerUserNanos = Math.min(queryPerUserNanos, queryPerUserEnd - singleQueryEnd);
+            }
+            matching &= haveSameFriends(loaded, loadedOneByOne) && loaded.size() == userCount;
+        }
+
+        System.out.printf("%d users, %d friendships: single query %.1f ms, query per user %.1f ms (%.1fx), %s%n",
+                userCount, friendships.size(), singleQueryNanos / 1e6, queryPerUserNanos / 1e6,
+                (double) queryPerUserNanos / singleQueryNanos, matching ? "same users" : "DIFFERENT USERS");
+    }
+
+    /**
+     * Loads the users the way UserDBRepository.findAll did before the single query: the users first,
+     * then the friends of every user with its own connection and query
+     *
+     * @param dataSource the data source
+     * @return the users, in increasing order of their ids
+     */
+    private static List<User> findAllWithQueryPerUser(DataSource dataSource) {
+        List<User> users = new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT * FROM users ORDER BY id");
+             ResultSet resultSet = statement.executeQuery()
+        ) {
+            while (resultSet.next()) {
+                User user = new User(resultSet.getString("username"), resultSet.getString("first_name"),
+                        resultSet.getString("last_name"), resultSet.getString("password"));
+                user.setId(resultSet.getLong("id"));
+                user.setFriends(findFriendsFor(dataSource, user.getId()));
+                users.add(user);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not load the users: " + e.getMessage(), e);
+        }
+
+        return users;
+    }
+
+    /**
+     * Finds the friends of a user with the query UserDBRepository used for every user
+     *
+     * @param dataSource the data source
+     * @param userId     the id of the user
+     * @return the ids of the friends
+     * @throws SQLException if the query failed
+     */
+    private static List<Long> findFriendsFor(DataSource dataSource, Long userId) throws SQLException {
+        List<Long> friends = new ArrayList<>();
+        String query = """
+                    SELECT id_first_user AS id_user FROM friendships WHERE id_second_user=? AND status='ACCEPTED'
+                    UNION
+                    SELECT id_second_user AS id_user FROM friendships WHERE id_first_user=? AND status='ACCEPTED';
+                """;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            statement.setLong(1, userId);
+            statement.setLong(2, userId);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    friends.add(resultSet.getLong("id_user"));
+            }
+        }
+
+        return friends;
+    }
+
+    /**
+     * Checks if two lists of users hold the same users, in the same order, with the same friends in any order
+     *
+     * @param first  the first list
+     * @param second the second list
+     * @return true if the users and their friends are the same
+     */
+    private static boolean haveSameFriends(List<User> first, List<User> second) {
+        if (first.size() != second.size())
+            return false;
+
+        for (int k = 0; k < first.size(); k++) {
+            List<Long> firstFriends = new ArrayList<>(first.get(k).getFriends());
+            List<Long> secondFriends = new ArrayList<>(second.get(k).getFriends());
+            firstFriends.sort(null);
+            secondFriends.sort(null);
+
+            if (!first.get(k).getId().equals(second.get(k).getId()) || !firstFriends.equals(secondFriends))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates the benchmark schema with the users and friendships tables, replacing an older one
+     *
+     * @param dataSource the data source
+     * @throws SQLException if the schema could not be created
+     */
+    private static void createSchema(DataSource dataSource) throws SQLException {
+        execute(dataSource, "DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        execute(dataSource, "CREATE SCHEMA " + SCHEMA);
+        execute(dataSource, """
+                CREATE TABLE %s.users (
+                    id BIGSERIAL PRIMARY KEY,
+                    username VARCHAR(255) NOT NULL UNIQUE,
+                    first_name VARCHAR(255) NOT NULL,
+                    last_name VARCHAR(255) NOT NULL,
+                    password VARCHAR(255) NOT NULL
+                )""".formatted(SCHEMA));
+        execute(dataSource, """
+                CREATE TABLE %1$s.friendships (
+                    id BIGSERIAL PRIMARY KEY,
+                    id_first_user BIGINT NOT NULL REFERENCES %1$s.users(id) ON DELETE CASCADE,
+                    id_second_user BIGINT NOT NULL REFERENCES %1$s.users(id) ON DELETE CASCADE,
+                    friends_from TIMESTAMP NOT NULL,
+                    status public.status NOT NULL,
+                    sent_by public.sender NOT NULL
+                )""".formatted(SCHEMA));
+        execute(dataSource, "CREATE INDEX ON " + SCHEMA + ".friendships (id_first_user)");
+        execute(dataSource, "CREATE INDEX ON " + SCHEMA + ".friendships (id_second_user)");
+    }
+
+    /**
+     * Executes a statement without parameters
+     *
+     * @param dataSource the data source
+     * @param sql        the statement
+     * @throws SQLException if the statement failed
+     */
+    private static void execute(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()
+        ) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+import toysocialnetwork.toysocialnetworkfx.domain.Entity;
+import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
+import toysocialnetwork.toysocialnetworkfx.domain.Sender;
+import toysocialnetwork.toysocialnetworkfx.domain.Status;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.FriendshipValidator;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.UserValidator;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.HiLoIdAllocator;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.InMemoryRepository;
+import toysocialnetwork.toysocialnetworkfx.utils.SyntheticNetwork;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the CSV and the binary snapshots of the file repositories: the size of the files and the time
+ * needed to open a repository, which loads the whole snapshot. The CSV snapshots are also loaded line by line,
+ * saving every entity, which is how they were loaded before the parsing in chunks.
+ * The users get 10 random friends on average, the friendships connect random pairs of users. Every snapshot
+ * is loaded once to warm up and then the given number of times, the best time is reported.
+ * <p>
+ * Run with {@code gradle benchmark -Pbenchmark=repository.file.SnapshotBenchmark --args='[rows] [runs]'},
+ * by default with 1000000 users and 1000000 friendships and 3 measured runs
+ */
+public class SnapshotBenchmark {
+    private static final int DEFAULT_ROW_COUNT = 1_000_000;
+    private static final int DEFAULT_REPETITIONS = 3;
+    private static final int AVERAGE_DEGREE = 10;
+    private static final LocalDateTime FRIENDS_FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private SnapshotBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark in a temporary directory, which is deleted at the end
+     *
+     * @param args the number of users and friendships and the number of measured runs, both optional
+     * @throws IOException if the temporary directory could not be created or deleted
+     */
+    public static void main(String[] args) throws IOException {
+        int rowCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROW_COUNT;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_REPETITIONS;
+
+        Path directory = Files.createTempDirectory("snapshot-benchmark");
+        try {
+            run("users", SyntheticNetwork.createUsers(rowCount, AVERAGE_DEGREE, SyntheticNetwork.DEFAULT_SEED),
+                    directory, repetitions, new UserValidator(),
+                    (format, path) -> new UserFileRepository(new UserValidator(), path.toString(), format,
+                            FileRepository.DEFAULT_SYNC_INTERVAL_MILLIS, Integer.MAX_VALUE));
+            run("friendships", createFriendships(rowCount), directory, repetitions, new FriendshipValidator(),
+                    (format, path) -> new FriendshipFileRepository(new FriendshipValidator(), path.toString(), format,
+                            FileRepository.DEFAULT_SYNC_INTERVAL_MILLIS, Integer.MAX_VALUE));
+        } finally {
+            try (var paths = Files.walk(directory)) {
+                for (Path path : paths.sorted((first, second) -> second.compareTo(first)).toList())
+                    Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Writes the entities in both formats and measures the loading of every snapshot
+     *
+     * @param name        the name of the entities, used for the files and in the output
+     * @param entities    the entities
+     * @param directory   the directory of the snapshots
+     * @param repetitions the number of measured runs
+     * @param validator   the validator of the entities
+     * @param opener      opens a repository which writes its snapshot in a format
+     * @param <E>         the type of the entities
+     * @throws IOException if a snapshot could not be read
+     */
+    private static <E extends Entity<Long>> void run(String name, List<E> entities, Path directory, int repetitions,
+                                                     Validator<E> validator, Opener<E> opener) throws IOException {
+        for (SnapshotFormat format : SnapshotFormat.values()) {
+            Path path = directory.resolve(name + "." + format.name().toLowerCase());
+            try (FileRepository<Long, E> repository = opener.open(format, path)) {
+                if (!repository.saveAll(entities).isEmpty())
+                    throw new IllegalStateException("Could not save the " + name);
+                repository.compact();
+            }
+
+            long bestNanos = Long.MAX_VALUE;
+            int loaded = 0;
+            for (int run = 0; run <= repetitions; run++) {
+                long start = System.nanoTime();
+                try (FileRepository<Long, E> repository = opener.open(format, path)) {
+                    long end = System.nanoTime();
+                    if (run > 0) // the first run only warms up
+                        bestNanos = Math.min(bestNanos, end - start);
+                    loaded = count(repository.findAll());
+                }
+            }
+
+            System.out.printf("%d %s, %s: %.1f MB, load %.0f ms, %s%n", entities.size(), name, format,
+                    Files.size(path) / 1e6, bestNanos / 1e6,
+                    loaded == entities.size() ? "all loaded" : "ONLY " + loaded + " LOADED");
+
+            if (format == SnapshotFormat.CSV) {
+                long lineByLineNanos = Long.MAX_VALUE;
+                try (FileRepository<Long, E> parser = opener.open(format, directory.resolve(name + ".parser"))) {
+                    for (int run = 0; run <= repetitions; run++) {
+                        long start = System.nanoTime();
+                        loaded = loadLineByLine(path, validator, parser);
+                        if (run > 0)
+                            lineByLineNanos = Math.min(lineByLineNanos, System.nanoTime() - start);
+                    }
+                }
+
+                System.out.printf("%d %s, CSV line by line: load %.0f ms (%.1fx), %s%n", entities.size(), name,
+                        lineByLineNanos / 1e6, (double) lineByLineNanos / bestNanos,
+                        loaded == entities.size() ? "all loaded" : "ONLY " + loaded + " LOADED");
+            }
+        }
+    }
+
+    /**
+     * Loads a CSV snapshot line by line: every line is split with String.split, converted to an entity
+     * and saved, which validates the entity and checks that its id and its value are not stored yet
+     *
+     * @param path      the path of the snapshot
+     * @param validator the validator of the entities
+     * @param parser    the repository which converts the lines to entities
+     * @param <E>       the type of the entities
+     * @return the number of stored entities
+     * @throws IOException if the snapshot could not be read
+     */
+    private static <E extends Entity<Long>> int loadLineByLine(Path path, Validator<E> validator,
+                                                               FileRepository<Long, E> parser) throws IOException {
+        InMemoryRepository<Long, E> repository = new InMemoryRepository<>(validator, new HiLoIdAllocator()) {
+        };
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                repository.save(parser.extractEntityFrom(Arrays.asList(line.split(";"))));
+        }
+
+        return count(repository.findAll());
+    }
+
+    /**
+     * Creates friendships between random pairs of users, with the ids 1..count
+     *
+     * @param count the number of users, about as many friendships are created
+     * @return the friendships
+     */
+    private static List<Friendship> createFriendships(int count) {
+        long[][] friendIds = SyntheticNetwork.createFriendIds(count, 2, SyntheticNetwork.DEFAULT_SEED + 1);
+        Status[] statuses = Status.values();
+        Sender[] senders = Sender.values();
+
+        List<Friendship> friendships = new ArrayList<>(count);
+        for (int k = 0; k < count; k++)
+            for (long friendId : friendIds[k])
+                if (friendId > k + 1) { // every pair once
+                    Friendship friendship = new Friendship(k + 1L, friendId, FRIENDS_FROM.plusMinutes(k));
+                    friendship.setId(friendships.size() + 1L);
+                    friendship.setStatus(statuses[k % statuses.length]);
+                    friendship.setSentBy(senders[k % senders.length]);
+                    friendships.add(friendship);
+                }
+
+        return friendships;
+    }
+
+    /**
+     * Counts the elements of an iterable
+     *
+     * @param elements the elements
+     * @return the number of elements
+     */
+    private static int count(Iterable<?> elements) {
+        int count = 0;
+        for (Object ignored : elements)
+            count++;
+
+        return count;
+    }
+
+    /**
+     * Opens a file repository
+     *
+     * @param <E> the type of the entities
+     */
+    @FunctionalInterface
+    private interface Opener<E extends Entity<Long>> {
+        /**
+         * Opens the repository
+         *
+         * @param format the format in which the snapshot is written
+         * @param path   the path of the snapshot
+         * @return the repository
+         */
+        FileRepository<Long, E> open(SnapshotFormat format, Path path);
+    }
+}
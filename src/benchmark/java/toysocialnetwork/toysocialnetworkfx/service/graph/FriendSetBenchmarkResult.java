@@ -0,0 +1,56 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The time the friend set index needs to count mutual friends
+ */
+public final class FriendSetBenchmarkResult {
+    private final int queries;
+    private final double millis;
+    private final boolean matching;
+
+    /**
+     * Constructor for FriendSetBenchmarkResult
+     *
+     * @param queries  the number of measured counts
+     * @param millis   the best running time of the counts
+     * @param matching true if the index gave the same counts as the graph
+     */
+    public FriendSetBenchmarkResult(int queries, double millis, boolean matching) {
+        this.queries = queries;
+        this.millis = millis;
+        this.matching = matching;
+    }
+
+    /**
+     * Getter for queries
+     *
+     * @return the number of measured counts
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * Getter for millis
+     *
+     * @return the best running time of the counts, in milliseconds
+     */
+    public double getMillis() {
+        return millis;
+    }
+
+    /**
+     * Getter for matching
+     *
+     * @return true if the index gave the same counts as the graph
+     */
+    public boolean isMatching() {
+        return matching;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d mutual friends counts: %.2f ms%s", queries, millis,
+                matching ? "" : " (the counts differ)");
+    }
+}
@@ -0,0 +1,278 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.utils.SyntheticNetwork;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures how the parallel graph algorithms scale with the number of worker threads
+ * Every algorithm runs once to warm up and then the given number of times, the best time is reported.
+ * The results of every run are compared with the ones of the sequential algorithms.
+ * The shortest path queries of the community index are measured between random pairs of users,
+ * the mutual friends counts between random users at distance 2
+ * <p>
+ * Run with {@code gradle benchmark -Pbenchmark=service.graph.GraphBenchmark --args='[users] [average friends]
+ * [threads]'}, by default on a random network of 100000 users with 20 friends on average, with 1, 2, 4 and 8 threads
+ */
+public class GraphBenchmark {
+    /**
+     * The parallelism levels measured by default
+     */
+    public static final int[] DEFAULT_PARALLELISMS = {1, 2, 4, 8};
+
+    /**
+     * The number of measured runs of every algorithm by default
+     */
+    public static final int DEFAULT_REPETITIONS = 5;
+
+    private static final int DEFAULT_USER_COUNT = 100_000;
+    private static final int DEFAULT_AVERAGE_DEGREE = 20;
+    private static final int PATH_QUERIES = 1000;
+    private static final int FRIEND_SET_QUERIES = 100_000;
+
+    private final int repetitions;
+
+    /**
+     * Constructor for GraphBenchmark
+     *
+     * @param repetitions the number of measured runs of every algorithm
+     * @throws IllegalArgumentException if the number of runs is not positive
+     */
+    public GraphBenchmark(int repetitions) {
+        if (repetitions < 1)
+            throw new IllegalArgumentException("Repetitions must be positive");
+
+        this.repetitions = repetitions;
+    }
+
+    /**
+     * Runs the benchmark on a random network and prints the speedups,
+     * then measures the shortest path queries and the mutual friends counts
+     *
+     * @param args the number of users, the average number of friends and the numbers of threads,
+     *             separated by commas, all optional
+     */
+    public static void main(String[] args) {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_USER_COUNT;
+        int averageDegree = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_AVERAGE_DEGREE;
+        int[] parallelisms = args.length > 2 ?
+                Arrays.stream(args[2].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray() :
+                DEFAULT_PARALLELISMS;
+
+        List<User> users = SyntheticNetwork.createUsers(userCount, averageDegree, SyntheticNetwork.DEFAULT_SEED);
+        CsrGraph graph = CsrGraph.fromUsers(users);
+        System.out.printf("%d users, %d friendships, available processors: %d%n", graph.getVertexCount(),
+                graph.getEdgeCount() / 2, Runtime.getRuntime().availableProcessors());
+
+        GraphBenchmark benchmark = new GraphBenchmark(DEFAULT_REPETITIONS);
+        List<GraphBenchmarkResult> results = benchmark.run(graph, parallelisms);
+        GraphBenchmarkResult baseline = results.get(0);
+        for (GraphBenchmarkResult result : results)
+            System.out.printf("%s, speedup %.2fx / %.2fx%n", result,
+                    baseline.getComponentsMillis() / result.getComponentsMillis(),
+                    baseline.getBfsMillis() / result.getBfsMillis());
+
+        CommunityIndex index = new CommunityIndex();
+        index.build(users);
+        System.out.println(benchmark.runShortestPaths(index, PATH_QUERIES));
+        System.out.println(benchmark.runFriendSets(index.getFriendSets(), graph, FRIEND_SET_QUERIES));
+    }
+
+    /**
+     * Runs the benchmark on a graph
+     * The breadth first search starts from the vertex with the largest degree
+     *
+     * @param graph        the graph
+     * @param parallelisms the parallelism levels
+     * @return the results, one for every parallelism level, empty if the graph has no vertices
+     */
+    public List<GraphBenchmarkResult> run(CsrGraph graph, int[] parallelisms) {
+        List<GraphBenchmarkResult> results = new ArrayList<>();
+        if (graph.getVertexCount() == 0)
+            return results;
+
+        int source = 0;
+        for (int vertex = 1; vertex < graph.getVertexCount(); vertex++)
+            if (graph.getDegree(vertex) > graph.getDegree(source))
+                source = vertex;
+
+        ConnectedComponents expectedComponents = graph.getConnectedComponents();
+        int[] expectedDistances = graph.getDistancesFrom(source);
+
+        for (int parallelism : parallelisms) {
+            try (ParallelGraphAlgorithms algorithms = new ParallelGraphAlgorithms(parallelism)) {
+                boolean matching = true;
+                long componentsNanos = Long.MAX_VALUE;
+                long bfsNanos = Long.MAX_VALUE;
+
+                for (int run = 0; run <= repetitions; run++) {
+                    long start = System.nanoTime();
+                    ConnectedComponents components = algorithms.getConnectedComponents(graph);
+                    long componentsEnd = System.nanoTime();
+                    int[] distances = algorithms.getDistancesFrom(graph, source);
+                    long bfsEnd = System.nanoTime();
+
+                    if (run > 0) { // the first run only warms up
+                        componentsNanos = Math.min(componentsNanos, componentsEnd - start);
+                        bfsNanos = Math.min(bfsNanos, bfsEnd - componentsEnd);
+                    }
+                    matching &= haveSameLabels(components, expectedComponents, graph.getVertexCount())
+                            && Arrays.equals(distances, expectedDistances);
+                }
+
+                results.add(new GraphBenchmarkResult(parallelism, componentsNanos / 1e6, bfsNanos / 1e6, matching));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Measures the shortest path queries between random pairs of users
+     * The pairs are generated with a fixed seed, so the same index always gets the same queries,
+     * and every run answers the same pairs
+     *
+     * @param index   the community index, it must be built
+     * @param queries the number of queries in a run
+     * @return the running times, null if the index has no users
+     */
+    public PathBenchmarkResult runShortestPaths(CommunityIndex index, int queries) {
+        long[] userIds = index.getUserIds();
+        if (userIds.length == 0)
+            return null;
+
+        Random random = new Random(queries);
+        long[] fromUserIds = new long[queries];
+        long[] toUserIds = new long[queries];
+        for (int query = 0; query < queries; query++) {
+            fromUserIds[query] = userIds[random.nextInt(userIds.length)];
+            toUserIds[query] = userIds[random.nextInt(userIds.length)];
+        }
+
+        for (int query = 0; query < queries; query++) // warm up
+            index.getShortestPath(fromUserIds[query], toUserIds[query], Integer.MAX_VALUE);
+
+        int foundPaths = 0;
+        long totalNanos = 0;
+        long maxNanos = 0;
+        for (int run = 0; run < repetitions; run++) {
+            foundPaths = 0;
+            for (int query = 0; query < queries; query++) {
+                long start = System.nanoTime();
+                List<Long> path = index.getShortestPath(fromUserIds[query], toUserIds[query], Integer.MAX_VALUE);
+                long elapsed = System.nanoTime() - start;
+
+                totalNanos += elapsed;
+                maxNanos = Math.max(maxNanos, elapsed);
+                if (path != null)
+                    foundPaths++;
+            }
+        }
+
+        int measuredQueries = repetitions * queries;
+        return new PathBenchmarkResult(queries, repetitions, foundPaths, totalNanos / 1e6 / measuredQueries,
+                maxNanos / 1e6);
+    }
+
+    /**
+     * Measures the time the friend set index needs to count the mutual friends of random users at distance 2
+     * (the pairs for which the count is usually asked)
+     * The counts are compared with the ones of a merge of the neighbors in the graph
+     *
+     * @param index   the friend set index, its community index must be built from the users of the graph
+     * @param graph   the graph
+     * @param queries the number of counts of every run
+     * @return the running time, null if the graph has no vertices
+     */
+    public FriendSetBenchmarkResult runFriendSets(FriendSetIndex index, CsrGraph graph, int queries) {
+        int n = graph.getVertexCount();
+        if (n == 0)
+            return null;
+
+        Random random = new Random(queries);
+        long[] firsts = new long[queries];
+        long[] seconds = new long[queries];
+        long expectedTotal = 0;
+        for (int query = 0; query < queries; query++) {
+            int first = random.nextInt(n);
+            int second = random.nextInt(n);
+            if (graph.getDegree(first) > 0) {
+                int friend = graph.getNeighbor(first, random.nextInt(graph.getDegree(first)));
+                second = graph.getNeighbor(friend, random.nextInt(graph.getDegree(friend)));
+            }
+
+            firsts[query] = graph.getId(first);
+            seconds[query] = graph.getId(second);
+            expectedTotal += getIntersectionSize(graph, first, second);
+        }
+
+        boolean matching = true;
+        long bestNanos = Long.MAX_VALUE;
+        for (int run = 0; run <= repetitions; run++) {
+            long total = 0;
+            long start = System.nanoTime();
+            for (int query = 0; query < queries; query++)
+                total += index.getMutualFriendsCount(firsts[query], seconds[query]);
+            long end = System.nanoTime();
+
+            if (run > 0) // the first run only warms up
+                bestNanos = Math.min(bestNanos, end - start);
+            matching &= total == expectedTotal;
+        }
+
+        return new FriendSetBenchmarkResult(queries, bestNanos / 1e6, matching);
+    }
+
+    /**
+     * Counts the common neighbors of two vertices with a merge of their sorted neighbors
+     *
+     * @param graph  the graph
+     * @param first  the first vertex
+     * @param second the second vertex
+     * @return the number of common neighbors
+     */
+    private static int getIntersectionSize(CsrGraph graph, int first, int second) {
+        int count = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < graph.getDegree(first) && j < graph.getDegree(second)) {
+            int firstNeighbor = graph.getNeighbor(first, i);
+            int secondNeighbor = graph.getNeighbor(second, j);
+            if (firstNeighbor < secondNeighbor)
+                i++;
+            else if (firstNeighbor > secondNeighbor)
+                j++;
+            else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if two sets of components label every vertex the same way
+     *
+     * @param first       the first components
+     * @param second      the second components
+     * @param vertexCount the number of vertices
+     * @return true if the components are identical
+     */
+    private static boolean haveSameLabels(ConnectedComponents first, ConnectedComponents second, int vertexCount) {
+        if (first.getCount() != second.getCount())
+            return false;
+
+        for (int vertex = 0; vertex < vertexCount; vertex++)
+            if (first.getComponent(vertex) != second.getComponent(vertex))
+                return false;
+
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The running times of the parallel graph algorithms for one parallelism level
+ */
+public final class GraphBenchmarkResult {
+    private final int parallelism;
+    private final double componentsMillis;
+    private final double bfsMillis;
+    private final boolean matchingSequential;
+
+    /**
+     * Constructor for GraphBenchmarkResult
+     *
+     * @param parallelism        the number of worker threads
+     * @param componentsMillis   the best running time of the connected components algorithm
+     * @param bfsMillis          the best running time of the breadth first search
+     * @param matchingSequential true if both algorithms returned the same results as the sequential ones
+     */
+    public GraphBenchmarkResult(int parallelism, double componentsMillis, double bfsMillis,
+                                boolean matchingSequential) {
+        this.parallelism = parallelism;
+        this.componentsMillis = componentsMillis;
+        this.bfsMillis = bfsMillis;
+        this.matchingSequential = matchingSequential;
+    }
+
+    /**
+     * Getter for parallelism
+     *
+     * @return the number of worker threads
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Getter for componentsMillis
+     *
+     * @return the best running time of the connected components algorithm, in milliseconds
+     */
+    public double getComponentsMillis() {
+        return componentsMillis;
+    }
+
+    /**
+     * Getter for bfsMillis
+     *
+     * @return the best running time of the breadth first search, in milliseconds
+     */
+    public double getBfsMillis() {
+        return bfsMillis;
+    }
+
+    /**
+     * Getter for matchingSequential
+     *
+     * @return true if both algorithms returned the same results as the sequential ones
+     */
+    public boolean isMatchingSequential() {
+        return matchingSequential;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%2d threads: components %.2f ms, bfs %.2f ms%s", parallelism, componentsMillis,
+                bfsMillis, matchingSequential ? "" : " (results differ from the sequential ones)");
+    }
+}
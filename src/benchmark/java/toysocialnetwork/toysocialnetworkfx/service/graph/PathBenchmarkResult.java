@@ -0,0 +1,80 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The running times of the shortest path queries between random pairs of users
+ */
+public final class PathBenchmarkResult {
+    private final int queries;
+    private final int runs;
+    private final int foundPaths;
+    private final double averageMillis;
+    private final double maxMillis;
+
+    /**
+     * Constructor for PathBenchmarkResult
+     *
+     * @param queries       the number of queries in a run
+     * @param runs          the number of measured runs
+     * @param foundPaths    the number of queries of a run which found a path
+     * @param averageMillis the average running time of a query
+     * @param maxMillis     the largest running time of a query
+     */
+    public PathBenchmarkResult(int queries, int runs, int foundPaths, double averageMillis, double maxMillis) {
+        this.queries = queries;
+        this.runs = runs;
+        this.foundPaths = foundPaths;
+        this.averageMillis = averageMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Getter for queries
+     *
+     * @return the number of queries in a run
+     */
+    public int getQueries() {
+        return queries;
+    }
+
+    /**
+     * Getter for runs
+     *
+     * @return the number of measured runs
+     */
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * Getter for foundPaths
+     *
+     * @return the number of queries of a run which found a path
+     */
+    public int getFoundPaths() {
+        return foundPaths;
+    }
+
+    /**
+     * Getter for averageMillis
+     *
+     * @return the average running time of a query, in milliseconds
+     */
+    public double getAverageMillis() {
+        return averageMillis;
+    }
+
+    /**
+     * Getter for maxMillis
+     *
+     * @return the largest running time of a query, in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d shortest path queries (%d paths found), %d runs: average %.3f ms, max %.3f ms",
+                queries, foundPaths, runs, averageMillis, maxMillis);
+    }
+}
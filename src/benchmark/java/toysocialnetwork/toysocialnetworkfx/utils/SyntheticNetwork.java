@@ -0,0 +1,106 @@
+package toysocialnetwork.toysocialnetworkfx.utils;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random networks for the benchmarks, generated from a seed so every run measures the same network
+ * The users get the ids 1..userCount and the friendships connect uniformly random pairs of users
+ */
+public final class SyntheticNetwork {
+    /**
+     * The seed used by default
+     */
+    public static final long DEFAULT_SEED = 42;
+
+    private SyntheticNetwork() {
+    }
+
+    /**
+     * Creates users with their friends
+     *
+     * @param userCount     the number of users
+     * @param averageDegree the average number of friends of a user
+     * @param seed          the seed of the random generator
+     * @return the users, in increasing order of their ids, each with its sorted friend ids
+     * @throws IllegalArgumentException if there are less than two users or the average degree is negative
+     */
+    public static List<User> createUsers(int userCount, int averageDegree, long seed) {
+        long[][] friends = createFriendIds(userCount, averageDegree, seed);
+
+        List<User> users = new ArrayList<>(userCount);
+        for (int k = 0; k < userCount; k++) {
+            User user = new User("user" + (k + 1), "First" + (k + 1), "Last" + (k + 1), "password" + (k + 1));
+            user.setId(k + 1L);
+
+            List<Long> friendList = new ArrayList<>(friends[k].length);
+            for (long friend : friends[k])
+                friendList.add(friend);
+            user.setFriends(friendList);
+            users.add(user);
+        }
+
+        return users;
+    }
+
+    /**
+     * Creates the friend ids of the users
+     *
+     * @param userCount     the number of users
+     * @param averageDegree the average number of friends of a user
+     * @param seed          the seed of the random generator
+     * @return the sorted friend ids of every user, the user with the id k + 1 at the index k
+     * @throws IllegalArgumentException if there are less than two users or the average degree is negative
+     */
+    public static long[][] createFriendIds(int userCount, int averageDegree, long seed) {
+        if (userCount < 2)
+            throw new IllegalArgumentException("There must be at least two users");
+        if (averageDegree < 0)
+            throw new IllegalArgumentException("The average degree must not be negative");
+
+        Random random = new Random(seed);
+        long friendshipCount = (long) userCount * averageDegree / 2;
+        int[] firsts = new int[(int) friendshipCount];
+        int[] seconds = new int[(int) friendshipCount];
+        int[] degrees = new int[userCount];
+        for (int k = 0; k < friendshipCount; k++) {
+            int first = random.nextInt(userCount);
+            int second = random.nextInt(userCount - 1);
+            if (second >= first)
+                second++;
+
+            firsts[k] = first;
+            seconds[k] = second;
+            degrees[first]++;
+            degrees[second]++;
+        }
+
+        long[][] friends = new long[userCount][];
+        for (int user = 0; user < userCount; user++)
+            friends[user] = new long[degrees[user]];
+        Arrays.fill(degrees, 0);
+        for (int k = 0; k < friendshipCount; k++) {
+            friends[firsts[k]][degrees[firsts[k]]++] = seconds[k] + 1L;
+            friends[seconds[k]][degrees[seconds[k]]++] = firsts[k] + 1L;
+        }
+
+        // the same pair may have been drawn twice
+        for (int user = 0; user < userCount; user++) {
+            long[] userFriends = friends[user];
+            Arrays.sort(userFriends);
+
+            int distinct = 0;
+            for (int k = 0; k < userFriends.length; k++)
+                if (k == 0 || userFriends[k] != userFriends[k - 1])
+                    userFriends[distinct++] = userFriends[k];
+            if (distinct < userFriends.length)
+                friends[user] = Arrays.copyOf(userFriends, distinct);
+        }
+
+        return friends;
+    }
+}
@@ -6,6 +6,8 @@ module toysocialnetwork.toysocialnetworkfx {
     requires com.dlsc.formsfx;
     requires org.kordamp.bootstrapfx.core;
     requires java.sql;
+    requires java.logging;
+    requires org.postgresql.jdbc;
 
     opens toysocialnetwork.toysocialnetworkfx to javafx.fxml;
     exports toysocialnetwork.toysocialnetworkfx;
@@ -6,16 +6,36 @@ import toysocialnetwork.toysocialnetworkfx.domain.User;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.FriendshipValidator;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.UserValidator;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserCommunityRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserScoreRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CacheConfig;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CachingFriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CachingRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CachingUserRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.database.ConnectionPool;
+import toysocialnetwork.toysocialnetworkfx.repository.database.ConnectionPoolConfig;
 import toysocialnetwork.toysocialnetworkfx.repository.database.FriendshipDBRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.database.UserCommunityDBRepository;
 import toysocialnetwork.toysocialnetworkfx.repository.database.UserDBRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.database.UserScoreDBRepository;
+import toysocialnetwork.toysocialnetworkfx.service.AnalyticsService;
 import toysocialnetwork.toysocialnetworkfx.service.FriendshipService;
 import toysocialnetwork.toysocialnetworkfx.service.UserService;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityIndex;
 import toysocialnetwork.toysocialnetworkfx.ui.ConsoleUI;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
 /**
  * Main application class
  */
 public class Main {
+    private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
 
     /**
      * Runs the application in CLI mode
@@ -24,20 +44,49 @@ public class Main {
         Validator<User> userValidator = new UserValidator();
         Validator<Friendship> friendshipValidator = new FriendshipValidator();
 
-        UserDBRepository userRepository = new UserDBRepository(userValidator,
-                ApplicationContext.getConfigProperties().getProperty("data.db.url"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.user"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.password"));
-        FriendshipDBRepository friendshipRepository = new FriendshipDBRepository(friendshipValidator,
-                ApplicationContext.getConfigProperties().getProperty("data.db.url"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.user"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.password"));
+        Properties properties = ApplicationContext.getConfigProperties();
+
+        try (ConnectionPool connectionPool = new ConnectionPool(ConnectionPoolConfig.fromProperties(properties))) {
+            UserRepository userRepository = new UserDBRepository(userValidator, connectionPool);
+            FriendshipRepository friendshipRepository = new FriendshipDBRepository(friendshipValidator, connectionPool);
+
+            List<CachingRepository<Long, ?>> cachingRepositories = new ArrayList<>();
+            CacheConfig userCacheConfig = CacheConfig.fromProperties(properties, "users");
+            CachingUserRepository cachingUserRepository = null;
+            if (userCacheConfig.isEnabled()) {
+                cachingUserRepository = new CachingUserRepository(userRepository, userCacheConfig);
+                cachingRepositories.add(cachingUserRepository);
+                userRepository = cachingUserRepository;
+            }
+            CacheConfig friendshipCacheConfig = CacheConfig.fromProperties(properties, "friendships");
+            if (friendshipCacheConfig.isEnabled()) {
+                CachingFriendshipRepository cachingFriendshipRepository =
+                        new CachingFriendshipRepository(friendshipRepository, friendshipCacheConfig);
+                cachingRepositories.add(cachingFriendshipRepository);
+                friendshipRepository = cachingFriendshipRepository;
+            }
 
-        UserService userService = new UserService(userRepository, friendshipRepository);
-        FriendshipService friendshipService = new FriendshipService(friendshipRepository, userRepository);
-        ConsoleUI cli = new ConsoleUI(userService, friendshipService);
+            CommunityIndex communityIndex = new CommunityIndex();
+            UserService userService = new UserService(userRepository, friendshipRepository, communityIndex);
+            int analyticsParallelism = Integer.parseInt(properties.getProperty("data.analytics.parallelism",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            FriendshipService friendshipService = new FriendshipService(friendshipRepository, userRepository,
+                    communityIndex, analyticsParallelism);
+            if (cachingUserRepository != null) { // the friends of the cached users change with the friendships
+                userService.addObserver(cachingUserRepository);
+                friendshipService.addObserver(cachingUserRepository);
+            }
+            UserScoreRepository userScoreRepository = new UserScoreDBRepository(connectionPool);
+            UserCommunityRepository userCommunityRepository = new UserCommunityDBRepository(connectionPool);
+            AnalyticsService analyticsService = new AnalyticsService(userRepository, userScoreRepository,
+                    userCommunityRepository, analyticsParallelism);
+            ConsoleUI cli = new ConsoleUI(userService, friendshipService, analyticsService);
 
-        cli.run();
+            cli.run();
+            for (CachingRepository<Long, ?> cachingRepository : cachingRepositories)
+                LOGGER.fine(() -> "Cache statistics: " + cachingRepository.getStats());
+            LOGGER.fine(() -> "Connection pool: " + connectionPool.getMetrics());
+        }
     }
 
     /**
@@ -13,19 +13,39 @@ import toysocialnetwork.toysocialnetworkfx.domain.validators.FriendshipValidator
 import toysocialnetwork.toysocialnetworkfx.domain.validators.MessageValidator;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.UserValidator;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CacheConfig;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CachingFriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CachingRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.cache.CachingUserRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.database.ConnectionPool;
+import toysocialnetwork.toysocialnetworkfx.repository.database.ConnectionPoolConfig;
 import toysocialnetwork.toysocialnetworkfx.repository.database.FriendshipDBRepository;
 import toysocialnetwork.toysocialnetworkfx.repository.database.MessageDBRepository;
 import toysocialnetwork.toysocialnetworkfx.repository.database.UserDBRepository;
 import toysocialnetwork.toysocialnetworkfx.service.FriendshipService;
 import toysocialnetwork.toysocialnetworkfx.service.MessageService;
+import toysocialnetwork.toysocialnetworkfx.service.RecommendationMetric;
+import toysocialnetwork.toysocialnetworkfx.service.RecommendationService;
 import toysocialnetwork.toysocialnetworkfx.service.UserService;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityIndex;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
 
 /**
  * Main application class for GUI
  */
 public class MainApplication extends Application {
+    private static final Logger LOGGER = Logger.getLogger(MainApplication.class.getName());
+
+    private ConnectionPool connectionPool;
+    private final List<CachingRepository<Long, ?>> cachingRepositories = new ArrayList<>();
+
     @Override
     public void start(Stage stage) throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(MainApplication.class.getResource("views/login-view.fxml"));
@@ -35,31 +55,65 @@ public class MainApplication extends Application {
         Validator<Friendship> friendshipValidator = new FriendshipValidator();
         Validator<Message> messageValidator = new MessageValidator();
 
-        UserDBRepository userRepository = new UserDBRepository(userValidator,
-                ApplicationContext.getConfigProperties().getProperty("data.db.url"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.user"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.password"));
-        FriendshipDBRepository friendshipRepository = new FriendshipDBRepository(friendshipValidator,
-                ApplicationContext.getConfigProperties().getProperty("data.db.url"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.user"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.password"));
-        MessageDBRepository messageDBRepository = new MessageDBRepository(messageValidator,
-                ApplicationContext.getConfigProperties().getProperty("data.db.url"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.user"),
-                ApplicationContext.getConfigProperties().getProperty("data.db.password"));
+        Properties properties = ApplicationContext.getConfigProperties();
+        connectionPool = new ConnectionPool(ConnectionPoolConfig.fromProperties(properties));
+        UserRepository userRepository = new UserDBRepository(userValidator, connectionPool);
+        FriendshipRepository friendshipRepository = new FriendshipDBRepository(friendshipValidator, connectionPool);
+        MessageDBRepository messageDBRepository = new MessageDBRepository(messageValidator, connectionPool);
 
-        UserService userService = new UserService(userRepository, friendshipRepository);
-        FriendshipService friendshipService = new FriendshipService(friendshipRepository, userRepository);
+        CacheConfig userCacheConfig = CacheConfig.fromProperties(properties, "users");
+        CachingUserRepository cachingUserRepository = null;
+        if (userCacheConfig.isEnabled()) {
+            cachingUserRepository = new CachingUserRepository(userRepository, userCacheConfig);
+            cachingRepositories.add(cachingUserRepository);
+            userRepository = cachingUserRepository;
+        }
+        CacheConfig friendshipCacheConfig = CacheConfig.fromProperties(properties, "friendships");
+        if (friendshipCacheConfig.isEnabled()) {
+            CachingFriendshipRepository cachingFriendshipRepository =
+                    new CachingFriendshipRepository(friendshipRepository, friendshipCacheConfig);
+            cachingRepositories.add(cachingFriendshipRepository);
+            friendshipRepository = cachingFriendshipRepository;
+        }
+
+        CommunityIndex communityIndex = new CommunityIndex();
+        UserService userService = new UserService(userRepository, friendshipRepository, communityIndex);
+        int analyticsParallelism = Integer.parseInt(properties.getProperty("data.analytics.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        FriendshipService friendshipService = new FriendshipService(friendshipRepository, userRepository,
+                communityIndex, analyticsParallelism);
+        if (cachingUserRepository != null) { // the friends of the cached users change with the friendships
+            userService.addObserver(cachingUserRepository);
+            friendshipService.addObserver(cachingUserRepository);
+        }
         MessageService messageService = new MessageService(messageDBRepository);
+        RecommendationService recommendationService = new RecommendationService(userRepository, friendshipRepository,
+                RecommendationMetric.valueOf(properties.getProperty("data.recommendations.metric", "MUTUAL_FRIENDS")),
+                Integer.parseInt(properties.getProperty("data.recommendations.maxCount",
+                        String.valueOf(RecommendationService.DEFAULT_MAX_RECOMMENDATIONS))));
+        // registered before the controllers, so the recommendations are cleared before the views refresh
+        userService.addObserver(recommendationService);
+        friendshipService.addObserver(recommendationService);
 
         LoginController loginController = fxmlLoader.getController();
-        loginController.setServices(userService, friendshipService, messageService);
+        loginController.setServices(userService, friendshipService, messageService, recommendationService);
 
         stage.setTitle("ToySocialNetwork");
         stage.setScene(scene);
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        for (CachingRepository<Long, ?> cachingRepository : cachingRepositories)
+            LOGGER.fine(() -> "Cache statistics: " + cachingRepository.getStats());
+
+        if (connectionPool != null) {
+            LOGGER.fine(() -> "Connection pool: " + connectionPool.getMetrics());
+            connectionPool.close();
+        }
+    }
+
     public static void main(String[] args) {
         launch();
     }
@@ -10,6 +10,7 @@ import toysocialnetwork.toysocialnetworkfx.MainApplication;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
 import toysocialnetwork.toysocialnetworkfx.service.FriendshipService;
 import toysocialnetwork.toysocialnetworkfx.service.MessageService;
+import toysocialnetwork.toysocialnetworkfx.service.RecommendationService;
 import toysocialnetwork.toysocialnetworkfx.service.UserService;
 
 import java.io.IOException;
@@ -27,18 +28,22 @@ public class LoginController {
     private UserService userService;
     private FriendshipService friendshipService;
     private MessageService messageService;
+    private RecommendationService recommendationService;
 
     /**
      * Sets the services for the controller
      *
-     * @param userService       the user service
-     * @param friendshipService the friendship service
-     * @param messageService    the message service
+     * @param userService           the user service
+     * @param friendshipService     the friendship service
+     * @param messageService        the message service
+     * @param recommendationService the recommendation service
      */
-    public void setServices(UserService userService, FriendshipService friendshipService, MessageService messageService) {
+    public void setServices(UserService userService, FriendshipService friendshipService, MessageService messageService,
+                            RecommendationService recommendationService) {
         this.userService = userService;
         this.friendshipService = friendshipService;
         this.messageService = messageService;
+        this.recommendationService = recommendationService;
     }
 
     /**
@@ -63,7 +68,8 @@ public class LoginController {
                 Scene scene = new Scene(fxmlLoader.load(), 768, 526);
 
                 MainController mainController = fxmlLoader.getController();
-                mainController.setServicesUser(userService, friendshipService, messageService, currentUser);
+                mainController.setServicesUser(userService, friendshipService, messageService, recommendationService,
+                        currentUser);
 
                 Stage stage = new Stage();
                 stage.setTitle("ToySocialNetwork");
@@ -89,7 +95,7 @@ public class LoginController {
             Scene scene = new Scene(fxmlLoader.load(), 397, 400);
 
             RegisterController registerController = fxmlLoader.getController();
-            registerController.setServices(userService, friendshipService, messageService);
+            registerController.setServices(userService, friendshipService, messageService, recommendationService);
 
             Stage stage = new Stage();
             stage.setTitle("ToySocialNetwork");
@@ -1,12 +1,15 @@
 package toysocialnetwork.toysocialnetworkfx.controller;
 
+import javafx.application.Platform;
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -21,10 +24,12 @@ import toysocialnetwork.toysocialnetworkfx.domain.Sender;
 import toysocialnetwork.toysocialnetworkfx.domain.Status;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
 import toysocialnetwork.toysocialnetworkfx.domain.dto.FriendshipDTO;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.RecommendationDTO;
 import toysocialnetwork.toysocialnetworkfx.domain.dto.UserDTO;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
 import toysocialnetwork.toysocialnetworkfx.service.FriendshipService;
 import toysocialnetwork.toysocialnetworkfx.service.MessageService;
+import toysocialnetwork.toysocialnetworkfx.service.RecommendationService;
 import toysocialnetwork.toysocialnetworkfx.service.ServiceException;
 import toysocialnetwork.toysocialnetworkfx.service.UserService;
 import toysocialnetwork.toysocialnetworkfx.utils.Constants;
@@ -32,12 +37,18 @@ import toysocialnetwork.toysocialnetworkfx.utils.observer.Observer;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Controller for Main View
  */
 public class MainController implements Observer {
+    private static final int MESSAGES_PAGE_SIZE = 50;
+    private static final int MAX_CONNECTION_PATH_HOPS = 6;
+
     @FXML
     public TableView<UserDTO> tableViewFriends;
     @FXML
@@ -70,6 +81,8 @@ public class MainController implements Observer {
     public TableColumn<User, String> tableViewUsersFirstName;
     @FXML
     public TableColumn<User, String> tableViewUsersLastName;
+    @FXML
+    public TableColumn<User, String> tableViewUsersMutualFriends;
 
     @FXML
     public TableView<FriendshipDTO> tableViewSentRequests;
@@ -95,19 +108,28 @@ public class MainController implements Observer {
     public Button buttonSendRequest;
     @FXML
     public Button buttonSendMessage;
+    @FXML
+    public Label labelConnectionPath;
 
 
     private UserService userService;
     private FriendshipService friendshipService;
     private MessageService messageService;
+    private RecommendationService recommendationService;
     private User currentUser;
 
     private final ObservableList<UserDTO> friendsModel = FXCollections.observableArrayList();
     private final ObservableList<FriendshipDTO> requestsModel = FXCollections.observableArrayList();
     private final ObservableList<User> usersModel = FXCollections.observableArrayList();
+    private final ObservableList<User> recommendedUsersModel = FXCollections.observableArrayList();
     private final ObservableList<User> cachedUsersModel = FXCollections.observableArrayList();
+    private final Map<Long, Integer> mutualFriendsCounts = new HashMap<>();
+    private boolean availableUsersLoaded;
     private final ObservableList<FriendshipDTO> sentRequestsModel = FXCollections.observableArrayList();
     private final ObservableList<Message> messagesModel = FXCollections.observableArrayList();
+    private Long conversationFriendId;
+    private boolean hasOlderMessages;
+    private boolean loadingMessages;
 
     /**
      * Updates the models
@@ -118,10 +140,10 @@ public class MainController implements Observer {
 
         friendsModel.setAll(userService.findFriendUsersFor(currentUser.getId()));
         requestsModel.setAll(friendshipService.getFriendshipRequestsFor(currentUser.getId()));
-        usersModel.setAll(userService.findAvailableUsersFor(currentUser.getId()));
-        cachedUsersModel.setAll(usersModel);
+        refreshRecommendations();
         sentRequestsModel.setAll(friendshipService.getFriendshipRequestsFrom(currentUser.getId()));
         usernameSearchbox.setText("");
+        showDefaultUsers();
 
         if (0 <= selectedFriendIndex && selectedFriendIndex < friendsModel.size()
                 && selectedFriend != null && selectedFriend.getId().equals(friendsModel.get(selectedFriendIndex).getId())) {
@@ -131,17 +153,123 @@ public class MainController implements Observer {
         refreshMessages();
     }
 
+    /**
+     * Updates the people the current user may know
+     * All the available users are loaded again only when they are searched by username or there are no recommendations
+     */
+    private void refreshRecommendations() {
+        List<RecommendationDTO> recommendations = recommendationService.getRecommendationsFor(currentUser.getId());
+
+        mutualFriendsCounts.clear();
+        for (RecommendationDTO recommendation : recommendations)
+            mutualFriendsCounts.put(recommendation.getUser().getId(), recommendation.getMutualFriendsCount());
+        recommendedUsersModel.setAll(recommendations.stream().map(RecommendationDTO::getUser).toList());
+
+        cachedUsersModel.clear();
+        availableUsersLoaded = false;
+    }
+
+    /**
+     * Shows the people the current user may know when nothing is searched
+     * A user without recommendations (e.g. a new user without friends) is shown all the available users instead
+     */
+    private void showDefaultUsers() {
+        if (!recommendedUsersModel.isEmpty()) {
+            usersModel.setAll(recommendedUsersModel);
+
+            return;
+        }
+
+        loadAvailableUsers();
+        usersModel.setAll(cachedUsersModel);
+    }
+
+    /**
+     * Loads the users the current user can send a friend request to, once after every refresh
+     */
+    private void loadAvailableUsers() {
+        if (!availableUsersLoaded) {
+            cachedUsersModel.setAll(userService.findAvailableUsersFor(currentUser.getId()));
+            availableUsersLoaded = true;
+        }
+    }
+
+    /**
+     * Shows how the current user is connected to another user, through the shortest path of friendships
+     *
+     * @param user the other user, null if no user is selected
+     */
+    private void showConnectionPath(User user) {
+        if (user == null) {
+            labelConnectionPath.setText("");
+
+            return;
+        }
+
+        List<User> path = friendshipService.getShortestFriendshipPath(currentUser.getId(), user.getId(),
+                MAX_CONNECTION_PATH_HOPS);
+        if (path.isEmpty()) {
+            labelConnectionPath.setText("No connection within " + MAX_CONNECTION_PATH_HOPS + " friendships");
+
+            return;
+        }
+
+        labelConnectionPath.setText("Connection (" + (path.size() - 1) + " friendships):\n" + path.stream()
+                .map(User::getUsername)
+                .collect(Collectors.joining(" -> ")));
+    }
+
     /**
      * Updates the messages
+     * The newest page of the conversation is loaded when a friend is selected, afterwards only the messages
+     * newer than the last loaded message are fetched
      */
     private void refreshMessages() {
         UserDTO selectedFriend = tableViewFriends.getSelectionModel().getSelectedItem();
 
-        if (selectedFriend != null) {
-            messagesModel.setAll(messageService.getMessagesBetween(currentUser.getId(), selectedFriend.getId()));
-        } else {
+        if (selectedFriend == null) {
+            conversationFriendId = null;
+            hasOlderMessages = false;
             messagesModel.clear();
+
+            return;
         }
+
+        loadingMessages = true;
+        if (!selectedFriend.getId().equals(conversationFriendId) || messagesModel.isEmpty()) {
+            List<Message> messages = messageService.getLatestMessagesBetween(currentUser.getId(),
+                    selectedFriend.getId(), MESSAGES_PAGE_SIZE);
+
+            conversationFriendId = selectedFriend.getId();
+            hasOlderMessages = messages.size() == MESSAGES_PAGE_SIZE;
+            messagesModel.setAll(messages);
+        } else {
+            List<Message> messages;
+            do {
+                messages = messageService.getMessagesAfter(currentUser.getId(), selectedFriend.getId(),
+                        messagesModel.get(messagesModel.size() - 1), MESSAGES_PAGE_SIZE);
+                messagesModel.addAll(messages);
+            } while (messages.size() == MESSAGES_PAGE_SIZE);
+        }
+        listViewMessages.scrollTo(Math.max(messagesModel.size() - 1, 0));
+        loadingMessages = false;
+    }
+
+    /**
+     * Loads the previous page of the current conversation, it is called when the messages are scrolled to the top
+     */
+    private void loadOlderMessages() {
+        if (loadingMessages || !hasOlderMessages || conversationFriendId == null || messagesModel.isEmpty())
+            return;
+
+        loadingMessages = true;
+        List<Message> messages = messageService.getMessagesBefore(currentUser.getId(), conversationFriendId,
+                messagesModel.get(0), MESSAGES_PAGE_SIZE);
+
+        hasOlderMessages = messages.size() == MESSAGES_PAGE_SIZE;
+        messagesModel.addAll(0, messages);
+        listViewMessages.scrollTo(messages.size());
+        loadingMessages = false;
     }
 
     @Override
@@ -238,7 +366,13 @@ public class MainController implements Observer {
         tableViewUsersUsername.setCellValueFactory(new PropertyValueFactory<>("username"));
         tableViewUsersFirstName.setCellValueFactory(new PropertyValueFactory<>("firstName"));
         tableViewUsersLastName.setCellValueFactory(new PropertyValueFactory<>("lastName"));
+        tableViewUsersMutualFriends.setCellValueFactory(cellData -> {
+            Integer mutualFriendsCount = mutualFriendsCounts.get(cellData.getValue().getId());
+
+            return new SimpleStringProperty(mutualFriendsCount == null ? "" : mutualFriendsCount.toString());
+        });
         tableViewUsers.setItems(usersModel);
+        tableViewUsers.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> showConnectionPath(newValue));
 
         tableViewSentRequestsTo.setCellValueFactory(cellData ->
                 new SimpleStringProperty(cellData.getValue().getOtherUser().getUsername()));
@@ -310,12 +444,27 @@ public class MainController implements Observer {
             }
         });
         listViewMessages.setItems(messagesModel);
+        listViewMessages.skinProperty().addListener((observable, oldValue, newValue) -> Platform.runLater(() -> {
+            for (Node node : listViewMessages.lookupAll(".scroll-bar")) {
+                if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                    scrollBar.valueProperty().addListener((valueObservable, oldPosition, newPosition) -> {
+                        if (newPosition.doubleValue() <= scrollBar.getMin())
+                            loadOlderMessages();
+                    });
+                }
+            }
+        }));
         tableViewFriends.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> refreshMessages());
 
         usernameSearchbox.textProperty().addListener((observable, oldValue, newValue) -> {
-            usersModel.setAll(cachedUsersModel);
+            if (newValue.trim().isEmpty()) {
+                showDefaultUsers();
+
+                return;
+            }
 
-            usersModel.setAll(usersModel.stream()
+            loadAvailableUsers();
+            usersModel.setAll(cachedUsersModel.stream()
                     .filter(user -> user.getUsername().contains(newValue.trim()))
                     .collect(Collectors.toList())
             );
@@ -325,15 +474,18 @@ public class MainController implements Observer {
     /**
      * Sets the services and current user for the controller
      *
-     * @param userService       the user service
-     * @param friendshipService the friendship service
-     * @param messageService    the message service
-     * @param user              the current user
+     * @param userService           the user service
+     * @param friendshipService     the friendship service
+     * @param messageService        the message service
+     * @param recommendationService the recommendation service
+     * @param user                  the current user
      */
-    public void setServicesUser(UserService userService, FriendshipService friendshipService, MessageService messageService, User user) {
+    public void setServicesUser(UserService userService, FriendshipService friendshipService, MessageService messageService,
+                                RecommendationService recommendationService, User user) {
         this.userService = userService;
         this.friendshipService = friendshipService;
         this.messageService = messageService;
+        this.recommendationService = recommendationService;
         this.currentUser = user;
 
         this.userService.addObserver(this);
@@ -423,7 +575,7 @@ public class MainController implements Observer {
             Scene scene = new Scene(fxmlLoader.load(), 397, 400);
 
             LoginController loginController = fxmlLoader.getController();
-            loginController.setServices(userService, friendshipService, messageService);
+            loginController.setServices(userService, friendshipService, messageService, recommendationService);
 
             Stage stage = new Stage();
             stage.setTitle("ToySocialNetwork");
@@ -448,7 +600,7 @@ public class MainController implements Observer {
             Scene scene = new Scene(fxmlLoader.load(), 397, 400);
 
             LoginController loginController = fxmlLoader.getController();
-            loginController.setServices(userService, friendshipService, messageService);
+            loginController.setServices(userService, friendshipService, messageService, recommendationService);
 
             Stage stage = new Stage();
             stage.setTitle("ToySocialNetwork");
@@ -11,6 +11,7 @@ import toysocialnetwork.toysocialnetworkfx.MainApplication;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
 import toysocialnetwork.toysocialnetworkfx.service.FriendshipService;
 import toysocialnetwork.toysocialnetworkfx.service.MessageService;
+import toysocialnetwork.toysocialnetworkfx.service.RecommendationService;
 import toysocialnetwork.toysocialnetworkfx.service.ServiceException;
 import toysocialnetwork.toysocialnetworkfx.service.UserService;
 
@@ -32,18 +33,22 @@ public class RegisterController {
     private UserService userService;
     private FriendshipService friendshipService;
     private MessageService messageService;
+    private RecommendationService recommendationService;
 
     /**
      * Sets the services for the controller
      *
-     * @param userService       the user service
-     * @param friendshipService the friendship service
-     * @param messageService    the message service
+     * @param userService           the user service
+     * @param friendshipService     the friendship service
+     * @param messageService        the message service
+     * @param recommendationService the recommendation service
      */
-    public void setServices(UserService userService, FriendshipService friendshipService, MessageService messageService) {
+    public void setServices(UserService userService, FriendshipService friendshipService, MessageService messageService,
+                            RecommendationService recommendationService) {
         this.userService = userService;
         this.friendshipService = friendshipService;
         this.messageService = messageService;
+        this.recommendationService = recommendationService;
     }
 
     /**
@@ -82,7 +87,7 @@ public class RegisterController {
             Scene scene = new Scene(fxmlLoader.load(), 397, 400);
 
             LoginController loginController = fxmlLoader.getController();
-            loginController.setServices(userService, friendshipService, messageService);
+            loginController.setServices(userService, friendshipService, messageService, recommendationService);
 
             Stage stage = new Stage();
             stage.setTitle("ToySocialNetwork");
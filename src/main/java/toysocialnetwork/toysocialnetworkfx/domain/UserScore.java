@@ -0,0 +1,64 @@
+package toysocialnetwork.toysocialnetworkfx.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Influence scores of a user, the id is the id of the user
+ */
+public class UserScore extends Entity<Long> {
+    private final double pageRank;
+    private final double eigenvectorCentrality;
+    private final LocalDateTime computedAt;
+
+    /**
+     * Constructor for UserScore
+     *
+     * @param userId                the id of the user
+     * @param pageRank              the PageRank of the user
+     * @param eigenvectorCentrality the eigenvector centrality of the user
+     * @param computedAt            when the scores were computed
+     */
+    public UserScore(Long userId, double pageRank, double eigenvectorCentrality, LocalDateTime computedAt) {
+        setId(userId);
+        this.pageRank = pageRank;
+        this.eigenvectorCentrality = eigenvectorCentrality;
+        this.computedAt = computedAt;
+    }
+
+    /**
+     * Getter for pageRank
+     *
+     * @return the PageRank of the user
+     */
+    public double getPageRank() {
+        return pageRank;
+    }
+
+    /**
+     * Getter for eigenvectorCentrality
+     *
+     * @return the eigenvector centrality of the user
+     */
+    public double getEigenvectorCentrality() {
+        return eigenvectorCentrality;
+    }
+
+    /**
+     * Getter for computedAt
+     *
+     * @return when the scores were computed
+     */
+    public LocalDateTime getComputedAt() {
+        return computedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "UserScore{" +
+                "userId=" + getId() +
+                ", pageRank=" + pageRank +
+                ", eigenvectorCentrality=" + eigenvectorCentrality +
+                ", computedAt=" + computedAt +
+                '}';
+    }
+}
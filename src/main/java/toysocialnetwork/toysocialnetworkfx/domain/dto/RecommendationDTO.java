@@ -0,0 +1,57 @@
+package toysocialnetwork.toysocialnetworkfx.domain.dto;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+
+/**
+ * Data Transfer Object for a recommended user
+ */
+public class RecommendationDTO {
+    private final User user;
+    private final int mutualFriendsCount;
+    private final double score;
+
+    /**
+     * Constructor for RecommendationDTO
+     *
+     * @param user               the recommended user
+     * @param mutualFriendsCount the number of mutual friends
+     * @param score              the score of the recommendation
+     */
+    public RecommendationDTO(User user, int mutualFriendsCount, double score) {
+        this.user = user;
+        this.mutualFriendsCount = mutualFriendsCount;
+        this.score = score;
+    }
+
+    /**
+     * Getter for user
+     *
+     * @return the recommended user
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * Getter for mutualFriendsCount
+     *
+     * @return the number of mutual friends
+     */
+    public int getMutualFriendsCount() {
+        return mutualFriendsCount;
+    }
+
+    /**
+     * Getter for score
+     *
+     * @return the score of the recommendation
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return user + " (" + mutualFriendsCount + " mutual friends)";
+    }
+}
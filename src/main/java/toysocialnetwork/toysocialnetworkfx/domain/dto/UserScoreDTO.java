@@ -0,0 +1,93 @@
+package toysocialnetwork.toysocialnetworkfx.domain.dto;
+
+/**
+ * Data Transfer Object for the influence scores of a user, together with the user data
+ */
+public class UserScoreDTO {
+    private final Long id;
+    private final String username;
+    private final String firstName;
+    private final String lastName;
+    private final double pageRank;
+    private final double eigenvectorCentrality;
+
+    /**
+     * Constructor for UserScoreDTO
+     *
+     * @param id                    the id of the user
+     * @param username              the username of the user
+     * @param firstName             the first name of the user
+     * @param lastName              the last name of the user
+     * @param pageRank              the PageRank of the user
+     * @param eigenvectorCentrality the eigenvector centrality of the user
+     */
+    public UserScoreDTO(Long id, String username, String firstName, String lastName, double pageRank,
+                        double eigenvectorCentrality) {
+        this.id = id;
+        this.username = username;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.pageRank = pageRank;
+        this.eigenvectorCentrality = eigenvectorCentrality;
+    }
+
+    /**
+     * Getter for id
+     *
+     * @return the id of the user
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Getter for username
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Getter for firstName
+     *
+     * @return the first name
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * Getter for lastName
+     *
+     * @return the last name
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * Getter for pageRank
+     *
+     * @return the PageRank of the user
+     */
+    public double getPageRank() {
+        return pageRank;
+    }
+
+    /**
+     * Getter for eigenvectorCentrality
+     *
+     * @return the eigenvector centrality of the user
+     */
+    public double getEigenvectorCentrality() {
+        return eigenvectorCentrality;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d %s (%s %s): PageRank %.6f, eigenvector centrality %.6f", id, username, firstName,
+                lastName, pageRank, eigenvectorCentrality);
+    }
+}
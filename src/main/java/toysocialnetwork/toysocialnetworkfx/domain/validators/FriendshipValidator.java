@@ -10,7 +10,7 @@ public class FriendshipValidator implements Validator<Friendship> {
     public void validate(Friendship entity) throws ValidationException {
         String errorMessage = "";
 
-        if (entity.getId() == null || entity.getId() <= 0)
+        if (entity.getId() != null && entity.getId() <= 0)
             errorMessage += "Invalid id\n";
         if (entity.getFirstUser() == null || entity.getFirstUser() <= 0)
             errorMessage += "Invalid first user id\n";
@@ -10,7 +10,7 @@ public class MessageValidator implements Validator<Message> {
     public void validate(Message entity) throws ValidationException {
         String errorMessage = "";
 
-        if (entity.getId() == null || entity.getId() <= 0)
+        if (entity.getId() != null && entity.getId() <= 0)
             errorMessage += "Invalid id\n";
         if (entity.getFromUser() == null || entity.getFromUser() <= 0)
             errorMessage += "Invalid from user id\n";
@@ -10,7 +10,7 @@ public class UserValidator implements Validator<User> {
     public void validate(User entity) throws ValidationException {
         String errorMessage = "";
 
-        if (entity.getId() == null || entity.getId() <= 0)
+        if (entity.getId() != null && entity.getId() <= 0)
             errorMessage += "Invalid id\n";
         if (entity.getFirstName() == null || "".equals(entity.getFirstName()))
             errorMessage += "Invalid first name\n";
@@ -8,6 +8,7 @@ package toysocialnetwork.toysocialnetworkfx.domain.validators;
 public interface Validator<E> {
     /**
      * Validates the entity object
+     * An entity without an id is valid, the repository generates its id when the entity is saved
      *
      * @param entity the entity to be validated
      * @throws ValidationException if the entity is not valid
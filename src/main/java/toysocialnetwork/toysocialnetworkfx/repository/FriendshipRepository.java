@@ -0,0 +1,27 @@
+package toysocialnetwork.toysocialnetworkfx.repository;
+
+import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.FriendshipDTO;
+
+import java.util.List;
+
+/**
+ * Repository for friendship entities, with the queries used by the friendship service
+ */
+public interface FriendshipRepository extends Repository<Long, Friendship> {
+    /**
+     * Gets all the friendship requests that were sent to the given user (by id)
+     *
+     * @param userId the id of the user
+     * @return the list of friendship requests (as FriendshipDTO)
+     */
+    List<FriendshipDTO> getFriendshipRequestsFor(Long userId);
+
+    /**
+     * Gets all the friendship requests that were sent by the given user (by id)
+     *
+     * @param userId the id of the user
+     * @return the list of friendship requests (as FriendshipDTO)
+     */
+    List<FriendshipDTO> getFriendshipRequestsFrom(Long userId);
+}
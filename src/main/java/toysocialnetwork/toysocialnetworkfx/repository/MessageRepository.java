@@ -0,0 +1,59 @@
+package toysocialnetwork.toysocialnetworkfx.repository;
+
+import toysocialnetwork.toysocialnetworkfx.domain.Message;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for message entities, with the conversation queries used by the message service
+ * The messages of a conversation are ordered by (sent date, id)
+ */
+public interface MessageRepository extends Repository<Long, Message> {
+    /**
+     * Gets all the messages sent between two users given by id
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return the list of messages in chronological order
+     */
+    List<Message> getMessagesBetween(Long firstUserId, Long secondUserId);
+
+    /**
+     * Gets the newest messages sent between two users given by id
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in chronological order
+     */
+    List<Message> getLatestMessagesBetween(Long firstUserId, Long secondUserId, int pageSize);
+
+    /**
+     * Gets a page of the messages sent between two users given by id, older than the given message
+     * The page is found using the (sent date, id) of the message as a cursor, so the cost does not depend
+     * on how many messages were already loaded
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param sentDate     the sent date of the cursor message
+     * @param id           the id of the cursor message
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in chronological order
+     */
+    List<Message> getMessagesBefore(Long firstUserId, Long secondUserId, LocalDateTime sentDate, Long id,
+                                    int pageSize);
+
+    /**
+     * Gets a page of the messages sent between two users given by id, newer than the given message
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param sentDate     the sent date of the cursor message
+     * @param id           the id of the cursor message
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in chronological order
+     */
+    List<Message> getMessagesAfter(Long firstUserId, Long secondUserId, LocalDateTime sentDate, Long id,
+                                   int pageSize);
+}
@@ -2,7 +2,12 @@ package toysocialnetwork.toysocialnetworkfx.repository;
 
 import toysocialnetwork.toysocialnetworkfx.domain.Entity;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Generic CRUD repository on generic entities with a generic id
@@ -20,6 +25,25 @@ public interface Repository<ID, E extends Entity<ID>> {
      */
     Optional<E> findById(ID id);
 
+    /**
+     * Finds several entities from the repository by id
+     * The ids which do not belong to any entity are skipped
+     *
+     * @param ids the ids, must not be null
+     * @return the list of the found entities
+     * @throws IllegalArgumentException if the ids are null
+     */
+    default List<E> findAllById(Collection<ID> ids) {
+        if (ids == null)
+            throw new IllegalArgumentException("Ids must not be null");
+
+        List<E> entities = new ArrayList<>();
+        for (ID id : ids)
+            findById(id).ifPresent(entities::add);
+
+        return entities;
+    }
+
     /**
      * Finds an entity with the corresponding id from the repository by the values contained in the entity
      * other than the id
@@ -37,8 +61,20 @@ public interface Repository<ID, E extends Entity<ID>> {
      */
     Iterable<E> findAll();
 
+    /**
+     * Streams all the entities stored in the repository
+     * Unlike findAll, implementations may read the entities lazily, so the stream must be closed after use
+     * (e.g. in a try-with-resources block)
+     *
+     * @return the stream of entities
+     */
+    default Stream<E> streamAll() {
+        return StreamSupport.stream(findAll().spliterator(), false);
+    }
+
     /**
      * Stores an entity in the repository
+     * If the repository generates the ids, the generated id is set on the entity after it was saved
      *
      * @param entity the entity, must not be null
      * @return an {@code Optional} containing null if saved successfully or the entity otherwise
@@ -56,6 +92,7 @@ public interface Repository<ID, E extends Entity<ID>> {
      * (if there is no entity with the given id or if the operation would result in a duplicated entity)
      * @throws IllegalArgumentException                                                  if the entity is null
      * @throws toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException if the entity is invalid
+     *                                                                                   or has no id
      */
     Optional<E> update(E entity);
 
@@ -68,6 +105,65 @@ public interface Repository<ID, E extends Entity<ID>> {
      */
     Optional<E> delete(ID id);
 
+    /**
+     * Stores several entities in the repository
+     * The result is the one of saving the entities one by one: an entity which can not be saved (e.g. a duplicate)
+     * is left out without stopping the others. If the repository generates the ids, the generated ids are set
+     * on the saved entities
+     *
+     * @param entities the entities, must not be null
+     * @return the list of the entities which were not saved (empty if all the entities were saved)
+     * @throws IllegalArgumentException                                                  if the entities are null
+     * @throws toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException if an entity is invalid
+     */
+    default List<E> saveAll(Iterable<E> entities) {
+        if (entities == null)
+            throw new IllegalArgumentException("Entities must not be null");
+
+        List<E> notSaved = new ArrayList<>();
+        for (E entity : entities)
+            save(entity).ifPresent(notSaved::add);
+
+        return notSaved;
+    }
+
+    /**
+     * Updates several entities from the repository
+     *
+     * @param entities the entities containing the new information, must not be null
+     * @return the list of the entities which were not updated (empty if all the entities were updated)
+     * @throws IllegalArgumentException                                                  if the entities are null
+     * @throws toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException if an entity is invalid
+     */
+    default List<E> updateAll(Iterable<E> entities) {
+        if (entities == null)
+            throw new IllegalArgumentException("Entities must not be null");
+
+        List<E> notUpdated = new ArrayList<>();
+        for (E entity : entities)
+            update(entity).ifPresent(notUpdated::add);
+
+        return notUpdated;
+    }
+
+    /**
+     * Deletes several entities from the repository
+     *
+     * @param ids the ids of the entities to be deleted, must not be null
+     * @return the list of the deleted entities
+     * @throws IllegalArgumentException if the ids are null
+     */
+    default List<E> deleteAllById(Iterable<ID> ids) {
+        if (ids == null)
+            throw new IllegalArgumentException("Ids must not be null");
+
+        List<E> deleted = new ArrayList<>();
+        for (ID id : ids)
+            delete(id).ifPresent(deleted::add);
+
+        return deleted;
+    }
+
     /**
      * Gets the id of the newest saved entity
      *
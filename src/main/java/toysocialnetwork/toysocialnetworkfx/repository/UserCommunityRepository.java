@@ -0,0 +1,52 @@
+package toysocialnetwork.toysocialnetworkfx.repository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Repository for the communities found by the community detection job
+ * A community is identified by the smallest id of its users
+ */
+public interface UserCommunityRepository {
+    /**
+     * Finds the communities of all the users
+     *
+     * @return the community of every user which has one, by user id
+     */
+    Map<Long, Long> findAll();
+
+    /**
+     * Finds the community of a user
+     *
+     * @param userId the id of the user
+     * @return an {@code Optional} with the id of the community, empty if the user has no community
+     */
+    Optional<Long> findCommunityOf(Long userId);
+
+    /**
+     * Finds the users of a community
+     *
+     * @param communityId the id of the community
+     * @return the ids of the users, sorted increasingly
+     */
+    List<Long> findMembersOf(Long communityId);
+
+    /**
+     * Replaces all the stored communities with the given ones, in a single transaction
+     *
+     * @param communities the community of every user, by user id
+     * @return true if the communities were stored, false if the old communities were kept
+     * @throws IllegalArgumentException if the communities are null
+     */
+    boolean replaceAll(Map<Long, Long> communities);
+
+    /**
+     * Stores the communities of some users, keeping the communities of the other users, in a single transaction
+     *
+     * @param communities the new community of every changed user, by user id
+     * @return true if the communities were stored, false if the old communities were kept
+     * @throws IllegalArgumentException if the communities are null
+     */
+    boolean saveAll(Map<Long, Long> communities);
+}
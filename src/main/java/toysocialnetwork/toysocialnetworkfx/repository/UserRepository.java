@@ -0,0 +1,28 @@
+package toysocialnetwork.toysocialnetworkfx.repository;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserDTO;
+
+import java.util.List;
+
+/**
+ * Repository for user entities, with the queries used by the user service
+ */
+public interface UserRepository extends Repository<Long, User> {
+    /**
+     * Finds all the friends for a given user by id, together with the ids of the friendships
+     *
+     * @param userId the id of the user
+     * @return the list of the friends as a list of UserDTO objects
+     */
+    List<UserDTO> findFriendUsersFor(Long userId);
+
+    /**
+     * Finds all the users that are not friends with the given user by id
+     * (and have no pending friendship request with the user)
+     *
+     * @param userId the id of the user
+     * @return the list of found users
+     */
+    List<User> findAvailableUsersFor(Long userId);
+}
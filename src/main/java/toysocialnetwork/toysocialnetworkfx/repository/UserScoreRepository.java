@@ -0,0 +1,36 @@
+package toysocialnetwork.toysocialnetworkfx.repository;
+
+import toysocialnetwork.toysocialnetworkfx.domain.UserScore;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserScoreDTO;
+
+import java.util.List;
+
+/**
+ * Repository for the influence scores computed by the analytics job
+ */
+public interface UserScoreRepository {
+    /**
+     * Replaces all the stored scores with the given ones, in a single transaction
+     *
+     * @param scores the new scores
+     * @return true if the scores were stored, false if the old scores were kept
+     * @throws IllegalArgumentException if the scores are null
+     */
+    boolean replaceAll(List<UserScore> scores);
+
+    /**
+     * Finds the users with the largest PageRank
+     *
+     * @param count the number of users
+     * @return the scores together with the users, from the largest PageRank
+     */
+    List<UserScoreDTO> findTopByPageRank(int count);
+
+    /**
+     * Finds the users with the largest eigenvector centrality
+     *
+     * @param count the number of users
+     * @return the scores together with the users, from the largest eigenvector centrality
+     */
+    List<UserScoreDTO> findTopByEigenvectorCentrality(int count);
+}
@@ -0,0 +1,82 @@
+package toysocialnetwork.toysocialnetworkfx.repository.cache;
+
+import java.util.Properties;
+
+/**
+ * Configuration for a {@link CachingRepository}
+ */
+public class CacheConfig {
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    /**
+     * Constructor for CacheConfig
+     *
+     * @param enabled   true if the repository should be cached
+     * @param maxSize   the maximum number of cached entities, the least recently used ones are evicted first
+     * @param ttlMillis how long an entity stays cached after it was loaded, 0 if the entities do not expire
+     * @throws IllegalArgumentException if the size or the time to live are invalid
+     */
+    public CacheConfig(boolean enabled, int maxSize, long ttlMillis) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        if (ttlMillis < 0)
+            throw new IllegalArgumentException("Cache time to live must not be negative");
+
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Creates a cache configuration from the configuration properties
+     * The settings are read from the data.cache.[name].enabled (default false), data.cache.[name].maxSize
+     * (default 1000) and data.cache.[name].ttlMillis (default 0) keys
+     *
+     * @param properties the configuration properties
+     * @param name       the name of the cached repository, e.g. users
+     * @return the cache configuration
+     * @throws IllegalArgumentException if a setting is not a valid number
+     */
+    public static CacheConfig fromProperties(Properties properties, String name) {
+        String prefix = "data.cache." + name + ".";
+
+        try {
+            return new CacheConfig(
+                    Boolean.parseBoolean(properties.getProperty(prefix + "enabled", "false")),
+                    Integer.parseInt(properties.getProperty(prefix + "maxSize", "1000")),
+                    Long.parseLong(properties.getProperty(prefix + "ttlMillis", "0"))
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cache settings for " + name + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Getter for enabled
+     *
+     * @return true if the repository should be cached
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Getter for maxSize
+     *
+     * @return the maximum number of cached entities
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Getter for ttlMillis
+     *
+     * @return the time to live in milliseconds, 0 if the entities do not expire
+     */
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+}
@@ -0,0 +1,96 @@
+package toysocialnetwork.toysocialnetworkfx.repository.cache;
+
+/**
+ * Immutable snapshot of the statistics of a {@link CachingRepository}
+ */
+public class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long expirationCount;
+    private final int size;
+
+    /**
+     * Constructor for CacheStats
+     *
+     * @param hitCount        the number of lookups answered from the cache
+     * @param missCount       the number of lookups that went to the underlying repository
+     * @param evictionCount   the number of entities evicted because the cache was full
+     * @param expirationCount the number of entities dropped because their time to live passed
+     * @param size            the number of entities currently cached
+     */
+    public CacheStats(long hitCount, long missCount, long evictionCount, long expirationCount, int size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.expirationCount = expirationCount;
+        this.size = size;
+    }
+
+    /**
+     * Getter for hitCount
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Getter for missCount
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Getter for evictionCount
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Getter for expirationCount
+     *
+     * @return the number of expired entities
+     */
+    public long getExpirationCount() {
+        return expirationCount;
+    }
+
+    /**
+     * Getter for size
+     *
+     * @return the number of cached entities
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the fraction of the lookups answered from the cache
+     *
+     * @return the hit rate, 0 if there were no lookups yet
+     */
+    public double getHitRate() {
+        long lookups = hitCount + missCount;
+
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", expirationCount=" + expirationCount +
+                ", size=" + size +
+                '}';
+    }
+}
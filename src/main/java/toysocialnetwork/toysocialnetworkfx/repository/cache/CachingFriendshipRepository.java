@@ -0,0 +1,35 @@
+package toysocialnetwork.toysocialnetworkfx.repository.cache;
+
+import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.FriendshipDTO;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
+
+import java.util.List;
+
+/**
+ * Caching decorator for a friendship repository, the projection queries are not cached
+ */
+public class CachingFriendshipRepository extends CachingRepository<Long, Friendship> implements FriendshipRepository {
+    private final FriendshipRepository friendshipRepository;
+
+    /**
+     * Constructor for CachingFriendshipRepository
+     *
+     * @param friendshipRepository the underlying friendship repository
+     * @param config               the configuration of the cache
+     */
+    public CachingFriendshipRepository(FriendshipRepository friendshipRepository, CacheConfig config) {
+        super(friendshipRepository, config);
+        this.friendshipRepository = friendshipRepository;
+    }
+
+    @Override
+    public List<FriendshipDTO> getFriendshipRequestsFor(Long userId) {
+        return friendshipRepository.getFriendshipRequestsFor(userId);
+    }
+
+    @Override
+    public List<FriendshipDTO> getFriendshipRequestsFrom(Long userId) {
+        return friendshipRepository.getFriendshipRequestsFrom(userId);
+    }
+}
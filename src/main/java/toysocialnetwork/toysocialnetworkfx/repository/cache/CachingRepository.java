@@ -0,0 +1,212 @@
+package toysocialnetwork.toysocialnetworkfx.repository.cache;
+
+import toysocialnetwork.toysocialnetworkfx.domain.Entity;
+import toysocialnetwork.toysocialnetworkfx.repository.Repository;
+import toysocialnetwork.toysocialnetworkfx.utils.observer.Observer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-through caching decorator for a repository
+ * The entities found by id or by value are kept in a bounded LRU cache (with an optional time to live),
+ * the writes go to the underlying repository and invalidate the written entities.
+ * The ids of the entities found by value are kept by value in a second cache of the same size, a lookup by value
+ * is served from the cache when the cached entity with that id is still equal to the searched one.
+ * The cached entities are shared between the callers, like the entities of an in memory repository.
+ * As an observer, the repository drops all the cached entities when the observed object changes,
+ * which is used for the changes made through other repositories (e.g. the friends of the cached users)
+ *
+ * @param <ID> the type of the id
+ * @param <E>  the type of the entity, it must extend Entity
+ */
+public class CachingRepository<ID, E extends Entity<ID>> implements Repository<ID, E>, Observer {
+    private final Repository<ID, E> repository;
+    private final LruCache<ID, E> cache;
+    private final LruCache<E, ID> idsByValue;
+
+    /**
+     * Constructor for CachingRepository
+     *
+     * @param repository the underlying repository
+     * @param config     the configuration of the cache
+     */
+    public CachingRepository(Repository<ID, E> repository, CacheConfig config) {
+        this.repository = repository;
+        this.cache = new LruCache<>(config.getMaxSize(), config.getTtlMillis());
+        this.idsByValue = new LruCache<>(config.getMaxSize(), config.getTtlMillis());
+    }
+
+    @Override
+    public Optional<E> findById(ID id) {
+        if (id == null)
+            throw new IllegalArgumentException("Id must not be null");
+
+        Optional<E> cachedEntity = cache.get(id);
+        if (cachedEntity.isPresent())
+            return cachedEntity;
+
+        Optional<E> entity = repository.findById(id);
+        entity.ifPresent(e -> cache.put(id, e));
+
+        return entity;
+    }
+
+    @Override
+    public List<E> findAllById(Collection<ID> ids) {
+        if (ids == null)
+            throw new IllegalArgumentException("Ids must not be null");
+
+        List<E> entities = new ArrayList<>();
+        List<ID> missingIds = new ArrayList<>();
+        for (ID id : ids) {
+            Optional<E> cachedEntity = cache.get(id);
+
+            if (cachedEntity.isPresent())
+                entities.add(cachedEntity.get());
+            else
+                missingIds.add(id);
+        }
+
+        if (!missingIds.isEmpty()) {
+            for (E entity : repository.findAllById(missingIds)) {
+                cache.put(entity.getId(), entity);
+                entities.add(entity);
+            }
+        }
+
+        return entities;
+    }
+
+    @Override
+    public Optional<E> findByValue(E entity) {
+        if (entity == null)
+            throw new IllegalArgumentException("Entity must not be null");
+
+        Optional<ID> cachedId = idsByValue.get(entity);
+        if (cachedId.isPresent()) {
+            Optional<E> cachedEntity = cache.get(cachedId.get());
+            if (cachedEntity.isPresent() && cachedEntity.get().equals(entity))
+                return cachedEntity;
+        }
+
+        Optional<E> foundEntity = repository.findByValue(entity);
+        foundEntity.ifPresent(e -> {
+            cache.put(e.getId(), e);
+            idsByValue.put(e, e.getId());
+        });
+
+        return foundEntity;
+    }
+
+    @Override
+    public Iterable<E> findAll() {
+        return repository.findAll();
+    }
+
+    @Override
+    public Stream<E> streamAll() {
+        return repository.streamAll();
+    }
+
+    @Override
+    public Optional<E> save(E entity) {
+        Optional<E> result = repository.save(entity);
+        if (entity.getId() != null)
+            cache.invalidate(entity.getId());
+
+        return result;
+    }
+
+    @Override
+    public Optional<E> update(E entity) {
+        Optional<E> result = repository.update(entity);
+        if (entity.getId() != null)
+            cache.invalidate(entity.getId());
+
+        return result;
+    }
+
+    @Override
+    public Optional<E> delete(ID id) {
+        Optional<E> result = repository.delete(id);
+        cache.invalidate(id);
+
+        return result;
+    }
+
+    @Override
+    public List<E> saveAll(Iterable<E> entities) {
+        List<E> notSaved = repository.saveAll(entities);
+        invalidateAll(entities);
+
+        return notSaved;
+    }
+
+    @Override
+    public List<E> updateAll(Iterable<E> entities) {
+        List<E> notUpdated = repository.updateAll(entities);
+        invalidateAll(entities);
+
+        return notUpdated;
+    }
+
+    @Override
+    public List<E> deleteAllById(Iterable<ID> ids) {
+        List<E> deleted = repository.deleteAllById(ids);
+        ids.forEach(cache::invalidate);
+
+        return deleted;
+    }
+
+    @Override
+    public ID getLastId() {
+        return repository.getLastId();
+    }
+
+    @Override
+    public void update() {
+        this.invalidateAll();
+    }
+
+    /**
+     * Removes an entity from the cache, so the next lookup reads it from the underlying repository
+     *
+     * @param id the id of the entity
+     */
+    public void invalidate(ID id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Removes all the entities from the cache
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+        idsByValue.invalidateAll();
+    }
+
+    /**
+     * Gets the statistics of the cache
+     *
+     * @return a snapshot of the hit, miss and eviction counts
+     */
+    public CacheStats getStats() {
+        return cache.getStats();
+    }
+
+    /**
+     * Removes the given entities from the cache
+     *
+     * @param entities the entities
+     */
+    private void invalidateAll(Iterable<E> entities) {
+        for (E entity : entities) {
+            if (entity.getId() != null)
+                cache.invalidate(entity.getId());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package toysocialnetwork.toysocialnetworkfx.repository.cache;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserDTO;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+
+import java.util.List;
+
+/**
+ * Caching decorator for a user repository, the projection queries are not cached
+ */
+public class CachingUserRepository extends CachingRepository<Long, User> implements UserRepository {
+    private final UserRepository userRepository;
+
+    /**
+     * Constructor for CachingUserRepository
+     *
+     * @param userRepository the underlying user repository
+     * @param config         the configuration of the cache
+     */
+    public CachingUserRepository(UserRepository userRepository, CacheConfig config) {
+        super(userRepository, config);
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public List<UserDTO> findFriendUsersFor(Long userId) {
+        return userRepository.findFriendUsersFor(userId);
+    }
+
+    @Override
+    public List<User> findAvailableUsersFor(Long userId) {
+        return userRepository.findAvailableUsersFor(userId);
+    }
+}
@@ -0,0 +1,119 @@
+package toysocialnetwork.toysocialnetworkfx.repository.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded map which evicts the least recently used entries and, optionally, the entries older than a time to live
+ * All the operations are synchronized on the cache
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+final class LruCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expirationCount;
+
+    /**
+     * Constructor for LruCache
+     *
+     * @param maxSize   the maximum number of entries
+     * @param ttlMillis how long an entry is kept after it was added, 0 if the entries do not expire
+     */
+    LruCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() <= LruCache.this.maxSize)
+                    return false;
+
+                evictionCount++;
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets a value from the cache and marks it as recently used
+     *
+     * @param key the key
+     * @return an {@code Optional} containing the value if it is cached and not expired or null otherwise
+     */
+    synchronized Optional<V> get(K key) {
+        CacheEntry<V> entry = entries.get(key);
+
+        if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.createdAt > ttlNanos) {
+            entries.remove(key);
+            expirationCount++;
+            entry = null;
+        }
+
+        if (entry == null) {
+            missCount++;
+            return Optional.empty();
+        }
+
+        hitCount++;
+        return Optional.of(entry.value);
+    }
+
+    /**
+     * Adds a value to the cache, evicting the least recently used value if the cache is full
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<>(value, System.nanoTime()));
+    }
+
+    /**
+     * Removes a value from the cache
+     *
+     * @param key the key
+     */
+    synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all the values from the cache
+     */
+    synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the statistics of the cache
+     *
+     * @return a snapshot of the statistics
+     */
+    synchronized CacheStats getStats() {
+        return new CacheStats(hitCount, missCount, evictionCount, expirationCount, entries.size());
+    }
+
+    /**
+     * A cached value together with the moment it was added
+     *
+     * @param <V> the type of the value
+     */
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final long createdAt;
+
+        private CacheEntry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
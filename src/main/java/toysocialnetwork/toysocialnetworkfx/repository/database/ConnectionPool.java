@@ -0,0 +1,426 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connection pool shared by the database repositories
+ * <p>
+ * The connections handed out are proxies, closing them returns the underlying connection to the pool.
+ * Idle connections are reused in LIFO order, validated if they were idle for too long and evicted by a
+ * background task once they exceed the idle timeout (while the pool holds more than the minimum size).
+ * The possible leaks are reported through java.util.logging, together with the metrics of the pool after every
+ * run of the background task (at the FINE level).
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final ConnectionPoolConfig config;
+    private final BlockingDeque<PooledConnection> idleConnections;
+    private final Set<PooledConnection> activeConnections;
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+
+    private final AtomicLong acquireCount;
+    private final AtomicLong timeoutCount;
+    private final AtomicLong leakCount;
+    private final AtomicLong totalWaitNanos;
+    private final AtomicLong maxWaitNanos;
+
+    private volatile boolean closed;
+    private PrintWriter logWriter;
+
+    /**
+     * Constructor for ConnectionPool
+     * The minimum number of connections is opened in the background, so the constructor does not fail
+     * if the database is not reachable yet
+     *
+     * @param config the configuration of the pool
+     */
+    public ConnectionPool(ConnectionPoolConfig config) {
+        this.config = config;
+        this.idleConnections = new LinkedBlockingDeque<>();
+        this.activeConnections = ConcurrentHashMap.newKeySet();
+        this.permits = new Semaphore(config.getMaxSize(), true);
+
+        this.acquireCount = new AtomicLong();
+        this.timeoutCount = new AtomicLong();
+        this.leakCount = new AtomicLong();
+        this.totalWaitNanos = new AtomicLong();
+        this.maxWaitNanos = new AtomicLong();
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 0,
+                config.getHousekeepingIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gets a connection from the pool, waiting at most the configured acquire timeout
+     *
+     * @return the connection, it must be closed to be returned to the pool
+     * @throws SQLTimeoutException if no connection became available in time
+     * @throws SQLException        if the pool is closed or a new connection could not be opened
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed)
+            throw new SQLException("The connection pool is closed");
+
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + config.getAcquireTimeoutMillis()
+                        + "ms while waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection");
+        }
+
+        try {
+            PooledConnection pooledConnection = takeIdleConnection();
+            if (pooledConnection == null)
+                pooledConnection = new PooledConnection(openPhysicalConnection());
+
+            Connection connection = pooledConnection.lease();
+            activeConnections.add(pooledConnection);
+            recordWait(System.nanoTime() - start);
+
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("The pool only hands out connections for the configured user");
+    }
+
+    /**
+     * Gets a snapshot of the metrics of the pool
+     *
+     * @return the metrics
+     */
+    public PoolMetrics getMetrics() {
+        return new PoolMetrics(activeConnections.size(), idleConnections.size(), acquireCount.get(),
+                timeoutCount.get(), leakCount.get(),
+                TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()), TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+
+    /**
+     * Closes the pool and all the idle connections
+     * Borrowed connections are closed when they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null)
+            pooledConnection.closePhysicalConnection();
+    }
+
+    /**
+     * Takes the most recently used idle connection that is still valid
+     *
+     * @return the connection or null if there are no valid idle connections
+     */
+    private PooledConnection takeIdleConnection() {
+        PooledConnection pooledConnection;
+
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pooledConnection.lastUsedNanos);
+
+            if (idleMillis < config.getValidationIntervalMillis() || pooledConnection.isValid())
+                return pooledConnection;
+
+            pooledConnection.closePhysicalConnection();
+        }
+
+        return null;
+    }
+
+    /**
+     * Opens a new physical connection to the database
+     *
+     * @return the connection
+     * @throws SQLException if the connection could not be opened
+     */
+    private Connection openPhysicalConnection() throws SQLException {
+        Properties properties = config.getConnectionProperties();
+        if (config.getUser() != null)
+            properties.setProperty("user", config.getUser());
+        if (config.getPassword() != null)
+            properties.setProperty("password", config.getPassword());
+
+        return DriverManager.getConnection(config.getUrl(), properties);
+    }
+
+    /**
+     * Returns a connection to the pool, the connection is discarded if it can not be reset or the pool is closed
+     *
+     * @param pooledConnection the connection
+     */
+    private void release(PooledConnection pooledConnection) {
+        activeConnections.remove(pooledConnection);
+
+        try {
+            if (!closed && pooledConnection.reset()) {
+                pooledConnection.lastUsedNanos = System.nanoTime();
+                idleConnections.offerFirst(pooledConnection);
+            } else {
+                pooledConnection.closePhysicalConnection();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Records the time spent waiting for a connection
+     *
+     * @param waitNanos the wait time in nanoseconds
+     */
+    private void recordWait(long waitNanos) {
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Evicts the connections idle for too long, reports the leaked connections
+     * and opens connections until the pool has the minimum size
+     */
+    private void housekeep() {
+        long now = System.nanoTime();
+
+        for (PooledConnection pooledConnection : idleConnections) {
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(now - pooledConnection.lastUsedNanos);
+
+            if (idleMillis > config.getIdleTimeoutMillis()
+                    && idleConnections.size() + activeConnections.size() > config.getMinSize()
+                    && idleConnections.remove(pooledConnection))
+                pooledConnection.closePhysicalConnection();
+        }
+
+        if (config.getLeakDetectionThresholdMillis() > 0) {
+            for (PooledConnection pooledConnection : activeConnections) {
+                long borrowedMillis = TimeUnit.NANOSECONDS.toMillis(now - pooledConnection.borrowedAtNanos);
+
+                if (borrowedMillis > config.getLeakDetectionThresholdMillis() && !pooledConnection.leakReported) {
+                    pooledConnection.leakReported = true;
+                    leakCount.incrementAndGet();
+
+                    LOGGER.log(Level.WARNING, "Possible connection leak: connection borrowed for " + borrowedMillis
+                            + "ms", pooledConnection.borrowStackTrace);
+                }
+            }
+        }
+
+        try {
+            while (!closed && idleConnections.size() + activeConnections.size() < config.getMinSize()) {
+                PooledConnection pooledConnection = new PooledConnection(openPhysicalConnection());
+                pooledConnection.lastUsedNanos = System.nanoTime();
+                idleConnections.offerLast(pooledConnection);
+            }
+        } catch (SQLException e) {
+            LOGGER.warning("Could not open database connection: " + e.getMessage());
+        }
+
+        LOGGER.fine(() -> "Connection pool: " + this.getMetrics());
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        DriverManager.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return DriverManager.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return LOGGER.getParent();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this))
+            return iface.cast(this);
+
+        throw new SQLException("ConnectionPool does not wrap " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * A physical connection owned by the pool
+     */
+    private class PooledConnection {
+        private final Connection physicalConnection;
+        private volatile long lastUsedNanos;
+        private volatile long borrowedAtNanos;
+        private volatile Throwable borrowStackTrace;
+        private volatile boolean leakReported;
+
+        /**
+         * Constructor for PooledConnection
+         *
+         * @param physicalConnection the connection to the database
+         */
+        private PooledConnection(Connection physicalConnection) {
+            this.physicalConnection = physicalConnection;
+        }
+
+        /**
+         * Hands out the connection, a new proxy is created for every lease
+         * so that a stale proxy can not close the connection while it is used by somebody else
+         *
+         * @return the proxy of the connection
+         */
+        private Connection lease() {
+            borrowedAtNanos = System.nanoTime();
+            leakReported = false;
+            borrowStackTrace = config.getLeakDetectionThresholdMillis() > 0
+                    ? new Throwable("Connection borrowed here") : null;
+
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+
+        /**
+         * Checks if the connection is still usable
+         *
+         * @return true if the connection is valid, false otherwise
+         */
+        private boolean isValid() {
+            try {
+                return physicalConnection.isValid(5);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Restores the default state of the connection, rolling back an unfinished transaction
+         *
+         * @return true if the connection can be reused, false otherwise
+         */
+        private boolean reset() {
+            try {
+                if (physicalConnection.isClosed())
+                    return false;
+
+                if (!physicalConnection.getAutoCommit()) {
+                    physicalConnection.rollback();
+                    physicalConnection.setAutoCommit(true);
+                }
+                physicalConnection.clearWarnings();
+
+                return true;
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Closes the physical connection, ignoring the errors
+         */
+        private void closePhysicalConnection() {
+            try {
+                physicalConnection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Invocation handler for the proxies handed out by the pool
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private boolean released;
+
+        /**
+         * Constructor for Lease
+         *
+         * @param pooledConnection the leased connection
+         */
+        private Lease(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    synchronized (this) {
+                        if (!released) {
+                            released = true;
+                            release(pooledConnection);
+                        }
+                    }
+
+                    return null;
+                }
+                case "isClosed" -> {
+                    if (released)
+                        return true;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + pooledConnection.physicalConnection + "]";
+                }
+            }
+
+            if (released)
+                throw new SQLException("Connection is closed");
+
+            try {
+                return method.invoke(pooledConnection.physicalConnection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import java.util.Properties;
+
+/**
+ * Configuration for a {@link ConnectionPool}
+ */
+public class ConnectionPoolConfig {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final long leakDetectionThresholdMillis;
+    private final long housekeepingIntervalMillis;
+    private final Properties connectionProperties;
+
+    /**
+     * Constructor for ConnectionPoolConfig
+     *
+     * @param url                          the url for the database connection
+     * @param user                         the database user
+     * @param password                     the password for the database user
+     * @param minSize                      the minimum number of connections kept open by the pool
+     * @param maxSize                      the maximum number of connections opened by the pool
+     * @param acquireTimeoutMillis         how long a caller waits for a connection before failing
+     * @param idleTimeoutMillis            how long a connection may stay idle before being closed
+     *                                     (only while the pool holds more than minSize connections)
+     * @param validationIntervalMillis     connections idle for longer than this are validated before being handed out
+     * @param leakDetectionThresholdMillis connections borrowed for longer than this are reported as leaks,
+     *                                     0 disables leak detection
+     * @param housekeepingIntervalMillis   the interval between two runs of the eviction and leak detection task
+     * @param connectionProperties         extra properties passed to the JDBC driver when opening connections
+     * @throws IllegalArgumentException if the sizes or the intervals are invalid
+     */
+    public ConnectionPoolConfig(String url, String user, String password, int minSize, int maxSize,
+                                long acquireTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis,
+                                long leakDetectionThresholdMillis, long housekeepingIntervalMillis,
+                                Properties connectionProperties) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize)
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        if (acquireTimeoutMillis < 0 || idleTimeoutMillis < 0 || validationIntervalMillis < 0
+                || leakDetectionThresholdMillis < 0 || housekeepingIntervalMillis <= 0)
+            throw new IllegalArgumentException("Pool timeouts must not be negative");
+
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+        this.connectionProperties = new Properties();
+        this.connectionProperties.putAll(connectionProperties);
+    }
+
+    /**
+     * Creates a pool configuration from the configuration properties
+     * The connection data is read from data.db.url, data.db.user and data.db.password,
+     * the pool settings from the data.db.pool.* keys (every pool setting has a default value)
+     * and the driver properties from the data.db.connection.* keys (reWriteBatchedInserts is enabled by default,
+     * so the batched inserts are sent as multi-row inserts)
+     *
+     * @param properties the configuration properties
+     * @return the pool configuration
+     * @throws IllegalArgumentException if a pool setting is not a valid number
+     */
+    public static ConnectionPoolConfig fromProperties(Properties properties) {
+        String connectionPrefix = "data.db.connection.";
+        Properties connectionProperties = new Properties();
+        connectionProperties.setProperty("reWriteBatchedInserts", "true");
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(connectionPrefix))
+                connectionProperties.setProperty(key.substring(connectionPrefix.length()), properties.getProperty(key));
+        }
+
+        try {
+            return new ConnectionPoolConfig(
+                    properties.getProperty("data.db.url"),
+                    properties.getProperty("data.db.user"),
+                    properties.getProperty("data.db.password"),
+                    Integer.parseInt(properties.getProperty("data.db.pool.minSize", "2")),
+                    Integer.parseInt(properties.getProperty("data.db.pool.maxSize", "10")),
+                    Long.parseLong(properties.getProperty("data.db.pool.acquireTimeoutMillis", "30000")),
+                    Long.parseLong(properties.getProperty("data.db.pool.idleTimeoutMillis", "600000")),
+                    Long.parseLong(properties.getProperty("data.db.pool.validationIntervalMillis", "5000")),
+                    Long.parseLong(properties.getProperty("data.db.pool.leakDetectionThresholdMillis", "0")),
+                    Long.parseLong(properties.getProperty("data.db.pool.housekeepingIntervalMillis", "30000")),
+                    connectionProperties
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid connection pool settings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Getter for url
+     *
+     * @return the url for the database connection
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Getter for user
+     *
+     * @return the database user
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Getter for password
+     *
+     * @return the password for the database user
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Getter for minSize
+     *
+     * @return the minimum number of connections
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Getter for maxSize
+     *
+     * @return the maximum number of connections
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Getter for acquireTimeoutMillis
+     *
+     * @return the acquire timeout in milliseconds
+     */
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * Getter for idleTimeoutMillis
+     *
+     * @return the idle timeout in milliseconds
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Getter for validationIntervalMillis
+     *
+     * @return the validation interval in milliseconds
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    /**
+     * Getter for leakDetectionThresholdMillis
+     *
+     * @return the leak detection threshold in milliseconds, 0 if disabled
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    /**
+     * Getter for housekeepingIntervalMillis
+     *
+     * @return the housekeeping interval in milliseconds
+     */
+    public long getHousekeepingIntervalMillis() {
+        return housekeepingIntervalMillis;
+    }
+
+    /**
+     * Getter for connectionProperties
+     *
+     * @return a copy of the extra driver properties
+     */
+    public Properties getConnectionProperties() {
+        Properties properties = new Properties();
+        properties.putAll(connectionProperties);
+
+        return properties;
+    }
+}
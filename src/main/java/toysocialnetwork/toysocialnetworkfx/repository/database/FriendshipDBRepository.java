@@ -3,42 +3,42 @@ package toysocialnetwork.toysocialnetworkfx.repository.database;
 import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
 import toysocialnetwork.toysocialnetworkfx.domain.Sender;
 import toysocialnetwork.toysocialnetworkfx.domain.Status;
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.FriendshipDTO;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
-import toysocialnetwork.toysocialnetworkfx.repository.Repository;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Database repository for friendship entities
  */
-public class FriendshipDBRepository implements Repository<Long, Friendship> {
-    private final String url;
-    private final String user;
-    private final String password;
+public class FriendshipDBRepository implements FriendshipRepository {
+    private final DataSource dataSource;
     private final Validator<Friendship> validator;
 
     /**
      * Constructor for FriendshipDBRepository
      *
-     * @param validator a validator for friendship entities
-     * @param url       the url for the database connection
-     * @param user      the database user
-     * @param password  the password for the database user
+     * @param validator  a validator for friendship entities
+     * @param dataSource the data source providing the database connections
      */
-    public FriendshipDBRepository(Validator<Friendship> validator, String url, String user, String password) {
+    public FriendshipDBRepository(Validator<Friendship> validator, DataSource dataSource) {
         this.validator = validator;
-        this.url = url;
-        this.user = user;
-        this.password = password;
+        this.dataSource = dataSource;
     }
 
     @Override
     public Optional<Friendship> findById(Long id) {
         String query = "SELECT * FROM friendships WHERE id=?";
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, id);
@@ -66,67 +66,47 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
         }
     }
 
-    /**
-     * Gets all the friendship requests that were sent to the given user (by id)
-     *
-     * @param userId the id of the user
-     * @return the list of friendship requests
-     */
-    public List<Friendship> getFriendshipRequestsFor(Long userId) {
+    @Override
+    public List<FriendshipDTO> getFriendshipRequestsFor(Long userId) {
         String query = """
-                    SELECT * FROM friendships WHERE id_second_user=? AND sent_by='FIRST'
-                    UNION
-                    SELECT * FROM friendships WHERE id_first_user=? AND sent_by='SECOND';
+                    SELECT f.*, u.username, u.first_name, u.last_name, u.password, u.id AS id_other_user
+                    FROM friendships f JOIN users u ON u.id = f.id_first_user
+                    WHERE f.id_second_user=? AND f.sent_by='FIRST'
+                    UNION ALL
+                    SELECT f.*, u.username, u.first_name, u.last_name, u.password, u.id AS id_other_user
+                    FROM friendships f JOIN users u ON u.id = f.id_second_user
+                    WHERE f.id_first_user=? AND f.sent_by='SECOND'
                 """;
-        List<Friendship> friendshipRequests = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
-             PreparedStatement statement = connection.prepareStatement(query)
-        ) {
-            statement.setLong(1, userId);
-            statement.setLong(2, userId);
+        return findFriendshipRequests(query, userId);
+    }
 
-            try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Long friendshipID = resultSet.getLong("id");
-                    Long friendshipIDFirstUser = resultSet.getLong("id_first_user");
-                    Long friendshipIDSecondUser = resultSet.getLong("id_second_user");
-                    LocalDateTime friendshipFriendsFrom = resultSet.getTimestamp("friends_from")
-                            .toLocalDateTime();
-                    Status status = Status.valueOf(resultSet.getString("status"));
-                    Sender sentBy = Sender.valueOf(resultSet.getString("sent_by"));
-
-                    Friendship friendship = new Friendship(friendshipIDFirstUser,
-                            friendshipIDSecondUser, friendshipFriendsFrom);
-                    friendship.setId(friendshipID);
-                    friendship.setStatus(status);
-                    friendship.setSentBy(sentBy);
-
-                    friendshipRequests.add(friendship);
-                }
-            }
+    @Override
+    public List<FriendshipDTO> getFriendshipRequestsFrom(Long userId) {
+        String query = """
+                    SELECT f.*, u.username, u.first_name, u.last_name, u.password, u.id AS id_other_user
+                    FROM friendships f JOIN users u ON u.id = f.id_second_user
+                    WHERE f.id_first_user=? AND f.sent_by='FIRST'
+                    UNION ALL
+                    SELECT f.*, u.username, u.first_name, u.last_name, u.password, u.id AS id_other_user
+                    FROM friendships f JOIN users u ON u.id = f.id_first_user
+                    WHERE f.id_second_user=? AND f.sent_by='SECOND'
+                """;
 
-            return friendshipRequests;
-        } catch (SQLException e) {
-            return friendshipRequests;
-        }
+        return findFriendshipRequests(query, userId);
     }
 
     /**
-     * Gets all the friendship requests that were sent by the given user (by id)
+     * Runs a friendship request query joined with the other users of the friendships
      *
+     * @param query  the query, with two parameters for the id of the user
      * @param userId the id of the user
-     * @return the list of friendship requests
+     * @return the list of friendship requests (as FriendshipDTO)
      */
-    public List<Friendship> getFriendshipRequestsFrom(Long userId) {
-        String query = """
-                    SELECT * FROM friendships WHERE id_first_user=? AND sent_by='FIRST'
-                    UNION
-                    SELECT * FROM friendships WHERE id_second_user=? AND sent_by='SECOND';
-                """;
-        List<Friendship> friendshipRequests = new ArrayList<>();
+    private List<FriendshipDTO> findFriendshipRequests(String query, Long userId) {
+        List<FriendshipDTO> friendshipRequests = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, userId);
@@ -134,21 +114,14 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
 
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    Long friendshipID = resultSet.getLong("id");
-                    Long friendshipIDFirstUser = resultSet.getLong("id_first_user");
-                    Long friendshipIDSecondUser = resultSet.getLong("id_second_user");
-                    LocalDateTime friendshipFriendsFrom = resultSet.getTimestamp("friends_from")
-                            .toLocalDateTime();
-                    Status status = Status.valueOf(resultSet.getString("status"));
-                    Sender sentBy = Sender.valueOf(resultSet.getString("sent_by"));
-
-                    Friendship friendship = new Friendship(friendshipIDFirstUser,
-                            friendshipIDSecondUser, friendshipFriendsFrom);
-                    friendship.setId(friendshipID);
-                    friendship.setStatus(status);
-                    friendship.setSentBy(sentBy);
-
-                    friendshipRequests.add(friendship);
+                    Friendship friendship = extractFriendship(resultSet);
+
+                    User otherUser = new User(resultSet.getString("username"), resultSet.getString("first_name"),
+                            resultSet.getString("last_name"), resultSet.getString("password"));
+                    otherUser.setId(resultSet.getLong("id_other_user"));
+
+                    friendshipRequests.add(new FriendshipDTO(friendship.getId(), otherUser,
+                            friendship.getFriendsFrom(), friendship.getStatus(), friendship.getSentBy()));
                 }
             }
 
@@ -163,7 +136,7 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
         String query = "SELECT * FROM friendships";
         Set<Friendship> friendshipSet = new TreeSet<>(Comparator.comparingLong(Friendship::getId));
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query);
              ResultSet resultSet = statement.executeQuery()
         ) {
@@ -191,12 +164,66 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
         }
     }
 
+    @Override
+    public Stream<Friendship> streamAll() {
+        String query = "SELECT * FROM friendships ORDER BY id";
+
+        return JdbcStream.stream(dataSource, query, JdbcStream.DEFAULT_FETCH_SIZE, this::extractFriendship);
+    }
+
+    @Override
+    public List<Friendship> findAllById(Collection<Long> ids) {
+        String query = "SELECT * FROM friendships WHERE id = ANY(?) ORDER BY id";
+        List<Friendship> friendshipList = new ArrayList<>();
+        if (ids.isEmpty())
+            return friendshipList;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    friendshipList.add(extractFriendship(resultSet));
+            }
+
+            return friendshipList;
+        } catch (SQLException e) {
+            return friendshipList;
+        }
+    }
+
+    /**
+     * Creates a friendship from the current row of a result set
+     *
+     * @param resultSet the result set positioned on the row
+     * @return the friendship
+     * @throws SQLException if the row could not be read
+     */
+    private Friendship extractFriendship(ResultSet resultSet) throws SQLException {
+        Long friendshipID = resultSet.getLong("id");
+        Long friendshipIDFirstUser = resultSet.getLong("id_first_user");
+        Long friendshipIDSecondUser = resultSet.getLong("id_second_user");
+        LocalDateTime friendshipFriendsFrom = resultSet.getTimestamp("friends_from")
+                .toLocalDateTime();
+        Status status = Status.valueOf(resultSet.getString("status"));
+        Sender sentBy = Sender.valueOf(resultSet.getString("sent_by"));
+
+        Friendship friendship = new Friendship(friendshipIDFirstUser,
+                friendshipIDSecondUser, friendshipFriendsFrom);
+        friendship.setId(friendshipID);
+        friendship.setStatus(status);
+        friendship.setSentBy(sentBy);
+
+        return friendship;
+    }
+
     @Override
     public Optional<Friendship> save(Friendship entity) {
-        String query = "INSERT INTO friendships(id_first_user, id_second_user, friends_from, status, sent_by) VALUES (?, ?, ?, ?::status, ?::sender)";
+        String query = "INSERT INTO friendships(id_first_user, id_second_user, friends_from, status, sent_by) VALUES (?, ?, ?, ?::status, ?::sender) RETURNING id";
         validator.validate(entity);
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, entity.getFirstUser());
@@ -204,7 +231,10 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
             statement.setTimestamp(3, Timestamp.valueOf(entity.getFriendsFrom()));
             statement.setString(4, entity.getStatus().toString());
             statement.setString(5, entity.getSentBy().toString());
-            statement.executeUpdate();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                entity.setId(resultSet.getLong("id"));
+            }
 
             return Optional.empty();
         } catch (SQLException e) {
@@ -216,8 +246,10 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
     public Optional<Friendship> update(Friendship entity) {
         String query = "UPDATE friendships SET friends_from=?, status=?::status WHERE id=?";
         validator.validate(entity);
+        if (entity.getId() == null)
+            throw new ValidationException("Invalid id\n");
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setTimestamp(1, Timestamp.valueOf(entity.getFriendsFrom()));
@@ -233,10 +265,13 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
 
     @Override
     public Optional<Friendship> delete(Long id) {
+        if (id == null)
+            throw new IllegalArgumentException("Id must not be null");
+
         String query = "DELETE FROM friendships WHERE id=?";
         Optional<Friendship> foundFriendship = findById(id);
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, id);
@@ -248,11 +283,116 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
         }
     }
 
+    @Override
+    public List<Friendship> saveAll(Iterable<Friendship> entities) {
+        List<Friendship> friendships = new ArrayList<>();
+        for (Friendship entity : entities) {
+            validator.validate(entity);
+            friendships.add(entity);
+        }
+        if (friendships.isEmpty())
+            return new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                List<Long> ids = PostgresBulk.reserveIds(connection, "friendships", friendships.size());
+                boolean[] inserted = PostgresBulk.insertInChunks(connection, friendships, ids, this::insertFriendships);
+                connection.commit();
+
+                List<Friendship> notSaved = new ArrayList<>();
+                for (int i = 0; i < friendships.size(); i++) {
+                    if (inserted[i])
+                        friendships.get(i).setId(ids.get(i));
+                    else
+                        notSaved.add(friendships.get(i));
+                }
+
+                return notSaved;
+            } catch (SQLException e) {
+                connection.rollback();
+                return friendships;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return friendships;
+        }
+    }
+
+    @Override
+    public List<Friendship> updateAll(Iterable<Friendship> entities) {
+        String query = "UPDATE friendships SET friends_from=?, status=?::status WHERE id=?";
+        List<Friendship> friendships = new ArrayList<>();
+        for (Friendship entity : entities) {
+            validator.validate(entity);
+            if (entity.getId() == null)
+                throw new ValidationException("Invalid id\n");
+            friendships.add(entity);
+        }
+        if (friendships.isEmpty())
+            return new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                for (Friendship friendship : friendships) {
+                    statement.setTimestamp(1, Timestamp.valueOf(friendship.getFriendsFrom()));
+                    statement.setString(2, friendship.getStatus().toString());
+                    statement.setLong(3, friendship.getId());
+                    statement.addBatch();
+                }
+                int[] updateCounts = statement.executeBatch();
+                connection.commit();
+
+                List<Friendship> notUpdated = new ArrayList<>();
+                for (int i = 0; i < friendships.size(); i++) {
+                    if (updateCounts[i] == 0)
+                        notUpdated.add(friendships.get(i));
+                }
+
+                return notUpdated;
+            } catch (SQLException e) {
+                connection.rollback();
+                return friendships;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return friendships;
+        }
+    }
+
+    @Override
+    public List<Friendship> deleteAllById(Iterable<Long> ids) {
+        String query = "DELETE FROM friendships WHERE id = ANY(?) RETURNING *";
+        Long[] idArray = StreamSupport.stream(ids.spliterator(), false).toArray(Long[]::new);
+        List<Friendship> deletedFriendships = new ArrayList<>();
+        if (idArray.length == 0)
+            return deletedFriendships;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            statement.setArray(1, connection.createArrayOf("bigint", idArray));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    deletedFriendships.add(extractFriendship(resultSet));
+            }
+
+            return deletedFriendships;
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+    }
+
     @Override
     public Optional<Friendship> findByValue(Friendship entity) {
         String query = "SELECT * FROM friendships WHERE id_first_user=? AND id_second_user=?";
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, entity.getFirstUser());
@@ -283,13 +423,55 @@ public class FriendshipDBRepository implements Repository<Long, Friendship> {
 
     @Override
     public Long getLastId() {
-        Iterable<Friendship> friendships = findAll();
+        String query = "SELECT COALESCE(MAX(id), 0) AS last_id FROM friendships";
 
-        Long lastID = 0L;
-        for (Friendship f : friendships) {
-            lastID = f.getId();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()
+        ) {
+            resultSet.next();
+
+            return resultSet.getLong("last_id");
+        } catch (SQLException e) {
+            return 0L;
         }
+    }
 
-        return lastID;
+    /**
+     * Inserts the rows of friendships with their reserved ids, with COPY for large batches
+     *
+     * @param connection  the connection
+     * @param friendships the friendships
+     * @param ids         the ids of the friendships, in the same order
+     * @throws SQLException if the rows could not be inserted
+     */
+    private void insertFriendships(Connection connection, List<Friendship> friendships, List<Long> ids)
+            throws SQLException {
+        if (friendships.size() >= PostgresBulk.COPY_THRESHOLD) {
+            Iterator<Long> idIterator = ids.iterator();
+            PostgresBulk.copyIn(connection,
+                    "COPY friendships(id, id_first_user, id_second_user, friends_from, status, sent_by) FROM STDIN WITH (FORMAT csv)",
+                    friendships,
+                    friendship -> new Object[]{idIterator.next(), friendship.getFirstUser(),
+                            friendship.getSecondUser(), friendship.getFriendsFrom(),
+                            friendship.getStatus(), friendship.getSentBy()});
+
+            return;
+        }
+
+        String query = "INSERT INTO friendships(id, id_first_user, id_second_user, friends_from, status, sent_by) VALUES (?, ?, ?, ?, ?::status, ?::sender)";
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < friendships.size(); i++) {
+                Friendship friendship = friendships.get(i);
+                statement.setLong(1, ids.get(i));
+                statement.setLong(2, friendship.getFirstUser());
+                statement.setLong(3, friendship.getSecondUser());
+                statement.setTimestamp(4, Timestamp.valueOf(friendship.getFriendsFrom()));
+                statement.setString(5, friendship.getStatus().toString());
+                statement.setString(6, friendship.getSentBy().toString());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
     }
 }
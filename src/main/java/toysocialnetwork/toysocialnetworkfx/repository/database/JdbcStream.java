@@ -0,0 +1,118 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Creates streams backed by a server side cursor
+ * The rows are fetched from the database in batches of fetchSize while the stream is consumed,
+ * so the whole result never has to be kept in memory
+ */
+final class JdbcStream {
+    /**
+     * The default number of rows fetched from the database at once
+     */
+    static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private JdbcStream() {
+    }
+
+    /**
+     * Maps the current row of a result set to an object
+     *
+     * @param <T> the type of the object
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        /**
+         * Maps the current row
+         *
+         * @param resultSet the result set positioned on the row
+         * @return the object
+         * @throws SQLException if the row could not be read
+         */
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Streams the rows returned by a query
+     * The connection is kept (with autocommit disabled, which PostgreSQL requires for cursors)
+     * until the stream is closed, so the stream must be used in a try-with-resources block
+     *
+     * @param dataSource the data source providing the connection
+     * @param query      the query, it must not have parameters
+     * @param fetchSize  the number of rows fetched at once
+     * @param rowMapper  maps the rows to objects
+     * @param <T>        the type of the objects
+     * @return the stream of objects, an empty stream if the query could not be executed
+     * @throws IllegalStateException while the stream is consumed, if a row could not be fetched or read;
+     *                               the resources are closed before it is thrown
+     */
+    static <T> Stream<T> stream(DataSource dataSource, String query, int fetchSize, RowMapper<T> rowMapper) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet;
+
+        try {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            resultSet = statement.executeQuery();
+        } catch (SQLException e) {
+            closeQuietly(statement, connection);
+
+            return Stream.empty();
+        }
+
+        Connection openConnection = connection;
+        PreparedStatement openStatement = statement;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next())
+                        return false;
+
+                    action.accept(rowMapper.map(resultSet));
+
+                    return true;
+                } catch (SQLException e) {
+                    // an error in the middle of the result must not look like its end
+                    closeQuietly(resultSet, openStatement, openConnection);
+
+                    throw new IllegalStateException("Could not read the next row of the query: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> closeQuietly(resultSet, openStatement, openConnection));
+    }
+
+    /**
+     * Closes the given resources, ignoring the errors
+     *
+     * @param resources the resources, null values are skipped
+     */
+    private static void closeQuietly(AutoCloseable... resources) {
+        for (AutoCloseable resource : resources) {
+            if (resource == null)
+                continue;
+
+            try {
+                resource.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
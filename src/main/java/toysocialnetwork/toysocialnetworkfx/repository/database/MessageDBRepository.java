@@ -1,34 +1,32 @@
 package toysocialnetwork.toysocialnetworkfx.repository.database;
 
 import toysocialnetwork.toysocialnetworkfx.domain.Message;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
-import toysocialnetwork.toysocialnetworkfx.repository.Repository;
+import toysocialnetwork.toysocialnetworkfx.repository.MessageRepository;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Database repository for message entities
  */
-public class MessageDBRepository implements Repository<Long, Message> {
-    private final String url;
-    private final String user;
-    private final String password;
+public class MessageDBRepository implements MessageRepository {
+    private final DataSource dataSource;
     private final Validator<Message> validator;
 
     /**
      * Constructor for MessageDBRepository
      *
-     * @param validator a validator for message entities
-     * @param url       the url for the database connection
-     * @param user      the database user
-     * @param password  the password for the database user
+     * @param validator  a validator for message entities
+     * @param dataSource the data source providing the database connections
      */
-    public MessageDBRepository(Validator<Message> validator, String url, String user, String password) {
-        this.url = url;
-        this.user = user;
-        this.password = password;
+    public MessageDBRepository(Validator<Message> validator, DataSource dataSource) {
+        this.dataSource = dataSource;
         this.validator = validator;
     }
 
@@ -36,7 +34,7 @@ public class MessageDBRepository implements Repository<Long, Message> {
     public Optional<Message> findById(Long id) {
         String query = "SELECT * FROM messages WHERE id=?";
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, id);
@@ -65,7 +63,7 @@ public class MessageDBRepository implements Repository<Long, Message> {
         String query = "SELECT * FROM messages";
         Set<Message> messageSet = new TreeSet<>(Comparator.comparingLong(Message::getId));
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query);
              ResultSet resultSet = statement.executeQuery()
         ) {
@@ -89,18 +87,62 @@ public class MessageDBRepository implements Repository<Long, Message> {
         }
     }
 
+    @Override
+    public Stream<Message> streamAll() {
+        String query = "SELECT * FROM messages ORDER BY id";
+
+        return JdbcStream.stream(dataSource, query, JdbcStream.DEFAULT_FETCH_SIZE, this::extractMessage);
+    }
+
+    @Override
+    public List<Message> findAllById(Collection<Long> ids) {
+        String query = "SELECT * FROM messages WHERE id = ANY(?) ORDER BY id";
+        List<Message> messageList = new ArrayList<>();
+        if (ids.isEmpty())
+            return messageList;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    messageList.add(extractMessage(resultSet));
+            }
+
+            return messageList;
+        } catch (SQLException e) {
+            return messageList;
+        }
+    }
+
     /**
-     * Gets all the messages sent between two users given by id
+     * Creates a message from the current row of a result set
      *
-     * @param firstUserId  the id of the first user
-     * @param secondUserId the id of the second user
-     * @return the list of messages
+     * @param resultSet the result set positioned on the row
+     * @return the message
+     * @throws SQLException if the row could not be read
      */
+    private Message extractMessage(ResultSet resultSet) throws SQLException {
+        Long messageID = resultSet.getLong("id");
+        Long messageIDFromUser = resultSet.getLong("id_from_user");
+        Long messageIDToUser = resultSet.getLong("id_to_user");
+        String messageBody = resultSet.getString("message_body");
+        LocalDateTime messageSentDate = resultSet.getTimestamp("sent_date")
+                .toLocalDateTime();
+
+        Message message = new Message(messageIDFromUser, messageIDToUser, messageBody, messageSentDate);
+        message.setId(messageID);
+
+        return message;
+    }
+
+    @Override
     public List<Message> getMessagesBetween(Long firstUserId, Long secondUserId) {
-        String query = "SELECT * FROM messages WHERE (id_from_user=? AND id_to_user=?) OR (id_to_user=? AND id_from_user=?)";
+        String query = "SELECT * FROM messages WHERE (id_from_user=? AND id_to_user=?) OR (id_to_user=? AND id_from_user=?) ORDER BY sent_date, id";
         List<Message> messages = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, firstUserId);
@@ -130,19 +172,118 @@ public class MessageDBRepository implements Repository<Long, Message> {
         }
     }
 
+    @Override
+    public List<Message> getLatestMessagesBetween(Long firstUserId, Long secondUserId, int pageSize) {
+        String query = """
+                    SELECT * FROM messages
+                    WHERE LEAST(id_from_user, id_to_user)=? AND GREATEST(id_from_user, id_to_user)=?
+                    ORDER BY sent_date DESC, id DESC
+                    LIMIT ?;
+                """;
+
+        List<Message> messages = findConversationPage(query, firstUserId, secondUserId, null, null, pageSize);
+        Collections.reverse(messages);
+
+        return messages;
+    }
+
+    @Override
+    public List<Message> getMessagesBefore(Long firstUserId, Long secondUserId, LocalDateTime sentDate, Long id,
+                                           int pageSize) {
+        String query = """
+                    SELECT * FROM messages
+                    WHERE LEAST(id_from_user, id_to_user)=? AND GREATEST(id_from_user, id_to_user)=?
+                      AND (sent_date, id) < (?, ?)
+                    ORDER BY sent_date DESC, id DESC
+                    LIMIT ?;
+                """;
+
+        List<Message> messages = findConversationPage(query, firstUserId, secondUserId, sentDate, id, pageSize);
+        Collections.reverse(messages);
+
+        return messages;
+    }
+
+    @Override
+    public List<Message> getMessagesAfter(Long firstUserId, Long secondUserId, LocalDateTime sentDate, Long id,
+                                          int pageSize) {
+        String query = """
+                    SELECT * FROM messages
+                    WHERE LEAST(id_from_user, id_to_user)=? AND GREATEST(id_from_user, id_to_user)=?
+                      AND (sent_date, id) > (?, ?)
+                    ORDER BY sent_date, id
+                    LIMIT ?;
+                """;
+
+        return findConversationPage(query, firstUserId, secondUserId, sentDate, id, pageSize);
+    }
+
+    /**
+     * Runs a conversation page query
+     * The query must filter on the conversation, optionally on the (sent date, id) cursor and end with a limit
+     *
+     * @param query        the query
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param sentDate     the sent date of the cursor message or null if the query has no cursor
+     * @param id           the id of the cursor message or null if the query has no cursor
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in the order returned by the query
+     */
+    private List<Message> findConversationPage(String query, Long firstUserId, Long secondUserId,
+                                               LocalDateTime sentDate, Long id, int pageSize) {
+        List<Message> messages = new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            int parameterIndex = 1;
+            statement.setLong(parameterIndex++, Math.min(firstUserId, secondUserId));
+            statement.setLong(parameterIndex++, Math.max(firstUserId, secondUserId));
+            if (sentDate != null) {
+                statement.setTimestamp(parameterIndex++, Timestamp.valueOf(sentDate));
+                statement.setLong(parameterIndex++, id);
+            }
+            statement.setInt(parameterIndex, pageSize);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Long messageID = resultSet.getLong("id");
+                    Long messageIDFromUser = resultSet.getLong("id_from_user");
+                    Long messageIDToUser = resultSet.getLong("id_to_user");
+                    String messageBody = resultSet.getString("message_body");
+                    LocalDateTime messageSentDate = resultSet.getTimestamp("sent_date")
+                            .toLocalDateTime();
+
+                    Message message = new Message(messageIDFromUser, messageIDToUser, messageBody, messageSentDate);
+                    message.setId(messageID);
+
+                    messages.add(message);
+                }
+            }
+
+            return messages;
+        } catch (SQLException e) {
+            return messages;
+        }
+    }
+
     @Override
     public Optional<Message> save(Message entity) {
-        String query = "INSERT INTO messages(id_from_user, id_to_user, message_body, sent_date) VALUES (?, ?, ?, ?)";
+        String query = "INSERT INTO messages(id_from_user, id_to_user, message_body, sent_date) VALUES (?, ?, ?, ?) RETURNING id";
         validator.validate(entity);
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, entity.getFromUser());
             statement.setLong(2, entity.getToUser());
             statement.setString(3, entity.getMessageBody());
             statement.setTimestamp(4, Timestamp.valueOf(entity.getSentDate()));
-            statement.executeUpdate();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                entity.setId(resultSet.getLong("id"));
+            }
 
             return Optional.empty();
         } catch (SQLException e) {
@@ -154,8 +295,10 @@ public class MessageDBRepository implements Repository<Long, Message> {
     public Optional<Message> update(Message entity) {
         String query = "UPDATE messages SET message_body=? WHERE id=?";
         validator.validate(entity);
+        if (entity.getId() == null)
+            throw new ValidationException("Invalid id\n");
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setString(1, entity.getMessageBody());
@@ -170,10 +313,13 @@ public class MessageDBRepository implements Repository<Long, Message> {
 
     @Override
     public Optional<Message> delete(Long id) {
+        if (id == null)
+            throw new IllegalArgumentException("Id must not be null");
+
         String query = "DELETE FROM messages WHERE id=?";
         Optional<Message> foundMessage = findById(id);
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, id);
@@ -185,11 +331,133 @@ public class MessageDBRepository implements Repository<Long, Message> {
         }
     }
 
+    @Override
+    public List<Message> saveAll(Iterable<Message> entities) {
+        List<Message> messages = new ArrayList<>();
+        for (Message entity : entities) {
+            validator.validate(entity);
+            messages.add(entity);
+        }
+        if (messages.isEmpty())
+            return new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                List<Long> ids = PostgresBulk.reserveIds(connection, "messages", messages.size());
+
+                if (messages.size() >= PostgresBulk.COPY_THRESHOLD) {
+                    Iterator<Long> idIterator = ids.iterator();
+                    PostgresBulk.copyIn(connection,
+                            "COPY messages(id, id_from_user, id_to_user, message_body, sent_date) FROM STDIN WITH (FORMAT csv)",
+                            messages,
+                            message -> new Object[]{idIterator.next(), message.getFromUser(), message.getToUser(),
+                                    message.getMessageBody(), message.getSentDate()});
+                } else {
+                    String query = "INSERT INTO messages(id, id_from_user, id_to_user, message_body, sent_date) VALUES (?, ?, ?, ?, ?)";
+
+                    try (PreparedStatement statement = connection.prepareStatement(query)) {
+                        for (int i = 0; i < messages.size(); i++) {
+                            Message message = messages.get(i);
+                            statement.setLong(1, ids.get(i));
+                            statement.setLong(2, message.getFromUser());
+                            statement.setLong(3, message.getToUser());
+                            statement.setString(4, message.getMessageBody());
+                            statement.setTimestamp(5, Timestamp.valueOf(message.getSentDate()));
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+
+                connection.commit();
+                for (int i = 0; i < messages.size(); i++)
+                    messages.get(i).setId(ids.get(i));
+
+                return new ArrayList<>();
+            } catch (SQLException e) {
+                connection.rollback();
+                return messages;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return messages;
+        }
+    }
+
+    @Override
+    public List<Message> updateAll(Iterable<Message> entities) {
+        String query = "UPDATE messages SET message_body=? WHERE id=?";
+        List<Message> messages = new ArrayList<>();
+        for (Message entity : entities) {
+            validator.validate(entity);
+            if (entity.getId() == null)
+                throw new ValidationException("Invalid id\n");
+            messages.add(entity);
+        }
+        if (messages.isEmpty())
+            return new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                for (Message message : messages) {
+                    statement.setString(1, message.getMessageBody());
+                    statement.setLong(2, message.getId());
+                    statement.addBatch();
+                }
+                int[] updateCounts = statement.executeBatch();
+                connection.commit();
+
+                List<Message> notUpdated = new ArrayList<>();
+                for (int i = 0; i < messages.size(); i++) {
+                    if (updateCounts[i] == 0)
+                        notUpdated.add(messages.get(i));
+                }
+
+                return notUpdated;
+            } catch (SQLException e) {
+                connection.rollback();
+                return messages;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return messages;
+        }
+    }
+
+    @Override
+    public List<Message> deleteAllById(Iterable<Long> ids) {
+        String query = "DELETE FROM messages WHERE id = ANY(?) RETURNING *";
+        Long[] idArray = StreamSupport.stream(ids.spliterator(), false).toArray(Long[]::new);
+        List<Message> deletedMessages = new ArrayList<>();
+        if (idArray.length == 0)
+            return deletedMessages;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query)
+        ) {
+            statement.setArray(1, connection.createArrayOf("bigint", idArray));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    deletedMessages.add(extractMessage(resultSet));
+            }
+
+            return deletedMessages;
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+    }
+
     @Override
     public Optional<Message> findByValue(Message entity) {
         String query = "SELECT * FROM messages WHERE id_from_user=? AND id_to_user=? AND message_body=? AND sent_date=?";
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, entity.getFromUser());
@@ -218,13 +486,17 @@ public class MessageDBRepository implements Repository<Long, Message> {
 
     @Override
     public Long getLastId() {
-        Iterable<Message> messages = findAll();
+        String query = "SELECT COALESCE(MAX(id), 0) AS last_id FROM messages";
 
-        Long lastID = 0L;
-        for (Message m : messages) {
-            lastID = m.getId();
-        }
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()
+        ) {
+            resultSet.next();
 
-        return lastID;
+            return resultSet.getLong("last_id");
+        } catch (SQLException e) {
+            return 0L;
+        }
     }
 }
@@ -0,0 +1,121 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+/**
+ * Immutable snapshot of the metrics of a {@link ConnectionPool}
+ */
+public class PoolMetrics {
+    private final int activeConnections;
+    private final int idleConnections;
+    private final long acquireCount;
+    private final long timeoutCount;
+    private final long leakCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+
+    /**
+     * Constructor for PoolMetrics
+     *
+     * @param activeConnections the number of connections currently borrowed
+     * @param idleConnections   the number of open connections waiting in the pool
+     * @param acquireCount      the number of successful connection acquisitions
+     * @param timeoutCount      the number of acquisitions that timed out
+     * @param leakCount         the number of connections reported as leaked
+     * @param totalWaitMillis   the total time spent waiting for connections
+     * @param maxWaitMillis     the longest time spent waiting for a connection
+     */
+    public PoolMetrics(int activeConnections, int idleConnections, long acquireCount, long timeoutCount,
+                       long leakCount, long totalWaitMillis, long maxWaitMillis) {
+        this.activeConnections = activeConnections;
+        this.idleConnections = idleConnections;
+        this.acquireCount = acquireCount;
+        this.timeoutCount = timeoutCount;
+        this.leakCount = leakCount;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Getter for activeConnections
+     *
+     * @return the number of borrowed connections
+     */
+    public int getActiveConnections() {
+        return activeConnections;
+    }
+
+    /**
+     * Getter for idleConnections
+     *
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    /**
+     * Getter for acquireCount
+     *
+     * @return the number of successful acquisitions
+     */
+    public long getAcquireCount() {
+        return acquireCount;
+    }
+
+    /**
+     * Getter for timeoutCount
+     *
+     * @return the number of timed out acquisitions
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * Getter for leakCount
+     *
+     * @return the number of reported leaks
+     */
+    public long getLeakCount() {
+        return leakCount;
+    }
+
+    /**
+     * Getter for totalWaitMillis
+     *
+     * @return the total wait time in milliseconds
+     */
+    public long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    /**
+     * Getter for maxWaitMillis
+     *
+     * @return the maximum wait time in milliseconds
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Gets the average time spent waiting for a connection
+     *
+     * @return the average wait time in milliseconds, 0 if no connection was acquired yet
+     */
+    public double getAverageWaitMillis() {
+        return acquireCount == 0 ? 0 : (double) totalWaitMillis / acquireCount;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolMetrics{" +
+                "activeConnections=" + activeConnections +
+                ", idleConnections=" + idleConnections +
+                ", acquireCount=" + acquireCount +
+                ", timeoutCount=" + timeoutCount +
+                ", leakCount=" + leakCount +
+                ", totalWaitMillis=" + totalWaitMillis +
+                ", maxWaitMillis=" + maxWaitMillis +
+                '}';
+    }
+}
@@ -0,0 +1,209 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Helpers for the bulk operations of the database repositories
+ */
+final class PostgresBulk {
+    /**
+     * Batches with at least this many entities are inserted with COPY instead of batched inserts
+     */
+    static final int COPY_THRESHOLD = 1000;
+
+    /**
+     * The number of entities inserted behind one savepoint
+     */
+    static final int CHUNK_SIZE = 10 * COPY_THRESHOLD;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private PostgresBulk() {
+    }
+
+    /**
+     * Inserts rows of entities
+     *
+     * @param <E> the type of the entities
+     */
+    @FunctionalInterface
+    interface RowInserter<E> {
+        /**
+         * Inserts the rows of some entities, all of them or none
+         *
+         * @param connection the connection
+         * @param entities   the entities
+         * @param ids        the ids of the entities, in the same order
+         * @throws SQLException if the rows could not be inserted
+         */
+        void insert(Connection connection, List<E> entities, List<Long> ids) throws SQLException;
+    }
+
+    /**
+     * Inserts the rows of entities in chunks, every chunk behind a savepoint
+     * A chunk which fails is rolled back to its savepoint and its entities are inserted one by one, each behind
+     * its own savepoint, so only the rows which can not be inserted (e.g. a duplicate username) are left out,
+     * like when the entities are saved one by one. The connection must not be in autocommit mode.
+     *
+     * @param connection the connection
+     * @param entities   the entities
+     * @param ids        the ids of the entities, in the same order
+     * @param inserter   inserts the rows of some entities
+     * @param <E>        the type of the entities
+     * @return for every entity, true if its row was inserted
+     * @throws SQLException if a savepoint could not be set or rolled back to
+     */
+    static <E> boolean[] insertInChunks(Connection connection, List<E> entities, List<Long> ids,
+                                        RowInserter<E> inserter) throws SQLException {
+        boolean[] inserted = new boolean[entities.size()];
+
+        for (int start = 0; start < entities.size(); start += CHUNK_SIZE) {
+            int end = Math.min(start + CHUNK_SIZE, entities.size());
+            if (tryInsert(connection, entities.subList(start, end), ids.subList(start, end), inserter)) {
+                Arrays.fill(inserted, start, end, true);
+                continue;
+            }
+
+            if (end - start == 1) // the single entity of the chunk was already tried
+                continue;
+            for (int i = start; i < end; i++)
+                inserted[i] = tryInsert(connection, entities.subList(i, i + 1), ids.subList(i, i + 1), inserter);
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Inserts the rows of some entities behind a savepoint, rolling back to it if they could not be inserted
+     *
+     * @param connection the connection
+     * @param entities   the entities
+     * @param ids        the ids of the entities, in the same order
+     * @param inserter   inserts the rows of the entities
+     * @param <E>        the type of the entities
+     * @return true if the rows were inserted
+     * @throws SQLException if the savepoint could not be set or rolled back to
+     */
+    private static <E> boolean tryInsert(Connection connection, List<E> entities, List<Long> ids,
+                                         RowInserter<E> inserter) throws SQLException {
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            inserter.insert(connection, entities, ids);
+            connection.releaseSavepoint(savepoint);
+
+            return true;
+        } catch (SQLException e) {
+            connection.rollback(savepoint);
+
+            return false;
+        }
+    }
+
+    /**
+     * Reserves ids from the sequence of the id column of a table
+     * Reserving the ids up front lets the rows be inserted with their final ids (also with COPY,
+     * which can not return the generated keys)
+     *
+     * @param connection the connection
+     * @param table      the name of the table
+     * @param count      the number of ids
+     * @return the reserved ids
+     * @throws SQLException if the ids could not be reserved
+     */
+    static List<Long> reserveIds(Connection connection, String table, int count) throws SQLException {
+        String query = "SELECT nextval(pg_get_serial_sequence(?, 'id')) AS id FROM generate_series(1, ?)";
+        List<Long> ids = new ArrayList<>(count);
+
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, table);
+            statement.setInt(2, count);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    ids.add(resultSet.getLong("id"));
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Copies rows into a table using COPY FROM STDIN in CSV format
+     *
+     * @param connection the connection
+     * @param copyQuery  the COPY query, e.g. COPY users(id, username) FROM STDIN WITH (FORMAT csv)
+     * @param entities   the entities
+     * @param fields     gives the values of the columns for an entity, in the order of the columns from the query
+     * @param <E>        the type of the entities
+     * @throws SQLException if the rows could not be copied
+     */
+    static <E> void copyIn(Connection connection, String copyQuery, List<E> entities,
+                           Function<E, Object[]> fields) throws SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copyQuery);
+
+        try {
+            StringBuilder buffer = new StringBuilder();
+            for (E entity : entities) {
+                Object[] values = fields.apply(entity);
+
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0)
+                        buffer.append(',');
+                    appendCsvValue(buffer, values[i]);
+                }
+                buffer.append('\n');
+
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copyIn, buffer);
+                    buffer.setLength(0);
+                }
+            }
+
+            writeToCopy(copyIn, buffer);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive())
+                copyIn.cancelCopy();
+        }
+    }
+
+    /**
+     * Appends a value to a CSV line, strings are quoted so they may contain separators and quotes
+     *
+     * @param buffer the line
+     * @param value  the value, null is written as an empty field (NULL in COPY)
+     */
+    private static void appendCsvValue(StringBuilder buffer, Object value) {
+        if (value == null)
+            return;
+
+        if (value instanceof Number)
+            buffer.append(value);
+        else
+            buffer.append('"').append(value.toString().replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Sends the buffered CSV data to the database
+     *
+     * @param copyIn the copy operation
+     * @param buffer the CSV data
+     * @throws SQLException if the data could not be sent
+     */
+    private static void writeToCopy(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,169 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import toysocialnetwork.toysocialnetworkfx.repository.UserCommunityRepository;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Database repository for the communities, stored in the user_communities table
+ */
+public class UserCommunityDBRepository implements UserCommunityRepository {
+    private final DataSource dataSource;
+
+    /**
+     * Constructor for UserCommunityDBRepository
+     *
+     * @param dataSource the data source providing the database connections
+     */
+    public UserCommunityDBRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public Map<Long, Long> findAll() {
+        Map<Long, Long> communities = new HashMap<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id_user, id_community FROM user_communities")
+        ) {
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    communities.put(resultSet.getLong("id_user"), resultSet.getLong("id_community"));
+            }
+
+            return communities;
+        } catch (SQLException e) {
+            return communities;
+        }
+    }
+
+    @Override
+    public Optional<Long> findCommunityOf(Long userId) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id_community FROM user_communities WHERE id_user = ?")
+        ) {
+            statement.setLong(1, userId);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next())
+                    return Optional.of(resultSet.getLong("id_community"));
+            }
+
+            return Optional.empty();
+        } catch (SQLException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public List<Long> findMembersOf(Long communityId) {
+        List<Long> members = new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT id_user FROM user_communities WHERE id_community = ? ORDER BY id_user")
+        ) {
+            statement.setLong(1, communityId);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    members.add(resultSet.getLong("id_user"));
+            }
+
+            return members;
+        } catch (SQLException e) {
+            return members;
+        }
+    }
+
+    @Override
+    public boolean replaceAll(Map<Long, Long> communities) {
+        if (communities == null)
+            throw new IllegalArgumentException("Communities must not be null");
+
+        return runInTransaction(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM user_communities");
+            }
+
+            LocalDateTime computedAt = LocalDateTime.now();
+            if (communities.size() >= PostgresBulk.COPY_THRESHOLD)
+                PostgresBulk.copyIn(connection,
+                        "COPY user_communities(id_user, id_community, computed_at) FROM STDIN WITH (FORMAT csv)",
+                        new ArrayList<>(communities.entrySet()),
+                        entry -> new Object[]{entry.getKey(), entry.getValue(), computedAt});
+            else
+                insertAll(connection, "INSERT INTO user_communities(id_user, id_community, computed_at) VALUES (?, ?, ?)",
+                        communities, computedAt);
+        });
+    }
+
+    @Override
+    public boolean saveAll(Map<Long, Long> communities) {
+        if (communities == null)
+            throw new IllegalArgumentException("Communities must not be null");
+
+        return runInTransaction(connection -> insertAll(connection, """
+                INSERT INTO user_communities(id_user, id_community, computed_at) VALUES (?, ?, ?)
+                ON CONFLICT (id_user) DO UPDATE SET id_community = excluded.id_community, computed_at = excluded.computed_at
+                """, communities, LocalDateTime.now()));
+    }
+
+    /**
+     * Inserts the communities with a batch of statements
+     *
+     * @param connection  the connection
+     * @param query       the insert statement, with the user id, the community id and the time as parameters
+     * @param communities the community of every user, by user id
+     * @param computedAt  when the communities were computed
+     * @throws SQLException if the communities could not be inserted
+     */
+    private static void insertAll(Connection connection, String query, Map<Long, Long> communities,
+                                  LocalDateTime computedAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (Map.Entry<Long, Long> entry : communities.entrySet()) {
+                statement.setLong(1, entry.getKey());
+                statement.setLong(2, entry.getValue());
+                statement.setTimestamp(3, Timestamp.valueOf(computedAt));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * Runs some statements in a transaction, which is rolled back if a statement fails
+     *
+     * @param work the statements
+     * @return true if the transaction was committed
+     */
+    private boolean runInTransaction(TransactionWork work) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                work.run(connection);
+                connection.commit();
+
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                return false;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Statements run in a transaction
+     */
+    @FunctionalInterface
+    private interface TransactionWork {
+        void run(Connection connection) throws SQLException;
+    }
+}
@@ -1,42 +1,69 @@
 package toysocialnetwork.toysocialnetworkfx.repository.database;
 
-import javafx.util.Pair;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserDTO;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
-import toysocialnetwork.toysocialnetworkfx.repository.Repository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
 
+import javax.sql.DataSource;
 import java.sql.*;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Database repository for user entities
  */
-public class UserDBRepository implements Repository<Long, User> {
-    private final String url;
-    private final String user;
-    private final String password;
+public class UserDBRepository implements UserRepository {
+    private static final String USERS_WITH_FRIENDS_SELECT = """
+                SELECT u.id, u.username, u.first_name, u.last_name, u.password,
+                       array_remove(array_agg(f.id_friend), NULL)::bigint[] AS friends
+                FROM users u
+                LEFT JOIN (
+                 SELECT id_first_user AS id_user, id_second_user AS id_friend FROM friendships WHERE status='ACCEPTED'
+                 UNION ALL
+                 SELECT id_second_user AS id_user, id_first_user AS id_friend FROM friendships WHERE status='ACCEPTED'
+                ) f ON f.id_user = u.id
+            """;
+    private static final String USERS_WITH_FRIENDS_QUERY = USERS_WITH_FRIENDS_SELECT + """
+                GROUP BY u.id
+                ORDER BY u.id
+            """;
+    private static final String USERS_WITH_FRIENDS_BY_IDS_QUERY = USERS_WITH_FRIENDS_SELECT + """
+                WHERE u.id = ANY(?)
+                GROUP BY u.id
+                ORDER BY u.id
+            """;
+    private static final String AVAILABLE_USERS_WITH_FRIENDS_QUERY = USERS_WITH_FRIENDS_SELECT + """
+                WHERE u.id<>? AND NOT EXISTS (
+                 SELECT 1 FROM friendships fs
+                 WHERE (fs.id_first_user = u.id AND fs.id_second_user=?)
+                    OR (fs.id_second_user = u.id AND fs.id_first_user=?)
+                )
+                GROUP BY u.id
+                ORDER BY u.id
+            """;
+
+    private final DataSource dataSource;
     private final Validator<User> validator;
 
     /**
      * Constructor for UserDBRepository
      *
-     * @param validator a validator for user entities
-     * @param url       the url for the database connection
-     * @param user      the database user
-     * @param password  the password for the database user
+     * @param validator  a validator for user entities
+     * @param dataSource the data source providing the database connections
      */
-    public UserDBRepository(Validator<User> validator, String url, String user, String password) {
+    public UserDBRepository(Validator<User> validator, DataSource dataSource) {
         this.validator = validator;
-        this.url = url;
-        this.user = user;
-        this.password = password;
+        this.dataSource = dataSource;
     }
 
     @Override
     public Optional<User> findById(Long id) {
         String query = "SELECT * FROM users WHERE id=?";
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, id);
@@ -74,7 +101,7 @@ public class UserDBRepository implements Repository<Long, User> {
                     SELECT id_second_user AS id_user FROM friendships WHERE id_first_user=? AND status='ACCEPTED';
                 """;
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, userID);
@@ -94,21 +121,20 @@ public class UserDBRepository implements Repository<Long, User> {
         }
     }
 
-    /**
-     * Finds all the friends for a given user by id
-     *
-     * @param userId the id of the user
-     * @return the list of the friends as a list of pairs of user ids and friendship ids
-     */
-    public List<Pair<Long, Long>> findFriendUsersFor(Long userId) {
-        List<Pair<Long, Long>> friendsList = new ArrayList<>();
+    @Override
+    public List<UserDTO> findFriendUsersFor(Long userId) {
+        List<UserDTO> friendsList = new ArrayList<>();
         String query = """
-                    SELECT id_first_user AS id_user, id AS id_friendship FROM friendships WHERE id_second_user=? AND status='ACCEPTED'
-                    UNION
-                    SELECT id_second_user AS id_user, id AS id_friendship FROM friendships WHERE id_first_user=? AND status='ACCEPTED';
+                    SELECT u.id, u.username, u.first_name, u.last_name, f.id AS id_friendship
+                    FROM friendships f JOIN users u ON u.id = f.id_first_user
+                    WHERE f.id_second_user=? AND f.status='ACCEPTED'
+                    UNION ALL
+                    SELECT u.id, u.username, u.first_name, u.last_name, f.id AS id_friendship
+                    FROM friendships f JOIN users u ON u.id = f.id_second_user
+                    WHERE f.id_first_user=? AND f.status='ACCEPTED'
                 """;
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, userId);
@@ -116,10 +142,13 @@ public class UserDBRepository implements Repository<Long, User> {
 
             try (ResultSet resultSet = statement.executeQuery()) {
                 while (resultSet.next()) {
-                    Long idUser = resultSet.getLong("id_user");
+                    Long idUser = resultSet.getLong("id");
                     Long idFriendship = resultSet.getLong("id_friendship");
+                    String username = resultSet.getString("username");
+                    String firstName = resultSet.getString("first_name");
+                    String lastName = resultSet.getString("last_name");
 
-                    friendsList.add(new Pair<>(idUser, idFriendship));
+                    friendsList.add(new UserDTO(idUser, idFriendship, username, firstName, lastName));
                 }
             }
 
@@ -129,37 +158,20 @@ public class UserDBRepository implements Repository<Long, User> {
         }
     }
 
-    /**
-     * Finds all the users that are not friends with the given user by id
-     *
-     * @param userId the id of the user
-     * @return the list of found users as a list of ids
-     */
-    public List<Long> findAvailableUsersFor(Long userId) {
-        List<Long> availableUsersList = new ArrayList<>();
-        String query = """
-                    SELECT id AS id_user FROM users WHERE id<>?
-                    EXCEPT
-                    (
-                     SELECT id_first_user AS id_user FROM friendships WHERE id_second_user=?
-                     UNION
-                     SELECT id_second_user AS id_user FROM friendships WHERE id_first_user=?
-                    );
-                """;
+    @Override
+    public List<User> findAvailableUsersFor(Long userId) {
+        List<User> availableUsersList = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
-             PreparedStatement statement = connection.prepareStatement(query)
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(AVAILABLE_USERS_WITH_FRIENDS_QUERY)
         ) {
             statement.setLong(1, userId);
             statement.setLong(2, userId);
             statement.setLong(3, userId);
 
             try (ResultSet resultSet = statement.executeQuery()) {
-                while (resultSet.next()) {
-                    Long id = resultSet.getLong("id_user");
-
-                    availableUsersList.add(id);
-                }
+                while (resultSet.next())
+                    availableUsersList.add(extractUserWithFriends(resultSet));
             }
 
             return availableUsersList;
@@ -170,45 +182,95 @@ public class UserDBRepository implements Repository<Long, User> {
 
     @Override
     public Iterable<User> findAll() {
-        String query = "SELECT * FROM users";
-        Set<User> userSet = new TreeSet<>(Comparator.comparingLong(User::getId));
+        List<User> userList = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
-             PreparedStatement statement = connection.prepareStatement(query);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(USERS_WITH_FRIENDS_QUERY);
              ResultSet resultSet = statement.executeQuery()
         ) {
             while (resultSet.next()) {
-                Long userID = resultSet.getLong("id");
-                String username = resultSet.getString("username");
-                String userFirstName = resultSet.getString("first_name");
-                String userLastName = resultSet.getString("last_name");
-                String password = resultSet.getString("password");
+                userList.add(extractUserWithFriends(resultSet));
+            }
 
-                User user = new User(username, userFirstName, userLastName, password);
-                user.setId(userID);
-                user.setFriends(findFriendsFor(userID));
-                userSet.add(user);
+            return userList;
+        } catch (SQLException e) {
+            return userList;
+        }
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        return JdbcStream.stream(dataSource, USERS_WITH_FRIENDS_QUERY, JdbcStream.DEFAULT_FETCH_SIZE,
+                this::extractUserWithFriends);
+    }
+
+    @Override
+    public List<User> findAllById(Collection<Long> ids) {
+        List<User> userList = new ArrayList<>();
+        if (ids.isEmpty())
+            return userList;
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(USERS_WITH_FRIENDS_BY_IDS_QUERY)
+        ) {
+            statement.setArray(1, connection.createArrayOf("bigint", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next())
+                    userList.add(extractUserWithFriends(resultSet));
             }
 
-            return userSet;
+            return userList;
         } catch (SQLException e) {
-            return userSet;
+            return userList;
         }
     }
 
+    /**
+     * Creates a user from the current row of a result set which contains the friends column
+     * as an array of ids (the result of an array_agg), so the friends are loaded without an extra query
+     *
+     * @param resultSet the result set positioned on the row
+     * @return the user together with its friends
+     * @throws SQLException if the row could not be read
+     */
+    private User extractUserWithFriends(ResultSet resultSet) throws SQLException {
+        Long userID = resultSet.getLong("id");
+        String username = resultSet.getString("username");
+        String userFirstName = resultSet.getString("first_name");
+        String userLastName = resultSet.getString("last_name");
+        String password = resultSet.getString("password");
+
+        User user = new User(username, userFirstName, userLastName, password);
+        user.setId(userID);
+
+        List<Long> friends = new ArrayList<>();
+        Array friendsArray = resultSet.getArray("friends");
+        if (friendsArray != null) {
+            for (Object friendId : (Object[]) friendsArray.getArray())
+                friends.add(((Number) friendId).longValue());
+            friendsArray.free();
+        }
+        user.setFriends(friends);
+
+        return user;
+    }
+
     @Override
     public Optional<User> save(User entity) {
-        String query = "INSERT INTO users(username, first_name, last_name, password) VALUES (?, ?, ?, ?)";
+        String query = "INSERT INTO users(username, first_name, last_name, password) VALUES (?, ?, ?, ?) RETURNING id";
         validator.validate(entity);
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setString(1, entity.getUsername());
             statement.setString(2, entity.getFirstName());
             statement.setString(3, entity.getLastName());
             statement.setString(4, entity.getPassword());
-            statement.executeUpdate();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                entity.setId(resultSet.getLong("id"));
+            }
 
             return Optional.empty();
         } catch (SQLException e) {
@@ -220,8 +282,10 @@ public class UserDBRepository implements Repository<Long, User> {
     public Optional<User> update(User entity) {
         String query = "UPDATE users SET first_name=?, last_name=?, password=? WHERE id=?";
         validator.validate(entity);
+        if (entity.getId() == null)
+            throw new ValidationException("Invalid id\n");
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setString(1, entity.getFirstName());
@@ -238,10 +302,13 @@ public class UserDBRepository implements Repository<Long, User> {
 
     @Override
     public Optional<User> delete(Long id) {
+        if (id == null)
+            throw new IllegalArgumentException("Id must not be null");
+
         String query = "DELETE FROM users WHERE id=?";
         Optional<User> foundUser = findById(id);
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setLong(1, id);
@@ -253,11 +320,132 @@ public class UserDBRepository implements Repository<Long, User> {
         }
     }
 
+    @Override
+    public List<User> saveAll(Iterable<User> entities) {
+        List<User> users = new ArrayList<>();
+        for (User entity : entities) {
+            validator.validate(entity);
+            users.add(entity);
+        }
+        if (users.isEmpty())
+            return new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                List<Long> ids = PostgresBulk.reserveIds(connection, "users", users.size());
+                boolean[] inserted = PostgresBulk.insertInChunks(connection, users, ids, this::insertUsers);
+                connection.commit();
+
+                List<User> notSaved = new ArrayList<>();
+                for (int i = 0; i < users.size(); i++) {
+                    if (inserted[i])
+                        users.get(i).setId(ids.get(i));
+                    else
+                        notSaved.add(users.get(i));
+                }
+
+                return notSaved;
+            } catch (SQLException e) {
+                connection.rollback();
+                return users;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return users;
+        }
+    }
+
+    @Override
+    public List<User> updateAll(Iterable<User> entities) {
+        String query = "UPDATE users SET first_name=?, last_name=?, password=? WHERE id=?";
+        List<User> users = new ArrayList<>();
+        for (User entity : entities) {
+            validator.validate(entity);
+            if (entity.getId() == null)
+                throw new ValidationException("Invalid id\n");
+            users.add(entity);
+        }
+        if (users.isEmpty())
+            return new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement statement = connection.prepareStatement(query)) {
+                for (User user : users) {
+                    statement.setString(1, user.getFirstName());
+                    statement.setString(2, user.getLastName());
+                    statement.setString(3, user.getPassword());
+                    statement.setLong(4, user.getId());
+                    statement.addBatch();
+                }
+                int[] updateCounts = statement.executeBatch();
+                connection.commit();
+
+                List<User> notUpdated = new ArrayList<>();
+                for (int i = 0; i < users.size(); i++) {
+                    if (updateCounts[i] == 0)
+                        notUpdated.add(users.get(i));
+                }
+
+                return notUpdated;
+            } catch (SQLException e) {
+                connection.rollback();
+                return users;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return users;
+        }
+    }
+
+    @Override
+    public List<User> deleteAllById(Iterable<Long> ids) {
+        String query = "DELETE FROM users WHERE id = ANY(?)";
+        Long[] idArray = StreamSupport.stream(ids.spliterator(), false).toArray(Long[]::new);
+        List<User> deletedUsers = new ArrayList<>();
+        if (idArray.length == 0)
+            return deletedUsers;
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try (PreparedStatement selectStatement = connection.prepareStatement(USERS_WITH_FRIENDS_BY_IDS_QUERY);
+                 PreparedStatement deleteStatement = connection.prepareStatement(query)
+            ) {
+                Array idsParameter = connection.createArrayOf("bigint", idArray);
+
+                selectStatement.setArray(1, idsParameter);
+                try (ResultSet resultSet = selectStatement.executeQuery()) {
+                    while (resultSet.next())
+                        deletedUsers.add(extractUserWithFriends(resultSet));
+                }
+
+                deleteStatement.setArray(1, idsParameter);
+                deleteStatement.executeUpdate();
+                connection.commit();
+
+                return deletedUsers;
+            } catch (SQLException e) {
+                connection.rollback();
+                return new ArrayList<>();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+    }
+
     @Override
     public Optional<User> findByValue(User entity) {
         String query = "SELECT * FROM users WHERE username=?";
 
-        try (Connection connection = DriverManager.getConnection(url, user, password);
+        try (Connection connection = dataSource.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)
         ) {
             statement.setString(1, entity.getUsername());
@@ -283,13 +471,52 @@ public class UserDBRepository implements Repository<Long, User> {
 
     @Override
     public Long getLastId() {
-        Iterable<User> users = findAll();
+        String query = "SELECT COALESCE(MAX(id), 0) AS last_id FROM users";
 
-        Long lastID = 0L;
-        for (User u : users) {
-            lastID = u.getId();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet resultSet = statement.executeQuery()
+        ) {
+            resultSet.next();
+
+            return resultSet.getLong("last_id");
+        } catch (SQLException e) {
+            return 0L;
         }
+    }
 
-        return lastID;
+    /**
+     * Inserts the rows of users with their reserved ids, with COPY for large batches
+     *
+     * @param connection the connection
+     * @param users      the users
+     * @param ids        the ids of the users, in the same order
+     * @throws SQLException if the rows could not be inserted
+     */
+    private void insertUsers(Connection connection, List<User> users, List<Long> ids) throws SQLException {
+        if (users.size() >= PostgresBulk.COPY_THRESHOLD) {
+            Iterator<Long> idIterator = ids.iterator();
+            PostgresBulk.copyIn(connection,
+                    "COPY users(id, username, first_name, last_name, password) FROM STDIN WITH (FORMAT csv)",
+                    users,
+                    user -> new Object[]{idIterator.next(), user.getUsername(), user.getFirstName(),
+                            user.getLastName(), user.getPassword()});
+
+            return;
+        }
+
+        String query = "INSERT INTO users(id, username, first_name, last_name, password) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                statement.setLong(1, ids.get(i));
+                statement.setString(2, user.getUsername());
+                statement.setString(3, user.getFirstName());
+                statement.setString(4, user.getLastName());
+                statement.setString(5, user.getPassword());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
     }
 }
@@ -0,0 +1,120 @@
+package toysocialnetwork.toysocialnetworkfx.repository.database;
+
+import toysocialnetwork.toysocialnetworkfx.domain.UserScore;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserScoreDTO;
+import toysocialnetwork.toysocialnetworkfx.repository.UserScoreRepository;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Database repository for the influence scores, stored in the user_scores table
+ */
+public class UserScoreDBRepository implements UserScoreRepository {
+    private static final String TOP_SCORES_QUERY = """
+            SELECT u.id, u.username, u.first_name, u.last_name, s.page_rank, s.eigenvector_centrality
+            FROM user_scores s JOIN users u ON u.id = s.id_user
+            ORDER BY %s DESC, u.id
+            LIMIT ?
+            """;
+
+    private final DataSource dataSource;
+
+    /**
+     * Constructor for UserScoreDBRepository
+     *
+     * @param dataSource the data source providing the database connections
+     */
+    public UserScoreDBRepository(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public boolean replaceAll(List<UserScore> scores) {
+        if (scores == null)
+            throw new IllegalArgumentException("Scores must not be null");
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("DELETE FROM user_scores");
+                }
+
+                if (scores.size() >= PostgresBulk.COPY_THRESHOLD) {
+                    PostgresBulk.copyIn(connection,
+                            "COPY user_scores(id_user, page_rank, eigenvector_centrality, computed_at) FROM STDIN WITH (FORMAT csv)",
+                            scores,
+                            score -> new Object[]{score.getId(), score.getPageRank(),
+                                    score.getEigenvectorCentrality(), score.getComputedAt()});
+                } else {
+                    String query = "INSERT INTO user_scores(id_user, page_rank, eigenvector_centrality, computed_at) VALUES (?, ?, ?, ?)";
+
+                    try (PreparedStatement statement = connection.prepareStatement(query)) {
+                        for (UserScore score : scores) {
+                            statement.setLong(1, score.getId());
+                            statement.setDouble(2, score.getPageRank());
+                            statement.setDouble(3, score.getEigenvectorCentrality());
+                            statement.setTimestamp(4, Timestamp.valueOf(score.getComputedAt()));
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+
+                connection.commit();
+
+                return true;
+            } catch (SQLException e) {
+                connection.rollback();
+                return false;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<UserScoreDTO> findTopByPageRank(int count) {
+        return findTop("s.page_rank", count);
+    }
+
+    @Override
+    public List<UserScoreDTO> findTopByEigenvectorCentrality(int count) {
+        return findTop("s.eigenvector_centrality", count);
+    }
+
+    /**
+     * Finds the users with the largest value of a score column
+     *
+     * @param column the score column
+     * @param count  the number of users
+     * @return the scores together with the users, from the largest score
+     */
+    private List<UserScoreDTO> findTop(String column, int count) {
+        List<UserScoreDTO> scores = new ArrayList<>();
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(TOP_SCORES_QUERY.formatted(column))
+        ) {
+            statement.setInt(1, count);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    scores.add(new UserScoreDTO(resultSet.getLong("id"), resultSet.getString("username"),
+                            resultSet.getString("first_name"), resultSet.getString("last_name"),
+                            resultSet.getDouble("page_rank"), resultSet.getDouble("eigenvector_centrality")));
+                }
+            }
+
+            return scores;
+        } catch (SQLException e) {
+            return scores;
+        }
+    }
+}
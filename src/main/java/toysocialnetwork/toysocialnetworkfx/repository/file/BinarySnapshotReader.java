@@ -0,0 +1,158 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reader for the binary snapshot written by {@link BinarySnapshotWriter}, usually over a memory mapped file
+ * The string table is decoded when the reader is created, the records are then read one field at a time,
+ * in the order in which they were written
+ */
+public final class BinarySnapshotReader {
+    private final ByteBuffer buffer;
+    private final String[] strings;
+    private final int recordCount;
+
+    /**
+     * Constructor for BinarySnapshotReader
+     *
+     * @param buffer the bytes of the snapshot
+     * @throws IOException if the bytes are not a snapshot of a supported version
+     */
+    BinarySnapshotReader(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.remaining() < BinarySnapshotWriter.HEADER_SIZE || buffer.getInt() != BinarySnapshotWriter.MAGIC)
+            throw new IOException("Not a binary snapshot");
+
+        short version = buffer.getShort();
+        if (version != BinarySnapshotWriter.VERSION)
+            throw new IOException("Unsupported binary snapshot version " + version);
+
+        buffer.getShort();
+        this.strings = new String[buffer.getInt()];
+        this.recordCount = buffer.getInt();
+
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[(int) readVarLong()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Checks if a file starts like a binary snapshot
+     *
+     * @param path the path of the file
+     * @return true if the file starts with the magic number of the binary snapshots
+     * @throws IOException if the file could not be read
+     */
+    static boolean isBinarySnapshot(Path path) throws IOException {
+        try (InputStream input = Files.newInputStream(path)) {
+            byte[] magic = input.readNBytes(Integer.BYTES);
+
+            return magic.length == Integer.BYTES && ByteBuffer.wrap(magic).getInt() == BinarySnapshotWriter.MAGIC;
+        }
+    }
+
+    /**
+     * Getter for recordCount
+     *
+     * @return the number of records in the snapshot
+     */
+    int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Reads a byte
+     *
+     * @return the byte, between 0 and 255
+     */
+    public int readByte() {
+        return buffer.get() & 0xFF;
+    }
+
+    /**
+     * Reads a fixed width long
+     *
+     * @return the long
+     */
+    public long readLong() {
+        return buffer.getLong();
+    }
+
+    /**
+     * Reads a long written by {@link BinarySnapshotWriter#writeVarLong(long)}
+     *
+     * @return the long
+     */
+    public long readVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return value;
+    }
+
+    /**
+     * Reads a long written by {@link BinarySnapshotWriter#writeSignedVarLong(long)}
+     *
+     * @return the long
+     */
+    public long readSignedVarLong() {
+        long value = readVarLong();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a string written by {@link BinarySnapshotWriter#writeString(String)}
+     *
+     * @return the string, may be null
+     */
+    public String readString() {
+        int index = (int) readVarLong();
+
+        return index == 0 ? null : strings[index - 1];
+    }
+
+    /**
+     * Reads a list of ids written by {@link BinarySnapshotWriter#writeLongList(List)}
+     *
+     * @return the ids
+     */
+    public List<Long> readLongList() {
+        int size = (int) readVarLong();
+        List<Long> values = new ArrayList<>(size);
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += readSignedVarLong();
+            values.add(previous);
+        }
+
+        return values;
+    }
+
+    /**
+     * Reads a timestamp written by {@link BinarySnapshotWriter#writeDateTime(LocalDateTime)}
+     *
+     * @return the timestamp
+     */
+    public LocalDateTime readDateTime() {
+        return LocalDateTime.ofEpochSecond(readLong(), 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,195 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer for the binary snapshot of a file repository
+ * <p>
+ * A snapshot starts with a header: the magic number, the version, the number of strings and the number of records.
+ * It is followed by the string table, every distinct string written once as its varint length and its UTF-8 bytes,
+ * and then by the records, in which strings are varint indexes into the table.
+ * Ids and timestamps are fixed width, timestamps in epoch seconds (UTC), and lists of ids are varint encoded
+ * differences between consecutive ids, which are small when the ids are sorted.
+ * The records are kept in memory until the snapshot is written, since the string table comes before them
+ */
+public final class BinarySnapshotWriter {
+    static final int MAGIC = 0x54534E42;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private final Map<String, Integer> stringIndexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+    private ByteBuffer records = ByteBuffer.allocate(1 << 16);
+    private int recordCount;
+
+    /**
+     * Constructor for BinarySnapshotWriter
+     */
+    BinarySnapshotWriter() {
+    }
+
+    /**
+     * Writes a byte
+     *
+     * @param value the byte, only the lowest 8 bits are kept
+     */
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        records.put((byte) value);
+    }
+
+    /**
+     * Writes a fixed width long
+     *
+     * @param value the long
+     */
+    public void writeLong(long value) {
+        ensureCapacity(Long.BYTES);
+        records.putLong(value);
+    }
+
+    /**
+     * Writes a non negative long in as few bytes as it needs, 7 bits per byte
+     *
+     * @param value the long
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            records.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        records.put((byte) value);
+    }
+
+    /**
+     * Writes a long which may be negative, zigzag encoded so that small negative values are short too
+     *
+     * @param value the long
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a string as its index in the string table
+     *
+     * @param value the string, may be null
+     */
+    public void writeString(String value) {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            strings.add(value);
+            stringIndexes.put(value, index);
+        }
+        writeVarLong(index + 1);
+    }
+
+    /**
+     * Writes a list of ids as its size followed by the differences between consecutive ids
+     *
+     * @param values the ids, in the order in which they will be read
+     */
+    public void writeLongList(List<Long> values) {
+        writeVarLong(values.size());
+
+        long previous = 0;
+        for (Long value : values) {
+            writeSignedVarLong(value - previous);
+            previous = value;
+        }
+    }
+
+    /**
+     * Writes a timestamp as fixed width epoch seconds, the fractions of a second are dropped
+     *
+     * @param value the timestamp
+     */
+    public void writeDateTime(LocalDateTime value) {
+        writeLong(value.toEpochSecond(ZoneOffset.UTC));
+    }
+
+    /**
+     * Marks the end of a record
+     */
+    void endRecord() {
+        recordCount++;
+    }
+
+    /**
+     * Writes the header, the string table and the records to a file
+     *
+     * @param channel the channel of the file, at the position where the snapshot starts
+     * @throws IOException if the file could not be written
+     */
+    void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(strings.size()).putInt(recordCount);
+        writeFully(channel, header.flip());
+
+        ByteBuffer table = ByteBuffer.allocate(1 << 16);
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            if (table.remaining() < bytes.length + 5) {
+                writeFully(channel, table.flip());
+                table = ByteBuffer.allocate(Math.max(table.capacity(), bytes.length + 5));
+            }
+
+            int length = bytes.length;
+            while ((length & ~0x7F) != 0) {
+                table.put((byte) ((length & 0x7F) | 0x80));
+                length >>>= 7;
+            }
+            table.put((byte) length);
+            table.put(bytes);
+        }
+        writeFully(channel, table.flip());
+
+        writeFully(channel, records.flip());
+    }
+
+    /**
+     * Grows the record buffer so that it has room for more bytes
+     *
+     * @param bytes the number of bytes
+     */
+    private void ensureCapacity(int bytes) {
+        if (records.remaining() >= bytes)
+            return;
+
+        long capacity = Math.max((long) records.capacity() * 2, (long) records.position() + bytes);
+        if (capacity > Integer.MAX_VALUE - 8)
+            throw new IllegalStateException("The snapshot is too large");
+
+        ByteBuffer grown = ByteBuffer.allocate((int) capacity);
+        grown.put(records.flip());
+        records = grown;
+    }
+
+    /**
+     * Writes all the remaining bytes of a buffer
+     *
+     * @param channel the channel
+     * @param buffer  the buffer
+     * @throws IOException if the file could not be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
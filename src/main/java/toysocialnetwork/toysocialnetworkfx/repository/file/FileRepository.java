@@ -2,44 +2,139 @@ package toysocialnetwork.toysocialnetworkfx.repository.file;
 
 import toysocialnetwork.toysocialnetworkfx.domain.Entity;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.IdAllocator;
 import toysocialnetwork.toysocialnetworkfx.repository.memory.InMemoryRepository;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 /**
  * Generic file based repository for generic entities with a generic id
+ * <p>
+ * The entities are kept in memory. The file holds a snapshot of them, in one of the {@link SnapshotFormat}s,
+ * and every change is appended to a journal next to it (the file path with the .journal suffix), so a change
+ * writes one line instead of the whole file. A background task forces the journal to the disk every sync interval
+ * (group commit), so a crash loses at most the changes of the last interval. Once the journal holds as many records
+ * as the snapshot (and at least the compaction threshold), the snapshot is rewritten and the journal emptied,
+ * which keeps the cost of a change independent of the number of entities.
+ * At startup the snapshot is loaded and the journal replayed. Every record holds the whole entity and a checksum,
+ * so replaying a record again gives the same result, and a torn record at the end of the journal is dropped.
  *
  * @param <ID> the type of the id
  * @param <E>  the type of the entity, it must extend Entity
  */
-public abstract class FileRepository<ID, E extends Entity<ID>> extends InMemoryRepository<ID, E> {
-    private final String filePath;
+public abstract class FileRepository<ID, E extends Entity<ID>> extends InMemoryRepository<ID, E>
+        implements AutoCloseable {
+    /**
+     * The default time between two forces of the journal to the disk, in milliseconds
+     */
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+    /**
+     * The default smallest number of journal records which triggers a compaction
+     */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 10_000;
+
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int LOAD_PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int PARALLEL_LOAD_THRESHOLD = 1 << 20;
+    private static final char SAVED = 'S';
+    private static final char UPDATED = 'U';
+    private static final char DELETED = 'D';
+
+    private final Path filePath;
+    private final Path journalPath;
+    private final SnapshotFormat snapshotFormat;
+    private final int compactionThreshold;
+    private final Object journalLock = new Object();
+    private final ScheduledExecutorService syncer;
+    private FileChannel journalChannel;
+    private Writer journalWriter;
+    private boolean unsynced;
+    private boolean closed;
+    private int snapshotRecords;
+    private int journalRecords;
+
+    /**
+     * Constructor for FileRepository, with a CSV snapshot and the default sync interval and compaction threshold
+     *
+     * @param validator   a validator for the entities stored in the repository
+     * @param idAllocator the allocator used for the entities saved without an id
+     * @param filePath    the path for the file containing the entities
+     */
+    public FileRepository(Validator<E> validator, IdAllocator<ID> idAllocator, String filePath) {
+        this(validator, idAllocator, filePath, SnapshotFormat.CSV, DEFAULT_SYNC_INTERVAL_MILLIS,
+                DEFAULT_COMPACTION_THRESHOLD);
+    }
 
     /**
      * Constructor for FileRepository
      *
-     * @param validator a validator for the entities stored in the repository
-     * @param filePath  the path for the file containing the entities
+     * @param validator           a validator for the entities stored in the repository
+     * @param idAllocator         the allocator used for the entities saved without an id
+     * @param filePath            the path for the file containing the entities
+     * @param snapshotFormat      the format in which the snapshot is written
+     * @param syncIntervalMillis  the time between two forces of the journal to the disk, in milliseconds
+     * @param compactionThreshold the smallest number of journal records which triggers a compaction
+     * @throws IllegalArgumentException if the sync interval or the compaction threshold is not positive
      */
-    public FileRepository(Validator<E> validator, String filePath) {
-        super(validator);
-        this.filePath = filePath;
+    public FileRepository(Validator<E> validator, IdAllocator<ID> idAllocator, String filePath,
+                          SnapshotFormat snapshotFormat, long syncIntervalMillis, int compactionThreshold) {
+        super(validator, idAllocator);
+        if (syncIntervalMillis < 1)
+            throw new IllegalArgumentException("The sync interval must be positive");
+        if (compactionThreshold < 1)
+            throw new IllegalArgumentException("The compaction threshold must be positive");
+
+        this.filePath = Paths.get(filePath);
+        this.journalPath = Paths.get(filePath + JOURNAL_SUFFIX);
+        this.snapshotFormat = snapshotFormat;
+        this.compactionThreshold = compactionThreshold;
 
         this.loadDataFromFile();
+        this.replayJournal();
+        this.openJournal();
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-repository-sync");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.syncer.scheduleWithFixedDelay(this::flush, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public Optional<E> save(E entity) { // se putea folosi un decorator
         Optional<E> e = super.save(entity);
         if (e.isEmpty()) {
-            this.saveDataToFile();
+            this.appendRecord(SAVED, entity);
+            this.compactIfNeeded();
         }
 
         return e;
@@ -49,7 +144,8 @@ public abstract class FileRepository<ID, E extends Entity<ID>> extends InMemoryR
     public Optional<E> update(E entity) {
         Optional<E> e = super.update(entity);
         if (e.isEmpty()) {
-            this.saveDataToFile();
+            this.appendRecord(UPDATED, entity);
+            this.compactIfNeeded();
         }
 
         return e;
@@ -59,12 +155,142 @@ public abstract class FileRepository<ID, E extends Entity<ID>> extends InMemoryR
     public Optional<E> delete(ID id) {
         Optional<E> e = super.delete(id);
         if (e.isPresent()) {
-            this.saveDataToFile();
+            this.appendRecord(DELETED, e.get());
+            this.compactIfNeeded();
         }
 
         return e;
     }
 
+    @Override
+    public List<E> saveAll(Iterable<E> entities) {
+        if (entities == null)
+            throw new IllegalArgumentException("Entities must not be null");
+
+        List<E> notSaved = new ArrayList<>();
+        for (E entity : entities) {
+            Optional<E> e = super.save(entity);
+            if (e.isEmpty())
+                this.appendRecord(SAVED, entity);
+            else
+                notSaved.add(entity);
+        }
+        this.compactIfNeeded();
+
+        return notSaved;
+    }
+
+    @Override
+    public List<E> updateAll(Iterable<E> entities) {
+        if (entities == null)
+            throw new IllegalArgumentException("Entities must not be null");
+
+        List<E> notUpdated = new ArrayList<>();
+        for (E entity : entities) {
+            Optional<E> e = super.update(entity);
+            if (e.isEmpty())
+                this.appendRecord(UPDATED, entity);
+            else
+                notUpdated.add(entity);
+        }
+        this.compactIfNeeded();
+
+        return notUpdated;
+    }
+
+    @Override
+    public List<E> deleteAllById(Iterable<ID> ids) {
+        if (ids == null)
+            throw new IllegalArgumentException("Ids must not be null");
+
+        List<E> deleted = new ArrayList<>();
+        for (ID id : ids)
+            super.delete(id).ifPresent(entity -> {
+                this.appendRecord(DELETED, entity);
+                deleted.add(entity);
+            });
+        this.compactIfNeeded();
+
+        return deleted;
+    }
+
+    /**
+     * Forces the journal to the disk, if it changed since the last time
+     * Called by the background task every sync interval, callers which need a change to be durable
+     * right away can call it directly
+     */
+    public void flush() {
+        synchronized (journalLock) {
+            if (!unsynced || closed)
+                return;
+
+            try {
+                journalWriter.flush();
+                journalChannel.force(false);
+                unsynced = false;
+            } catch (IOException e) {
+                System.err.println("Could not write to file " + journalPath);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the snapshot with the current entities and empties the journal
+     * The snapshot is written to a temporary file which then replaces the old one, so a crash leaves either
+     * the old snapshot with the whole journal or the new snapshot, over which replaying the journal changes nothing
+     */
+    public void compact() {
+        synchronized (journalLock) {
+            Path temporaryPath = Paths.get(filePath + TEMPORARY_SUFFIX);
+
+            try {
+                int records;
+                try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    records = snapshotFormat == SnapshotFormat.BINARY ?
+                            this.writeBinarySnapshot(channel) : this.writeCsvSnapshot(channel);
+                    channel.force(true);
+                }
+                try {
+                    Files.move(temporaryPath, filePath, StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporaryPath, filePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                journalWriter.flush();
+                journalChannel.truncate(0);
+                journalChannel.force(true);
+                unsynced = false;
+                snapshotRecords = records;
+                journalRecords = 0;
+            } catch (IOException e) {
+                System.err.println("Could not write to file " + filePath);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Forces the journal to the disk and closes it, the repository must not be changed afterwards
+     */
+    @Override
+    public void close() {
+        flush();
+        syncer.shutdownNow();
+
+        synchronized (journalLock) {
+            closed = true;
+            try {
+                journalWriter.close();
+            } catch (IOException e) {
+                System.err.println("Could not write to file " + journalPath);
+                e.printStackTrace();
+            }
+        }
+    }
+
     /**
      * Abstract method for the creation of an entity from a list of attributes
      *
@@ -82,40 +308,371 @@ public abstract class FileRepository<ID, E extends Entity<ID>> extends InMemoryR
     protected abstract String createEntityAsString(E entity);
 
     /**
-     * Loads the entities from the associated file
+     * Abstract method for the reading of an entity from a binary snapshot
+     *
+     * @param reader the reader, positioned at the start of the entity
+     * @return the entity
+     */
+    protected abstract E readEntityFrom(BinarySnapshotReader reader);
+
+    /**
+     * Abstract method for the writing of an entity to a binary snapshot
+     *
+     * @param writer the writer
+     * @param entity the entity
+     */
+    protected abstract void writeEntityTo(BinarySnapshotWriter writer, E entity);
+
+    /**
+     * Loads the entities from the snapshot, a missing snapshot means that there are no entities yet
+     * The format of the snapshot is detected from its first bytes
      */
     private void loadDataFromFile() {
-        Path entitiesPath = Paths.get(filePath);
+        if (!Files.exists(filePath))
+            return;
+
+        try {
+            if (BinarySnapshotReader.isBinarySnapshot(filePath))
+                this.loadBinarySnapshot();
+            else
+                this.loadCsvSnapshot();
+        } catch (IOException e) {
+            System.err.println("Could not read from file " + filePath);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Loads the entities from a CSV snapshot, validating them since the file may have been written by hand
+     * The mapped file is split into chunks which end at line ends, the chunks are parsed and validated in parallel
+     * and the entities are then stored in the order of the lines. The result is the one of saving the lines
+     * one by one, including the exception thrown for the first line which is not valid
+     *
+     * @throws IOException if the file could not be read
+     */
+    private void loadCsvSnapshot() throws IOException {
+        List<ParsedChunk<E>> chunks = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("The snapshot is too large to be mapped");
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int[] bounds = splitIntoChunks(buffer);
+            if (bounds.length == 2)
+                chunks.add(this.parseChunk(buffer, 0, buffer.limit()));
+            else {
+                ForkJoinPool pool = new ForkJoinPool(LOAD_PARALLELISM);
+                try {
+                    List<ForkJoinTask<ParsedChunk<E>>> tasks = new ArrayList<>();
+                    for (int i = 0; i + 1 < bounds.length; i++) {
+                        int start = bounds[i];
+                        int end = bounds[i + 1];
+                        tasks.add(pool.submit(() -> this.parseChunk(buffer, start, end)));
+                    }
+                    for (ForkJoinTask<ParsedChunk<E>> task : tasks)
+                        chunks.add(task.join());
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+
+        List<E> entities = new ArrayList<>();
+        for (ParsedChunk<E> chunk : chunks) {
+            if (chunk.failure != null)
+                throw chunk.failure;
+            entities.addAll(chunk.entities);
+        }
+        this.saveAllValidated(entities);
+        snapshotRecords += entities.size();
+    }
+
+    /**
+     * Parses and validates the lines of a chunk of a CSV snapshot, empty lines are skipped
+     *
+     * @param buffer the bytes of the snapshot
+     * @param start  the position of the first byte of the chunk
+     * @param end    the position after the last byte of the chunk
+     * @return the entities of the chunk, up to the first line which is not valid
+     */
+    private ParsedChunk<E> parseChunk(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
 
+        Validator<E> validator = this.getValidator();
+        List<E> entities = new ArrayList<>();
+        int lineStart = 0;
         try {
-            List<String> lines = Files.readAllLines(entitiesPath);
+            while (lineStart < bytes.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < bytes.length && bytes[lineEnd] != '\n')
+                    lineEnd++;
+                int nextLine = lineEnd + 1;
+                if (lineEnd > lineStart && bytes[lineEnd - 1] == '\r')
+                    lineEnd--;
 
-            for (String line : lines) {
-                List<String> attributes = Arrays.asList(line.split(";"));
-                E entity = this.extractEntityFrom(attributes);
+                if (lineEnd > lineStart) {
+                    String line = new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+                    E entity = this.extractEntityFrom(splitAttributes(line));
+                    validator.validate(entity);
+                    entities.add(entity);
+                }
+                lineStart = nextLine;
+            }
+        } catch (RuntimeException e) {
+            return new ParsedChunk<>(entities, e);
+        }
+
+        return new ParsedChunk<>(entities, null);
+    }
 
-                this.save(entity);
+    /**
+     * Loads the entities from a binary snapshot through a memory mapping of the file
+     * The entities were validated before they were written, so they are restored as they are
+     *
+     * @throws IOException if the file could not be read or is not a snapshot of a supported version
+     */
+    private void loadBinarySnapshot() throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("The snapshot is too large to be mapped");
+
+            BinarySnapshotReader reader = new BinarySnapshotReader(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            for (int i = 0; i < reader.getRecordCount(); i++) {
+                this.restore(this.readEntityFrom(reader));
+                snapshotRecords++;
             }
+        }
+    }
+
+    /**
+     * Writes the entities as a CSV snapshot
+     *
+     * @param channel the channel of the snapshot file
+     * @return the number of written entities
+     * @throws IOException if the file could not be written
+     */
+    private int writeCsvSnapshot(FileChannel channel) throws IOException {
+        BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+        int records = 0;
+        for (E entity : this.findAll()) {
+            writer.write(this.createEntityAsString(entity));
+            writer.newLine();
+            records++;
+        }
+        writer.flush();
+
+        return records;
+    }
+
+    /**
+     * Writes the entities as a binary snapshot
+     *
+     * @param channel the channel of the snapshot file
+     * @return the number of written entities
+     * @throws IOException if the file could not be written
+     */
+    private int writeBinarySnapshot(FileChannel channel) throws IOException {
+        BinarySnapshotWriter writer = new BinarySnapshotWriter();
+        int records = 0;
+        for (E entity : this.findAll()) {
+            this.writeEntityTo(writer, entity);
+            writer.endRecord();
+            records++;
+        }
+        writer.writeTo(channel);
+
+        return records;
+    }
+
+    /**
+     * Applies the records of the journal over the snapshot
+     * The replay stops at the first record which is not complete or does not match its checksum,
+     * which is then cut off together with everything after it
+     */
+    private void replayJournal() {
+        if (!Files.exists(journalPath))
+            return;
+
+        long validLength = 0;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(journalPath))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            int b;
+            while ((b = input.read()) != -1) {
+                offset++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                if (!this.applyRecord(line.toString(StandardCharsets.UTF_8)))
+                    break;
+                validLength = offset;
+                journalRecords++;
+                line.reset();
+            }
+
+            if (validLength < Files.size(journalPath))
+                try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
         } catch (IOException e) {
-            System.err.println("Could not read from file " + filePath);
+            System.err.println("Could not read from file " + journalPath);
             e.printStackTrace();
         }
     }
 
     /**
-     * Saves the entities to the associated file
+     * Applies one journal record, the saved and updated entities replace the stored ones
+     *
+     * @param line the record, the checksum followed by the operation and the entity
+     * @return true if the record was valid
      */
-    private void saveDataToFile() {
-        Path entitiesPath = Paths.get(filePath);
+    private boolean applyRecord(String line) {
+        int separator = line.indexOf(';');
+        if (separator == -1 || line.length() < separator + 3)
+            return false;
 
-        try (BufferedWriter writer = Files.newBufferedWriter(entitiesPath)) {
-            for (E entity : this.findAll()) {
-                writer.write(this.createEntityAsString(entity));
-                writer.newLine();
+        String record = line.substring(separator + 1);
+        try {
+            if (Long.parseLong(line.substring(0, separator), 16) != checksum(record))
+                return false;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+
+        E entity = this.extractEntityFrom(Arrays.asList(record.substring(2).split(";")));
+        switch (record.charAt(0)) {
+            case SAVED, UPDATED -> this.restore(entity);
+            case DELETED -> this.discard(entity.getId());
+            default -> {
+                return false;
             }
+        }
+
+        return true;
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed
+     */
+    private void openJournal() {
+        try {
+            journalChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            journalWriter = new BufferedWriter(Channels.newWriter(journalChannel, StandardCharsets.UTF_8));
         } catch (IOException e) {
-            System.err.println("Could not write to file " + filePath);
-            e.printStackTrace();
+            throw new IllegalStateException("Could not open file " + journalPath, e);
+        }
+    }
+
+    /**
+     * Appends a change to the journal, it reaches the disk at the next sync
+     *
+     * @param operation the change
+     * @param entity    the changed entity
+     */
+    private void appendRecord(char operation, E entity) {
+        String record = operation + ";" + this.createEntityAsString(entity);
+
+        synchronized (journalLock) {
+            try {
+                journalWriter.write(Long.toHexString(checksum(record)) + ";" + record + "\n");
+                unsynced = true;
+                journalRecords++;
+            } catch (IOException e) {
+                System.err.println("Could not write to file " + journalPath);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Compacts the journal once it holds as many records as the snapshot, and at least the compaction threshold
+     */
+    private void compactIfNeeded() {
+        if (journalRecords >= Math.max(compactionThreshold, snapshotRecords))
+            this.compact();
+    }
+
+    /**
+     * Splits a CSV snapshot into chunks which start after a line end, one chunk if the snapshot is small
+     * or if there is a single processor
+     *
+     * @param buffer the bytes of the snapshot
+     * @return the bounds of the chunks, the first is 0 and the last is the size of the snapshot
+     */
+    private static int[] splitIntoChunks(ByteBuffer buffer) {
+        int size = buffer.limit();
+        int chunkCount = size < PARALLEL_LOAD_THRESHOLD || LOAD_PARALLELISM == 1 ? 1 :
+                LOAD_PARALLELISM * CHUNKS_PER_THREAD;
+
+        int[] bounds = new int[chunkCount + 1];
+        int count = 1;
+        for (int i = 1; i < chunkCount; i++) {
+            int bound = Math.max(bounds[count - 1], (int) ((long) size * i / chunkCount));
+            while (bound < size && buffer.get(bound - 1) != '\n')
+                bound++;
+            if (bound > bounds[count - 1] && bound < size)
+                bounds[count++] = bound;
+        }
+        bounds[count++] = size;
+
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Splits a CSV line into its attributes with a plain scan for the separators
+     * Like String.split, the empty attributes at the end of the line are dropped
+     *
+     * @param line the line
+     * @return the attributes
+     */
+    private static List<String> splitAttributes(String line) {
+        List<String> attributes = new ArrayList<>(8);
+        int start = 0;
+        int separator;
+        while ((separator = line.indexOf(';', start)) != -1) {
+            attributes.add(line.substring(start, separator));
+            start = separator + 1;
+        }
+        attributes.add(line.substring(start));
+
+        int size = attributes.size();
+        while (size > 1 && attributes.get(size - 1).isEmpty())
+            attributes.remove(--size);
+
+        return attributes;
+    }
+
+    /**
+     * Computes the checksum of a journal record
+     *
+     * @param record the record
+     * @return the CRC32 of the UTF-8 bytes of the record
+     */
+    private static long checksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+
+        return crc.getValue();
+    }
+
+    /**
+     * The entities parsed from a chunk of a CSV snapshot, together with the exception which stopped the parsing
+     *
+     * @param <E> the type of the entities
+     */
+    private static final class ParsedChunk<E> {
+        private final List<E> entities;
+        private final RuntimeException failure;
+
+        private ParsedChunk(List<E> entities, RuntimeException failure) {
+            this.entities = entities;
+            this.failure = failure;
         }
     }
 }
@@ -1,9 +1,11 @@
 package toysocialnetwork.toysocialnetworkfx.repository.file;
 
+import javafx.util.Pair;
 import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
 import toysocialnetwork.toysocialnetworkfx.domain.Sender;
 import toysocialnetwork.toysocialnetworkfx.domain.Status;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.HiLoIdAllocator;
 import toysocialnetwork.toysocialnetworkfx.utils.Constants;
 
 import java.time.LocalDateTime;
@@ -13,6 +15,9 @@ import java.util.List;
  * File based repository for friendship entities
  */
 public class FriendshipFileRepository extends FileRepository<Long, Friendship> {
+    private static final Status[] STATUSES = Status.values();
+    private static final Sender[] SENDERS = Sender.values();
+
     /**
      * Constructor for FriendshipFileRepository
      *
@@ -20,7 +25,21 @@ public class FriendshipFileRepository extends FileRepository<Long, Friendship> {
      * @param filePath  the path for the file containing the friendships
      */
     public FriendshipFileRepository(Validator<Friendship> validator, String filePath) {
-        super(validator, filePath);
+        super(validator, new HiLoIdAllocator(), filePath);
+    }
+
+    /**
+     * Constructor for FriendshipFileRepository
+     *
+     * @param validator           a validator for the friendships stored in the repository
+     * @param filePath            the path for the file containing the friendships
+     * @param snapshotFormat      the format in which the snapshot is written
+     * @param syncIntervalMillis  the time between two forces of the journal to the disk, in milliseconds
+     * @param compactionThreshold the smallest number of journal records which triggers a compaction
+     */
+    public FriendshipFileRepository(Validator<Friendship> validator, String filePath, SnapshotFormat snapshotFormat,
+                                    long syncIntervalMillis, int compactionThreshold) {
+        super(validator, new HiLoIdAllocator(), filePath, snapshotFormat, syncIntervalMillis, compactionThreshold);
     }
 
     @Override
@@ -40,4 +59,30 @@ public class FriendshipFileRepository extends FileRepository<Long, Friendship> {
                 + ";" + entity.getFriendsFrom().format(Constants.DATE_TIME_FORMATTER)
                 + ";" + entity.getStatus() + ";" + entity.getSentBy();
     }
+
+    @Override
+    protected Object naturalKeyOf(Friendship entity) {
+        return new Pair<>(entity.getFirstUser(), entity.getSecondUser());
+    }
+
+    @Override
+    protected Friendship readEntityFrom(BinarySnapshotReader reader) {
+        long id = reader.readLong();
+        Friendship friendship = new Friendship(reader.readLong(), reader.readLong(), reader.readDateTime());
+        friendship.setId(id);
+        friendship.setStatus(STATUSES[reader.readByte()]);
+        friendship.setSentBy(SENDERS[reader.readByte()]);
+
+        return friendship;
+    }
+
+    @Override
+    protected void writeEntityTo(BinarySnapshotWriter writer, Friendship entity) {
+        writer.writeLong(entity.getId());
+        writer.writeLong(entity.getFirstUser());
+        writer.writeLong(entity.getSecondUser());
+        writer.writeDateTime(entity.getFriendsFrom());
+        writer.writeByte(entity.getStatus().ordinal());
+        writer.writeByte(entity.getSentBy().ordinal());
+    }
 }
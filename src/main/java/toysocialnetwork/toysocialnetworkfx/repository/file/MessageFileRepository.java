@@ -0,0 +1,914 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+import toysocialnetwork.toysocialnetworkfx.domain.Message;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.MessageRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.HiLoIdAllocator;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.IdAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * File based repository for message entities, kept as an append-only log split into segment files
+ * <p>
+ * Every save, update and delete appends a record to the active segment: its length, the CRC32 of its payload
+ * and the payload, which holds the whole message or, for a delete, only its id. Segments have a fixed size and are
+ * memory mapped, so appends and reads are copies to and from memory; a background task forces the new records
+ * to the disk every sync interval. When a record does not fit, a new segment is started.
+ * <p>
+ * The position of every message is kept in memory together with an index of the conversations, ordered by
+ * (user pair, sent date, id), so the newest messages of a conversation, or the ones next to a cursor, are found
+ * without reading the other messages. The index is written to a file when the repository is closed and after
+ * a compaction; at startup it is loaded and only the records appended after it are read. A missing or outdated
+ * index is rebuilt by reading all the segments. The index also keeps the highest id ever used, so the id of
+ * a deleted message is not given to a new one, whose records could be mistaken for the ones of the deleted message.
+ * <p>
+ * Updates and deletes leave the older records of the message behind. Once at least half of the bytes of a full
+ * segment are such records, its live records are appended again and the segment file is removed
+ */
+public class MessageFileRepository implements MessageRepository, AutoCloseable {
+    /**
+     * The default size of a segment file, in bytes
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 24;
+    /**
+     * The default time between two forces of the new records to the disk, in milliseconds
+     */
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 100;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "messages.index";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final int INDEX_MAGIC = 0x54534E49;
+    private static final short INDEX_VERSION = 2;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final byte SAVED = 1;
+    private static final byte DELETED = 2;
+    private static final double COMPACTION_GARBAGE_RATIO = 0.5;
+
+    private final Validator<Message> validator;
+    private final IdAllocator<Long> idAllocator;
+    private final Path directoryPath;
+    private final int segmentSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<Long, MessageKey> messageKeys = new HashMap<>();
+    private final TreeMap<ConversationKey, TreeSet<MessageKey>> conversations = new TreeMap<>();
+    private final ScheduledExecutorService syncer;
+    private Segment activeSegment;
+    private long lastId;
+    private long highestId;
+    private boolean closed;
+
+    /**
+     * Constructor for MessageFileRepository, with the default segment size and sync interval
+     *
+     * @param validator     a validator for the messages stored in the repository
+     * @param directoryPath the path for the directory containing the segments and the index
+     */
+    public MessageFileRepository(Validator<Message> validator, String directoryPath) {
+        this(validator, directoryPath, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Constructor for MessageFileRepository
+     *
+     * @param validator          a validator for the messages stored in the repository
+     * @param directoryPath      the path for the directory containing the segments and the index
+     * @param segmentSize        the size of a segment file, in bytes
+     * @param syncIntervalMillis the time between two forces of the new records to the disk, in milliseconds
+     * @throws IllegalArgumentException if the segment size or the sync interval is not positive
+     * @throws IllegalStateException    if the directory could not be opened
+     */
+    public MessageFileRepository(Validator<Message> validator, String directoryPath, int segmentSize,
+                                 long syncIntervalMillis) {
+        if (segmentSize < 1)
+            throw new IllegalArgumentException("The segment size must be positive");
+        if (syncIntervalMillis < 1)
+            throw new IllegalArgumentException("The sync interval must be positive");
+
+        this.validator = validator;
+        this.idAllocator = new HiLoIdAllocator();
+        this.directoryPath = Paths.get(directoryPath);
+        this.segmentSize = segmentSize;
+
+        try {
+            Files.createDirectories(this.directoryPath);
+            this.openSegments();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open directory " + directoryPath, e);
+        }
+        if (!this.loadIndex()) {
+            this.clearIndex();
+            for (Segment segment : segments.values())
+                segment.writePosition = this.scanSegment(segment, 0);
+        }
+        if (!segments.isEmpty())
+            this.clearTail(segments.lastEntry().getValue());
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-log-sync");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.syncer.scheduleWithFixedDelay(this::flush, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized Optional<Message> findById(Long id) {
+        if (id == null)
+            throw new IllegalArgumentException("Id must not be null");
+
+        MessageKey key = messageKeys.get(id);
+
+        return key == null ? Optional.empty() : Optional.of(this.readMessage(key.location));
+    }
+
+    @Override
+    public synchronized Optional<Message> findByValue(Message entity) {
+        if (entity == null)
+            throw new IllegalArgumentException("Entity must not be null");
+
+        TreeSet<MessageKey> keys = conversations.get(new ConversationKey(entity.getFromUser(), entity.getToUser()));
+        if (keys == null)
+            return Optional.empty();
+
+        MessageKey first = new MessageKey(entity.getSentDate(), Long.MIN_VALUE);
+        MessageKey last = new MessageKey(entity.getSentDate(), Long.MAX_VALUE);
+        for (MessageKey key : keys.subSet(first, true, last, true)) {
+            Message message = this.readMessage(key.location);
+            if (message.equals(entity))
+                return Optional.of(message);
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Iterable<Message> findAll() {
+        List<MessageKey> keys = new ArrayList<>(messageKeys.values());
+        keys.sort(Comparator.comparingLong(key -> key.id));
+
+        List<Message> messages = new ArrayList<>(keys.size());
+        for (MessageKey key : keys)
+            messages.add(this.readMessage(key.location));
+
+        return messages;
+    }
+
+    @Override
+    public synchronized List<Message> getMessagesBetween(Long firstUserId, Long secondUserId) {
+        TreeSet<MessageKey> keys = conversations.get(new ConversationKey(firstUserId, secondUserId));
+
+        return keys == null ? new ArrayList<>() : this.readMessages(keys.iterator(), keys.size(), false);
+    }
+
+    @Override
+    public synchronized List<Message> getLatestMessagesBetween(Long firstUserId, Long secondUserId, int pageSize) {
+        TreeSet<MessageKey> keys = conversations.get(new ConversationKey(firstUserId, secondUserId));
+
+        return keys == null ? new ArrayList<>() : this.readMessages(keys.descendingIterator(), pageSize, true);
+    }
+
+    @Override
+    public synchronized List<Message> getMessagesBefore(Long firstUserId, Long secondUserId, LocalDateTime sentDate,
+                                                        Long id, int pageSize) {
+        TreeSet<MessageKey> keys = conversations.get(new ConversationKey(firstUserId, secondUserId));
+        if (keys == null)
+            return new ArrayList<>();
+
+        NavigableSet<MessageKey> older = keys.headSet(new MessageKey(sentDate, id), false);
+
+        return this.readMessages(older.descendingIterator(), pageSize, true);
+    }
+
+    @Override
+    public synchronized List<Message> getMessagesAfter(Long firstUserId, Long secondUserId, LocalDateTime sentDate,
+                                                       Long id, int pageSize) {
+        TreeSet<MessageKey> keys = conversations.get(new ConversationKey(firstUserId, secondUserId));
+        if (keys == null)
+            return new ArrayList<>();
+
+        NavigableSet<MessageKey> newer = keys.tailSet(new MessageKey(sentDate, id), false);
+
+        return this.readMessages(newer.iterator(), pageSize, false);
+    }
+
+    @Override
+    public synchronized Optional<Message> save(Message entity) {
+        if (entity == null)
+            throw new IllegalArgumentException("Entity must not be null");
+
+        validator.validate(entity);
+        if (entity.getId() != null) {
+            idAllocator.observe(entity.getId());
+            if (messageKeys.containsKey(entity.getId()))
+                return Optional.of(entity);
+        } else
+            entity.setId(idAllocator.nextId());
+
+        long location = this.append(encodeSaved(entity));
+        this.applySaved(entity.getId(), entity.getFromUser(), entity.getToUser(),
+                entity.getSentDate().toEpochSecond(ZoneOffset.UTC), entity.getSentDate().getNano(), location);
+
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Message> update(Message entity) {
+        if (entity == null)
+            throw new IllegalArgumentException("Entity must not be null");
+
+        validator.validate(entity);
+        MessageKey key = messageKeys.get(entity.getId());
+        if (key == null)
+            return Optional.of(entity);
+
+        // only the body of a message can change, like in the database repository
+        long oldLocation = key.location;
+        Message stored = this.readMessage(oldLocation);
+        Message updated = new Message(stored.getFromUser(), stored.getToUser(), entity.getMessageBody(),
+                stored.getSentDate());
+        updated.setId(stored.getId());
+
+        this.addGarbage(oldLocation);
+        key.location = this.append(encodeSaved(updated));
+        this.compactIfNeeded(segmentOf(oldLocation));
+
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized Optional<Message> delete(Long id) {
+        if (id == null)
+            throw new IllegalArgumentException("Id must not be null");
+
+        MessageKey key = messageKeys.get(id);
+        if (key == null)
+            return Optional.empty();
+
+        long oldLocation = key.location;
+        Message stored = this.readMessage(oldLocation);
+        long location = this.append(encodeDeleted(id));
+        this.applyDeleted(id, location);
+        this.compactIfNeeded(segmentOf(oldLocation));
+
+        return Optional.of(stored);
+    }
+
+    @Override
+    public synchronized Long getLastId() {
+        if (lastId != 0 && !messageKeys.containsKey(lastId)) // the newest message was deleted
+            lastId = messageKeys.keySet().stream().mapToLong(Long::longValue).max().orElse(0);
+
+        return lastId;
+    }
+
+    /**
+     * Forces the records appended since the last time to the disk
+     * Called by the background task every sync interval, callers which need a change to be durable
+     * right away can call it directly
+     */
+    public synchronized void flush() {
+        if (closed)
+            return;
+
+        for (Segment segment : segments.values()) {
+            if (segment.dirty) {
+                segment.buffer.force();
+                segment.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Forces the records to the disk, writes the index and stops the background task,
+     * the repository must not be used afterwards
+     */
+    @Override
+    public void close() {
+        syncer.shutdownNow();
+
+        synchronized (this) {
+            this.flush();
+            this.writeIndex();
+            closed = true;
+        }
+    }
+
+    /**
+     * Opens the segment files of the directory, in the order in which they were started
+     *
+     * @throws IOException if the directory or a segment could not be read
+     */
+    private void openSegments() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directoryPath,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    segments.put(number, new Segment(number, path,
+                            channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size())));
+                }
+            }
+        }
+
+        if (!segments.isEmpty())
+            activeSegment = segments.lastEntry().getValue();
+    }
+
+    /**
+     * Starts a new segment, which becomes the active one
+     *
+     * @param capacity the size of the segment file
+     * @throws IOException if the segment file could not be created
+     */
+    private void startSegment(int capacity) throws IOException {
+        int number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directoryPath.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            activeSegment = new Segment(number, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+        segments.put(number, activeSegment);
+    }
+
+    /**
+     * Reads the records of a segment from a position and applies them to the index
+     * The reading stops at the end of the written part, or at the first record which is torn or corrupted
+     *
+     * @param segment the segment
+     * @param start   the position of the first record
+     * @return the position after the last valid record
+     */
+    private int scanSegment(Segment segment, int start) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = start;
+
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < 1 + Long.BYTES || length > buffer.capacity() - position - RECORD_HEADER_SIZE)
+                break;
+
+            byte[] payload = new byte[length];
+            buffer.get(position + RECORD_HEADER_SIZE, payload);
+            if (buffer.getInt(position + Integer.BYTES) != checksum(payload))
+                break;
+
+            ByteBuffer record = ByteBuffer.wrap(payload);
+            byte type = record.get();
+            long id = record.getLong();
+            long location = locationOf(segment.number, position);
+            idAllocator.observe(id);
+            if (type == SAVED) {
+                this.applySaved(id, record.getLong(), record.getLong(), record.getLong(), record.getInt(), location);
+            } else if (type == DELETED)
+                this.applyDeleted(id, location);
+            else
+                break;
+
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        return position;
+    }
+
+    /**
+     * Clears the bytes of the active segment after its written part, so that the parts of records which were
+     * not completely written before a crash can not be read as records after new records are appended
+     *
+     * @param segment the active segment
+     */
+    private void clearTail(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        byte[] zeros = new byte[1 << 12];
+
+        for (int position = segment.writePosition; position < buffer.capacity(); position += zeros.length) {
+            int length = Math.min(zeros.length, buffer.capacity() - position);
+            boolean clean = true;
+            for (int i = position; i < position + length && clean; i++)
+                clean = buffer.get(i) == 0;
+            if (!clean) {
+                buffer.put(position, zeros, 0, length);
+                segment.dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Records that a message was saved or updated at a location
+     *
+     * @param id          the id of the message
+     * @param fromUser    the id of the sender
+     * @param toUser      the id of the receiver
+     * @param epochSecond the sent date, in epoch seconds (UTC)
+     * @param nano        the fraction of a second of the sent date, in nanoseconds
+     * @param location    the location of the record
+     */
+    private void applySaved(long id, long fromUser, long toUser, long epochSecond, int nano, long location) {
+        highestId = Math.max(highestId, id);
+        MessageKey key = messageKeys.get(id);
+        if (key != null) {
+            this.addGarbage(key.location);
+            if (key.epochSecond == epochSecond && key.nano == nano && this.conversationOf(key).equals(
+                    new ConversationKey(fromUser, toUser))) {
+                key.location = location;
+                return;
+            }
+            // the record belongs to another message with the same id, left by an older version of the log
+            this.removeFromConversation(key);
+        }
+
+        key = new MessageKey(epochSecond, nano, id, location);
+        messageKeys.put(id, key);
+        lastId = Math.max(lastId, id);
+        conversations.computeIfAbsent(new ConversationKey(fromUser, toUser), conversation -> new TreeSet<>()).add(key);
+    }
+
+    /**
+     * Records that a message was deleted, the delete record itself only matters for the older segments
+     *
+     * @param id       the id of the message
+     * @param location the location of the delete record
+     */
+    private void applyDeleted(long id, long location) {
+        highestId = Math.max(highestId, id);
+        MessageKey key = messageKeys.remove(id);
+        this.addGarbage(location);
+        if (key == null)
+            return;
+
+        this.removeFromConversation(key);
+        this.addGarbage(key.location);
+    }
+
+    /**
+     * Removes the key of a message from the index of its conversation
+     *
+     * @param key the key, whose location is still the one of the newest record of the message
+     */
+    private void removeFromConversation(MessageKey key) {
+        ConversationKey conversationKey = this.conversationOf(key);
+        TreeSet<MessageKey> keys = conversations.get(conversationKey);
+        keys.remove(key);
+        if (keys.isEmpty())
+            conversations.remove(conversationKey);
+    }
+
+    /**
+     * Gets the conversation of a message from its newest record
+     *
+     * @param key the key of the message
+     * @return the pair of users of the conversation
+     */
+    private ConversationKey conversationOf(MessageKey key) {
+        MappedByteBuffer buffer = segments.get(segmentOf(key.location)).buffer;
+        int position = offsetOf(key.location) + RECORD_HEADER_SIZE + 1 + Long.BYTES;
+
+        return new ConversationKey(buffer.getLong(position), buffer.getLong(position + Long.BYTES));
+    }
+
+    /**
+     * Counts the record at a location as no longer needed
+     *
+     * @param location the location of the record
+     */
+    private void addGarbage(long location) {
+        Segment segment = segments.get(segmentOf(location));
+        segment.garbageBytes += RECORD_HEADER_SIZE + segment.buffer.getInt(offsetOf(location));
+    }
+
+    /**
+     * Appends a record to the active segment, starting a new segment if the record does not fit
+     *
+     * @param payload the payload of the record
+     * @return the location of the record
+     */
+    private long append(byte[] payload) {
+        int size = RECORD_HEADER_SIZE + payload.length;
+
+        try {
+            if (activeSegment == null || activeSegment.writePosition + size > activeSegment.buffer.capacity())
+                this.startSegment(Math.max(segmentSize, size));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create a segment in " + directoryPath, e);
+        }
+
+        int position = activeSegment.writePosition;
+        activeSegment.buffer.put(position + RECORD_HEADER_SIZE, payload);
+        activeSegment.buffer.putInt(position + Integer.BYTES, checksum(payload));
+        activeSegment.buffer.putInt(position, payload.length);
+        activeSegment.writePosition += size;
+        activeSegment.dirty = true;
+
+        return locationOf(activeSegment.number, position);
+    }
+
+    /**
+     * Compacts a segment if it is full and at least half of its bytes are records which are no longer needed
+     * The live records are appended again and forced to the disk, then the segment file is removed.
+     * The delete records are kept while there is an older segment, which may still hold the deleted message
+     *
+     * @param number the number of the segment
+     */
+    private void compactIfNeeded(int number) {
+        Segment segment = segments.get(number);
+        if (segment == null || segment == activeSegment ||
+                segment.garbageBytes < COMPACTION_GARBAGE_RATIO * segment.writePosition)
+            return;
+
+        boolean olderSegments = segments.firstKey() < number;
+        MappedByteBuffer buffer = segment.buffer;
+        for (int position = 0; position < segment.writePosition; ) {
+            int length = buffer.getInt(position);
+            long location = locationOf(number, position);
+            byte type = buffer.get(position + RECORD_HEADER_SIZE);
+            long id = buffer.getLong(position + RECORD_HEADER_SIZE + 1);
+
+            MessageKey key = type == SAVED ? messageKeys.get(id) : null;
+            boolean live = type == SAVED ? key != null && key.location == location
+                    : olderSegments && !messageKeys.containsKey(id);
+            if (live) {
+                byte[] payload = new byte[length];
+                buffer.get(position + RECORD_HEADER_SIZE, payload);
+                long newLocation = this.append(payload);
+                if (key != null)
+                    key.location = newLocation;
+                else
+                    this.addGarbage(newLocation);
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+
+        this.flush();
+        segments.remove(number);
+        try {
+            Files.delete(segment.path);
+        } catch (IOException e) {
+            System.err.println("Could not delete file " + segment.path);
+            e.printStackTrace();
+        }
+        this.writeIndex();
+    }
+
+    /**
+     * Loads the index file, then applies the records appended after it was written
+     *
+     * @return false if there is no index or it does not match the segments, in which case it must be rebuilt
+     */
+    private boolean loadIndex() {
+        Path indexPath = directoryPath.resolve(INDEX_FILE);
+        if (!Files.exists(indexPath))
+            return false;
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != INDEX_MAGIC || buffer.getShort() != INDEX_VERSION)
+                return false;
+
+            buffer.getShort();
+            highestId = buffer.getLong();
+            idAllocator.observe(highestId);
+            int segmentCount = buffer.getInt();
+            if (segmentCount > segments.size())
+                return false;
+
+            List<Segment> indexedSegments = new ArrayList<>(segmentCount);
+            for (int i = 0; i < segmentCount; i++) {
+                Segment segment = segments.get(buffer.getInt());
+                int writePosition = buffer.getInt();
+                long garbageBytes = buffer.getLong();
+                if (segment == null || writePosition > segment.buffer.capacity())
+                    return false;
+
+                segment.writePosition = writePosition;
+                segment.garbageBytes = garbageBytes;
+                indexedSegments.add(segment);
+            }
+
+            int entryCount = buffer.getInt();
+            ConversationKey lastConversationKey = null;
+            TreeSet<MessageKey> conversationKeys = null;
+            for (int i = 0; i < entryCount; i++) {
+                ConversationKey conversationKey = new ConversationKey(buffer.getLong(), buffer.getLong());
+                MessageKey key = new MessageKey(buffer.getLong(), buffer.getInt(), buffer.getLong(), buffer.getLong());
+                if (!segments.containsKey(segmentOf(key.location)))
+                    return false;
+
+                idAllocator.observe(key.id);
+                messageKeys.put(key.id, key);
+                lastId = Math.max(lastId, key.id);
+                if (!conversationKey.equals(lastConversationKey)) {
+                    conversationKeys = conversations.computeIfAbsent(conversationKey, conversation -> new TreeSet<>());
+                    lastConversationKey = conversationKey;
+                }
+                conversationKeys.add(key);
+            }
+
+            // the records appended after the index was written, in the indexed segments and in the newer ones
+            for (Segment segment : segments.values())
+                segment.writePosition = this.scanSegment(segment,
+                        indexedSegments.contains(segment) ? segment.writePosition : 0);
+
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Forgets everything loaded from the index, before it is rebuilt from the segments
+     */
+    private void clearIndex() {
+        messageKeys.clear();
+        conversations.clear();
+        lastId = 0;
+        highestId = 0;
+        for (Segment segment : segments.values()) {
+            segment.writePosition = 0;
+            segment.garbageBytes = 0;
+        }
+    }
+
+    /**
+     * Writes the index file: the highest id ever used, the written size of every segment, then the location
+     * of every message ordered by (user pair, sent date, id)
+     */
+    private void writeIndex() {
+        Path indexPath = directoryPath.resolve(INDEX_FILE);
+        Path temporaryPath = directoryPath.resolve(INDEX_FILE + TEMPORARY_SUFFIX);
+        int entryCount = 0;
+        for (TreeSet<MessageKey> keys : conversations.values())
+            entryCount += keys.size();
+        int size = 3 * Integer.BYTES + 2 * Short.BYTES + Long.BYTES
+                + segments.size() * (2 * Integer.BYTES + Long.BYTES)
+                + entryCount * (5 * Long.BYTES + Integer.BYTES);
+
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(INDEX_MAGIC).putShort(INDEX_VERSION).putShort((short) 0).putLong(highestId)
+                    .putInt(segments.size());
+            for (Segment segment : segments.values())
+                buffer.putInt(segment.number).putInt(segment.writePosition).putLong(segment.garbageBytes);
+
+            buffer.putInt(entryCount);
+            for (Map.Entry<ConversationKey, TreeSet<MessageKey>> conversation : conversations.entrySet()) {
+                for (MessageKey key : conversation.getValue()) {
+                    buffer.putLong(conversation.getKey().lowUser).putLong(conversation.getKey().highUser);
+                    buffer.putLong(key.epochSecond).putInt(key.nano).putLong(key.id).putLong(key.location);
+                }
+            }
+            buffer.force();
+        } catch (IOException e) {
+            System.err.println("Could not write to file " + indexPath);
+            e.printStackTrace();
+            return;
+        }
+
+        try {
+            try {
+                Files.move(temporaryPath, indexPath, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write to file " + indexPath);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads messages of a conversation
+     *
+     * @param keys     the keys of the messages, in the order in which they are read
+     * @param count    the maximum number of messages
+     * @param reversed true if the keys go from the newest message, the result is then reversed
+     * @return the messages in chronological order
+     */
+    private List<Message> readMessages(Iterator<MessageKey> keys, int count, boolean reversed) {
+        List<Message> messages = new ArrayList<>();
+        while (keys.hasNext() && messages.size() < count)
+            messages.add(this.readMessage(keys.next().location));
+
+        if (reversed)
+            Collections.reverse(messages);
+
+        return messages;
+    }
+
+    /**
+     * Reads the message saved at a location
+     *
+     * @param location the location of the record
+     * @return the message
+     */
+    private Message readMessage(long location) {
+        MappedByteBuffer buffer = segments.get(segmentOf(location)).buffer;
+        int position = offsetOf(location) + RECORD_HEADER_SIZE + 1;
+
+        long id = buffer.getLong(position);
+        long fromUser = buffer.getLong(position + Long.BYTES);
+        long toUser = buffer.getLong(position + 2 * Long.BYTES);
+        LocalDateTime sentDate = LocalDateTime.ofEpochSecond(buffer.getLong(position + 3 * Long.BYTES),
+                buffer.getInt(position + 4 * Long.BYTES), ZoneOffset.UTC);
+        byte[] body = new byte[buffer.getInt(position + 4 * Long.BYTES + Integer.BYTES)];
+        buffer.get(position + 4 * Long.BYTES + 2 * Integer.BYTES, body);
+
+        Message message = new Message(fromUser, toUser, new String(body, StandardCharsets.UTF_8), sentDate);
+        message.setId(id);
+
+        return message;
+    }
+
+    /**
+     * Creates the payload of the record of a saved or updated message
+     *
+     * @param message the message
+     * @return the payload
+     */
+    private static byte[] encodeSaved(Message message) {
+        byte[] body = message.getMessageBody().getBytes(StandardCharsets.UTF_8);
+
+        return ByteBuffer.allocate(1 + 4 * Long.BYTES + 2 * Integer.BYTES + body.length)
+                .put(SAVED)
+                .putLong(message.getId())
+                .putLong(message.getFromUser())
+                .putLong(message.getToUser())
+                .putLong(message.getSentDate().toEpochSecond(ZoneOffset.UTC))
+                .putInt(message.getSentDate().getNano())
+                .putInt(body.length)
+                .put(body)
+                .array();
+    }
+
+    /**
+     * Creates the payload of the record of a deleted message
+     *
+     * @param id the id of the message
+     * @return the payload
+     */
+    private static byte[] encodeDeleted(long id) {
+        return ByteBuffer.allocate(1 + Long.BYTES).put(DELETED).putLong(id).array();
+    }
+
+    /**
+     * Computes the checksum of a record payload
+     *
+     * @param payload the payload
+     * @return the CRC32 of the payload, as an int
+     */
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Combines a segment number and a position in the segment into a location
+     *
+     * @param number   the number of the segment
+     * @param position the position of the record in the segment
+     * @return the location
+     */
+    private static long locationOf(int number, int position) {
+        return (long) number << 32 | position;
+    }
+
+    /**
+     * Gets the segment number of a location
+     *
+     * @param location the location
+     * @return the number of the segment
+     */
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    /**
+     * Gets the position in its segment of a location
+     *
+     * @param location the location
+     * @return the position of the record in the segment
+     */
+    private static int offsetOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * A segment file, memory mapped, with the size of its written part and of its records which are no longer needed
+     */
+    private static final class Segment {
+        private final int number;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long garbageBytes;
+        private boolean dirty;
+
+        private Segment(int number, Path path, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * The pair of users of a conversation, in increasing order of their ids
+     */
+    private static final class ConversationKey implements Comparable<ConversationKey> {
+        private final long lowUser;
+        private final long highUser;
+
+        private ConversationKey(long firstUser, long secondUser) {
+            this.lowUser = Math.min(firstUser, secondUser);
+            this.highUser = Math.max(firstUser, secondUser);
+        }
+
+        @Override
+        public int compareTo(ConversationKey other) {
+            int result = Long.compare(lowUser, other.lowUser);
+
+            return result != 0 ? result : Long.compare(highUser, other.highUser);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ConversationKey that = (ConversationKey) o;
+            return lowUser == that.lowUser && highUser == that.highUser;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(lowUser) * 31 + Long.hashCode(highUser);
+        }
+    }
+
+    /**
+     * The position of a message in its conversation, the messages are ordered by (sent date, id),
+     * together with the location of its newest record
+     */
+    private static final class MessageKey implements Comparable<MessageKey> {
+        private final long epochSecond;
+        private final int nano;
+        private final long id;
+        private long location;
+
+        private MessageKey(long epochSecond, int nano, long id, long location) {
+            this.epochSecond = epochSecond;
+            this.nano = nano;
+            this.id = id;
+            this.location = location;
+        }
+
+        private MessageKey(LocalDateTime sentDate, long id) {
+            this(sentDate.toEpochSecond(ZoneOffset.UTC), sentDate.getNano(), id, -1);
+        }
+
+        @Override
+        public int compareTo(MessageKey other) {
+            int result = Long.compare(epochSecond, other.epochSecond);
+            if (result == 0)
+                result = Integer.compare(nano, other.nano);
+
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
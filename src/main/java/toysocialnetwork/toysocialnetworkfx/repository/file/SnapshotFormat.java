@@ -0,0 +1,17 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+/**
+ * The formats in which a file repository can write its snapshot
+ * The format of an existing snapshot is detected when it is loaded, so changing the format of a repository
+ * converts its snapshot at the next compaction
+ */
+public enum SnapshotFormat {
+    /**
+     * One line of semicolon separated attributes per entity, readable and editable by hand
+     */
+    CSV,
+    /**
+     * The versioned binary format of {@link BinarySnapshotWriter}, smaller and faster to load
+     */
+    BINARY
+}
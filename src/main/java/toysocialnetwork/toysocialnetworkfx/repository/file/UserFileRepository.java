@@ -2,6 +2,7 @@ package toysocialnetwork.toysocialnetworkfx.repository.file;
 
 import toysocialnetwork.toysocialnetworkfx.domain.User;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.Validator;
+import toysocialnetwork.toysocialnetworkfx.repository.memory.HiLoIdAllocator;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -17,7 +18,21 @@ public class UserFileRepository extends FileRepository<Long, User> {
      * @param filePath  the path for the file containing the users
      */
     public UserFileRepository(Validator<User> validator, String filePath) {
-        super(validator, filePath);
+        super(validator, new HiLoIdAllocator(), filePath);
+    }
+
+    /**
+     * Constructor for UserFileRepository
+     *
+     * @param validator           a validator for the users stored in the repository
+     * @param filePath            the path for the file containing the users
+     * @param snapshotFormat      the format in which the snapshot is written
+     * @param syncIntervalMillis  the time between two forces of the journal to the disk, in milliseconds
+     * @param compactionThreshold the smallest number of journal records which triggers a compaction
+     */
+    public UserFileRepository(Validator<User> validator, String filePath, SnapshotFormat snapshotFormat,
+                              long syncIntervalMillis, int compactionThreshold) {
+        super(validator, new HiLoIdAllocator(), filePath, snapshotFormat, syncIntervalMillis, compactionThreshold);
     }
 
     @Override
@@ -25,7 +40,7 @@ public class UserFileRepository extends FileRepository<Long, User> {
         User user = new User(attributes.get(1), attributes.get(2), attributes.get(3), attributes.get(4));
         user.setId(Long.parseLong(attributes.get(0)));
 
-        if (attributes.size() > 3) { // if we have a list of friends
+        if (attributes.size() > 5 && !attributes.get(5).isEmpty()) { // if we have a list of friends
             String[] friendIds = attributes.get(5).split(",");
             for (String stringId : friendIds)
                 user.addFriend(Long.parseLong(stringId));
@@ -44,4 +59,29 @@ public class UserFileRepository extends FileRepository<Long, User> {
         return entity.getId() + ";" + entity.getUsername() + ";" + entity.getFirstName() + ";" + entity.getLastName()
                 + ";" + entity.getPassword() + ";" + friendsListString;
     }
+
+    @Override
+    protected Object naturalKeyOf(User entity) {
+        return entity.getUsername();
+    }
+
+    @Override
+    protected User readEntityFrom(BinarySnapshotReader reader) {
+        long id = reader.readLong();
+        User user = new User(reader.readString(), reader.readString(), reader.readString(), reader.readString());
+        user.setId(id);
+        user.setFriends(reader.readLongList());
+
+        return user;
+    }
+
+    @Override
+    protected void writeEntityTo(BinarySnapshotWriter writer, User entity) {
+        writer.writeLong(entity.getId());
+        writer.writeString(entity.getUsername());
+        writer.writeString(entity.getFirstName());
+        writer.writeString(entity.getLastName());
+        writer.writeString(entity.getPassword());
+        writer.writeLongList(entity.getFriends());
+    }
 }
@@ -0,0 +1,70 @@
+package toysocialnetwork.toysocialnetworkfx.repository.memory;
+
+/**
+ * Hi/lo id allocator for Long ids
+ * <p>
+ * Blocks of consecutive ids are reserved above a high water mark, which is raised by every observed id,
+ * and the ids inside a block are then handed out in order. Generating an id is therefore O(1).
+ * The methods are synchronized, so the ids stay unique when several writers use the same allocator.
+ */
+public class HiLoIdAllocator implements IdAllocator<Long> {
+    /**
+     * The default number of ids reserved at once
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final int blockSize;
+    private long highWaterMark;
+    private long nextId;
+    private long blockEnd;
+
+    /**
+     * Constructor for HiLoIdAllocator, the generated ids start from 1
+     *
+     * @param blockSize the number of ids reserved at once, must be positive
+     * @throws IllegalArgumentException if the block size is not positive
+     */
+    public HiLoIdAllocator(int blockSize) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Block size must be positive");
+
+        this.blockSize = blockSize;
+        this.highWaterMark = 0;
+        this.nextId = 1;
+        this.blockEnd = 0;
+    }
+
+    /**
+     * Constructor for HiLoIdAllocator with the default block size
+     */
+    public HiLoIdAllocator() {
+        this(DEFAULT_BLOCK_SIZE);
+    }
+
+    @Override
+    public synchronized Long nextId() {
+        if (nextId > blockEnd)
+            reserveBlock();
+
+        return nextId++;
+    }
+
+    @Override
+    public synchronized void observe(Long id) {
+        if (id == null)
+            return;
+
+        highWaterMark = Math.max(highWaterMark, id);
+        if (id >= nextId) // the rest of the current block may collide with the id
+            blockEnd = nextId - 1;
+    }
+
+    /**
+     * Reserves the next block of ids above the high water mark
+     */
+    private void reserveBlock() {
+        nextId = highWaterMark + 1;
+        highWaterMark += blockSize;
+        blockEnd = highWaterMark;
+    }
+}
@@ -0,0 +1,23 @@
+package toysocialnetwork.toysocialnetworkfx.repository.memory;
+
+/**
+ * Generates ids for the entities stored in memory
+ *
+ * @param <ID> the type of the id
+ */
+public interface IdAllocator<ID> {
+    /**
+     * Generates a new id, different from all the ids generated or observed before
+     *
+     * @return the id
+     */
+    ID nextId();
+
+    /**
+     * Registers an id which was assigned outside the allocator (e.g. an id loaded from a file),
+     * so it will never be generated
+     *
+     * @param id the id
+     */
+    void observe(ID id);
+}
@@ -10,23 +10,40 @@ import java.util.Optional;
 
 /**
  * Generic in memory repository for generic entities with a generic id
+ * Besides the entities by id, the repository keeps the id of every entity by its natural key,
+ * so finding an entity by value and checking for duplicates take constant time
  *
  * @param <ID> the type of the id
  * @param <E>  the type of the entity, it must extend Entity
  */
 public abstract class InMemoryRepository<ID, E extends Entity<ID>> implements Repository<ID, E> {
     private final Map<ID, E> entities;
+    private final Map<Object, ID> idsByNaturalKey;
     private final Validator<E> validator;
+    private final IdAllocator<ID> idAllocator;
     private ID lastId;
 
     /**
      * Constructor for InMemoryRepository
      *
-     * @param validator a validator for the entities stored in the repository
+     * @param validator   a validator for the entities stored in the repository
+     * @param idAllocator the allocator used for the entities saved without an id, may be null if the ids
+     *                    are always provided by the caller
      */
-    public InMemoryRepository(Validator<E> validator) {
+    public InMemoryRepository(Validator<E> validator, IdAllocator<ID> idAllocator) {
         this.validator = validator;
+        this.idAllocator = idAllocator;
         this.entities = new HashMap<>();
+        this.idsByNaturalKey = new HashMap<>();
+    }
+
+    /**
+     * Constructor for InMemoryRepository without an id allocator
+     *
+     * @param validator a validator for the entities stored in the repository
+     */
+    public InMemoryRepository(Validator<E> validator) {
+        this(validator, null);
     }
 
     @Override
@@ -42,12 +59,9 @@ public abstract class InMemoryRepository<ID, E extends Entity<ID>> implements Re
         if (entity == null)
             throw new IllegalArgumentException("Entity must not be null");
 
-        for (E e : entities.values()) {
-            if (e.equals(entity))
-                return Optional.of(e);
-        }
+        ID id = idsByNaturalKey.get(this.naturalKeyOf(entity));
 
-        return Optional.empty();
+        return id == null ? Optional.empty() : Optional.of(entities.get(id));
     }
 
     @Override
@@ -61,8 +75,16 @@ public abstract class InMemoryRepository<ID, E extends Entity<ID>> implements Re
             throw new IllegalArgumentException("Entity must not be null");
 
         validator.validate(entity);
-        if (!entities.containsKey(entity.getId()) && this.findByValue(entity).isEmpty()) {
+        if (entity.getId() != null && idAllocator != null)
+            idAllocator.observe(entity.getId());
+
+        Object naturalKey = this.naturalKeyOf(entity);
+        if (!entities.containsKey(entity.getId()) && !idsByNaturalKey.containsKey(naturalKey)) {
+            if (entity.getId() == null && idAllocator != null)
+                entity.setId(idAllocator.nextId());
+
             entities.put(entity.getId(), entity);
+            idsByNaturalKey.put(naturalKey, entity.getId());
             lastId = entity.getId();
 
             return Optional.empty();
@@ -77,9 +99,12 @@ public abstract class InMemoryRepository<ID, E extends Entity<ID>> implements Re
             throw new IllegalArgumentException("Entity must not be null");
 
         validator.validate(entity);
-        if (entities.containsKey(entity.getId()) &&
-                (this.findByValue(entity).isEmpty() || this.findByValue(entity).get().getId().equals(entity.getId()))) {
-            entities.put(entity.getId(), entity);
+        Object naturalKey = this.naturalKeyOf(entity);
+        ID sameValueId = idsByNaturalKey.get(naturalKey);
+        if (entities.containsKey(entity.getId()) && (sameValueId == null || sameValueId.equals(entity.getId()))) {
+            E old = entities.put(entity.getId(), entity);
+            idsByNaturalKey.remove(this.naturalKeyOf(old), entity.getId());
+            idsByNaturalKey.put(naturalKey, entity.getId());
 
             return Optional.empty();
         }
@@ -92,10 +117,84 @@ public abstract class InMemoryRepository<ID, E extends Entity<ID>> implements Re
         if (id == null)
             throw new IllegalArgumentException("Id must not be null");
 
-        if (entities.containsKey(id))
-            return Optional.ofNullable(entities.remove(id));
+        E removed = entities.remove(id);
+        if (removed != null)
+            idsByNaturalKey.remove(this.naturalKeyOf(removed), id);
+
+        return Optional.ofNullable(removed);
+    }
+
+    /**
+     * Stores entities which were already validated, in order, like consecutive calls of save
+     * The entities whose id or value is already stored are skipped
+     *
+     * @param validated the validated entities
+     */
+    protected void saveAllValidated(Iterable<E> validated) {
+        for (E entity : validated) {
+            if (entity.getId() != null && idAllocator != null)
+                idAllocator.observe(entity.getId());
+
+            Object naturalKey = this.naturalKeyOf(entity);
+            if (entities.containsKey(entity.getId()) || idsByNaturalKey.containsKey(naturalKey))
+                continue;
+
+            if (entity.getId() == null && idAllocator != null)
+                entity.setId(idAllocator.nextId());
+
+            entities.put(entity.getId(), entity);
+            idsByNaturalKey.put(naturalKey, entity.getId());
+            lastId = entity.getId();
+        }
+    }
+
+    /**
+     * Stores an entity as it is, replacing the entity with the same id, without validating it
+     * or checking its value; used to restore entities which were checked when they were first stored
+     *
+     * @param entity the entity, with its id
+     */
+    protected void restore(E entity) {
+        if (idAllocator != null)
+            idAllocator.observe(entity.getId());
+
+        E old = entities.put(entity.getId(), entity);
+        if (old != null)
+            idsByNaturalKey.remove(this.naturalKeyOf(old), entity.getId());
+        idsByNaturalKey.put(this.naturalKeyOf(entity), entity.getId());
+        lastId = entity.getId();
+    }
+
+    /**
+     * Removes the entity with an id, if there is one; used to restore deletions
+     *
+     * @param id the id
+     */
+    protected void discard(ID id) {
+        E removed = entities.remove(id);
+        if (removed != null)
+            idsByNaturalKey.remove(this.naturalKeyOf(removed), id);
+    }
 
-        return Optional.empty();
+    /**
+     * Gets the natural key of an entity: the values which make two entities equal, as an object whose equals
+     * and hashCode compare them. The key is kept while the entity is stored, so it must not change with the entity
+     * By default it is the entity itself, which is enough when the fields compared by equals are final
+     *
+     * @param entity the entity
+     * @return the natural key
+     */
+    protected Object naturalKeyOf(E entity) {
+        return entity;
+    }
+
+    /**
+     * Getter for validator
+     *
+     * @return the validator of the stored entities
+     */
+    protected Validator<E> getValidator() {
+        return validator;
     }
 
     @Override
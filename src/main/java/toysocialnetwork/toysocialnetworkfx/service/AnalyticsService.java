@@ -0,0 +1,323 @@
+package toysocialnetwork.toysocialnetworkfx.service;
+
+import javafx.util.Pair;
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.UserScore;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserScoreDTO;
+import toysocialnetwork.toysocialnetworkfx.repository.UserCommunityRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserScoreRepository;
+import toysocialnetwork.toysocialnetworkfx.service.graph.BetweennessResult;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CentralityResult;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityAlgorithm;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityDetectionResult;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CsrGraph;
+import toysocialnetwork.toysocialnetworkfx.service.graph.Louvain;
+import toysocialnetwork.toysocialnetworkfx.service.graph.ParallelGraphAlgorithms;
+import toysocialnetwork.toysocialnetworkfx.service.graph.ProgressMonitor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Service for the batch analytics jobs over the friendship graph
+ * The influence job takes a CSR snapshot of the network, computes PageRank and eigenvector centrality
+ * with a parallel power iteration and replaces the stored scores in one transaction, so the top influencers
+ * are read from the database without recomputing the scores.
+ * The community detection job stores the community of every user the same way; an incremental run starts
+ * from the stored communities, so only the regions of the network which changed are recomputed
+ * and only the users whose community changed are written.
+ * The betweenness job finds the users which bridge the most shortest paths between the others; it counts
+ * the shortest paths from every user on small networks and from a random sample of users on large ones,
+ * reports its progress and can be cancelled, and its results are not stored
+ */
+public class AnalyticsService {
+    /**
+     * The default damping factor of PageRank
+     */
+    public static final double DEFAULT_DAMPING = 0.85;
+    /**
+     * The default convergence threshold, the L1 distance between two successive score vectors
+     */
+    public static final double DEFAULT_TOLERANCE = 1e-6;
+    /**
+     * The default maximum number of iterations
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+    /**
+     * The default error bound of the sampled betweenness centrality
+     */
+    public static final double DEFAULT_ERROR_BOUND = 0.05;
+    /**
+     * The default probability that the sampled betweenness centrality is within the error bound
+     */
+    public static final double DEFAULT_CONFIDENCE = 0.9;
+
+    private final UserRepository userRepository;
+    private final UserScoreRepository userScoreRepository;
+    private final UserCommunityRepository userCommunityRepository;
+    private final int parallelism;
+
+    /**
+     * Constructor for AnalyticsService
+     *
+     * @param userRepository          reference to the user repository
+     * @param userScoreRepository     reference to the user score repository
+     * @param userCommunityRepository reference to the user community repository
+     * @param parallelism             the number of threads used by the jobs
+     * @throws IllegalArgumentException if the number of threads is not positive
+     */
+    public AnalyticsService(UserRepository userRepository, UserScoreRepository userScoreRepository,
+                            UserCommunityRepository userCommunityRepository, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+
+        this.userRepository = userRepository;
+        this.userScoreRepository = userScoreRepository;
+        this.userCommunityRepository = userCommunityRepository;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Computes the PageRank and the eigenvector centrality of all the users and stores them,
+     * replacing the previous scores
+     *
+     * @param damping       the PageRank damping factor, between 0 and 1
+     * @param tolerance     the convergence threshold
+     * @param maxIterations the maximum number of iterations of each algorithm
+     * @return the summary of the run
+     * @throws ServiceException if the parameters are invalid or the scores could not be stored
+     */
+    public InfluenceJobResult runInfluenceJob(double damping, double tolerance, int maxIterations) {
+        if (damping < 0 || damping > 1)
+            throw new ServiceException("The damping factor must be between 0 and 1\n");
+        if (tolerance <= 0)
+            throw new ServiceException("The tolerance must be positive\n");
+        if (maxIterations < 1)
+            throw new ServiceException("The maximum number of iterations must be positive\n");
+
+        long start = System.nanoTime();
+        CsrGraph graph = createGraph();
+
+        CentralityResult pageRank;
+        CentralityResult eigenvector;
+        try (ParallelGraphAlgorithms algorithms = new ParallelGraphAlgorithms(parallelism)) {
+            pageRank = algorithms.getPageRank(graph, damping, tolerance, maxIterations);
+            eigenvector = algorithms.getEigenvectorCentrality(graph, tolerance, maxIterations);
+        }
+
+        LocalDateTime computedAt = LocalDateTime.now();
+        List<UserScore> scores = new ArrayList<>(graph.getVertexCount());
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++)
+            scores.add(new UserScore(graph.getId(vertex), pageRank.getScore(vertex), eigenvector.getScore(vertex),
+                    computedAt));
+
+        long computed = System.nanoTime();
+
+        if (!userScoreRepository.replaceAll(scores))
+            throw new ServiceException("The scores could not be stored\n");
+
+        long stored = System.nanoTime();
+
+        return new InfluenceJobResult(graph.getVertexCount(), pageRank.getIterations(), pageRank.isConverged(),
+                eigenvector.getIterations(), eigenvector.isConverged(), (computed - start) / 1_000_000,
+                (stored - computed) / 1_000_000);
+    }
+
+    /**
+     * Gets the users with the largest stored PageRank
+     *
+     * @param count the number of users
+     * @return the scores together with the users, from the largest PageRank
+     * @throws ServiceException if the number of users is not positive
+     */
+    public List<UserScoreDTO> getTopByPageRank(int count) {
+        if (count < 1)
+            throw new ServiceException("The number of users must be positive\n");
+
+        return userScoreRepository.findTopByPageRank(count);
+    }
+
+    /**
+     * Gets the users with the largest stored eigenvector centrality
+     *
+     * @param count the number of users
+     * @return the scores together with the users, from the largest eigenvector centrality
+     * @throws ServiceException if the number of users is not positive
+     */
+    public List<UserScoreDTO> getTopByEigenvectorCentrality(int count) {
+        if (count < 1)
+            throw new ServiceException("The number of users must be positive\n");
+
+        return userScoreRepository.findTopByEigenvectorCentrality(count);
+    }
+
+    /**
+     * Detects the communities of the network and stores them
+     * A full run replaces all the stored communities. An incremental run starts from the stored communities
+     * (the new users start alone), so only the changed regions of the network move, and only writes
+     * the users whose community changed; it falls back to a full run if no communities are stored
+     *
+     * @param algorithm   the algorithm used to detect the communities
+     * @param incremental true to start from the stored communities
+     * @return the summary of the run
+     * @throws ServiceException if the communities could not be stored
+     */
+    public CommunityJobResult runCommunityDetection(CommunityAlgorithm algorithm, boolean incremental) {
+        long start = System.nanoTime();
+        CsrGraph graph = createGraph();
+        int n = graph.getVertexCount();
+
+        Map<Long, Long> storedCommunities = incremental ? userCommunityRepository.findAll() : new HashMap<>();
+        boolean warmStart = !storedCommunities.isEmpty();
+
+        int[] initialLabels = null;
+        if (warmStart) {
+            // every stored community is labelled with the first of its users which still exists
+            Map<Long, Integer> communityLabels = new HashMap<>();
+            initialLabels = new int[n];
+            for (int vertex = 0; vertex < n; vertex++) {
+                Long communityId = storedCommunities.get(graph.getId(vertex));
+                if (communityId == null) {
+                    initialLabels[vertex] = vertex;
+                    continue;
+                }
+
+                Integer label = communityLabels.putIfAbsent(communityId, vertex);
+                initialLabels[vertex] = label == null ? vertex : label;
+            }
+        }
+
+        CommunityDetectionResult result;
+        if (algorithm == CommunityAlgorithm.LOUVAIN)
+            result = new Louvain(Louvain.DEFAULT_RESOLUTION, Louvain.DEFAULT_MAX_LEVELS).detect(graph, initialLabels);
+        else
+            try (ParallelGraphAlgorithms algorithms = new ParallelGraphAlgorithms(parallelism)) {
+                result = algorithms.getLabelPropagation(graph, initialLabels, DEFAULT_MAX_ITERATIONS);
+            }
+
+        Map<Long, Long> communities = new HashMap<>();
+        for (int vertex = 0; vertex < n; vertex++) {
+            long userId = graph.getId(vertex);
+            long communityId = graph.getId(result.getCommunity(vertex));
+            if (!warmStart || !Long.valueOf(communityId).equals(storedCommunities.get(userId)))
+                communities.put(userId, communityId);
+        }
+
+        long computed = System.nanoTime();
+
+        boolean saved = warmStart ? userCommunityRepository.saveAll(communities)
+                : userCommunityRepository.replaceAll(communities);
+        if (!saved)
+            throw new ServiceException("The communities could not be stored\n");
+
+        long stored = System.nanoTime();
+
+        return new CommunityJobResult(algorithm, warmStart, n, result.getCount(), result.getModularity(),
+                result.getIterations(), result.isConverged(), communities.size(), (computed - start) / 1_000_000,
+                (stored - computed) / 1_000_000);
+    }
+
+    /**
+     * Gets the users of the stored community of a user
+     *
+     * @param userId the id of the user
+     * @return the users of the community, sorted by id, empty if the user has no stored community
+     */
+    public List<User> getCommunityOf(Long userId) {
+        Optional<Long> communityId = userCommunityRepository.findCommunityOf(userId);
+        if (communityId.isEmpty())
+            return new ArrayList<>();
+
+        List<User> users = new ArrayList<>(userRepository.findAllById(userCommunityRepository.findMembersOf(communityId.get())));
+        users.sort(Comparator.comparing(User::getId));
+
+        return users;
+    }
+
+    /**
+     * Computes the betweenness centrality of all the users and finds the ones which bridge the most shortest paths
+     * With an error bound of 0 the shortest paths from all the users are counted; otherwise they are counted
+     * from a random sample of users, large enough to keep all the scores within the error bound with the given
+     * confidence, or from all the users if the network is not larger than the sample
+     *
+     * @param errorBound the largest allowed difference between an estimated score and the exact one, 0 for exact
+     * @param confidence the probability that all the scores are within the error bound
+     * @param count      the number of users with the largest scores to return
+     * @param monitor    the progress of the job, one step per counted user, which can cancel the job
+     * @return the summary of the run, with the users with the largest scores
+     * @throws ServiceException if the parameters are invalid or the job was cancelled
+     */
+    public BetweennessJobResult runBetweennessJob(double errorBound, double confidence, int count,
+                                                  ProgressMonitor monitor) {
+        if (!(errorBound >= 0 && errorBound <= 1))
+            throw new ServiceException("The error bound must be between 0 and 1\n");
+        if (!(confidence > 0 && confidence < 1))
+            throw new ServiceException("The confidence must be between 0 and 1\n");
+        if (count < 1)
+            throw new ServiceException("The number of users must be positive\n");
+
+        long start = System.nanoTime();
+        CsrGraph graph = createGraph();
+
+        BetweennessResult result;
+        try (ParallelGraphAlgorithms algorithms = new ParallelGraphAlgorithms(parallelism)) {
+            result = errorBound == 0 ? algorithms.getBetweennessCentrality(graph, monitor) :
+                    algorithms.getApproximateBetweennessCentrality(graph, errorBound, confidence,
+                            ThreadLocalRandom.current().nextLong(), monitor);
+        } catch (CancellationException e) {
+            throw new ServiceException("The job was cancelled\n");
+        }
+
+        // the vertices with the largest scores, the heap keeps the smallest of them on top
+        Comparator<Integer> byScore = Comparator.<Integer>comparingDouble(result::getScore)
+                .thenComparing(Comparator.reverseOrder());
+        PriorityQueue<Integer> top = new PriorityQueue<>(byScore);
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++) {
+            top.add(vertex);
+            if (top.size() > count)
+                top.poll();
+        }
+        List<Integer> vertices = new ArrayList<>(top);
+        vertices.sort(byScore.reversed());
+
+        List<Long> ids = new ArrayList<>();
+        for (int vertex : vertices)
+            ids.add(graph.getId(vertex));
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(ids))
+            users.put(user.getId(), user);
+
+        List<Pair<User, Double>> topUsers = new ArrayList<>();
+        for (int vertex : vertices) {
+            User user = users.get(graph.getId(vertex));
+            if (user != null)
+                topUsers.add(new Pair<>(user, result.getScore(vertex)));
+        }
+
+        long computed = System.nanoTime();
+
+        return new BetweennessJobResult(graph.getVertexCount(), result.getSourceCount(), result.isExact(),
+                result.getErrorBound(), result.getConfidence(), topUsers, (computed - start) / 1_000_000);
+    }
+
+    /**
+     * Takes a CSR snapshot of the friendship graph
+     *
+     * @return the graph of all the users
+     */
+    private CsrGraph createGraph() {
+        try (Stream<User> users = userRepository.streamAll()) {
+            return CsrGraph.fromUsers(users.toList());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package toysocialnetwork.toysocialnetworkfx.service;
+
+import javafx.util.Pair;
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+
+import java.util.List;
+
+/**
+ * Summary of a run of the betweenness centrality job, with the users which bridge the most shortest paths
+ */
+public final class BetweennessJobResult {
+    private final int userCount;
+    private final int sourceCount;
+    private final boolean exact;
+    private final double errorBound;
+    private final double confidence;
+    private final List<Pair<User, Double>> topUsers;
+    private final long computeMillis;
+
+    /**
+     * Constructor for BetweennessJobResult
+     *
+     * @param userCount     the number of users
+     * @param sourceCount   the number of users whose shortest paths were counted
+     * @param exact         true if the shortest paths of all the users were counted
+     * @param errorBound    the largest difference between an estimated score and the exact one, 0 if exact
+     * @param confidence    the probability that all the scores are within the error bound, 1 if exact
+     * @param topUsers      the users with the largest scores together with their scores, from the largest score
+     * @param computeMillis the time spent building the graph and computing the scores
+     */
+    public BetweennessJobResult(int userCount, int sourceCount, boolean exact, double errorBound, double confidence,
+                                List<Pair<User, Double>> topUsers, long computeMillis) {
+        this.userCount = userCount;
+        this.sourceCount = sourceCount;
+        this.exact = exact;
+        this.errorBound = errorBound;
+        this.confidence = confidence;
+        this.topUsers = topUsers;
+        this.computeMillis = computeMillis;
+    }
+
+    /**
+     * Getter for userCount
+     *
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Getter for sourceCount
+     *
+     * @return the number of users whose shortest paths were counted
+     */
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    /**
+     * Getter for exact
+     *
+     * @return true if the shortest paths of all the users were counted
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Getter for errorBound
+     *
+     * @return the largest difference between an estimated score and the exact one, 0 if exact
+     */
+    public double getErrorBound() {
+        return errorBound;
+    }
+
+    /**
+     * Getter for confidence
+     *
+     * @return the probability that all the scores are within the error bound, 1 if exact
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Getter for topUsers
+     *
+     * @return the users with the largest scores together with their scores, from the largest score
+     */
+    public List<Pair<User, Double>> getTopUsers() {
+        return topUsers;
+    }
+
+    /**
+     * Getter for computeMillis
+     *
+     * @return the time spent building the graph and computing the scores, in milliseconds
+     */
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    @Override
+    public String toString() {
+        String precision = exact ? "exact" :
+                String.format("sampled, within %s with probability %s", errorBound, confidence);
+
+        return String.format("%d users scored from the shortest paths of %d users (%s), computed in %d ms",
+                userCount, sourceCount, precision, computeMillis);
+    }
+}
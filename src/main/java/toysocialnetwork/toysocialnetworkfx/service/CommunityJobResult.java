@@ -0,0 +1,146 @@
+package toysocialnetwork.toysocialnetworkfx.service;
+
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityAlgorithm;
+
+/**
+ * Summary of a run of the community detection job
+ */
+public final class CommunityJobResult {
+    private final CommunityAlgorithm algorithm;
+    private final boolean incremental;
+    private final int userCount;
+    private final int communityCount;
+    private final double modularity;
+    private final int iterations;
+    private final boolean converged;
+    private final int changedUserCount;
+    private final long computeMillis;
+    private final long storeMillis;
+
+    /**
+     * Constructor for CommunityJobResult
+     *
+     * @param algorithm        the algorithm which detected the communities
+     * @param incremental      true if the run started from the stored communities
+     * @param userCount        the number of users
+     * @param communityCount   the number of communities
+     * @param modularity       the modularity of the communities
+     * @param iterations       the number of iterations (or levels) of the algorithm
+     * @param converged        true if the algorithm stopped before the iteration cap
+     * @param changedUserCount the number of users whose stored community changed
+     * @param computeMillis    the time spent building the graph and detecting the communities
+     * @param storeMillis      the time spent writing the communities
+     */
+    public CommunityJobResult(CommunityAlgorithm algorithm, boolean incremental, int userCount, int communityCount,
+                              double modularity, int iterations, boolean converged, int changedUserCount,
+                              long computeMillis, long storeMillis) {
+        this.algorithm = algorithm;
+        this.incremental = incremental;
+        this.userCount = userCount;
+        this.communityCount = communityCount;
+        this.modularity = modularity;
+        this.iterations = iterations;
+        this.converged = converged;
+        this.changedUserCount = changedUserCount;
+        this.computeMillis = computeMillis;
+        this.storeMillis = storeMillis;
+    }
+
+    /**
+     * Getter for algorithm
+     *
+     * @return the algorithm which detected the communities
+     */
+    public CommunityAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Getter for incremental
+     *
+     * @return true if the run started from the stored communities
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Getter for userCount
+     *
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Getter for communityCount
+     *
+     * @return the number of communities
+     */
+    public int getCommunityCount() {
+        return communityCount;
+    }
+
+    /**
+     * Getter for modularity
+     *
+     * @return the modularity of the communities
+     */
+    public double getModularity() {
+        return modularity;
+    }
+
+    /**
+     * Getter for iterations
+     *
+     * @return the number of iterations (or levels) of the algorithm
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Getter for converged
+     *
+     * @return true if the algorithm stopped before the iteration cap
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Getter for changedUserCount
+     *
+     * @return the number of users whose stored community changed
+     */
+    public int getChangedUserCount() {
+        return changedUserCount;
+    }
+
+    /**
+     * Getter for computeMillis
+     *
+     * @return the time spent building the graph and detecting the communities, in milliseconds
+     */
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    /**
+     * Getter for storeMillis
+     *
+     * @return the time spent writing the communities, in milliseconds
+     */
+    public long getStoreMillis() {
+        return storeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s: %d users in %d communities, modularity %.4f, %d iterations (%s), " +
+                        "%d users changed community, computed in %d ms, stored in %d ms",
+                algorithm, incremental ? " (incremental)" : "", userCount, communityCount, modularity,
+                iterations, converged ? "converged" : "not converged", changedUserCount, computeMillis, storeMillis);
+    }
+}
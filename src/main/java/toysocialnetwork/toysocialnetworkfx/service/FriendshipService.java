@@ -1,28 +1,40 @@
 package toysocialnetwork.toysocialnetworkfx.service;
 
+import javafx.util.Pair;
 import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
 import toysocialnetwork.toysocialnetworkfx.domain.Sender;
 import toysocialnetwork.toysocialnetworkfx.domain.Status;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
 import toysocialnetwork.toysocialnetworkfx.domain.dto.FriendshipDTO;
-import toysocialnetwork.toysocialnetworkfx.repository.database.FriendshipDBRepository;
-import toysocialnetwork.toysocialnetworkfx.repository.database.UserDBRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+import toysocialnetwork.toysocialnetworkfx.service.graph.ClusteringResult;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityIndex;
+import toysocialnetwork.toysocialnetworkfx.service.graph.DensityResult;
+import toysocialnetwork.toysocialnetworkfx.service.graph.ParallelGraphAlgorithms;
+import toysocialnetwork.toysocialnetworkfx.service.graph.SociabilityEngine;
+import toysocialnetwork.toysocialnetworkfx.service.graph.SociabilityMetric;
+import toysocialnetwork.toysocialnetworkfx.service.graph.SociabilityResult;
 import toysocialnetwork.toysocialnetworkfx.service.graph.UserGraph;
 import toysocialnetwork.toysocialnetworkfx.utils.observer.Observable;
 import toysocialnetwork.toysocialnetworkfx.utils.observer.Observer;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for operations on friendships
  */
 public class FriendshipService implements Observable {
-    private final FriendshipDBRepository friendshipRepository;
-    private final UserDBRepository userRepository;
+    private final FriendshipRepository friendshipRepository;
+    private final UserRepository userRepository;
+    private final CommunityIndex communityIndex;
+    private final int parallelism;
     private final List<Observer> observerList;
 
     /**
@@ -30,10 +42,19 @@ public class FriendshipService implements Observable {
      *
      * @param friendshipRepository reference to the friendship repository
      * @param userRepository       reference to the user repository
+     * @param communityIndex       the community index shared with the user service
+     * @param parallelism          the number of threads used to count the triangles of the network
+     * @throws IllegalArgumentException if the number of threads is not positive
      */
-    public FriendshipService(FriendshipDBRepository friendshipRepository, UserDBRepository userRepository) {
+    public FriendshipService(FriendshipRepository friendshipRepository, UserRepository userRepository,
+                             CommunityIndex communityIndex, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+
         this.friendshipRepository = friendshipRepository;
         this.userRepository = userRepository;
+        this.communityIndex = communityIndex;
+        this.parallelism = parallelism;
         this.observerList = new ArrayList<>();
     }
 
@@ -61,6 +82,15 @@ public class FriendshipService implements Observable {
         return friendshipRepository.findAll();
     }
 
+    /**
+     * Streams all the friendships stored in the application, the stream must be closed after use
+     *
+     * @return the stream of friendships
+     */
+    public Stream<Friendship> streamAllFriendships() {
+        return friendshipRepository.streamAll();
+    }
+
     /**
      * Gets all the friendship requests that were sent to the given user (by id)
      *
@@ -68,20 +98,7 @@ public class FriendshipService implements Observable {
      * @return the list of friendship requests (as FriendshipDTO)
      */
     public List<FriendshipDTO> getFriendshipRequestsFor(Long userId) {
-        List<Friendship> friendships = friendshipRepository.getFriendshipRequestsFor(userId);
-
-        return friendships.stream()
-                .map(friendship -> {
-                    User otherUser;
-                    if (userId.equals(friendship.getFirstUser()))
-                        otherUser = userRepository.findById(friendship.getSecondUser()).get();
-                    else
-                        otherUser = userRepository.findById(friendship.getFirstUser()).get();
-
-                    return new FriendshipDTO(friendship.getId(), otherUser,
-                            friendship.getFriendsFrom(), friendship.getStatus(), friendship.getSentBy());
-                })
-                .collect(Collectors.toList());
+        return friendshipRepository.getFriendshipRequestsFor(userId);
     }
 
     /**
@@ -91,20 +108,7 @@ public class FriendshipService implements Observable {
      * @return the list of friendship requests (as FriendshipDTO)
      */
     public List<FriendshipDTO> getFriendshipRequestsFrom(Long userId) {
-        List<Friendship> friendships = friendshipRepository.getFriendshipRequestsFrom(userId);
-
-        return friendships.stream()
-                .map(friendship -> {
-                    User otherUser;
-                    if (userId.equals(friendship.getFirstUser()))
-                        otherUser = userRepository.findById(friendship.getSecondUser()).get();
-                    else
-                        otherUser = userRepository.findById(friendship.getFirstUser()).get();
-
-                    return new FriendshipDTO(friendship.getId(), otherUser,
-                            friendship.getFriendsFrom(), friendship.getStatus(), friendship.getSentBy());
-                })
-                .collect(Collectors.toList());
+        return friendshipRepository.getFriendshipRequestsFrom(userId);
     }
 
     /**
@@ -126,7 +130,6 @@ public class FriendshipService implements Observable {
             throw new ServiceException("Invalid user ids\n");
 
         Friendship friendship = new Friendship(firstUser, secondUser, friendsFrom);
-        friendship.setId(friendshipRepository.getLastId() + 1);
         friendship.setStatus(status);
         friendship.setSentBy(sentBy);
 
@@ -137,6 +140,9 @@ public class FriendshipService implements Observable {
 
         user1.get().addFriend(secondUser);
         user2.get().addFriend(firstUser);
+        if (status == Status.ACCEPTED) {
+            communityIndex.addFriendship(firstUser, secondUser);
+        }
 
         notifyObservers();
     }
@@ -165,6 +171,13 @@ public class FriendshipService implements Observable {
         if (updatedFriendship.isPresent())
             throw new ServiceException("Friendship could not be updated\n");
 
+        Status oldStatus = existingFriendship.get().getStatus();
+        if (oldStatus != Status.ACCEPTED && status == Status.ACCEPTED) {
+            communityIndex.addFriendship(friendship.getFirstUser(), friendship.getSecondUser());
+        } else if (oldStatus == Status.ACCEPTED && status != Status.ACCEPTED) {
+            communityIndex.removeFriendship(friendship.getFirstUser(), friendship.getSecondUser());
+        }
+
         notifyObservers();
     }
 
@@ -185,6 +198,9 @@ public class FriendshipService implements Observable {
 
         user1.get().removeFriend(friendship.get().getSecondUser());
         user2.get().removeFriend(friendship.get().getFirstUser());
+        if (friendship.get().getStatus() == Status.ACCEPTED) {
+            communityIndex.removeFriendship(friendship.get().getFirstUser(), friendship.get().getSecondUser());
+        }
 
         notifyObservers();
     }
@@ -195,28 +211,228 @@ public class FriendshipService implements Observable {
      * @return the number of communities
      */
     public int getCommunitiesCount() {
-        UserGraph graph = new UserGraph(userRepository.findAll());
+        return getCommunityIndex().getCommunitiesCount();
+    }
+
+    /**
+     * Gets the community of a user
+     *
+     * @param userId the id of the user
+     * @return the ids of the users from the community of the user
+     */
+    public List<Long> getCommunityOf(Long userId) {
+        return getCommunityIndex().getCommunity(userId);
+    }
+
+    /**
+     * Gets the core number of a user, the largest k such that the user belongs to the k-core
+     * (the largest group where everyone has at least k friends inside the group)
+     *
+     * @param userId the id of the user
+     * @return the core number of the user
+     * @throws ServiceException if the user does not exist
+     */
+    public int getCoreNumber(Long userId) {
+        int coreNumber = getCommunityIndex().getCoreNumber(userId);
+        if (coreNumber == -1)
+            throw new ServiceException("The user does not exist\n");
+
+        return coreNumber;
+    }
+
+    /**
+     * Gets the members of a k-core, the users with a core number of at least k
+     *
+     * @param k the order of the core
+     * @return the users of the k-core, sorted by id
+     * @throws ServiceException if the order is negative
+     */
+    public List<User> getCoreMembers(int k) {
+        if (k < 0)
+            throw new ServiceException("The order of the core must not be negative\n");
+
+        return findUsersInOrder(getCommunityIndex().getCoreMembers(k));
+    }
+
+    /**
+     * Gets the densely connected core of the network, the k-core with the largest k
+     *
+     * @return the largest k together with the users of the k-core
+     */
+    public Pair<Integer, List<User>> getMaxCore() {
+        CommunityIndex index = getCommunityIndex();
+        int k = index.getMaxCoreNumber();
+
+        return new Pair<>(k, findUsersInOrder(index.getCoreMembers(k)));
+    }
+
+    /**
+     * Finds the mutual friends of two users
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return the users which are friends with both users
+     */
+    public List<User> getMutualFriends(Long firstUserId, Long secondUserId) {
+        return findUsersInOrder(getCommunityIndex().getFriendSets().getMutualFriends(firstUserId, secondUserId));
+    }
+
+    /**
+     * Counts the mutual friends of two users
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return the number of users which are friends with both users
+     */
+    public int getMutualFriendsCount(Long firstUserId, Long secondUserId) {
+        return getCommunityIndex().getFriendSets().getMutualFriendsCount(firstUserId, secondUserId);
+    }
+
+    /**
+     * Finds a shortest path of accepted friendships between two users (their degree of separation)
+     *
+     * @param fromUserId the id of the first user
+     * @param toUserId   the id of the second user
+     * @param maxHops    the maximum number of friendships on the path
+     * @return the users on the path, from the first user to the second one,
+     * an empty list if there is no path with at most maxHops friendships
+     * @throws ServiceException if the maximum number of friendships is negative
+     */
+    public List<User> getShortestFriendshipPath(Long fromUserId, Long toUserId, int maxHops) {
+        if (maxHops < 0)
+            throw new ServiceException("The number of friendships must not be negative\n");
+
+        List<Long> path = getCommunityIndex().getShortestPath(fromUserId, toUserId, maxHops);
+        if (path == null)
+            return new ArrayList<>();
 
-        List<UserGraph> connectedComponents = graph.getConnectedComponents();
-        return connectedComponents.size();
+        return findUsersInOrder(path);
+    }
+
+    /**
+     * Finds the users which can be reached from a user through at most a number of accepted friendships
+     *
+     * @param userId the id of the user
+     * @param hops   the maximum number of friendships
+     * @return the reached users (without the user), ordered by their distance from the user
+     * @throws ServiceException if the number of friendships is negative
+     */
+    public List<User> getUsersWithinHops(Long userId, int hops) {
+        if (hops < 0)
+            throw new ServiceException("The number of friendships must not be negative\n");
+
+        return findUsersInOrder(getCommunityIndex().getUsersWithinHops(userId, hops));
     }
 
     /**
      * Gets the most sociable community in the application
+     * The longest path search stops after SociabilityEngine.DEFAULT_TIME_BUDGET_MILLIS for each community
      *
-     * @return the list of the users from that community
+     * @param metric the metric used to compare the communities
+     * @return the list of the users from that community together with the value of the metric
+     * (an empty list if there are no users)
      */
-    public List<User> getMostSociableCommunity() {
-        UserGraph graph = new UserGraph(userRepository.findAll());
+    public Pair<List<User>, SociabilityResult> getMostSociableCommunity(SociabilityMetric metric) {
+        UserGraph graph = createUserGraph();
+        SociabilityEngine engine = new SociabilityEngine(metric, SociabilityEngine.DEFAULT_TIME_BUDGET_MILLIS);
 
-        UserGraph community = graph.getConnectedComponentMaxPath();
+        Pair<UserGraph, SociabilityResult> community = graph.getMostSociableComponent(engine);
         if (community == null)
-            return new ArrayList<>();
+            return new Pair<>(new ArrayList<>(), new SociabilityResult(0, true));
 
-        Iterable<User> users = community.getUsers();
         List<User> userList = new ArrayList<>();
-        users.forEach(userList::add);
+        community.getKey().getUsers().forEach(userList::add);
+
+        return new Pair<>(userList, community.getValue());
+    }
+
+    /**
+     * Gets the triangles and the clustering coefficients of the whole network
+     *
+     * @return the density of the network
+     */
+    public DensityResult getNetworkDensity() {
+        return countTriangles(createUserGraph()).getDensity();
+    }
+
+    /**
+     * Gets the community with the densest friendships, the one with the largest average clustering coefficient
+     *
+     * @param minSize the minimum number of users of the community
+     * @return the list of the users from that community together with its density
+     * (an empty list if no community has enough users)
+     * @throws ServiceException if the minimum size is not positive
+     */
+    public Pair<List<User>, DensityResult> getDensestCommunity(int minSize) {
+        if (minSize < 1)
+            throw new ServiceException("The minimum size of the community must be positive\n");
+
+        UserGraph graph = createUserGraph();
+        Pair<UserGraph, DensityResult> community = graph.getDensestComponent(countTriangles(graph), minSize);
+        if (community == null)
+            return new Pair<>(new ArrayList<>(), new DensityResult(0, 0, 0, 0));
 
-        return userList;
+        List<User> userList = new ArrayList<>();
+        community.getKey().getUsers().forEach(userList::add);
+
+        return new Pair<>(userList, community.getValue());
+    }
+
+    /**
+     * Counts the triangles of the users of a graph, with the configured number of threads
+     *
+     * @param graph the graph of the users
+     * @return the triangles of the users, with the clustering coefficients
+     */
+    private ClusteringResult countTriangles(UserGraph graph) {
+        try (ParallelGraphAlgorithms algorithms = new ParallelGraphAlgorithms(parallelism)) {
+            return algorithms.getTriangleCounts(graph.getGraph());
+        }
+    }
+
+    /**
+     * Gets the community index, building it from the users on its first use
+     * After that the index is kept up to date by the user and friendship services
+     *
+     * @return the community index
+     */
+    private CommunityIndex getCommunityIndex() {
+        if (!communityIndex.isBuilt()) {
+            try (Stream<User> users = userRepository.streamAll()) {
+                communityIndex.build(users::iterator);
+            }
+        }
+
+        return communityIndex;
+    }
+
+    /**
+     * Finds the users with the given ids with a single query, keeping the order of the ids
+     *
+     * @param userIds the ids of the users
+     * @return the found users
+     */
+    private List<User> findUsersInOrder(List<Long> userIds) {
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(userIds))
+            users.put(user.getId(), user);
+
+        List<User> orderedUsers = new ArrayList<>();
+        for (Long userId : userIds)
+            if (users.containsKey(userId))
+                orderedUsers.add(users.get(userId));
+
+        return orderedUsers;
+    }
+
+    /**
+     * Creates the graph of all the users, streaming the users from the repository
+     *
+     * @return the graph
+     */
+    private UserGraph createUserGraph() {
+        try (Stream<User> users = userRepository.streamAll()) {
+            return new UserGraph(users::iterator);
+        }
     }
 }
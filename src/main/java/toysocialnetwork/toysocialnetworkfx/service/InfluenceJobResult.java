@@ -0,0 +1,109 @@
+package toysocialnetwork.toysocialnetworkfx.service;
+
+/**
+ * Summary of a run of the influence scoring job
+ */
+public final class InfluenceJobResult {
+    private final int userCount;
+    private final int pageRankIterations;
+    private final boolean pageRankConverged;
+    private final int eigenvectorIterations;
+    private final boolean eigenvectorConverged;
+    private final long computeMillis;
+    private final long storeMillis;
+
+    /**
+     * Constructor for InfluenceJobResult
+     *
+     * @param userCount             the number of scored users
+     * @param pageRankIterations    the number of PageRank iterations
+     * @param pageRankConverged     true if PageRank converged before the iteration cap
+     * @param eigenvectorIterations the number of eigenvector centrality iterations
+     * @param eigenvectorConverged  true if the eigenvector centrality converged before the iteration cap
+     * @param computeMillis         the time spent building the graph and computing the scores
+     * @param storeMillis           the time spent writing the scores
+     */
+    public InfluenceJobResult(int userCount, int pageRankIterations, boolean pageRankConverged,
+                              int eigenvectorIterations, boolean eigenvectorConverged, long computeMillis,
+                              long storeMillis) {
+        this.userCount = userCount;
+        this.pageRankIterations = pageRankIterations;
+        this.pageRankConverged = pageRankConverged;
+        this.eigenvectorIterations = eigenvectorIterations;
+        this.eigenvectorConverged = eigenvectorConverged;
+        this.computeMillis = computeMillis;
+        this.storeMillis = storeMillis;
+    }
+
+    /**
+     * Getter for userCount
+     *
+     * @return the number of scored users
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Getter for pageRankIterations
+     *
+     * @return the number of PageRank iterations
+     */
+    public int getPageRankIterations() {
+        return pageRankIterations;
+    }
+
+    /**
+     * Getter for pageRankConverged
+     *
+     * @return true if PageRank converged before the iteration cap
+     */
+    public boolean isPageRankConverged() {
+        return pageRankConverged;
+    }
+
+    /**
+     * Getter for eigenvectorIterations
+     *
+     * @return the number of eigenvector centrality iterations
+     */
+    public int getEigenvectorIterations() {
+        return eigenvectorIterations;
+    }
+
+    /**
+     * Getter for eigenvectorConverged
+     *
+     * @return true if the eigenvector centrality converged before the iteration cap
+     */
+    public boolean isEigenvectorConverged() {
+        return eigenvectorConverged;
+    }
+
+    /**
+     * Getter for computeMillis
+     *
+     * @return the time spent building the graph and computing the scores, in milliseconds
+     */
+    public long getComputeMillis() {
+        return computeMillis;
+    }
+
+    /**
+     * Getter for storeMillis
+     *
+     * @return the time spent writing the scores, in milliseconds
+     */
+    public long getStoreMillis() {
+        return storeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d users scored: PageRank %d iterations (%s), eigenvector centrality %d iterations (%s), " +
+                        "computed in %d ms, stored in %d ms", userCount,
+                pageRankIterations, pageRankConverged ? "converged" : "not converged",
+                eigenvectorIterations, eigenvectorConverged ? "converged" : "not converged",
+                computeMillis, storeMillis);
+    }
+}
@@ -1,7 +1,7 @@
 package toysocialnetwork.toysocialnetworkfx.service;
 
 import toysocialnetwork.toysocialnetworkfx.domain.Message;
-import toysocialnetwork.toysocialnetworkfx.repository.database.MessageDBRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.MessageRepository;
 import toysocialnetwork.toysocialnetworkfx.utils.observer.Observable;
 import toysocialnetwork.toysocialnetworkfx.utils.observer.Observer;
 
@@ -9,12 +9,13 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Service for operations on friendships
  */
 public class MessageService implements Observable {
-    private final MessageDBRepository messageRepository;
+    private final MessageRepository messageRepository;
     private final List<Observer> observerList;
 
     /**
@@ -22,7 +23,7 @@ public class MessageService implements Observable {
      *
      * @param messageRepository reference to the message repository
      */
-    public MessageService(MessageDBRepository messageRepository) {
+    public MessageService(MessageRepository messageRepository) {
         this.messageRepository = messageRepository;
         this.observerList = new ArrayList<>();
     }
@@ -51,17 +52,66 @@ public class MessageService implements Observable {
         return messageRepository.findAll();
     }
 
+    /**
+     * Streams all the messages stored in the application, the stream must be closed after use
+     *
+     * @return the stream of messages
+     */
+    public Stream<Message> streamAllMessages() {
+        return messageRepository.streamAll();
+    }
+
     /**
      * Gets all the messages sent between two users given by id
      *
      * @param firstUserId  the id of the first user
      * @param secondUserId the id of the second user
-     * @return the list of messages
+     * @return the list of messages in chronological order
      */
     public List<Message> getMessagesBetween(Long firstUserId, Long secondUserId) {
         return messageRepository.getMessagesBetween(firstUserId, secondUserId);
     }
 
+    /**
+     * Gets the newest messages sent between two users given by id
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in chronological order
+     */
+    public List<Message> getLatestMessagesBetween(Long firstUserId, Long secondUserId, int pageSize) {
+        return messageRepository.getLatestMessagesBetween(firstUserId, secondUserId, pageSize);
+    }
+
+    /**
+     * Gets the messages sent between two users given by id which are older than the given message
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param message      the oldest message already loaded
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in chronological order
+     */
+    public List<Message> getMessagesBefore(Long firstUserId, Long secondUserId, Message message, int pageSize) {
+        return messageRepository.getMessagesBefore(firstUserId, secondUserId, message.getSentDate(), message.getId(),
+                pageSize);
+    }
+
+    /**
+     * Gets the messages sent between two users given by id which are newer than the given message
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @param message      the newest message already loaded
+     * @param pageSize     the maximum number of messages
+     * @return the list of messages in chronological order
+     */
+    public List<Message> getMessagesAfter(Long firstUserId, Long secondUserId, Message message, int pageSize) {
+        return messageRepository.getMessagesAfter(firstUserId, secondUserId, message.getSentDate(), message.getId(),
+                pageSize);
+    }
+
     /**
      * Adds a new message in the application, the id will be generated automatically
      *
@@ -74,7 +124,6 @@ public class MessageService implements Observable {
      */
     public void addMessage(Long fromUser, Long toUser, String messageBody, LocalDateTime sentDate) {
         Message message = new Message(fromUser, toUser, messageBody, sentDate);
-        message.setId(messageRepository.getLastId() + 1);
 
         Optional<Message> newMessage = messageRepository.save(message);
         if (newMessage.isPresent())
@@ -0,0 +1,16 @@
+package toysocialnetwork.toysocialnetworkfx.service;
+
+/**
+ * The scores used to rank the people a user may know
+ */
+public enum RecommendationMetric {
+    /**
+     * The number of mutual friends
+     */
+    MUTUAL_FRIENDS,
+    /**
+     * The Adamic-Adar index: every mutual friend counts 1 / log(number of friends of the mutual friend),
+     * so the mutual friends with few friends weigh more than the very popular ones
+     */
+    ADAMIC_ADAR
+}
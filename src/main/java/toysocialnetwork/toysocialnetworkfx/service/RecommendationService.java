@@ -0,0 +1,180 @@
+package toysocialnetwork.toysocialnetworkfx.service;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.FriendshipDTO;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.RecommendationDTO;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+import toysocialnetwork.toysocialnetworkfx.utils.observer.Observer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Service which recommends the people a user may know, the friends of the friends of the user
+ * ranked by their mutual friends
+ * Only the 2-hop neighbourhood of the user is read: the user, its friends (with their own friends lists)
+ * and finally the recommended users. The best candidates are selected with a heap bounded to the number
+ * of recommendations. The recommendations are cached for every user and the cache is cleared
+ * when the users or the friendships change (the service observes the user and friendship services)
+ */
+public class RecommendationService implements Observer {
+    /**
+     * The default number of recommendations for a user
+     */
+    public static final int DEFAULT_MAX_RECOMMENDATIONS = 20;
+
+    private static final int MAX_CACHED_USERS = 1000;
+
+    private final UserRepository userRepository;
+    private final FriendshipRepository friendshipRepository;
+    private final RecommendationMetric metric;
+    private final int maxRecommendations;
+    private final Map<Long, List<RecommendationDTO>> cache;
+
+    /**
+     * Constructor for RecommendationService
+     *
+     * @param userRepository       reference to the user repository
+     * @param friendshipRepository reference to the friendship repository
+     * @param metric               the score used to rank the candidates
+     * @param maxRecommendations   the maximum number of recommendations for a user
+     * @throws IllegalArgumentException if the maximum number of recommendations is not positive
+     */
+    public RecommendationService(UserRepository userRepository, FriendshipRepository friendshipRepository,
+                                 RecommendationMetric metric, int maxRecommendations) {
+        if (maxRecommendations < 1)
+            throw new IllegalArgumentException("The maximum number of recommendations must be positive");
+
+        this.userRepository = userRepository;
+        this.friendshipRepository = friendshipRepository;
+        this.metric = metric;
+        this.maxRecommendations = maxRecommendations;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, List<RecommendationDTO>> eldest) {
+                return size() > MAX_CACHED_USERS;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void update() {
+        cache.clear();
+    }
+
+    /**
+     * Gets the people a user may know, the users with mutual friends which are not friends with the user
+     * and have no pending friend request with the user
+     *
+     * @param userId the id of the user
+     * @return the recommendations, from the best to the worst, empty if the user does not exist
+     */
+    public synchronized List<RecommendationDTO> getRecommendationsFor(Long userId) {
+        List<RecommendationDTO> recommendations = cache.get(userId);
+        if (recommendations == null) {
+            recommendations = computeRecommendationsFor(userId);
+            cache.put(userId, recommendations);
+        }
+
+        return new ArrayList<>(recommendations);
+    }
+
+    /**
+     * Computes the recommendations for a user
+     *
+     * @param userId the id of the user
+     * @return the recommendations, from the best to the worst
+     */
+    private List<RecommendationDTO> computeRecommendationsFor(Long userId) {
+        Optional<User> user = userRepository.findById(userId);
+        if (user.isEmpty() || user.get().getFriends().isEmpty())
+            return new ArrayList<>();
+
+        Set<Long> excluded = new HashSet<>(user.get().getFriends());
+        excluded.add(userId);
+        for (FriendshipDTO request : friendshipRepository.getFriendshipRequestsFor(userId))
+            excluded.add(request.getOtherUser().getId());
+        for (FriendshipDTO request : friendshipRepository.getFriendshipRequestsFrom(userId))
+            excluded.add(request.getOtherUser().getId());
+
+        Map<Long, Candidate> candidates = new HashMap<>();
+        for (User friend : userRepository.findAllById(user.get().getFriends())) {
+            double weight = metric == RecommendationMetric.ADAMIC_ADAR
+                    ? 1 / Math.log(Math.max(friend.getFriends().size(), 2)) : 1;
+
+            for (Long candidateId : friend.getFriends()) {
+                if (excluded.contains(candidateId))
+                    continue;
+
+                Candidate candidate = candidates.computeIfAbsent(candidateId, Candidate::new);
+                candidate.mutualFriendsCount++;
+                candidate.score += weight;
+            }
+        }
+
+        List<Candidate> best = selectBest(candidates.values());
+
+        Map<Long, User> users = new HashMap<>();
+        for (User candidateUser : userRepository.findAllById(best.stream().map(candidate -> candidate.id).toList()))
+            users.put(candidateUser.getId(), candidateUser);
+
+        List<RecommendationDTO> recommendations = new ArrayList<>();
+        for (Candidate candidate : best) {
+            User candidateUser = users.get(candidate.id);
+            if (candidateUser != null)
+                recommendations.add(new RecommendationDTO(candidateUser, candidate.mutualFriendsCount, candidate.score));
+        }
+
+        return recommendations;
+    }
+
+    /**
+     * Selects the best candidates with a heap holding at most maxRecommendations candidates,
+     * whose head is the worst candidate kept so far
+     *
+     * @param candidates the candidates
+     * @return the best candidates, from the best to the worst
+     */
+    private List<Candidate> selectBest(Iterable<Candidate> candidates) {
+        Comparator<Candidate> ranking = Comparator.comparingDouble((Candidate candidate) -> candidate.score)
+                .thenComparingInt(candidate -> candidate.mutualFriendsCount)
+                .thenComparing(candidate -> candidate.id, Comparator.reverseOrder());
+
+        PriorityQueue<Candidate> heap = new PriorityQueue<>(ranking);
+        for (Candidate candidate : candidates) {
+            if (heap.size() < maxRecommendations)
+                heap.add(candidate);
+            else if (ranking.compare(candidate, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(candidate);
+            }
+        }
+
+        List<Candidate> best = new ArrayList<>(heap);
+        best.sort(ranking.reversed());
+
+        return best;
+    }
+
+    /**
+     * A user reached through the friends of the user, with its score
+     */
+    private static final class Candidate {
+        private final long id;
+        private int mutualFriendsCount;
+        private double score;
+
+        private Candidate(long id) {
+            this.id = id;
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package toysocialnetwork.toysocialnetworkfx.service;
 
-import javafx.util.Pair;
 import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
 import toysocialnetwork.toysocialnetworkfx.domain.dto.UserDTO;
-import toysocialnetwork.toysocialnetworkfx.repository.database.FriendshipDBRepository;
-import toysocialnetwork.toysocialnetworkfx.repository.database.UserDBRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.FriendshipRepository;
+import toysocialnetwork.toysocialnetworkfx.repository.UserRepository;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityIndex;
 import toysocialnetwork.toysocialnetworkfx.utils.observer.Observable;
 import toysocialnetwork.toysocialnetworkfx.utils.observer.Observer;
 
@@ -13,14 +13,15 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service for operations on users
  */
 public class UserService implements Observable {
-    private final UserDBRepository userRepository;
-    private final FriendshipDBRepository friendshipRepository;
+    private final UserRepository userRepository;
+    private final FriendshipRepository friendshipRepository;
+    private final CommunityIndex communityIndex;
     private final List<Observer> observerList;
 
     /**
@@ -28,10 +29,13 @@ public class UserService implements Observable {
      *
      * @param userRepository       reference to the user repository
      * @param friendshipRepository reference to the friendship repository
+     * @param communityIndex       the community index shared with the friendship service
      */
-    public UserService(UserDBRepository userRepository, FriendshipDBRepository friendshipRepository) {
+    public UserService(UserRepository userRepository, FriendshipRepository friendshipRepository,
+                       CommunityIndex communityIndex) {
         this.userRepository = userRepository;
         this.friendshipRepository = friendshipRepository;
+        this.communityIndex = communityIndex;
         this.observerList = new ArrayList<>();
     }
 
@@ -59,6 +63,15 @@ public class UserService implements Observable {
         return userRepository.findAll();
     }
 
+    /**
+     * Streams all the users stored in the application, the stream must be closed after use
+     *
+     * @return the stream of users
+     */
+    public Stream<User> streamAllUsers() {
+        return userRepository.streamAll();
+    }
+
     /**
      * Verifies the login of the user given the username and password
      *
@@ -85,11 +98,7 @@ public class UserService implements Observable {
      * @return the list of found users
      */
     public List<User> findAvailableUsersFor(Long userId) {
-        List<Long> userIds = userRepository.findAvailableUsersFor(userId);
-
-        return userIds.stream()
-                .map(id -> userRepository.findById(id).get())
-                .collect(Collectors.toList());
+        return userRepository.findAvailableUsersFor(userId);
     }
 
     /**
@@ -99,16 +108,7 @@ public class UserService implements Observable {
      * @return the list of the friends as a list of UserDTO objects
      */
     public List<UserDTO> findFriendUsersFor(Long userId) {
-        List<Pair<Long, Long>> idPairs = userRepository.findFriendUsersFor(userId);
-
-        return idPairs.stream()
-                .map(pair -> {
-                    User user = userRepository.findById(pair.getKey()).get();
-
-                    return new UserDTO(pair.getKey(), pair.getValue(),
-                            user.getUsername(), user.getFirstName(), user.getLastName());
-                })
-                .collect(Collectors.toList());
+        return userRepository.findFriendUsersFor(userId);
     }
 
     /**
@@ -123,12 +123,12 @@ public class UserService implements Observable {
      */
     public void addUser(String username, String firstName, String lastName, String password) {
         User user = new User(username, firstName, lastName, password);
-        user.setId(userRepository.getLastId() + 1);
 
         Optional<User> newUser = userRepository.save(user);
 
         if (newUser.isPresent())
             throw new ServiceException("User already exists\n");
+        communityIndex.addUser(user.getId());
 
         notifyObservers();
     }
@@ -175,6 +175,7 @@ public class UserService implements Observable {
         for (User other : userRepository.findAll())
             other.removeFriend(user.get().getId());
 
+        List<Long> friendshipIds = new ArrayList<>();
         for (Long otherId : user.get().getFriends()) {
             Long firstUser;
             Long secondUser;
@@ -189,10 +190,12 @@ public class UserService implements Observable {
 
             Optional<Friendship> friendship = friendshipRepository.findByValue(new Friendship(firstUser, secondUser,
                     LocalDateTime.now()));
-            friendshipRepository.delete(friendship.get().getId());
+            friendshipIds.add(friendship.get().getId());
         }
+        friendshipRepository.deleteAllById(friendshipIds);
 
         userRepository.delete(id);
+        communityIndex.removeUser(id);
 
         notifyObservers();
     }
@@ -0,0 +1,77 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The betweenness centrality of the vertices of a {@link CsrGraph}, exact or estimated from a sample of sources
+ * The score of a vertex is the fraction of the shortest paths between two other vertices which pass through it,
+ * averaged over all the pairs, so the scores are between 0 and 1
+ */
+public final class BetweennessResult {
+    private final double[] scores;
+    private final int sourceCount;
+    private final boolean exact;
+    private final double errorBound;
+    private final double confidence;
+
+    /**
+     * Constructor for BetweennessResult
+     *
+     * @param scores      the score of every vertex
+     * @param sourceCount the number of sources whose shortest paths were counted
+     * @param exact       true if all the vertices were sources
+     * @param errorBound  the largest difference between an estimated score and the exact one, 0 if exact
+     * @param confidence  the probability that all the scores are within the error bound, 1 if exact
+     */
+    BetweennessResult(double[] scores, int sourceCount, boolean exact, double errorBound, double confidence) {
+        this.scores = scores;
+        this.sourceCount = sourceCount;
+        this.exact = exact;
+        this.errorBound = errorBound;
+        this.confidence = confidence;
+    }
+
+    /**
+     * Gets the score of a vertex
+     *
+     * @param vertex the index of the vertex
+     * @return the score
+     */
+    public double getScore(int vertex) {
+        return scores[vertex];
+    }
+
+    /**
+     * Getter for sourceCount
+     *
+     * @return the number of sources whose shortest paths were counted
+     */
+    public int getSourceCount() {
+        return sourceCount;
+    }
+
+    /**
+     * Getter for exact
+     *
+     * @return true if all the vertices were sources
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Getter for errorBound
+     *
+     * @return the largest difference between an estimated score and the exact one, 0 if exact
+     */
+    public double getErrorBound() {
+        return errorBound;
+    }
+
+    /**
+     * Getter for confidence
+     *
+     * @return the probability that all the scores are within the error bound, 1 if exact
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+}
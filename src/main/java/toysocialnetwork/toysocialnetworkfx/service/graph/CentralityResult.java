@@ -0,0 +1,51 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The centrality scores of the vertices of a {@link CsrGraph}, computed with power iteration
+ */
+public final class CentralityResult {
+    private final double[] scores;
+    private final int iterations;
+    private final boolean converged;
+
+    /**
+     * Constructor for CentralityResult
+     *
+     * @param scores     the score of every vertex
+     * @param iterations the number of iterations
+     * @param converged  true if the scores converged before the iteration cap
+     */
+    CentralityResult(double[] scores, int iterations, boolean converged) {
+        this.scores = scores;
+        this.iterations = iterations;
+        this.converged = converged;
+    }
+
+    /**
+     * Gets the score of a vertex
+     *
+     * @param vertex the index of the vertex
+     * @return the score
+     */
+    public double getScore(int vertex) {
+        return scores[vertex];
+    }
+
+    /**
+     * Getter for iterations
+     *
+     * @return the number of iterations
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Getter for converged
+     *
+     * @return true if the scores converged before the iteration cap
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
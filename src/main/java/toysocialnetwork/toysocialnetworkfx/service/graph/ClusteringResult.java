@@ -0,0 +1,108 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The triangles of every vertex of a graph, from which the clustering coefficients are derived
+ */
+public final class ClusteringResult {
+    private final CsrGraph graph;
+    private final long[] triangles;
+
+    /**
+     * Constructor for ClusteringResult
+     *
+     * @param graph     the graph
+     * @param triangles the number of triangles of every vertex
+     */
+    ClusteringResult(CsrGraph graph, long[] triangles) {
+        this.graph = graph;
+        this.triangles = triangles;
+    }
+
+    /**
+     * Gets the number of triangles of a vertex
+     *
+     * @param vertex the vertex
+     * @return the number of triangles containing the vertex
+     */
+    public long getTriangles(int vertex) {
+        return triangles[vertex];
+    }
+
+    /**
+     * Gets the local clustering coefficient of a vertex, the fraction of the pairs of neighbors
+     * which are neighbors themselves
+     *
+     * @param vertex the vertex
+     * @return the coefficient, 0 if the vertex has less than 2 neighbors
+     */
+    public double getLocalClusteringCoefficient(int vertex) {
+        long degree = graph.getDegree(vertex);
+        if (degree < 2)
+            return 0;
+
+        return 2.0 * triangles[vertex] / (degree * (degree - 1));
+    }
+
+    /**
+     * Summarizes the triangles and the clustering coefficients of the whole graph
+     *
+     * @return the density of the graph
+     */
+    public DensityResult getDensity() {
+        DensityAccumulator accumulator = new DensityAccumulator();
+        for (int vertex = 0; vertex < triangles.length; vertex++)
+            accumulator.add(vertex);
+
+        return accumulator.toResult();
+    }
+
+    /**
+     * Summarizes the triangles and the clustering coefficients of a group of vertices
+     * The triangles are only counted inside the group if it is a connected component
+     *
+     * @param vertices the vertices
+     * @return the density of the group
+     */
+    public DensityResult getDensity(int[] vertices) {
+        DensityAccumulator accumulator = new DensityAccumulator();
+        for (int vertex : vertices)
+            accumulator.add(vertex);
+
+        return accumulator.toResult();
+    }
+
+    /**
+     * Sums the triangles, the connected triples and the local coefficients of the vertices
+     */
+    private final class DensityAccumulator {
+        private int vertexCount;
+        private long vertexTriangles;
+        private long triples;
+        private double coefficients;
+
+        /**
+         * Adds a vertex
+         *
+         * @param vertex the vertex
+         */
+        private void add(int vertex) {
+            long degree = graph.getDegree(vertex);
+
+            vertexCount++;
+            vertexTriangles += triangles[vertex];
+            triples += degree * (degree - 1) / 2;
+            coefficients += getLocalClusteringCoefficient(vertex);
+        }
+
+        /**
+         * Creates the summary of the added vertices
+         *
+         * @return the density
+         */
+        private DensityResult toResult() {
+            return new DensityResult(vertexCount, vertexTriangles / 3,
+                    vertexCount == 0 ? 0 : coefficients / vertexCount,
+                    triples == 0 ? 0 : (double) vertexTriangles / triples);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The algorithms which can be used to detect the communities of the network
+ */
+public enum CommunityAlgorithm {
+    /**
+     * Parallel synchronous label propagation, fast but with a lower modularity
+     */
+    LABEL_PROPAGATION,
+    /**
+     * Louvain modularity optimisation
+     */
+    LOUVAIN
+}
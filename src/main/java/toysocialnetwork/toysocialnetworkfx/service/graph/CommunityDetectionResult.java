@@ -0,0 +1,121 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import java.util.Arrays;
+
+/**
+ * The communities found by a community detection algorithm on a {@link CsrGraph}
+ * Every community is identified by its smallest vertex, so the communities of the users
+ * are identified by the smallest user id, whatever labels the algorithm used
+ */
+public final class CommunityDetectionResult {
+    private final int[] communities;
+    private final int count;
+    private final double modularity;
+    private final int iterations;
+    private final boolean converged;
+
+    /**
+     * Constructor for CommunityDetectionResult
+     *
+     * @param graph      the graph
+     * @param labels     the label of every vertex, the vertices with the same label form a community
+     *                   (labels between 0 and the number of vertices - 1)
+     * @param iterations the number of iterations (or levels) of the algorithm
+     * @param converged  true if the algorithm stopped before the iteration cap
+     */
+    CommunityDetectionResult(CsrGraph graph, int[] labels, int iterations, boolean converged) {
+        int n = graph.getVertexCount();
+        this.communities = new int[n];
+        this.iterations = iterations;
+        this.converged = converged;
+
+        int[] smallestVertex = new int[n];
+        Arrays.fill(smallestVertex, -1);
+        int communityCount = 0;
+        for (int vertex = 0; vertex < n; vertex++) {
+            if (smallestVertex[labels[vertex]] == -1) {
+                smallestVertex[labels[vertex]] = vertex;
+                communityCount++;
+            }
+            communities[vertex] = smallestVertex[labels[vertex]];
+        }
+        this.count = communityCount;
+        this.modularity = computeModularity(graph, communities);
+    }
+
+    /**
+     * Computes the modularity of a partition, the fraction of the edges inside the communities
+     * minus the fraction expected if the edges were placed at random with the same degrees
+     *
+     * @param graph       the graph
+     * @param communities the community of every vertex
+     * @return the modularity, between -0.5 and 1
+     */
+    private static double computeModularity(CsrGraph graph, int[] communities) {
+        int n = graph.getVertexCount();
+        double arcCount = graph.offsets[n];
+        if (arcCount == 0)
+            return 0;
+
+        double[] totalDegrees = new double[n];
+        double insideArcs = 0;
+        for (int vertex = 0; vertex < n; vertex++) {
+            totalDegrees[communities[vertex]] += graph.getDegree(vertex);
+            for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++)
+                if (communities[graph.targets[i]] == communities[vertex])
+                    insideArcs++;
+        }
+
+        double expected = 0;
+        for (double totalDegree : totalDegrees)
+            expected += (totalDegree / arcCount) * (totalDegree / arcCount);
+
+        return insideArcs / arcCount - expected;
+    }
+
+    /**
+     * Gets the community of a vertex
+     *
+     * @param vertex the vertex
+     * @return the smallest vertex of its community
+     */
+    public int getCommunity(int vertex) {
+        return communities[vertex];
+    }
+
+    /**
+     * Gets the number of communities
+     *
+     * @return the number of communities
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for modularity
+     *
+     * @return the modularity of the communities
+     */
+    public double getModularity() {
+        return modularity;
+    }
+
+    /**
+     * Getter for iterations
+     *
+     * @return the number of iterations (or levels) of the algorithm
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Getter for converged
+     *
+     * @return true if the algorithm stopped before the iteration cap
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
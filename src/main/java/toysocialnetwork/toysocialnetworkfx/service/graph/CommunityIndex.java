@@ -0,0 +1,1263 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory index of the communities (connected components of the accepted friendships)
+ * The components are kept in a union-find structure with path halving and union by size,
+ * so adding users and friendships is almost O(1). Removing a friendship or a user recomputes
+ * only the affected component. The members of every component are linked in a circular list,
+ * so the members of a community are listed in O(community size).
+ * The index is empty until it is built, the updates received before that are ignored
+ * (the build reads the current state anyway). All the operations are synchronized on the index.
+ * The adjacency lists also answer the distance queries, with breadth first searches which mark
+ * the visited slots with round stamps instead of allocating visited sets. They are kept sorted,
+ * so the mutual friends queries of {@link #getFriendSets()} intersect them with merges.
+ * The index also keeps the core number of every user (the largest k such that the user belongs to the k-core,
+ * the largest subgraph where everyone has at least k friends). The build uses the bucket algorithm in O(V + E)
+ * and keeps its removal order; after that a new friendship only scans the part of that order next to the endpoints
+ * and a removed one only visits the users which lose their core number, which change by one at most
+ */
+public class CommunityIndex {
+    private static final int REMOVED = -1;
+    private static final long LABEL_GAP = 1L << 24;
+
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final FriendSetIndex friendSets = new FriendSetIndex(this);
+    private long[] ids = new long[16];
+    private int[] parent = new int[16];
+    private int[] size = new int[16];
+    private int[] next = new int[16];
+    private int[][] adjacency = new int[16][];
+    private int[] degree = new int[16];
+    private int[] visitedRound = new int[16];
+    private int[] backwardVisitedRound = new int[16];
+    private int[] forwardDistance = new int[16];
+    private int[] backwardDistance = new int[16];
+    private int[] forwardParent = new int[16];
+    private int[] backwardParent = new int[16];
+    private int[] forwardQueue = new int[16];
+    private int[] backwardQueue = new int[16];
+    private int[] core = new int[16];
+    private int[] coreDegree = new int[16];
+    private int[] coreDegreeRound = new int[16];
+    private int[] laterDegree = new int[16];
+    private long[] orderLabel = new long[16];
+    private int[] orderPrevious = new int[16];
+    private int[] orderNext = new int[16];
+    private int[] candidateDegree = new int[16];
+    private int[] candidateDegreeRound = new int[16];
+    private int[] candidateRound = new int[16];
+    private int[] candidatePosition = new int[16];
+    private int[] evictedRound = new int[16];
+    private int[] evictionQueue = new int[16];
+    private int[] heapRound = new int[16];
+    private int[] heap = new int[16];
+    private int[] coreCounts = new int[16];
+    private int[] orderHeads = newOrderEnds(16);
+    private int[] orderTails = newOrderEnds(16);
+    private int round;
+    private int slotCount;
+    private int communityCount;
+    private boolean built;
+
+    /**
+     * Builds the index from all the users, replacing the previous content
+     *
+     * @param users the users together with their friends
+     */
+    public synchronized void build(Iterable<User> users) {
+        slots.clear();
+        slotCount = 0;
+        communityCount = 0;
+        coreCounts = new int[16];
+        orderHeads = newOrderEnds(16);
+        orderTails = newOrderEnds(16);
+
+        List<User> userList = new ArrayList<>();
+        for (User user : users) {
+            getOrCreateSlot(user.getId());
+            userList.add(user);
+        }
+        // the friends lists are symmetric, so every user only adds the arcs from its own list
+        for (User user : userList) {
+            int slot = slots.get(user.getId());
+
+            for (Long friendId : user.getFriends()) {
+                Integer friendSlot = slots.get(friendId);
+                if (friendSlot == null || friendSlot == slot)
+                    continue;
+
+                adjacency[slot] = appendTo(adjacency[slot], degree[slot]++, friendSlot);
+                union(slot, friendSlot);
+            }
+        }
+        for (int slot = 0; slot < slotCount; slot++)
+            if (degree[slot] > 1)
+                Arrays.sort(adjacency[slot], 0, degree[slot]);
+        computeCores();
+
+        built = true;
+    }
+
+    /**
+     * Checks if the index was built
+     *
+     * @return true if the index was built
+     */
+    public synchronized boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Gets the mutual friends queries, answered from the adjacency lists of this index
+     *
+     * @return the friend set index of this index
+     */
+    public FriendSetIndex getFriendSets() {
+        return friendSets;
+    }
+
+    /**
+     * Adds a new user, as a community of its own
+     *
+     * @param userId the id of the user
+     */
+    public synchronized void addUser(long userId) {
+        if (built)
+            getOrCreateSlot(userId);
+    }
+
+    /**
+     * Removes a user together with its friendships, the community of the user is recomputed
+     *
+     * @param userId the id of the user
+     */
+    public synchronized void removeUser(long userId) {
+        Integer slot = slots.get(userId);
+        if (!built || slot == null)
+            return;
+
+        List<Integer> members = getMemberSlots(slot);
+        while (degree[slot] > 0) {
+            int neighbor = adjacency[slot][degree[slot] - 1];
+            removeArc(slot, neighbor);
+            removeArc(neighbor, slot);
+            updateCoresAfterRemoval(slot, neighbor);
+        }
+        coreCounts[0]--;
+        unlinkFromOrder(slot, 0);
+
+        slots.remove(userId);
+        parent[slot] = REMOVED;
+        members.remove(Integer.valueOf(slot));
+
+        communityCount--;
+        recompute(members);
+    }
+
+    /**
+     * Adds an accepted friendship, merging the communities of the two users
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     */
+    public synchronized void addFriendship(long firstUserId, long secondUserId) {
+        if (built)
+            link(firstUserId, secondUserId);
+    }
+
+    /**
+     * Removes an accepted friendship
+     * If the two users are still connected through other friendships nothing changes,
+     * otherwise their community is recomputed
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     */
+    public synchronized void removeFriendship(long firstUserId, long secondUserId) {
+        Integer first = slots.get(firstUserId);
+        Integer second = slots.get(secondUserId);
+        if (!built || first == null || second == null)
+            return;
+
+        if (!removeArc(first, second))
+            return;
+        removeArc(second, first);
+        updateCoresAfterRemoval(first, second);
+
+        if (!isReachable(first, second)) {
+            List<Integer> members = getMemberSlots(first);
+
+            communityCount--;
+            recompute(members);
+        }
+    }
+
+    /**
+     * Gets the number of communities, every user without friends is a community of its own
+     *
+     * @return the number of communities
+     */
+    public synchronized int getCommunitiesCount() {
+        return communityCount;
+    }
+
+    /**
+     * Gets the members of the community of a user
+     *
+     * @param userId the id of the user
+     * @return the ids of the users from the community, empty if the user is not indexed
+     */
+    public synchronized List<Long> getCommunity(long userId) {
+        Integer slot = slots.get(userId);
+        if (slot == null)
+            return new ArrayList<>();
+
+        List<Long> community = new ArrayList<>();
+        for (int member : getMemberSlots(slot))
+            community.add(ids[member]);
+
+        return community;
+    }
+
+    /**
+     * Gets the ids of all the indexed users
+     *
+     * @return the ids of the users
+     */
+    public synchronized long[] getUserIds() {
+        long[] userIds = new long[slots.size()];
+
+        int position = 0;
+        for (Long userId : slots.keySet())
+            userIds[position++] = userId;
+
+        return userIds;
+    }
+
+    /**
+     * Checks if two users are in the same community
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return true if the users are connected through accepted friendships
+     */
+    public synchronized boolean areInSameCommunity(long firstUserId, long secondUserId) {
+        Integer first = slots.get(firstUserId);
+        Integer second = slots.get(secondUserId);
+
+        return first != null && second != null && find(first) == find(second);
+    }
+
+    /**
+     * Gets the core number of a user
+     *
+     * @param userId the id of the user
+     * @return the largest k such that the user belongs to the k-core, -1 if the user is not indexed
+     */
+    public synchronized int getCoreNumber(long userId) {
+        Integer slot = slots.get(userId);
+
+        return slot == null ? -1 : core[slot];
+    }
+
+    /**
+     * Gets the largest core number of the network
+     *
+     * @return the largest k with a non empty k-core, 0 if there are no users
+     */
+    public synchronized int getMaxCoreNumber() {
+        for (int k = coreCounts.length - 1; k > 0; k--)
+            if (coreCounts[k] > 0)
+                return k;
+
+        return 0;
+    }
+
+    /**
+     * Gets the members of a k-core, the users with a core number of at least k
+     *
+     * @param k the order of the core
+     * @return the ids of the users of the k-core, sorted increasingly
+     */
+    public synchronized List<Long> getCoreMembers(int k) {
+        List<Long> members = new ArrayList<>();
+        for (int level = Math.max(k, 0); level < orderHeads.length; level++)
+            for (int slot = orderHeads[level]; slot != -1; slot = orderNext[slot])
+                members.add(ids[slot]);
+        Collections.sort(members);
+
+        return members;
+    }
+
+    /**
+     * Finds a shortest friendship path between two users with a bidirectional breadth first search
+     * The two searches expand one whole level at a time, always on the side with the smaller frontier,
+     * and stop at the first meeting (which is a shortest path) or once a path would be longer than maxHops.
+     * Users from different communities are answered without any search
+     *
+     * @param fromUserId the id of the first user
+     * @param toUserId   the id of the second user
+     * @param maxHops    the maximum number of friendships on the path
+     * @return the ids of the users on the path, from the first user to the second one,
+     * null if there is no path with at most maxHops friendships or if a user is not indexed
+     */
+    public synchronized List<Long> getShortestPath(long fromUserId, long toUserId, int maxHops) {
+        Integer source = slots.get(fromUserId);
+        Integer target = slots.get(toUserId);
+        if (source == null || target == null || maxHops < 0 || find(source) != find(target))
+            return null;
+
+        List<Long> path = new ArrayList<>();
+        if (source.equals(target)) {
+            path.add(fromUserId);
+
+            return path;
+        }
+
+        nextRound();
+        int forwardHead = 0;
+        int forwardTail = 0;
+        int backwardHead = 0;
+        int backwardTail = 0;
+        forwardQueue[forwardTail++] = source;
+        visitedRound[source] = round;
+        forwardDistance[source] = 0;
+        forwardParent[source] = -1;
+        backwardQueue[backwardTail++] = target;
+        backwardVisitedRound[target] = round;
+        backwardDistance[target] = 0;
+        backwardParent[target] = -1;
+
+        int depth = 0;
+        int meetingForward = -1;
+        int meetingBackward = -1;
+        while (meetingForward == -1 && depth < maxHops && forwardHead < forwardTail && backwardHead < backwardTail) {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int levelEnd = forwardTail;
+                while (meetingForward == -1 && forwardHead < levelEnd) {
+                    int slot = forwardQueue[forwardHead++];
+
+                    for (int k = 0; k < degree[slot]; k++) {
+                        int neighbor = adjacency[slot][k];
+                        if (backwardVisitedRound[neighbor] == round) {
+                            meetingForward = slot;
+                            meetingBackward = neighbor;
+                            break;
+                        }
+                        if (visitedRound[neighbor] != round) {
+                            visitedRound[neighbor] = round;
+                            forwardDistance[neighbor] = forwardDistance[slot] + 1;
+                            forwardParent[neighbor] = slot;
+                            forwardQueue[forwardTail++] = neighbor;
+                        }
+                    }
+                }
+            } else {
+                int levelEnd = backwardTail;
+                while (meetingForward == -1 && backwardHead < levelEnd) {
+                    int slot = backwardQueue[backwardHead++];
+
+                    for (int k = 0; k < degree[slot]; k++) {
+                        int neighbor = adjacency[slot][k];
+                        if (visitedRound[neighbor] == round) {
+                            meetingForward = neighbor;
+                            meetingBackward = slot;
+                            break;
+                        }
+                        if (backwardVisitedRound[neighbor] != round) {
+                            backwardVisitedRound[neighbor] = round;
+                            backwardDistance[neighbor] = backwardDistance[slot] + 1;
+                            backwardParent[neighbor] = slot;
+                            backwardQueue[backwardTail++] = neighbor;
+                        }
+                    }
+                }
+            }
+            depth++;
+        }
+
+        if (meetingForward == -1)
+            return null;
+
+        for (int slot = meetingForward; slot != -1; slot = forwardParent[slot])
+            path.add(ids[slot]);
+        Collections.reverse(path);
+        for (int slot = meetingBackward; slot != -1; slot = backwardParent[slot])
+            path.add(ids[slot]);
+
+        return path;
+    }
+
+    /**
+     * Finds the users which can be reached from a user through at most a number of friendships,
+     * with a breadth first search which stops after the given number of levels
+     *
+     * @param userId the id of the user
+     * @param hops   the maximum number of friendships
+     * @return the ids of the reached users (without the user), ordered by their distance from the user,
+     * empty if the user is not indexed
+     */
+    public synchronized List<Long> getUsersWithinHops(long userId, int hops) {
+        List<Long> users = new ArrayList<>();
+        Integer source = slots.get(userId);
+        if (source == null || hops <= 0)
+            return users;
+
+        nextRound();
+        int head = 0;
+        int tail = 0;
+        forwardQueue[tail++] = source;
+        visitedRound[source] = round;
+        forwardDistance[source] = 0;
+        while (head < tail) {
+            int slot = forwardQueue[head++];
+            if (forwardDistance[slot] == hops)
+                break;
+
+            for (int k = 0; k < degree[slot]; k++) {
+                int neighbor = adjacency[slot][k];
+                if (visitedRound[neighbor] != round) {
+                    visitedRound[neighbor] = round;
+                    forwardDistance[neighbor] = forwardDistance[slot] + 1;
+                    forwardQueue[tail++] = neighbor;
+                    users.add(ids[neighbor]);
+                }
+            }
+        }
+
+        return users;
+    }
+
+    /**
+     * Gets the slot of a user, the caller must hold the lock of the index
+     *
+     * @param userId the id of the user
+     * @return the slot of the user, -1 if the user is not indexed
+     */
+    int getSlot(long userId) {
+        Integer slot = slots.get(userId);
+
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * Gets the id of the user with a slot, the caller must hold the lock of the index
+     *
+     * @param slot the slot
+     * @return the id of the user
+     */
+    long getId(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * Gets the number of friends of the user with a slot, the caller must hold the lock of the index
+     *
+     * @param slot the slot
+     * @return the number of friends
+     */
+    int getDegree(int slot) {
+        return degree[slot];
+    }
+
+    /**
+     * Gets the sorted slots of the friends of the user with a slot, the caller must hold the lock of the index
+     *
+     * @param slot the slot
+     * @return the adjacency list of the slot, only its first getDegree(slot) values are used; null if empty
+     */
+    int[] getNeighbors(int slot) {
+        return adjacency[slot];
+    }
+
+    /**
+     * Gets the slot of a user, creating it (as a new community) if the user is not indexed yet
+     *
+     * @param userId the id of the user
+     * @return the slot of the user
+     */
+    private int getOrCreateSlot(long userId) {
+        Integer existingSlot = slots.get(userId);
+        if (existingSlot != null)
+            return existingSlot;
+
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            parent = Arrays.copyOf(parent, capacity);
+            size = Arrays.copyOf(size, capacity);
+            next = Arrays.copyOf(next, capacity);
+            adjacency = Arrays.copyOf(adjacency, capacity);
+            degree = Arrays.copyOf(degree, capacity);
+            visitedRound = Arrays.copyOf(visitedRound, capacity);
+            backwardVisitedRound = Arrays.copyOf(backwardVisitedRound, capacity);
+            forwardDistance = new int[capacity];
+            backwardDistance = new int[capacity];
+            forwardParent = new int[capacity];
+            backwardParent = new int[capacity];
+            forwardQueue = new int[capacity];
+            backwardQueue = new int[capacity];
+            core = Arrays.copyOf(core, capacity);
+            coreDegree = new int[capacity];
+            coreDegreeRound = new int[capacity];
+            laterDegree = Arrays.copyOf(laterDegree, capacity);
+            orderLabel = Arrays.copyOf(orderLabel, capacity);
+            orderPrevious = Arrays.copyOf(orderPrevious, capacity);
+            orderNext = Arrays.copyOf(orderNext, capacity);
+            candidateDegree = new int[capacity];
+            candidateDegreeRound = new int[capacity];
+            candidateRound = new int[capacity];
+            candidatePosition = new int[capacity];
+            evictedRound = new int[capacity];
+            evictionQueue = new int[capacity];
+            heapRound = new int[capacity];
+            heap = new int[capacity];
+        }
+
+        int slot = slotCount++;
+        ids[slot] = userId;
+        parent[slot] = slot;
+        size[slot] = 1;
+        next[slot] = slot;
+        adjacency[slot] = null;
+        degree[slot] = 0;
+        visitedRound[slot] = 0;
+        backwardVisitedRound[slot] = 0;
+        core[slot] = 0;
+        coreCounts[0]++;
+        laterDegree[slot] = 0;
+        linkAtTail(slot, 0);
+        slots.put(userId, slot);
+        communityCount++;
+
+        return slot;
+    }
+
+    /**
+     * Adds the friendship between two users to the adjacency lists and merges their communities
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     */
+    private void link(long firstUserId, long secondUserId) {
+        if (firstUserId == secondUserId)
+            return;
+
+        int first = getOrCreateSlot(firstUserId);
+        int second = getOrCreateSlot(secondUserId);
+        if (hasArc(first, second))
+            return;
+
+        addArc(first, second);
+        addArc(second, first);
+        union(first, second);
+        updateCoresAfterInsertion(first, second);
+    }
+
+    /**
+     * Finds the representative of the community of a slot, halving the path on the way
+     *
+     * @param slot the slot
+     * @return the representative slot
+     */
+    private int find(int slot) {
+        while (parent[slot] != slot) {
+            parent[slot] = parent[parent[slot]];
+            slot = parent[slot];
+        }
+
+        return slot;
+    }
+
+    /**
+     * Merges the communities of two slots, the smaller community is attached to the larger one
+     *
+     * @param first  the first slot
+     * @param second the second slot
+     */
+    private void union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot)
+            return;
+
+        if (size[firstRoot] < size[secondRoot]) {
+            int aux = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = aux;
+        }
+        parent[secondRoot] = firstRoot;
+        size[firstRoot] += size[secondRoot];
+
+        // splice the two circular member lists
+        int aux = next[firstRoot];
+        next[firstRoot] = next[secondRoot];
+        next[secondRoot] = aux;
+
+        communityCount--;
+    }
+
+    /**
+     * Rebuilds the communities of a set of slots which formed one community, from their adjacency lists
+     * The caller must have already removed the old community from the count
+     *
+     * @param members the slots
+     */
+    private void recompute(List<Integer> members) {
+        for (int member : members) {
+            parent[member] = member;
+            size[member] = 1;
+            next[member] = member;
+        }
+        communityCount += members.size();
+
+        for (int member : members)
+            for (int k = 0; k < degree[member]; k++)
+                union(member, adjacency[member][k]);
+    }
+
+    /**
+     * Gets the slots of the community of a slot, following the circular member list
+     *
+     * @param slot the slot
+     * @return the slots of the community
+     */
+    private List<Integer> getMemberSlots(int slot) {
+        List<Integer> members = new ArrayList<>();
+
+        int member = slot;
+        do {
+            members.add(member);
+            member = next[member];
+        } while (member != slot);
+
+        return members;
+    }
+
+    /**
+     * Checks if a slot can be reached from another slot with a breadth first search on the adjacency lists
+     *
+     * @param source the source slot
+     * @param target the target slot
+     * @return true if the target can be reached
+     */
+    private boolean isReachable(int source, int target) {
+        nextRound();
+
+        int[] queue = new int[16];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        visitedRound[source] = round;
+        while (head < tail) {
+            int slot = queue[head++];
+            if (slot == target)
+                return true;
+
+            for (int k = 0; k < degree[slot]; k++) {
+                int neighbor = adjacency[slot][k];
+                if (visitedRound[neighbor] != round) {
+                    visitedRound[neighbor] = round;
+                    if (tail == queue.length)
+                        queue = Arrays.copyOf(queue, queue.length * 2);
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Computes the core numbers of all the slots with the bucket algorithm of Batagelj and Zaversnik
+     * The slots are kept sorted by their current degree in buckets; the slot with the smallest degree
+     * is removed repeatedly, its degree is its core number and its neighbors with a larger degree
+     * move one bucket down
+     */
+    private void computeCores() {
+        int n = slotCount;
+        int maxDegree = 0;
+        for (int slot = 0; slot < n; slot++) {
+            core[slot] = degree[slot];
+            maxDegree = Math.max(maxDegree, degree[slot]);
+        }
+
+        int[] bucketStarts = new int[maxDegree + 1];
+        for (int slot = 0; slot < n; slot++)
+            bucketStarts[degree[slot]]++;
+        for (int d = 0, start = 0; d <= maxDegree; d++) {
+            int bucketSize = bucketStarts[d];
+            bucketStarts[d] = start;
+            start += bucketSize;
+        }
+
+        int[] positions = new int[n];
+        int[] sorted = new int[n];
+        for (int slot = 0; slot < n; slot++) {
+            positions[slot] = bucketStarts[degree[slot]]++;
+            sorted[positions[slot]] = slot;
+        }
+        for (int d = maxDegree; d > 0; d--)
+            bucketStarts[d] = bucketStarts[d - 1];
+        bucketStarts[0] = 0;
+
+        for (int i = 0; i < n; i++) {
+            int slot = sorted[i];
+
+            for (int k = 0; k < degree[slot]; k++) {
+                int neighbor = adjacency[slot][k];
+                if (core[neighbor] > core[slot]) {
+                    // swap the neighbor with the first slot of its bucket, then shrink the bucket
+                    int neighborDegree = core[neighbor];
+                    int first = sorted[bucketStarts[neighborDegree]];
+                    if (first != neighbor) {
+                        sorted[positions[neighbor]] = first;
+                        positions[first] = positions[neighbor];
+                        sorted[bucketStarts[neighborDegree]] = neighbor;
+                        positions[neighbor] = bucketStarts[neighborDegree];
+                    }
+                    bucketStarts[neighborDegree]++;
+                    core[neighbor]--;
+                }
+            }
+        }
+
+        // the removal order is a k-order, every slot has at most its core number of neighbors removed after it
+        coreCounts = new int[maxDegree + 1];
+        orderHeads = newOrderEnds(maxDegree + 1);
+        orderTails = newOrderEnds(maxDegree + 1);
+        for (int i = 0; i < n; i++) {
+            int slot = sorted[i];
+            coreCounts[core[slot]]++;
+            linkAtTail(slot, core[slot]);
+
+            laterDegree[slot] = 0;
+            for (int k = 0; k < degree[slot]; k++)
+                if (positions[adjacency[slot][k]] > i)
+                    laterDegree[slot]++;
+        }
+    }
+
+    /**
+     * Updates the core numbers after a friendship was added, with the order-based algorithm
+     * The slots are kept in a k-order: sorted by core number, and inside a core number in an order in which
+     * every slot has at most as many later neighbors as its core number (a removal order of the bucket algorithm).
+     * With the endpoint which comes first getting the new later neighbor, nothing changes unless it now has
+     * more later neighbors than its core number K. Otherwise the slots with core number K are scanned in order
+     * from that endpoint, but only the ones with a neighbor among the candidates: a slot becomes a candidate
+     * when its later neighbors plus its candidate neighbors before it exceed K. A scanned slot which does not
+     * stays in place and takes its candidate neighbors as later neighbors, which can evict candidates; an evicted
+     * candidate goes back in the order right after it. The candidates left move to K + 1, at the head of its order
+     *
+     * @param first  the first endpoint
+     * @param second the second endpoint
+     */
+    private void updateCoresAfterInsertion(int first, int second) {
+        int root = precedes(first, second) ? first : second;
+        int k = core[root];
+        laterDegree[root]++;
+        if (laterDegree[root] <= k)
+            return;
+        nextRound();
+
+        // the candidates are listed on the backward queue in order, the slots to scan are kept in a heap
+        int candidateCount = 0;
+        int heapSize = 0;
+        int slot = root;
+        while (true) {
+            int slotCandidateDegree = getCandidateDegree(slot);
+            if (slotCandidateDegree + laterDegree[slot] > k) {
+                long label = orderLabel[slot];
+                unlinkFromOrder(slot, k);
+                candidateRound[slot] = round;
+                candidatePosition[slot] = candidateCount;
+                backwardQueue[candidateCount++] = slot;
+
+                for (int i = 0; i < degree[slot]; i++) {
+                    int neighbor = adjacency[slot][i];
+                    if (core[neighbor] != k || candidateRound[neighbor] == round || orderLabel[neighbor] < label)
+                        continue;
+
+                    addCandidateDegree(neighbor, 1);
+                    if (heapRound[neighbor] != round) {
+                        heapRound[neighbor] = round;
+                        heapSize = pushHeap(neighbor, heapSize);
+                    }
+                }
+            } else if (slotCandidateDegree > 0) {
+                laterDegree[slot] += slotCandidateDegree;
+                addCandidateDegree(slot, -slotCandidateDegree);
+                evictCandidates(slot, k);
+            }
+
+            if (heapSize == 0)
+                break;
+            slot = heap[0];
+            heapSize = popHeap(heapSize);
+        }
+
+        for (int i = candidateCount - 1; i >= 0; i--) {
+            int candidate = backwardQueue[i];
+            if (candidateRound[candidate] == round) {
+                setCore(candidate, k + 1);
+                linkAtHead(candidate, k + 1);
+            }
+        }
+    }
+
+    /**
+     * Evicts the candidates which can no longer move up after a scanned slot stayed in place
+     * The candidate neighbors of the slot lose it as a later neighbor; a candidate with at most K later neighbors
+     * and candidate neighbors before it is evicted, placed in the order after the slot (and the previously evicted
+     * ones), and takes its candidate neighbors before it as later neighbors, which can evict them in turn
+     *
+     * @param kept the scanned slot which stays in place
+     * @param k    the core number of the slot
+     */
+    private void evictCandidates(int kept, int k) {
+        // the evicted candidates are queued on the eviction queue and marked in the evicted rounds
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < degree[kept]; i++) {
+            int neighbor = adjacency[kept][i];
+            if (candidateRound[neighbor] != round)
+                continue;
+
+            laterDegree[neighbor]--;
+            if (laterDegree[neighbor] + getCandidateDegree(neighbor) <= k) {
+                evictedRound[neighbor] = round;
+                evictionQueue[tail++] = neighbor;
+            }
+        }
+
+        int previous = kept;
+        while (head < tail) {
+            int evicted = evictionQueue[head++];
+            int evictedCandidateDegree = getCandidateDegree(evicted);
+            laterDegree[evicted] += evictedCandidateDegree;
+            addCandidateDegree(evicted, -evictedCandidateDegree);
+            candidateRound[evicted] = 0;
+            linkAfter(evicted, previous);
+            previous = evicted;
+
+            for (int i = 0; i < degree[evicted]; i++) {
+                int neighbor = adjacency[evicted][i];
+                if (core[neighbor] != k)
+                    continue;
+
+                if (candidateRound[neighbor] == round) {
+                    if (candidatePosition[neighbor] < candidatePosition[evicted])
+                        laterDegree[neighbor]--;
+                    else
+                        addCandidateDegree(neighbor, -1);
+
+                    if (evictedRound[neighbor] != round && laterDegree[neighbor] + getCandidateDegree(neighbor) <= k) {
+                        evictedRound[neighbor] = round;
+                        evictionQueue[tail++] = neighbor;
+                    }
+                } else if (orderLabel[neighbor] > orderLabel[evicted])
+                    // a slot still to scan, the evicted candidate is now before it
+                    addCandidateDegree(neighbor, -1);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of candidate neighbors before a slot in the current round, 0 for the slots not touched
+     * in the current round
+     *
+     * @param slot the slot
+     * @return the number of candidate neighbors before the slot
+     */
+    private int getCandidateDegree(int slot) {
+        return candidateDegreeRound[slot] == round ? candidateDegree[slot] : 0;
+    }
+
+    /**
+     * Changes the number of candidate neighbors before a slot in the current round
+     *
+     * @param slot  the slot
+     * @param delta the change
+     */
+    private void addCandidateDegree(int slot, int delta) {
+        if (candidateDegreeRound[slot] != round) {
+            candidateDegreeRound[slot] = round;
+            candidateDegree[slot] = 0;
+        }
+        candidateDegree[slot] += delta;
+    }
+
+    /**
+     * Gets the max-core degree of a slot, its neighbors with a core number of at least its own,
+     * computed once per round
+     *
+     * @param slot the slot
+     * @return the max-core degree
+     */
+    private int getMaxCoreDegree(int slot) {
+        if (coreDegreeRound[slot] != round) {
+            coreDegreeRound[slot] = round;
+            coreDegree[slot] = 0;
+            for (int i = 0; i < degree[slot]; i++)
+                if (core[adjacency[slot][i]] >= core[slot])
+                    coreDegree[slot]++;
+        }
+
+        return coreDegree[slot];
+    }
+
+    /**
+     * Updates the core numbers after a friendship was removed
+     * With K the smaller core number of the endpoints, only the slots with core number K connected
+     * to an endpoint with core number K through such slots can drop to K - 1. Starting from the endpoints,
+     * a slot with less than K neighbors with a core number of at least K drops, which decreases the counts
+     * of its neighbors with core number K, which are checked in turn. The dropped slots move to the tail
+     * of the order of K - 1, in the order they dropped
+     *
+     * @param first  the first endpoint
+     * @param second the second endpoint
+     */
+    private void updateCoresAfterRemoval(int first, int second) {
+        laterDegree[precedes(first, second) ? first : second]--;
+        int k = Math.min(core[first], core[second]);
+        if (k == 0)
+            return;
+        nextRound();
+
+        // the queued slots are marked in the visited rounds, the dropped ones are listed on the backward queue
+        int stackSize = 0;
+        int dropCount = 0;
+        int[] stack = forwardQueue;
+        for (int root : new int[]{first, second})
+            if (core[root] == k && visitedRound[root] != round) {
+                visitedRound[root] = round;
+                stack[stackSize++] = root;
+            }
+        while (stackSize > 0) {
+            int slot = stack[--stackSize];
+            visitedRound[slot] = 0;
+            if (core[slot] != k || getMaxCoreDegree(slot) >= k)
+                continue;
+
+            setCore(slot, k - 1);
+            evictedRound[slot] = round;
+            candidatePosition[slot] = dropCount;
+            backwardQueue[dropCount++] = slot;
+            for (int i = 0; i < degree[slot]; i++) {
+                int neighbor = adjacency[slot][i];
+                if (core[neighbor] != k)
+                    continue;
+
+                if (coreDegreeRound[neighbor] == round)
+                    coreDegree[neighbor]--;
+                if (visitedRound[neighbor] != round) {
+                    visitedRound[neighbor] = round;
+                    stack[stackSize++] = neighbor;
+                }
+            }
+        }
+
+        // the slots staying at K which came before a dropped neighbor now come after it
+        for (int i = 0; i < dropCount; i++) {
+            int dropped = backwardQueue[i];
+            for (int j = 0; j < degree[dropped]; j++) {
+                int neighbor = adjacency[dropped][j];
+                if (core[neighbor] == k && orderLabel[neighbor] < orderLabel[dropped])
+                    laterDegree[neighbor]--;
+            }
+        }
+        for (int i = 0; i < dropCount; i++) {
+            int dropped = backwardQueue[i];
+            unlinkFromOrder(dropped, k);
+            linkAtTail(dropped, k - 1);
+
+            laterDegree[dropped] = 0;
+            for (int j = 0; j < degree[dropped]; j++) {
+                int neighbor = adjacency[dropped][j];
+                if (core[neighbor] >= k || (evictedRound[neighbor] == round && candidatePosition[neighbor] > i))
+                    laterDegree[dropped]++;
+            }
+        }
+    }
+
+    /**
+     * Changes the core number of a slot
+     *
+     * @param slot    the slot
+     * @param newCore the new core number
+     */
+    private void setCore(int slot, int newCore) {
+        if (newCore == coreCounts.length) {
+            int capacity = coreCounts.length * 2;
+            coreCounts = Arrays.copyOf(coreCounts, capacity);
+            orderHeads = Arrays.copyOf(orderHeads, capacity);
+            orderTails = Arrays.copyOf(orderTails, capacity);
+            Arrays.fill(orderHeads, newCore, capacity, -1);
+            Arrays.fill(orderTails, newCore, capacity, -1);
+        }
+
+        coreCounts[core[slot]]--;
+        coreCounts[newCore]++;
+        core[slot] = newCore;
+    }
+
+    /**
+     * Checks if a slot comes before another one in the k-order
+     *
+     * @param first  the first slot
+     * @param second the second slot
+     * @return true if the first slot comes first
+     */
+    private boolean precedes(int first, int second) {
+        if (core[first] != core[second])
+            return core[first] < core[second];
+
+        return orderLabel[first] < orderLabel[second];
+    }
+
+    /**
+     * Removes a slot from the order of its core number
+     *
+     * @param slot  the slot
+     * @param level the core number whose order holds the slot
+     */
+    private void unlinkFromOrder(int slot, int level) {
+        int previous = orderPrevious[slot];
+        int following = orderNext[slot];
+        if (previous == -1)
+            orderHeads[level] = following;
+        else
+            orderNext[previous] = following;
+        if (following == -1)
+            orderTails[level] = previous;
+        else
+            orderPrevious[following] = previous;
+    }
+
+    /**
+     * Adds a slot at the head of the order of a core number
+     *
+     * @param slot  the slot
+     * @param level the core number
+     */
+    private void linkAtHead(int slot, int level) {
+        int head = orderHeads[level];
+        orderPrevious[slot] = -1;
+        orderNext[slot] = head;
+        if (head == -1) {
+            orderTails[level] = slot;
+            orderLabel[slot] = 0;
+        } else {
+            orderPrevious[head] = slot;
+            orderLabel[slot] = orderLabel[head] - LABEL_GAP;
+        }
+        orderHeads[level] = slot;
+    }
+
+    /**
+     * Adds a slot at the tail of the order of a core number
+     *
+     * @param slot  the slot
+     * @param level the core number
+     */
+    private void linkAtTail(int slot, int level) {
+        int tail = orderTails[level];
+        orderPrevious[slot] = tail;
+        orderNext[slot] = -1;
+        if (tail == -1) {
+            orderHeads[level] = slot;
+            orderLabel[slot] = 0;
+        } else {
+            orderNext[tail] = slot;
+            orderLabel[slot] = orderLabel[tail] + LABEL_GAP;
+        }
+        orderTails[level] = slot;
+    }
+
+    /**
+     * Adds a slot right after another one, in the order of the core number of the slot
+     * The slot gets the label halfway between its neighbors; when there is no room left,
+     * the slots after the previous one are labeled again over a range which grows until it is sparse enough
+     *
+     * @param slot     the slot
+     * @param previous the slot to follow
+     */
+    private void linkAfter(int slot, int previous) {
+        int following = orderNext[previous];
+        if (following == -1) {
+            linkAtTail(slot, core[slot]);
+            return;
+        }
+
+        orderPrevious[slot] = previous;
+        orderNext[slot] = following;
+        orderNext[previous] = slot;
+        orderPrevious[following] = slot;
+        if (orderLabel[following] - orderLabel[previous] >= 2) {
+            orderLabel[slot] = orderLabel[previous] + (orderLabel[following] - orderLabel[previous]) / 2;
+            return;
+        }
+
+        // the window starts with the slot, the spacing has to exceed the size of the window
+        long start = orderLabel[previous];
+        long spacing = LABEL_GAP;
+        int count = 1;
+        for (int last = slot; orderNext[last] != -1; last = orderNext[last], count++) {
+            spacing = (orderLabel[orderNext[last]] - start) / (count + 1);
+            if (spacing > count)
+                break;
+            spacing = LABEL_GAP;
+        }
+        for (int current = slot, i = 1; i <= count; current = orderNext[current], i++)
+            orderLabel[current] = start + spacing * i;
+    }
+
+    /**
+     * Adds a slot to the heap of the slots to scan, ordered by their labels
+     *
+     * @param slot     the slot
+     * @param heapSize the size of the heap
+     * @return the new size of the heap
+     */
+    private int pushHeap(int slot, int heapSize) {
+        int position = heapSize;
+        while (position > 0) {
+            int parentPosition = (position - 1) / 2;
+            if (orderLabel[heap[parentPosition]] <= orderLabel[slot])
+                break;
+
+            heap[position] = heap[parentPosition];
+            position = parentPosition;
+        }
+        heap[position] = slot;
+
+        return heapSize + 1;
+    }
+
+    /**
+     * Removes the first slot from the heap of the slots to scan
+     *
+     * @param heapSize the size of the heap
+     * @return the new size of the heap
+     */
+    private int popHeap(int heapSize) {
+        int last = heap[--heapSize];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize)
+                break;
+            if (child + 1 < heapSize && orderLabel[heap[child + 1]] < orderLabel[heap[child]])
+                child++;
+            if (orderLabel[last] <= orderLabel[heap[child]])
+                break;
+
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = last;
+
+        return heapSize;
+    }
+
+    /**
+     * Creates the heads or the tails of the orders of the core numbers, all empty
+     *
+     * @param capacity the number of core numbers
+     * @return the array of heads or tails
+     */
+    private static int[] newOrderEnds(int capacity) {
+        int[] ends = new int[capacity];
+        Arrays.fill(ends, -1);
+
+        return ends;
+    }
+
+    /**
+     * Starts a new search round, the slots marked with older rounds count as not visited
+     */
+    private void nextRound() {
+        round++;
+        if (round == Integer.MAX_VALUE) {
+            Arrays.fill(visitedRound, 0);
+            Arrays.fill(backwardVisitedRound, 0);
+            Arrays.fill(coreDegreeRound, 0);
+            Arrays.fill(candidateDegreeRound, 0);
+            Arrays.fill(candidateRound, 0);
+            Arrays.fill(evictedRound, 0);
+            Arrays.fill(heapRound, 0);
+            round = 1;
+        }
+    }
+
+    /**
+     * Checks if a slot is in the adjacency list of another slot
+     *
+     * @param from the slot owning the adjacency list
+     * @param to   the searched slot
+     * @return true if the arc exists
+     */
+    private boolean hasArc(int from, int to) {
+        return degree[from] > 0 && Arrays.binarySearch(adjacency[from], 0, degree[from], to) >= 0;
+    }
+
+    /**
+     * Adds a slot to the adjacency list of another slot, keeping the list sorted
+     *
+     * @param from the slot owning the adjacency list
+     * @param to   the added slot
+     */
+    private void addArc(int from, int to) {
+        int index = degree[from] == 0 ? 0 : -Arrays.binarySearch(adjacency[from], 0, degree[from], to) - 1;
+        adjacency[from] = appendTo(adjacency[from], degree[from], to);
+        System.arraycopy(adjacency[from], index, adjacency[from], index + 1, degree[from] - index);
+        adjacency[from][index] = to;
+        degree[from]++;
+    }
+
+    /**
+     * Removes a slot from the adjacency list of another slot, keeping the list sorted
+     *
+     * @param from the slot owning the adjacency list
+     * @param to   the removed slot
+     * @return true if the arc existed
+     */
+    private boolean removeArc(int from, int to) {
+        int index = degree[from] == 0 ? -1 : Arrays.binarySearch(adjacency[from], 0, degree[from], to);
+        if (index < 0)
+            return false;
+
+        System.arraycopy(adjacency[from], index + 1, adjacency[from], index, degree[from] - index - 1);
+        degree[from]--;
+
+        return true;
+    }
+
+    /**
+     * Stores a value after the used part of an adjacency list, growing the list if it is full
+     *
+     * @param list  the adjacency list, null if it is empty
+     * @param used  the number of values in the list
+     * @param value the value
+     * @return the list holding the value at the index used, a new one if it had to grow
+     */
+    private static int[] appendTo(int[] list, int used, int value) {
+        if (list == null)
+            list = new int[4];
+        else if (used == list.length)
+            list = Arrays.copyOf(list, used * 2);
+
+        list[used] = value;
+
+        return list;
+    }
+}
@@ -0,0 +1,90 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The connected components of a {@link CsrGraph}, numbered from 0 to getCount() - 1
+ */
+public final class ConnectedComponents {
+    private final int[] labels;
+    private final int count;
+    private final int[] sizes;
+
+    /**
+     * Constructor for ConnectedComponents
+     *
+     * @param labels the component of every vertex
+     * @param count  the number of components
+     */
+    ConnectedComponents(int[] labels, int count) {
+        this.labels = labels;
+        this.count = count;
+        this.sizes = new int[count];
+
+        for (int label : labels)
+            sizes[label]++;
+    }
+
+    /**
+     * Gets the number of components
+     *
+     * @return the number of components
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the component of a vertex
+     *
+     * @param vertex the index of the vertex
+     * @return the index of the component
+     */
+    public int getComponent(int vertex) {
+        return labels[vertex];
+    }
+
+    /**
+     * Gets the number of vertices of a component
+     *
+     * @param component the index of the component
+     * @return the size of the component
+     */
+    public int getSize(int component) {
+        return sizes[component];
+    }
+
+    /**
+     * Gets the vertices of a component
+     *
+     * @param component the index of the component
+     * @return the indices of the vertices, sorted increasingly
+     */
+    public int[] getVertices(int component) {
+        int[] vertices = new int[sizes[component]];
+
+        int position = 0;
+        for (int vertex = 0; vertex < labels.length && position < vertices.length; vertex++)
+            if (labels[vertex] == component)
+                vertices[position++] = vertex;
+
+        return vertices;
+    }
+
+    /**
+     * Gets the vertices of all the components with a single pass over the vertices
+     *
+     * @return the vertices of every component, sorted increasingly
+     */
+    public int[][] getAllVertices() {
+        int[][] vertices = new int[count][];
+        for (int component = 0; component < count; component++)
+            vertices[component] = new int[sizes[component]];
+
+        int[] positions = new int[count];
+        for (int vertex = 0; vertex < labels.length; vertex++) {
+            int component = labels[vertex];
+            vertices[component][positions[component]++] = vertex;
+        }
+
+        return vertices;
+    }
+}
@@ -0,0 +1,280 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable graph of user ids stored in compressed sparse row (CSR) form
+ * The users are mapped to the dense indices 0..n-1 in increasing order of their ids,
+ * the neighbors of the vertex v are targets[offsets[v]] .. targets[offsets[v + 1] - 1] (sorted increasingly)
+ */
+public final class CsrGraph {
+    private final long[] ids;
+    private final int[] denseIndex;
+    final int[] offsets;
+    final int[] targets;
+
+    /**
+     * Constructor for CsrGraph
+     *
+     * @param ids     the ids of the vertices, sorted increasingly
+     * @param offsets the offsets of the adjacency lists, of length ids.length + 1
+     * @param targets the concatenated adjacency lists
+     */
+    CsrGraph(long[] ids, int[] offsets, int[] targets) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.denseIndex = createDenseIndex(ids);
+    }
+
+    /**
+     * Creates a lookup table from ids to vertices when the ids are dense (as the generated ids usually are),
+     * so indexOf does not need a binary search
+     *
+     * @param ids the ids of the vertices, sorted increasingly
+     * @return the table indexed by id - ids[0], null if the ids are too sparse
+     */
+    private static int[] createDenseIndex(long[] ids) {
+        if (ids.length == 0)
+            return null;
+
+        long range = ids[ids.length - 1] - ids[0] + 1;
+        if (range > 4L * ids.length + 1024)
+            return null;
+
+        int[] denseIndex = new int[(int) range];
+        Arrays.fill(denseIndex, -1);
+        for (int vertex = 0; vertex < ids.length; vertex++)
+            denseIndex[(int) (ids[vertex] - ids[0])] = vertex;
+
+        return denseIndex;
+    }
+
+    /**
+     * Creates the graph of the given users, with an edge from every user to each of its friends
+     * The friends which are not among the given users are ignored
+     *
+     * @param users the users
+     * @return the graph
+     */
+    public static CsrGraph fromUsers(Collection<User> users) {
+        long[] ids = new long[users.size()];
+        int n = 0;
+        for (User user : users)
+            ids[n++] = user.getId();
+        Arrays.sort(ids);
+        CsrGraph graph = new CsrGraph(ids, null, null);
+
+        // resolve every friend id once, in the iteration order of the users
+        int[] userVertices = new int[n];
+        int[] userArcsEnd = new int[n];
+        int[] arcs = new int[16];
+        int arcCount = 0;
+        int userIndex = 0;
+        for (User user : users) {
+            userVertices[userIndex] = graph.indexOf(user.getId());
+
+            for (Long friendId : user.getFriends()) {
+                int friend = graph.indexOf(friendId);
+                if (friend == -1)
+                    continue;
+
+                if (arcCount == arcs.length)
+                    arcs = Arrays.copyOf(arcs, arcs.length * 2);
+                arcs[arcCount++] = friend;
+            }
+            userArcsEnd[userIndex++] = arcCount;
+        }
+
+        int[] offsets = new int[n + 1];
+        for (int k = 0; k < n; k++)
+            offsets[userVertices[k] + 1] = userArcsEnd[k] - (k == 0 ? 0 : userArcsEnd[k - 1]);
+        for (int vertex = 0; vertex < n; vertex++)
+            offsets[vertex + 1] += offsets[vertex];
+
+        int[] targets = new int[arcCount];
+        for (int k = 0; k < n; k++) {
+            int arcsStart = k == 0 ? 0 : userArcsEnd[k - 1];
+            System.arraycopy(arcs, arcsStart, targets, offsets[userVertices[k]], userArcsEnd[k] - arcsStart);
+        }
+        for (int vertex = 0; vertex < n; vertex++)
+            Arrays.sort(targets, offsets[vertex], offsets[vertex + 1]);
+
+        return new CsrGraph(ids, offsets, targets);
+    }
+
+    /**
+     * Gets the number of vertices
+     *
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return ids.length;
+    }
+
+    /**
+     * Gets the number of directed edges (each friendship is counted once from each side)
+     *
+     * @return the number of directed edges
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Gets the user id of a vertex
+     *
+     * @param vertex the index of the vertex
+     * @return the id of the user
+     */
+    public long getId(int vertex) {
+        return ids[vertex];
+    }
+
+    /**
+     * Gets the vertex of a user id
+     *
+     * @param id the id of the user
+     * @return the index of the vertex, -1 if the user is not in the graph
+     */
+    public int indexOf(long id) {
+        if (denseIndex != null) {
+            long position = id - ids[0];
+
+            return position >= 0 && position < denseIndex.length ? denseIndex[(int) position] : -1;
+        }
+
+        int vertex = Arrays.binarySearch(ids, id);
+
+        return vertex >= 0 ? vertex : -1;
+    }
+
+    /**
+     * Gets the degree of a vertex
+     *
+     * @param vertex the index of the vertex
+     * @return the number of neighbors
+     */
+    public int getDegree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    /**
+     * Gets a neighbor of a vertex
+     *
+     * @param vertex the index of the vertex
+     * @param k      the position of the neighbor, between 0 and getDegree(vertex) - 1
+     * @return the index of the neighbor
+     */
+    public int getNeighbor(int vertex, int k) {
+        return targets[offsets[vertex] + k];
+    }
+
+    /**
+     * Finds the connected components of the graph with an iterative depth first search
+     * The components are numbered in the order of their smallest vertex
+     *
+     * @return the connected components
+     */
+    public ConnectedComponents getConnectedComponents() {
+        int n = ids.length;
+        int[] labels = new int[n];
+        Arrays.fill(labels, -1);
+        int[] stack = new int[n];
+
+        int count = 0;
+        for (int start = 0; start < n; start++) {
+            if (labels[start] != -1)
+                continue;
+
+            int top = 0;
+            stack[top++] = start;
+            labels[start] = count;
+            while (top > 0) {
+                int vertex = stack[--top];
+
+                for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                    int neighbor = targets[i];
+                    if (labels[neighbor] == -1) {
+                        labels[neighbor] = count;
+                        stack[top++] = neighbor;
+                    }
+                }
+            }
+            count++;
+        }
+
+        return new ConnectedComponents(labels, count);
+    }
+
+    /**
+     * Computes the distances from a vertex to all the other vertices with a breadth first search
+     *
+     * @param source the index of the source vertex
+     * @return the distances in edges, -1 for the vertices which can not be reached
+     */
+    public int[] getDistancesFrom(int source) {
+        int[] distances = new int[ids.length];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[ids.length];
+
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        distances[source] = 0;
+        while (head < tail) {
+            int vertex = queue[head++];
+
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                int neighbor = targets[i];
+                if (distances[neighbor] == -1) {
+                    distances[neighbor] = distances[vertex] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        return distances;
+    }
+
+    /**
+     * Creates the subgraph induced by a set of vertices
+     *
+     * @param vertices the indices of the vertices, sorted increasingly
+     * @return the subgraph, its vertex i corresponds to vertices[i]
+     */
+    public CsrGraph getSubgraph(int[] vertices) {
+        int[] newIndex = new int[ids.length];
+        Arrays.fill(newIndex, -1);
+        for (int i = 0; i < vertices.length; i++)
+            newIndex[vertices[i]] = i;
+
+        long[] subIds = new long[vertices.length];
+        int[] subOffsets = new int[vertices.length + 1];
+        for (int i = 0; i < vertices.length; i++) {
+            int vertex = vertices[i];
+            subIds[i] = ids[vertex];
+
+            int degree = 0;
+            for (int k = offsets[vertex]; k < offsets[vertex + 1]; k++)
+                if (newIndex[targets[k]] != -1)
+                    degree++;
+            subOffsets[i + 1] = subOffsets[i] + degree;
+        }
+
+        int[] subTargets = new int[subOffsets[vertices.length]];
+        for (int i = 0; i < vertices.length; i++) {
+            int position = subOffsets[i];
+            int vertex = vertices[i];
+
+            for (int k = offsets[vertex]; k < offsets[vertex + 1]; k++)
+                if (newIndex[targets[k]] != -1)
+                    subTargets[position++] = newIndex[targets[k]];
+        }
+
+        return new CsrGraph(subIds, subOffsets, subTargets);
+    }
+}
@@ -0,0 +1,69 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The triangles and the clustering coefficients of a graph or of a community
+ */
+public final class DensityResult {
+    private final int userCount;
+    private final long triangleCount;
+    private final double averageClusteringCoefficient;
+    private final double globalClusteringCoefficient;
+
+    /**
+     * Constructor for DensityResult
+     *
+     * @param userCount                    the number of users
+     * @param triangleCount                the number of triangles
+     * @param averageClusteringCoefficient the average of the local clustering coefficients
+     * @param globalClusteringCoefficient  the fraction of the connected triples which are closed (transitivity)
+     */
+    public DensityResult(int userCount, long triangleCount, double averageClusteringCoefficient,
+                         double globalClusteringCoefficient) {
+        this.userCount = userCount;
+        this.triangleCount = triangleCount;
+        this.averageClusteringCoefficient = averageClusteringCoefficient;
+        this.globalClusteringCoefficient = globalClusteringCoefficient;
+    }
+
+    /**
+     * Getter for userCount
+     *
+     * @return the number of users
+     */
+    public int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Getter for triangleCount
+     *
+     * @return the number of triangles
+     */
+    public long getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Getter for averageClusteringCoefficient
+     *
+     * @return the average of the local clustering coefficients
+     */
+    public double getAverageClusteringCoefficient() {
+        return averageClusteringCoefficient;
+    }
+
+    /**
+     * Getter for globalClusteringCoefficient
+     *
+     * @return the fraction of the connected triples which are closed (transitivity)
+     */
+    public double getGlobalClusteringCoefficient() {
+        return globalClusteringCoefficient;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d users, %d triangles, average clustering %.4f, global clustering %.4f",
+                userCount, triangleCount, averageClusteringCoefficient, globalClusteringCoefficient);
+    }
+}
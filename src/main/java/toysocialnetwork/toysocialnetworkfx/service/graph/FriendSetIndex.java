@@ -0,0 +1,130 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutual friends queries over the sorted adjacency lists of a community index
+ * The friends of a user are the sorted slots of its friends, so the mutual friends of two users are found
+ * with a merge of two lists, in O(sum of their friends counts) and without allocating sets.
+ * The view keeps no state of its own: it uses the slots and the adjacency lists of the community index,
+ * which is kept up to date by the services, and locks the community index while it reads them
+ */
+public class FriendSetIndex {
+    private final CommunityIndex communityIndex;
+
+    /**
+     * Constructor for FriendSetIndex
+     *
+     * @param communityIndex the community index whose adjacency lists are read
+     */
+    FriendSetIndex(CommunityIndex communityIndex) {
+        this.communityIndex = communityIndex;
+    }
+
+    /**
+     * Gets the mutual friends of two users
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return the ids of the users which are friends with both users, in the order of their slots,
+     * empty if a user is not indexed
+     */
+    public List<Long> getMutualFriends(long firstUserId, long secondUserId) {
+        List<Long> mutualFriends = new ArrayList<>();
+
+        synchronized (communityIndex) {
+            int first = communityIndex.getSlot(firstUserId);
+            int second = communityIndex.getSlot(secondUserId);
+            if (first < 0 || second < 0)
+                return mutualFriends;
+
+            int[] firstFriends = communityIndex.getNeighbors(first);
+            int[] secondFriends = communityIndex.getNeighbors(second);
+            int i = 0;
+            int j = 0;
+            while (i < communityIndex.getDegree(first) && j < communityIndex.getDegree(second)) {
+                if (firstFriends[i] < secondFriends[j])
+                    i++;
+                else if (firstFriends[i] > secondFriends[j])
+                    j++;
+                else {
+                    mutualFriends.add(communityIndex.getId(firstFriends[i]));
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        return mutualFriends;
+    }
+
+    /**
+     * Counts the mutual friends of two users, without listing them
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return the number of users which are friends with both users, 0 if a user is not indexed
+     */
+    public int getMutualFriendsCount(long firstUserId, long secondUserId) {
+        synchronized (communityIndex) {
+            int first = communityIndex.getSlot(firstUserId);
+            int second = communityIndex.getSlot(secondUserId);
+            if (first < 0 || second < 0)
+                return 0;
+
+            return getIntersectionSize(first, second);
+        }
+    }
+
+    /**
+     * Counts the users which are friends with any of two users
+     *
+     * @param firstUserId  the id of the first user
+     * @param secondUserId the id of the second user
+     * @return the size of the union of the friends of the users, 0 if a user is not indexed
+     */
+    public int getCombinedFriendsCount(long firstUserId, long secondUserId) {
+        synchronized (communityIndex) {
+            int first = communityIndex.getSlot(firstUserId);
+            int second = communityIndex.getSlot(secondUserId);
+            if (first < 0 || second < 0)
+                return 0;
+
+            return communityIndex.getDegree(first) + communityIndex.getDegree(second)
+                    - getIntersectionSize(first, second);
+        }
+    }
+
+    /**
+     * Counts the common friends of two slots with a merge of their sorted adjacency lists,
+     * the caller must hold the lock of the community index
+     *
+     * @param first  the first slot
+     * @param second the second slot
+     * @return the number of common friends
+     */
+    private int getIntersectionSize(int first, int second) {
+        int[] firstFriends = communityIndex.getNeighbors(first);
+        int[] secondFriends = communityIndex.getNeighbors(second);
+        int firstDegree = communityIndex.getDegree(first);
+        int secondDegree = communityIndex.getDegree(second);
+        int count = 0;
+
+        int i = 0;
+        int j = 0;
+        while (i < firstDegree && j < secondDegree) {
+            if (firstFriends[i] < secondFriends[j])
+                i++;
+            else if (firstFriends[i] > secondFriends[j])
+                j++;
+            else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,317 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import java.util.Arrays;
+
+/**
+ * Detects communities with the Louvain modularity optimisation
+ * Every level moves single vertices to the neighboring community with the largest modularity gain
+ * until no move improves the modularity, then merges every community into one vertex of a weighted graph
+ * and repeats on that graph. The moves of a level depend on each other, so the levels run sequentially;
+ * the graphs are stored in primitive arrays and the first level reads the CSR graph directly,
+ * so the memory stays linear in the size of the graph.
+ * The first level can start from the communities of a previous run: the vertices are checked once
+ * and only the ones in changed regions move, the later levels are small
+ */
+public class Louvain {
+    /**
+     * The default resolution, 1 gives the classic modularity
+     */
+    public static final double DEFAULT_RESOLUTION = 1.0;
+    /**
+     * The default maximum number of levels
+     */
+    public static final int DEFAULT_MAX_LEVELS = 20;
+
+    private static final double MIN_GAIN = 1e-10;
+
+    private final double resolution;
+    private final int maxLevels;
+
+    /**
+     * Constructor for Louvain
+     *
+     * @param resolution the resolution, larger values give smaller communities
+     * @param maxLevels  the maximum number of levels
+     * @throws IllegalArgumentException if the resolution or the maximum number of levels is not positive
+     */
+    public Louvain(double resolution, int maxLevels) {
+        if (!(resolution > 0))
+            throw new IllegalArgumentException("Resolution must be positive");
+        if (maxLevels < 1)
+            throw new IllegalArgumentException("The maximum number of levels must be positive");
+
+        this.resolution = resolution;
+        this.maxLevels = maxLevels;
+    }
+
+    /**
+     * Detects the communities of a graph
+     *
+     * @param graph         the graph
+     * @param initialLabels the starting label of every vertex, a vertex of its community,
+     *                      null to start with every vertex alone
+     * @return the communities
+     * @throws IllegalArgumentException if the labels do not match the graph
+     */
+    public CommunityDetectionResult detect(CsrGraph graph, int[] initialLabels) {
+        int n = graph.getVertexCount();
+        if (initialLabels != null && initialLabels.length != n)
+            throw new IllegalArgumentException("There must be a label for every vertex");
+
+        int[] vertexCommunities = new int[n];
+        for (int vertex = 0; vertex < n; vertex++)
+            vertexCommunities[vertex] = vertex;
+
+        WeightedGraph level = new WeightedGraph(n, graph.offsets, graph.targets, null, new double[n]);
+        int[] communities = initialLabels == null ? vertexCommunities.clone() : initialLabels.clone();
+
+        int levelCount = 0;
+        boolean converged = false;
+        while (levelCount < maxLevels) {
+            levelCount++;
+            moveVertices(level, communities);
+
+            int communityCount = renumber(communities);
+            for (int vertex = 0; vertex < n; vertex++)
+                vertexCommunities[vertex] = communities[vertexCommunities[vertex]];
+
+            // nothing was merged, the next level would be the same graph
+            if (communityCount == level.size) {
+                converged = true;
+                break;
+            }
+
+            level = aggregate(level, communities, communityCount);
+            communities = new int[communityCount];
+            for (int community = 0; community < communityCount; community++)
+                communities[community] = community;
+        }
+
+        return new CommunityDetectionResult(graph, vertexCommunities, levelCount, converged);
+    }
+
+    /**
+     * Moves the vertices of a level between the communities while the modularity improves
+     * The vertices are processed from a queue, a vertex which moves puts its neighbors
+     * from other communities back in the queue
+     *
+     * @param graph       the graph of the level
+     * @param communities the community of every vertex, updated
+     */
+    private void moveVertices(WeightedGraph graph, int[] communities) {
+        int n = graph.size;
+        double[] strengths = new double[n];
+        double[] totals = new double[n];
+        double totalWeight = 0;
+        for (int vertex = 0; vertex < n; vertex++) {
+            strengths[vertex] = graph.getStrength(vertex);
+            totals[communities[vertex]] += strengths[vertex];
+            totalWeight += strengths[vertex];
+        }
+        if (totalWeight == 0)
+            return;
+
+        double[] neighborWeights = new double[n];
+        Arrays.fill(neighborWeights, -1);
+        int[] neighborCommunities = new int[n];
+
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        for (int vertex = 0; vertex < n; vertex++) {
+            queue[vertex] = vertex;
+            queued[vertex] = true;
+        }
+        int head = 0;
+        int queueSize = n;
+
+        while (queueSize > 0) {
+            int vertex = queue[head];
+            head = (head + 1) % n;
+            queueSize--;
+            queued[vertex] = false;
+
+            int oldCommunity = communities[vertex];
+            int neighborCount = 0;
+            neighborWeights[oldCommunity] = 0;
+            neighborCommunities[neighborCount++] = oldCommunity;
+            for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                int neighbor = graph.targets[i];
+                if (neighbor == vertex)
+                    continue;
+
+                int community = communities[neighbor];
+                if (neighborWeights[community] < 0) {
+                    neighborWeights[community] = 0;
+                    neighborCommunities[neighborCount++] = community;
+                }
+                neighborWeights[community] += graph.getWeight(i);
+            }
+
+            // the gain of joining a community, up to terms which are the same for every community
+            double strength = strengths[vertex];
+            totals[oldCommunity] -= strength;
+            int bestCommunity = oldCommunity;
+            double bestGain = neighborWeights[oldCommunity] - resolution * totals[oldCommunity] * strength / totalWeight;
+            for (int k = 0; k < neighborCount; k++) {
+                int community = neighborCommunities[k];
+                double gain = neighborWeights[community] - resolution * totals[community] * strength / totalWeight;
+                if (gain > bestGain + MIN_GAIN) {
+                    bestCommunity = community;
+                    bestGain = gain;
+                }
+                neighborWeights[community] = -1;
+            }
+            totals[bestCommunity] += strength;
+            communities[vertex] = bestCommunity;
+
+            if (bestCommunity != oldCommunity) {
+                for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                    int neighbor = graph.targets[i];
+                    if (!queued[neighbor] && communities[neighbor] != bestCommunity) {
+                        queue[(head + queueSize) % n] = neighbor;
+                        queueSize++;
+                        queued[neighbor] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Renumbers the communities from 0, in the order of their first vertex
+     *
+     * @param communities the community of every vertex, updated
+     * @return the number of communities
+     */
+    private static int renumber(int[] communities) {
+        int[] numbers = new int[communities.length];
+        Arrays.fill(numbers, -1);
+
+        int count = 0;
+        for (int vertex = 0; vertex < communities.length; vertex++) {
+            if (numbers[communities[vertex]] == -1)
+                numbers[communities[vertex]] = count++;
+            communities[vertex] = numbers[communities[vertex]];
+        }
+
+        return count;
+    }
+
+    /**
+     * Merges every community of a level into one vertex of the next level
+     * The edges between two communities become one edge with the sum of their weights,
+     * the edges inside a community become its self loop
+     *
+     * @param graph          the graph of the level
+     * @param communities    the community of every vertex, numbered from 0
+     * @param communityCount the number of communities
+     * @return the graph of the next level
+     */
+    private static WeightedGraph aggregate(WeightedGraph graph, int[] communities, int communityCount) {
+        // the vertices grouped by community, with a counting sort
+        int[] memberOffsets = new int[communityCount + 1];
+        for (int community : communities)
+            memberOffsets[community + 1]++;
+        for (int community = 0; community < communityCount; community++)
+            memberOffsets[community + 1] += memberOffsets[community];
+        int[] members = new int[graph.size];
+        int[] positions = Arrays.copyOf(memberOffsets, communityCount);
+        for (int vertex = 0; vertex < graph.size; vertex++)
+            members[positions[communities[vertex]]++] = vertex;
+
+        int[] offsets = new int[communityCount + 1];
+        int[] targets = new int[16];
+        double[] weights = new double[16];
+        double[] selfLoops = new double[communityCount];
+        double[] neighborWeights = new double[communityCount];
+        int[] neighborCommunities = new int[communityCount];
+        boolean[] seen = new boolean[communityCount];
+        int arcCount = 0;
+
+        for (int community = 0; community < communityCount; community++) {
+            int neighborCount = 0;
+
+            for (int k = memberOffsets[community]; k < memberOffsets[community + 1]; k++) {
+                int vertex = members[k];
+                selfLoops[community] += graph.selfLoops[vertex];
+
+                for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                    int neighborCommunity = communities[graph.targets[i]];
+                    if (neighborCommunity == community)
+                        selfLoops[community] += graph.getWeight(i);
+                    else {
+                        if (!seen[neighborCommunity]) {
+                            seen[neighborCommunity] = true;
+                            neighborCommunities[neighborCount++] = neighborCommunity;
+                        }
+                        neighborWeights[neighborCommunity] += graph.getWeight(i);
+                    }
+                }
+            }
+
+            if (arcCount + neighborCount > targets.length) {
+                int capacity = Math.max(arcCount + neighborCount, targets.length * 2);
+                targets = Arrays.copyOf(targets, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            for (int k = 0; k < neighborCount; k++) {
+                int neighborCommunity = neighborCommunities[k];
+                targets[arcCount] = neighborCommunity;
+                weights[arcCount] = neighborWeights[neighborCommunity];
+                arcCount++;
+
+                seen[neighborCommunity] = false;
+                neighborWeights[neighborCommunity] = 0;
+            }
+            offsets[community + 1] = arcCount;
+        }
+
+        return new WeightedGraph(communityCount, offsets, Arrays.copyOf(targets, arcCount),
+                Arrays.copyOf(weights, arcCount), selfLoops);
+    }
+
+    /**
+     * Weighted graph of a level, in compressed sparse row form
+     * The weights of the first level are all 1 and are not stored. The self loop of a vertex holds the weight
+     * of the edges inside the community it stands for, counted in both directions
+     */
+    private static final class WeightedGraph {
+        private final int size;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final double[] selfLoops;
+
+        private WeightedGraph(int size, int[] offsets, int[] targets, double[] weights, double[] selfLoops) {
+            this.size = size;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.weights = weights;
+            this.selfLoops = selfLoops;
+        }
+
+        /**
+         * Gets the weight of an arc
+         *
+         * @param arc the index of the arc
+         * @return the weight
+         */
+        private double getWeight(int arc) {
+            return weights == null ? 1 : weights[arc];
+        }
+
+        /**
+         * Gets the total weight of the arcs of a vertex, including its self loop
+         *
+         * @param vertex the vertex
+         * @return the strength of the vertex
+         */
+        private double getStrength(int vertex) {
+            double strength = selfLoops[vertex];
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++)
+                strength += getWeight(i);
+
+            return strength;
+        }
+    }
+}
@@ -0,0 +1,847 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel versions of the whole-network algorithms of {@link CsrGraph}, running on a dedicated ForkJoinPool
+ * The results are deterministic and identical to the ones of the sequential algorithms
+ */
+public class ParallelGraphAlgorithms implements AutoCloseable {
+    private static final int SEQUENTIAL_THRESHOLD = 2048;
+    private static final int REDUCTION_BLOCK_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for ParallelGraphAlgorithms
+     *
+     * @param parallelism the number of worker threads
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public ParallelGraphAlgorithms(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be positive");
+
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Gets the number of worker threads
+     *
+     * @return the parallelism
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Finds the connected components with a Shiloach-Vishkin style algorithm
+     * Every round hooks the root of each edge endpoint to the smaller root (with compare-and-set) and then
+     * shortcuts all the trees to stars, until no edge connects two trees. The roots always point to smaller
+     * vertices, so the root of a component is its smallest vertex and the components are numbered
+     * in the same order as by the sequential algorithm
+     *
+     * @param graph the graph
+     * @return the connected components
+     */
+    public ConnectedComponents getConnectedComponents(CsrGraph graph) {
+        int n = graph.getVertexCount();
+        AtomicIntegerArray parent = new AtomicIntegerArray(n);
+        forEach(n, vertex -> parent.set(vertex, vertex));
+
+        AtomicBoolean changed = new AtomicBoolean(true);
+        while (changed.get()) {
+            changed.set(false);
+
+            forEach(n, vertex -> {
+                for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++)
+                    if (hook(parent, vertex, graph.targets[i]))
+                        changed.set(true);
+            });
+            forEach(n, vertex -> parent.set(vertex, findRoot(parent, vertex)));
+        }
+
+        int[] labels = new int[n];
+        int count = 0;
+        for (int vertex = 0; vertex < n; vertex++) {
+            int root = parent.get(vertex);
+            labels[vertex] = root == vertex ? count++ : labels[root];
+        }
+
+        return new ConnectedComponents(labels, count);
+    }
+
+    /**
+     * Computes the distances from a vertex with a level synchronous breadth first search
+     * The vertices of each level are expanded in parallel, the discovered vertices are claimed
+     * with compare-and-set and appended to the next level in blocks
+     *
+     * @param graph  the graph
+     * @param source the index of the source vertex
+     * @return the distances in edges, -1 for the vertices which can not be reached
+     */
+    public int[] getDistancesFrom(CsrGraph graph, int source) {
+        int n = graph.getVertexCount();
+        AtomicIntegerArray distances = new AtomicIntegerArray(n);
+        forEach(n, vertex -> distances.set(vertex, -1));
+
+        int[] frontier = new int[n];
+        int[] nextFrontier = new int[n];
+        frontier[0] = source;
+        int frontierSize = 1;
+        distances.set(source, 0);
+
+        for (int level = 0; frontierSize > 0; level++) {
+            int nextDistance = level + 1;
+            int[] currentFrontier = frontier;
+            int[] discovered = nextFrontier;
+            AtomicInteger discoveredCount = new AtomicInteger();
+
+            forEach(frontierSize, (start, end) -> {
+                int[] buffer = new int[64];
+                int bufferSize = 0;
+
+                for (int k = start; k < end; k++) {
+                    int vertex = currentFrontier[k];
+
+                    for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                        int neighbor = graph.targets[i];
+                        if (distances.get(neighbor) == -1 && distances.compareAndSet(neighbor, -1, nextDistance)) {
+                            if (bufferSize == buffer.length) {
+                                int position = discoveredCount.getAndAdd(bufferSize);
+                                System.arraycopy(buffer, 0, discovered, position, bufferSize);
+                                bufferSize = 0;
+                            }
+                            buffer[bufferSize++] = neighbor;
+                        }
+                    }
+                }
+
+                int position = discoveredCount.getAndAdd(bufferSize);
+                System.arraycopy(buffer, 0, discovered, position, bufferSize);
+            });
+
+            nextFrontier = frontier;
+            frontier = discovered;
+            frontierSize = discoveredCount.get();
+        }
+
+        int[] result = new int[n];
+        for (int vertex = 0; vertex < n; vertex++)
+            result[vertex] = distances.get(vertex);
+
+        return result;
+    }
+
+    /**
+     * Computes the PageRank of the vertices with parallel power iteration
+     * Every friendship counts as a link in both directions. In every iteration each vertex pulls the scores
+     * of its neighbors, so the vertices are updated independently; the rank of the vertices without friends
+     * is spread evenly over all the vertices. The sums are reduced over fixed blocks of vertices in a fixed order,
+     * so the scores do not depend on the parallelism
+     *
+     * @param graph         the graph
+     * @param damping       the probability of following a link, usually 0.85
+     * @param tolerance     the iteration stops when the L1 distance between two iterations drops below it
+     * @param maxIterations the iteration cap
+     * @return the scores, which sum up to 1
+     * @throws IllegalArgumentException if the damping is not in [0, 1], the tolerance is not positive
+     *                                  or the iteration cap is not positive
+     */
+    public CentralityResult getPageRank(CsrGraph graph, double damping, double tolerance, int maxIterations) {
+        if (damping < 0 || damping > 1)
+            throw new IllegalArgumentException("Damping must be between 0 and 1");
+        validateIterationParameters(tolerance, maxIterations);
+
+        int n = graph.getVertexCount();
+        double[] ranks = new double[n];
+        double[] nextRanks = new double[n];
+        double[] contributions = new double[n];
+        double[] blockSums = new double[getBlockCount(n)];
+        Arrays.fill(ranks, 1.0 / n);
+
+        int iteration = 0;
+        boolean converged = n == 0;
+        while (!converged && iteration < maxIterations) {
+            double[] currentRanks = ranks;
+            double[] updatedRanks = nextRanks;
+
+            // the contribution of a vertex to each neighbor, the vertices without neighbors contribute to everyone
+            forEachBlock(n, (start, end) -> {
+                double danglingRank = 0;
+                for (int vertex = start; vertex < end; vertex++) {
+                    int degree = graph.getDegree(vertex);
+                    if (degree == 0) {
+                        contributions[vertex] = 0;
+                        danglingRank += currentRanks[vertex];
+                    } else
+                        contributions[vertex] = currentRanks[vertex] / degree;
+                }
+                blockSums[start / REDUCTION_BLOCK_SIZE] = danglingRank;
+            });
+            double base = (1 - damping) / n + damping * sum(blockSums) / n;
+
+            forEachBlock(n, (start, end) -> {
+                double distance = 0;
+                for (int vertex = start; vertex < end; vertex++) {
+                    double rank = 0;
+                    for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++)
+                        rank += contributions[graph.targets[i]];
+
+                    updatedRanks[vertex] = base + damping * rank;
+                    distance += Math.abs(updatedRanks[vertex] - currentRanks[vertex]);
+                }
+                blockSums[start / REDUCTION_BLOCK_SIZE] = distance;
+            });
+
+            nextRanks = ranks;
+            ranks = updatedRanks;
+            iteration++;
+            converged = sum(blockSums) < tolerance;
+        }
+
+        return new CentralityResult(ranks, iteration, converged);
+    }
+
+    /**
+     * Computes the eigenvector centrality of the vertices with parallel power iteration
+     * The iteration multiplies with A + I instead of the adjacency matrix A: the eigenvectors are the same,
+     * but the iteration also converges on bipartite graphs, where it would oscillate with A alone.
+     * The vectors are normalized to unit length after every iteration
+     *
+     * @param graph         the graph
+     * @param tolerance     the iteration stops when the L1 distance between two iterations drops below it
+     * @param maxIterations the iteration cap
+     * @return the scores, with unit Euclidean norm
+     * @throws IllegalArgumentException if the tolerance or the iteration cap is not positive
+     */
+    public CentralityResult getEigenvectorCentrality(CsrGraph graph, double tolerance, int maxIterations) {
+        validateIterationParameters(tolerance, maxIterations);
+
+        int n = graph.getVertexCount();
+        double[] scores = new double[n];
+        double[] nextScores = new double[n];
+        double[] blockSums = new double[getBlockCount(n)];
+        Arrays.fill(scores, 1.0 / Math.sqrt(n));
+
+        int iteration = 0;
+        boolean converged = n == 0;
+        while (!converged && iteration < maxIterations) {
+            double[] currentScores = scores;
+            double[] updatedScores = nextScores;
+
+            forEachBlock(n, (start, end) -> {
+                double squares = 0;
+                for (int vertex = start; vertex < end; vertex++) {
+                    double score = currentScores[vertex];
+                    for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++)
+                        score += currentScores[graph.targets[i]];
+
+                    updatedScores[vertex] = score;
+                    squares += score * score;
+                }
+                blockSums[start / REDUCTION_BLOCK_SIZE] = squares;
+            });
+            double norm = Math.sqrt(sum(blockSums));
+
+            forEachBlock(n, (start, end) -> {
+                double distance = 0;
+                for (int vertex = start; vertex < end; vertex++) {
+                    updatedScores[vertex] /= norm;
+                    distance += Math.abs(updatedScores[vertex] - currentScores[vertex]);
+                }
+                blockSums[start / REDUCTION_BLOCK_SIZE] = distance;
+            });
+
+            nextScores = scores;
+            scores = updatedScores;
+            iteration++;
+            converged = sum(blockSums) < tolerance;
+        }
+
+        return new CentralityResult(scores, iteration, converged);
+    }
+
+    /**
+     * Counts the triangles of every vertex with the compact-forward algorithm
+     * The vertices are ranked by degree (ties by index) and every edge is oriented towards the higher rank,
+     * so every vertex keeps at most O(sqrt(m)) forward neighbors, sorted by rank. Every triangle r < a < b
+     * is found exactly once, by merging the forward neighbors of r after a with the forward neighbors of a.
+     * The vertices are processed in parallel, the counts of the other two vertices of a triangle
+     * are incremented atomically
+     *
+     * @param graph the graph
+     * @return the triangles of every vertex, with the clustering coefficients
+     */
+    public ClusteringResult getTriangleCounts(CsrGraph graph) {
+        int n = graph.getVertexCount();
+
+        // counting sort by degree, stable, so the ties keep the order of the indices
+        int maxDegree = 0;
+        for (int vertex = 0; vertex < n; vertex++)
+            maxDegree = Math.max(maxDegree, graph.getDegree(vertex));
+        int[] degreeStarts = new int[maxDegree + 2];
+        for (int vertex = 0; vertex < n; vertex++)
+            degreeStarts[graph.getDegree(vertex) + 1]++;
+        for (int degree = 1; degree < degreeStarts.length; degree++)
+            degreeStarts[degree] += degreeStarts[degree - 1];
+
+        int[] ranks = new int[n];
+        int[] vertices = new int[n];
+        for (int vertex = 0; vertex < n; vertex++) {
+            int rank = degreeStarts[graph.getDegree(vertex)]++;
+            ranks[vertex] = rank;
+            vertices[rank] = vertex;
+        }
+
+        int[] forwardOffsets = new int[n + 1];
+        forEach(n, rank -> {
+            int vertex = vertices[rank];
+            int count = 0;
+            for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++)
+                if (ranks[graph.targets[i]] > rank)
+                    count++;
+            forwardOffsets[rank + 1] = count;
+        });
+        for (int rank = 0; rank < n; rank++)
+            forwardOffsets[rank + 1] += forwardOffsets[rank];
+
+        int[] forwardTargets = new int[forwardOffsets[n]];
+        forEach(n, rank -> {
+            int vertex = vertices[rank];
+            int position = forwardOffsets[rank];
+            for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++)
+                if (ranks[graph.targets[i]] > rank)
+                    forwardTargets[position++] = ranks[graph.targets[i]];
+            Arrays.sort(forwardTargets, forwardOffsets[rank], position);
+        });
+
+        AtomicLongArray triangles = new AtomicLongArray(n);
+        forEach(n, rank -> {
+            int end = forwardOffsets[rank + 1];
+            long count = 0;
+
+            for (int i = forwardOffsets[rank]; i < end; i++) {
+                int middle = forwardTargets[i];
+                int p = i + 1;
+                int q = forwardOffsets[middle];
+                int middleEnd = forwardOffsets[middle + 1];
+
+                while (p < end && q < middleEnd) {
+                    if (forwardTargets[p] < forwardTargets[q])
+                        p++;
+                    else if (forwardTargets[p] > forwardTargets[q])
+                        q++;
+                    else {
+                        triangles.incrementAndGet(vertices[middle]);
+                        triangles.incrementAndGet(vertices[forwardTargets[p]]);
+                        count++;
+                        p++;
+                        q++;
+                    }
+                }
+            }
+
+            if (count > 0)
+                triangles.addAndGet(vertices[rank], count);
+        });
+
+        long[] vertexTriangles = new long[n];
+        for (int vertex = 0; vertex < n; vertex++)
+            vertexTriangles[vertex] = triangles.get(vertex);
+
+        return new ClusteringResult(graph, vertexTriangles);
+    }
+
+    /**
+     * Detects communities with synchronous label propagation
+     * In every round each active vertex takes the most frequent label among itself and its neighbors
+     * (the smallest one on ties), reading the labels of the previous round, so the vertices are updated
+     * in parallel and the result does not depend on the parallelism. Counting the own label
+     * and breaking the ties the same way everywhere stops the two-vertex oscillations of the synchronous updates.
+     * Only the vertices which changed their label and their neighbors stay active in the next round,
+     * so starting from the labels of a previous run only the changed regions of the graph are recomputed
+     *
+     * @param graph         the graph
+     * @param initialLabels the starting label of every vertex, a vertex of its community,
+     *                      null to start with every vertex alone
+     * @param maxIterations the iteration cap
+     * @return the communities
+     * @throws IllegalArgumentException if the iteration cap is not positive or the labels do not match the graph
+     */
+    public CommunityDetectionResult getLabelPropagation(CsrGraph graph, int[] initialLabels, int maxIterations) {
+        int n = graph.getVertexCount();
+        if (maxIterations < 1)
+            throw new IllegalArgumentException("The iteration cap must be positive");
+        if (initialLabels != null && initialLabels.length != n)
+            throw new IllegalArgumentException("There must be a label for every vertex");
+
+        int[] labels = new int[n];
+        int[] nextLabels = new int[n];
+        int[] frontier = new int[n];
+        int[] nextFrontier = new int[n];
+        AtomicIntegerArray activeRound = new AtomicIntegerArray(n);
+        for (int vertex = 0; vertex < n; vertex++) {
+            labels[vertex] = initialLabels == null ? vertex : initialLabels[vertex];
+            frontier[vertex] = vertex;
+        }
+        int frontierSize = n;
+
+        int iteration = 0;
+        while (frontierSize > 0 && iteration < maxIterations) {
+            int round = ++iteration;
+            int[] currentFrontier = frontier;
+            int[] activated = nextFrontier;
+            AtomicInteger activatedCount = new AtomicInteger();
+
+            forEach(frontierSize, (start, end) -> {
+                int[] neighborLabels = new int[16];
+
+                for (int k = start; k < end; k++) {
+                    int vertex = currentFrontier[k];
+                    int degree = graph.getDegree(vertex);
+                    if (neighborLabels.length <= degree)
+                        neighborLabels = new int[Math.max(degree + 1, neighborLabels.length * 2)];
+
+                    neighborLabels[0] = labels[vertex];
+                    for (int i = 0; i < degree; i++)
+                        neighborLabels[i + 1] = labels[graph.targets[graph.offsets[vertex] + i]];
+                    Arrays.sort(neighborLabels, 0, degree + 1);
+
+                    nextLabels[vertex] = getMostFrequent(neighborLabels, degree + 1);
+                }
+            });
+
+            forEach(frontierSize, (start, end) -> {
+                int[] buffer = new int[64];
+                int bufferSize = 0;
+
+                for (int k = start; k < end; k++) {
+                    int vertex = currentFrontier[k];
+                    if (nextLabels[vertex] == labels[vertex])
+                        continue;
+                    labels[vertex] = nextLabels[vertex];
+
+                    for (int i = graph.offsets[vertex] - 1; i < graph.offsets[vertex + 1]; i++) {
+                        int activatedVertex = i < graph.offsets[vertex] ? vertex : graph.targets[i];
+                        int previousRound = activeRound.get(activatedVertex);
+                        if (previousRound != round && activeRound.compareAndSet(activatedVertex, previousRound, round)) {
+                            if (bufferSize == buffer.length) {
+                                int position = activatedCount.getAndAdd(bufferSize);
+                                System.arraycopy(buffer, 0, activated, position, bufferSize);
+                                bufferSize = 0;
+                            }
+                            buffer[bufferSize++] = activatedVertex;
+                        }
+                    }
+                }
+
+                int position = activatedCount.getAndAdd(bufferSize);
+                System.arraycopy(buffer, 0, activated, position, bufferSize);
+            });
+
+            nextFrontier = frontier;
+            frontier = activated;
+            frontierSize = activatedCount.get();
+        }
+
+        return new CommunityDetectionResult(graph, labels, iteration, frontierSize == 0);
+    }
+
+    /**
+     * Computes the exact betweenness centrality of the vertices with Brandes' algorithm
+     * Every vertex is the source of a breadth first search which counts the shortest paths to the other vertices,
+     * then the dependencies of the source on the vertices are accumulated in the reverse order of the search.
+     * The sources are shared between the worker threads, every worker with its own search state
+     *
+     * @param graph   the graph
+     * @param monitor the progress of the job, one step per source
+     * @return the exact scores
+     * @throws java.util.concurrent.CancellationException if the job was cancelled
+     */
+    public BetweennessResult getBetweennessCentrality(CsrGraph graph, ProgressMonitor monitor) {
+        int n = graph.getVertexCount();
+        int[] sources = new int[n];
+        for (int vertex = 0; vertex < n; vertex++)
+            sources[vertex] = vertex;
+
+        double[] scores = accumulateDependencies(graph, sources, monitor);
+        double factor = n > 2 ? 1.0 / ((double) (n - 1) * (n - 2)) : 0;
+        for (int vertex = 0; vertex < n; vertex++)
+            scores[vertex] *= factor;
+
+        return new BetweennessResult(scores, n, true, 0, 1);
+    }
+
+    /**
+     * Estimates the betweenness centrality of the vertices from a random sample of sources
+     * The dependencies on every vertex are averaged over k distinct random sources and scaled up to all the sources.
+     * The dependency of a source on a vertex is at most n - 2, so by Hoeffding's inequality together with
+     * the union bound over the vertices, k = ln(2n / (1 - confidence)) / (2 * errorBound^2) sources keep all
+     * the scores within the error bound with the given confidence. The graph is solved exactly when the sample
+     * would not be smaller than the graph. The sample only depends on the seed
+     *
+     * @param graph      the graph
+     * @param errorBound the largest allowed difference between an estimated score and the exact one
+     * @param confidence the probability that all the scores are within the error bound
+     * @param seed       the seed of the sample
+     * @param monitor    the progress of the job, one step per source
+     * @return the estimated scores, or the exact ones on small graphs
+     * @throws IllegalArgumentException                   if the error bound is not in (0, 1]
+     *                                                    or the confidence is not in (0, 1)
+     * @throws java.util.concurrent.CancellationException if the job was cancelled
+     */
+    public BetweennessResult getApproximateBetweennessCentrality(CsrGraph graph, double errorBound, double confidence,
+                                                                long seed, ProgressMonitor monitor) {
+        if (!(errorBound > 0 && errorBound <= 1))
+            throw new IllegalArgumentException("The error bound must be between 0 and 1");
+        if (!(confidence > 0 && confidence < 1))
+            throw new IllegalArgumentException("The confidence must be between 0 and 1");
+
+        // the estimate averages over all the n sources, the bound is on the average over the n - 1 others
+        int n = graph.getVertexCount();
+        double epsilon = errorBound * (n - 1) / n;
+        double sampleSize = Math.ceil(Math.log(2.0 * n / (1 - confidence)) / (2 * epsilon * epsilon));
+        if (n <= 2 || sampleSize >= n)
+            return getBetweennessCentrality(graph, monitor);
+
+        int k = (int) sampleSize;
+        int[] vertices = new int[n];
+        for (int vertex = 0; vertex < n; vertex++)
+            vertices[vertex] = vertex;
+        Random random = new Random(seed);
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(n - i);
+            int vertex = vertices[i];
+            vertices[i] = vertices[j];
+            vertices[j] = vertex;
+        }
+
+        double[] scores = accumulateDependencies(graph, Arrays.copyOf(vertices, k), monitor);
+        double factor = (double) n / k / ((double) (n - 1) * (n - 2));
+        for (int vertex = 0; vertex < n; vertex++)
+            scores[vertex] *= factor;
+
+        return new BetweennessResult(scores, k, false, errorBound, confidence);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Hooks the tree of one endpoint of an edge under the tree of the other endpoint,
+     * always attaching the larger root to the smaller root
+     *
+     * @param parent the parents of the vertices
+     * @param first  the first endpoint
+     * @param second the second endpoint
+     * @return true if a root was hooked
+     */
+    private static boolean hook(AtomicIntegerArray parent, int first, int second) {
+        while (true) {
+            int firstRoot = findRoot(parent, first);
+            int secondRoot = findRoot(parent, second);
+            if (firstRoot == secondRoot)
+                return false;
+
+            int high = Math.max(firstRoot, secondRoot);
+            int low = Math.min(firstRoot, secondRoot);
+            if (parent.compareAndSet(high, high, low))
+                return true;
+        }
+    }
+
+    /**
+     * Finds the root of the tree of a vertex
+     *
+     * @param parent the parents of the vertices
+     * @param vertex the vertex
+     * @return the root
+     */
+    private static int findRoot(AtomicIntegerArray parent, int vertex) {
+        int current = vertex;
+        int next = parent.get(current);
+        while (next != current) {
+            current = next;
+            next = parent.get(current);
+        }
+
+        return current;
+    }
+
+    /**
+     * Gets the most frequent value of a sorted array
+     *
+     * @param values the values, sorted increasingly
+     * @param size   the number of values
+     * @return the most frequent value, the smallest one on ties
+     */
+    private static int getMostFrequent(int[] values, int size) {
+        int best = values[0];
+        int bestCount = 0;
+        for (int start = 0; start < size; ) {
+            int end = start + 1;
+            while (end < size && values[end] == values[start])
+                end++;
+
+            if (end - start > bestCount) {
+                best = values[start];
+                bestCount = end - start;
+            }
+            start = end;
+        }
+
+        return best;
+    }
+
+    /**
+     * Sums the dependencies of the given sources on every vertex
+     * The workers take the next source from a shared counter, so a worker which met large searches
+     * does not hold back the others. The sums are kept in fixed point (the scale leaves room for the largest
+     * possible sum), so they do not depend on which worker processed which source
+     *
+     * @param graph   the graph
+     * @param sources the sources
+     * @param monitor the progress of the job, one step per source
+     * @return the sum of the dependencies of the sources on every vertex
+     * @throws java.util.concurrent.CancellationException if the job was cancelled
+     */
+    private double[] accumulateDependencies(CsrGraph graph, int[] sources, ProgressMonitor monitor) {
+        int n = graph.getVertexCount();
+        double scale = n < 2 ? 1 : Math.scalb(1.0, 61 - Math.getExponent((double) n * n));
+        int workerCount = Math.max(1, Math.min(getParallelism(), sources.length));
+        DependencyAccumulator[] accumulators = new DependencyAccumulator[workerCount];
+        AtomicInteger nextSource = new AtomicInteger();
+
+        monitor.start(sources.length);
+        pool.invoke(new RangeTask(0, workerCount, 1, (start, end) -> {
+            for (int worker = start; worker < end; worker++) {
+                int index;
+                while (!monitor.isCancelled() && (index = nextSource.getAndIncrement()) < sources.length) {
+                    if (accumulators[worker] == null)
+                        accumulators[worker] = new DependencyAccumulator(graph, scale);
+
+                    accumulators[worker].accumulate(sources[index]);
+                    monitor.advance();
+                }
+            }
+        }));
+        monitor.checkCancelled();
+
+        double[] scores = new double[n];
+        forEach(n, (start, end) -> {
+            for (int vertex = start; vertex < end; vertex++) {
+                long sum = 0;
+                for (DependencyAccumulator accumulator : accumulators)
+                    if (accumulator != null)
+                        sum += accumulator.sums[vertex];
+
+                scores[vertex] = sum / scale;
+            }
+        });
+
+        return scores;
+    }
+
+    /**
+     * Checks the parameters of a power iteration
+     *
+     * @param tolerance     the convergence threshold
+     * @param maxIterations the iteration cap
+     * @throws IllegalArgumentException if the tolerance or the iteration cap is not positive
+     */
+    private static void validateIterationParameters(double tolerance, int maxIterations) {
+        if (!(tolerance > 0))
+            throw new IllegalArgumentException("Tolerance must be positive");
+        if (maxIterations < 1)
+            throw new IllegalArgumentException("The iteration cap must be positive");
+    }
+
+    /**
+     * Gets the number of reduction blocks for a number of vertices
+     *
+     * @param n the number of vertices
+     * @return the number of blocks
+     */
+    private static int getBlockCount(int n) {
+        return (n + REDUCTION_BLOCK_SIZE - 1) / REDUCTION_BLOCK_SIZE;
+    }
+
+    /**
+     * Sums the partial results of the blocks, always in the same order
+     *
+     * @param blockSums the partial results
+     * @return the sum
+     */
+    private static double sum(double[] blockSums) {
+        double sum = 0;
+        for (double blockSum : blockSums)
+            sum += blockSum;
+
+        return sum;
+    }
+
+    /**
+     * Runs an action for every block of REDUCTION_BLOCK_SIZE indices from [0, size) on the pool
+     * The blocks do not depend on the parallelism, so the partial results of the blocks are deterministic
+     *
+     * @param size   the number of indices
+     * @param action the action, it receives the range of the block
+     */
+    private void forEachBlock(int size, RangeAction action) {
+        pool.invoke(new RangeTask(0, getBlockCount(size), 1, (startBlock, endBlock) -> {
+            for (int block = startBlock; block < endBlock; block++)
+                action.apply(block * REDUCTION_BLOCK_SIZE, Math.min((block + 1) * REDUCTION_BLOCK_SIZE, size));
+        }));
+    }
+
+    /**
+     * Runs an action for every index in [0, size) on the pool
+     *
+     * @param size   the number of indices
+     * @param action the action
+     */
+    private void forEach(int size, IndexAction action) {
+        forEach(size, (start, end) -> {
+            for (int index = start; index < end; index++)
+                action.apply(index);
+        });
+    }
+
+    /**
+     * Splits [0, size) in ranges and runs an action for every range on the pool
+     *
+     * @param size   the number of indices
+     * @param action the action
+     */
+    private void forEach(int size, RangeAction action) {
+        pool.invoke(new RangeTask(0, size, SEQUENTIAL_THRESHOLD, action));
+    }
+
+    /**
+     * An action applied to an index
+     */
+    @FunctionalInterface
+    private interface IndexAction {
+        void apply(int index);
+    }
+
+    /**
+     * An action applied to a range of indices
+     */
+    @FunctionalInterface
+    private interface RangeAction {
+        void apply(int start, int end);
+    }
+
+    /**
+     * Task which splits a range of indices in halves until the ranges are small enough to be run sequentially
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int threshold;
+        private final RangeAction action;
+
+        private RangeTask(int start, int end, int threshold, RangeAction action) {
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                action.apply(start, end);
+                return;
+            }
+
+            int middle = (start + end) >>> 1;
+            invokeAll(new RangeTask(start, middle, threshold, action), new RangeTask(middle, end, threshold, action));
+        }
+    }
+
+    /**
+     * Search state of one worker of Brandes' algorithm, with the fixed point sums of the dependencies
+     * of its sources on every vertex. The arrays are reset after every search, only on the reached vertices
+     */
+    private static final class DependencyAccumulator {
+        private final CsrGraph graph;
+        private final double scale;
+        private final int[] distances;
+        private final double[] pathCounts;
+        private final double[] dependencies;
+        private final int[] order;
+        private final long[] sums;
+
+        private DependencyAccumulator(CsrGraph graph, double scale) {
+            int n = graph.getVertexCount();
+            this.graph = graph;
+            this.scale = scale;
+            this.distances = new int[n];
+            this.pathCounts = new double[n];
+            this.dependencies = new double[n];
+            this.order = new int[n];
+            this.sums = new long[n];
+            Arrays.fill(distances, -1);
+        }
+
+        /**
+         * Adds the dependencies of a source on every vertex to the sums
+         * The breadth first search counts the shortest paths from the source to every vertex; in the reverse
+         * order of the search, every vertex passes to its predecessors (the neighbors one step closer
+         * to the source) their share of its paths times one plus its own dependency
+         *
+         * @param source the source
+         */
+        private void accumulate(int source) {
+            int head = 0;
+            int tail = 0;
+            order[tail++] = source;
+            distances[source] = 0;
+            pathCounts[source] = 1;
+            while (head < tail) {
+                int vertex = order[head++];
+                for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                    int neighbor = graph.targets[i];
+                    if (distances[neighbor] == -1) {
+                        distances[neighbor] = distances[vertex] + 1;
+                        order[tail++] = neighbor;
+                    }
+                    if (distances[neighbor] == distances[vertex] + 1)
+                        pathCounts[neighbor] += pathCounts[vertex];
+                }
+            }
+
+            for (int k = tail - 1; k > 0; k--) {
+                int vertex = order[k];
+                double coefficient = (1 + dependencies[vertex]) / pathCounts[vertex];
+                for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                    int neighbor = graph.targets[i];
+                    if (distances[neighbor] == distances[vertex] - 1)
+                        dependencies[neighbor] += pathCounts[neighbor] * coefficient;
+                }
+                sums[vertex] += Math.round(dependencies[vertex] * scale);
+            }
+
+            for (int k = 0; k < tail; k++) {
+                int vertex = order[k];
+                distances[vertex] = -1;
+                pathCounts[vertex] = 0;
+                dependencies[vertex] = 0;
+            }
+        }
+    }
+}
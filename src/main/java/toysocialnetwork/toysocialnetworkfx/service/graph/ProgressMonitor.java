@@ -0,0 +1,87 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of a long running graph job, shared between the job and the thread watching it
+ * The job reports how many of its steps are done, the watching thread reads the progress and can ask
+ * the job to stop; the job checks the request between steps and then throws a CancellationException
+ */
+public final class ProgressMonitor {
+    private final AtomicLong completed = new AtomicLong();
+    private volatile long total;
+    private volatile boolean cancelled;
+
+    /**
+     * Asks the job to stop, the job stops after the steps which are running
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Checks if the job was asked to stop
+     *
+     * @return true if the job was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets the number of completed steps
+     *
+     * @return the number of completed steps
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * Gets the total number of steps
+     *
+     * @return the number of steps, 0 if the job did not start its steps yet
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the completed part of the job
+     *
+     * @return the fraction of completed steps, between 0 and 1
+     */
+    public double getFraction() {
+        long steps = total;
+
+        return steps == 0 ? 0 : (double) completed.get() / steps;
+    }
+
+    /**
+     * Starts counting the steps of the job
+     *
+     * @param total the number of steps
+     */
+    void start(long total) {
+        completed.set(0);
+        this.total = total;
+    }
+
+    /**
+     * Marks one more step as completed
+     */
+    void advance() {
+        completed.incrementAndGet();
+    }
+
+    /**
+     * Stops the job if it was cancelled
+     *
+     * @throws CancellationException if the job was cancelled
+     */
+    void checkCancelled() {
+        if (cancelled)
+            throw new CancellationException("The job was cancelled");
+    }
+}
@@ -0,0 +1,335 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Computes the sociability metrics of the communities (connected graphs)
+ * The searches only use primitive arrays, the breadth first searches from many sources run in parallel
+ */
+public class SociabilityEngine {
+    /**
+     * The default time budget of the longest path search
+     */
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 10_000;
+
+    private static final int DEADLINE_CHECK_INTERVAL = 4096;
+
+    private final SociabilityMetric metric;
+    private final long timeBudgetMillis;
+    private final ThreadLocal<BfsBuffers> bfsBuffers = ThreadLocal.withInitial(BfsBuffers::new);
+
+    /**
+     * Constructor for SociabilityEngine
+     *
+     * @param metric           the metric used to compare the communities
+     * @param timeBudgetMillis how long the longest path search may run for one community
+     * @throws IllegalArgumentException if the time budget is negative
+     */
+    public SociabilityEngine(SociabilityMetric metric, long timeBudgetMillis) {
+        if (timeBudgetMillis < 0)
+            throw new IllegalArgumentException("Time budget must not be negative");
+
+        this.metric = metric;
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * Getter for metric
+     *
+     * @return the metric used to compare the communities
+     */
+    public SociabilityMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Computes the metric of the engine for a community
+     *
+     * @param graph the community, it must be connected
+     * @return the value of the metric
+     */
+    public SociabilityResult evaluate(CsrGraph graph) {
+        return switch (metric) {
+            case LONGEST_PATH -> getLongestPathLength(graph);
+            case DIAMETER -> new SociabilityResult(getDiameter(graph), true);
+            case IFUB_DIAMETER -> new SociabilityResult(getIFubDiameter(graph), true);
+        };
+    }
+
+    /**
+     * Computes the diameter with a breadth first search from every vertex, the searches run in parallel
+     *
+     * @param graph the community, it must be connected
+     * @return the diameter (the largest eccentricity)
+     */
+    public int getDiameter(CsrGraph graph) {
+        return IntStream.range(0, graph.getVertexCount())
+                .parallel()
+                .map(vertex -> getEccentricity(graph, vertex))
+                .max()
+                .orElse(0);
+    }
+
+    /**
+     * Computes the diameter with the iFUB (iterative fringe upper bound) algorithm
+     * A 4-sweep gives a lower bound and a central vertex u, then the eccentricities of the vertices
+     * are computed level by level, starting with the ones farthest from u, until the lower bound
+     * exceeds the upper bound 2 * (level - 1)
+     *
+     * @param graph the community, it must be connected
+     * @return the diameter
+     */
+    public int getIFubDiameter(CsrGraph graph) {
+        int n = graph.getVertexCount();
+        if (n <= 1)
+            return 0;
+
+        // 4-sweep: two double sweeps, the second one from the middle of the first diametral path
+        int[] sweepLowerBound = new int[1];
+        int middle = getDoubleSweepMiddle(graph, getMaxDegreeVertex(graph), sweepLowerBound);
+        int u = getDoubleSweepMiddle(graph, middle, sweepLowerBound);
+
+        int[] distancesFromU = graph.getDistancesFrom(u);
+        int level = distancesFromU[getFarthestVertex(distancesFromU)];
+        int diameterLowerBound = Math.max(sweepLowerBound[0], level);
+
+        int[][] fringes = getLevels(distancesFromU, level);
+        while (level > 0 && diameterLowerBound < 2 * level) {
+            int fringeEccentricity = IntStream.of(fringes[level])
+                    .parallel()
+                    .map(vertex -> getEccentricity(graph, vertex))
+                    .max()
+                    .orElse(0);
+            diameterLowerBound = Math.max(diameterLowerBound, fringeEccentricity);
+
+            if (diameterLowerBound > 2 * (level - 1))
+                return diameterLowerBound;
+            level--;
+        }
+
+        return diameterLowerBound;
+    }
+
+    /**
+     * Runs a double sweep: a breadth first search from the start vertex finds a farthest vertex a,
+     * a breadth first search from a finds a farthest vertex b
+     *
+     * @param graph      the graph
+     * @param start      the start vertex
+     * @param lowerBound holds the best lower bound of the diameter, updated with the eccentricity of a
+     * @return the vertex in the middle of the shortest path from a to b
+     */
+    private static int getDoubleSweepMiddle(CsrGraph graph, int start, int[] lowerBound) {
+        int a = getFarthestVertex(graph.getDistancesFrom(start));
+        int[] distancesFromA = graph.getDistancesFrom(a);
+        int b = getFarthestVertex(distancesFromA);
+        lowerBound[0] = Math.max(lowerBound[0], distancesFromA[b]);
+
+        int middle = b;
+        for (int steps = distancesFromA[b] / 2; steps > 0; steps--)
+            middle = getPredecessor(graph, distancesFromA, middle);
+
+        return middle;
+    }
+
+    /**
+     * Searches the longest simple path, stopping when the time budget is used up
+     * The search starts from the double sweep lower bound and stops early if a path through all the vertices
+     * is found, otherwise it enumerates the simple paths from every vertex with an iterative depth first search
+     *
+     * @param graph the community, it must be connected
+     * @return the length of the longest path found, exact if the search finished in time
+     */
+    public SociabilityResult getLongestPathLength(CsrGraph graph) {
+        int n = graph.getVertexCount();
+        if (n <= 1)
+            return new SociabilityResult(0, true);
+
+        int[] distancesFromStart = graph.getDistancesFrom(0);
+        int[] distancesFromA = graph.getDistancesFrom(getFarthestVertex(distancesFromStart));
+        int best = distancesFromA[getFarthestVertex(distancesFromA)];
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        boolean[] onPath = new boolean[n];
+        int[] path = new int[n];
+        int[] nextNeighbor = new int[n];
+        long steps = 0;
+
+        for (int start = 0; start < n && best < n - 1; start++) {
+            int depth = 0;
+            path[0] = start;
+            nextNeighbor[0] = 0;
+            onPath[start] = true;
+
+            while (depth >= 0) {
+                if (++steps % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)
+                    return new SociabilityResult(best, false);
+
+                int vertex = path[depth];
+                if (nextNeighbor[depth] < graph.getDegree(vertex)) {
+                    int neighbor = graph.getNeighbor(vertex, nextNeighbor[depth]++);
+
+                    if (!onPath[neighbor]) {
+                        depth++;
+                        path[depth] = neighbor;
+                        nextNeighbor[depth] = 0;
+                        onPath[neighbor] = true;
+
+                        if (depth > best) {
+                            best = depth;
+                            if (best == n - 1)
+                                return new SociabilityResult(best, true);
+                        }
+                    }
+                } else {
+                    onPath[vertex] = false;
+                    depth--;
+                }
+            }
+        }
+
+        return new SociabilityResult(best, true);
+    }
+
+    /**
+     * Computes the eccentricity of a vertex with a breadth first search, using the buffers of the current thread
+     *
+     * @param graph  the graph
+     * @param source the vertex
+     * @return the largest distance from the vertex to another vertex
+     */
+    private int getEccentricity(CsrGraph graph, int source) {
+        BfsBuffers buffers = bfsBuffers.get();
+        buffers.prepare(graph.getVertexCount());
+        int[] distances = buffers.distances;
+        int[] visitedRound = buffers.visitedRound;
+        int[] queue = buffers.queue;
+        int round = buffers.round;
+
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        visitedRound[source] = round;
+        distances[source] = 0;
+        int eccentricity = 0;
+        while (head < tail) {
+            int vertex = queue[head++];
+            eccentricity = distances[vertex];
+
+            for (int i = graph.offsets[vertex]; i < graph.offsets[vertex + 1]; i++) {
+                int neighbor = graph.targets[i];
+                if (visitedRound[neighbor] != round) {
+                    visitedRound[neighbor] = round;
+                    distances[neighbor] = distances[vertex] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+
+        return eccentricity;
+    }
+
+    /**
+     * Gets a vertex with the maximum degree
+     *
+     * @param graph the graph
+     * @return the first vertex with the maximum degree
+     */
+    private static int getMaxDegreeVertex(CsrGraph graph) {
+        int maxVertex = 0;
+        for (int vertex = 1; vertex < graph.getVertexCount(); vertex++)
+            if (graph.getDegree(vertex) > graph.getDegree(maxVertex))
+                maxVertex = vertex;
+
+        return maxVertex;
+    }
+
+    /**
+     * Gets the vertex with the largest distance
+     *
+     * @param distances the distances from a vertex
+     * @return the first farthest vertex
+     */
+    private static int getFarthestVertex(int[] distances) {
+        int farthest = 0;
+        for (int vertex = 1; vertex < distances.length; vertex++)
+            if (distances[vertex] > distances[farthest])
+                farthest = vertex;
+
+        return farthest;
+    }
+
+    /**
+     * Gets the neighbor of a vertex which is one step closer to the source of a breadth first search
+     *
+     * @param graph     the graph
+     * @param distances the distances from the source
+     * @param vertex    the vertex, other than the source
+     * @return the predecessor of the vertex
+     */
+    private static int getPredecessor(CsrGraph graph, int[] distances, int vertex) {
+        for (int k = 0; k < graph.getDegree(vertex); k++) {
+            int neighbor = graph.getNeighbor(vertex, k);
+            if (distances[neighbor] == distances[vertex] - 1)
+                return neighbor;
+        }
+
+        return vertex;
+    }
+
+    /**
+     * Groups the vertices by their distance from a vertex
+     *
+     * @param distances   the distances from the vertex
+     * @param maxDistance the largest distance
+     * @return the vertices of every level
+     */
+    private static int[][] getLevels(int[] distances, int maxDistance) {
+        int[] sizes = new int[maxDistance + 1];
+        for (int distance : distances)
+            sizes[distance]++;
+
+        int[][] levels = new int[maxDistance + 1][];
+        for (int level = 0; level <= maxDistance; level++)
+            levels[level] = new int[sizes[level]];
+
+        int[] positions = new int[maxDistance + 1];
+        for (int vertex = 0; vertex < distances.length; vertex++)
+            levels[distances[vertex]][positions[distances[vertex]]++] = vertex;
+
+        return levels;
+    }
+
+    /**
+     * The arrays used by the breadth first searches of one thread
+     * The visited marks are round numbers, so the arrays do not have to be cleared between the searches
+     */
+    private static final class BfsBuffers {
+        private int[] distances = new int[0];
+        private int[] visitedRound = new int[0];
+        private int[] queue = new int[0];
+        private int round;
+
+        /**
+         * Prepares the buffers for a new search
+         *
+         * @param vertexCount the number of vertices of the graph
+         */
+        private void prepare(int vertexCount) {
+            if (distances.length < vertexCount) {
+                distances = new int[vertexCount];
+                visitedRound = new int[vertexCount];
+                queue = new int[vertexCount];
+                round = 0;
+            }
+
+            round++;
+            if (round == Integer.MAX_VALUE) {
+                Arrays.fill(visitedRound, 0);
+                round = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The metrics which can be used to measure how sociable a community is
+ */
+public enum SociabilityMetric {
+    /**
+     * The length of the longest simple path, found with a search bounded by a time budget
+     * (the same measure as the original exhaustive search, exact when the search finishes in time)
+     */
+    LONGEST_PATH,
+    /**
+     * The exact diameter, computed with a breadth first search from every vertex (in parallel)
+     */
+    DIAMETER,
+    /**
+     * The exact diameter, computed with the iFUB algorithm (usually only a few breadth first searches,
+     * suited for large communities)
+     */
+    IFUB_DIAMETER
+}
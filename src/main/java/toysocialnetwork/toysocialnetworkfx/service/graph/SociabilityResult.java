@@ -0,0 +1,43 @@
+package toysocialnetwork.toysocialnetworkfx.service.graph;
+
+/**
+ * The value of a sociability metric for a community
+ */
+public final class SociabilityResult {
+    private final int value;
+    private final boolean exact;
+
+    /**
+     * Constructor for SociabilityResult
+     *
+     * @param value the value of the metric
+     * @param exact false if the search ran out of time and the value is only the best one found
+     */
+    public SociabilityResult(int value, boolean exact) {
+        this.value = value;
+        this.exact = exact;
+    }
+
+    /**
+     * Getter for value
+     *
+     * @return the value of the metric
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Getter for exact
+     *
+     * @return true if the value is exact, false if it is a lower bound
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    @Override
+    public String toString() {
+        return (exact ? "" : ">= ") + value;
+    }
+}
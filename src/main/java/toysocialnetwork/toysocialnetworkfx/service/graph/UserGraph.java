@@ -1,18 +1,17 @@
 package toysocialnetwork.toysocialnetworkfx.service.graph;
 
+import javafx.util.Pair;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
 
 import java.util.*;
 
 /**
  * Models a graph of users and provides a few algorithms on the graph
+ * The friendships are stored in a {@link CsrGraph}, the users are kept in an array aligned with its vertices
  */
 public class UserGraph {
-    private final Map<User, List<User>> adjacencyList;
-    private final Map<User, Integer> visitedComponents;
-    private final Map<User, Boolean> visited;
-    private final Map<User, Integer> distances;
-    private int maxPathLength;
+    private final CsrGraph graph;
+    private final User[] users;
 
     /**
      * Constructor for UserGraph
@@ -20,47 +19,33 @@ public class UserGraph {
      * @param users the users to be added in the graph
      */
     public UserGraph(Iterable<User> users) {
-        adjacencyList = new HashMap<>();
-        visitedComponents = new HashMap<>();
-        visited = new HashMap<>();
-        distances = new HashMap<>();
-
         List<User> usersList = new ArrayList<>();
         users.forEach(usersList::add);
 
-        buildAdjacencyList(usersList);
+        this.graph = CsrGraph.fromUsers(usersList);
+        this.users = new User[graph.getVertexCount()];
+        for (User user : usersList)
+            this.users[graph.indexOf(user.getId())] = user;
     }
 
     /**
-     * Builds the adjacency list using the users provided
+     * Constructor for UserGraph
      *
-     * @param users the list of users
+     * @param graph the graph of the users
+     * @param users the users, aligned with the vertices of the graph
      */
-    private void buildAdjacencyList(List<User> users) {
-        users.forEach(user -> adjacencyList.put(user, new ArrayList<>()));
-
-        users.forEach(user -> {
-            List<User> userList = adjacencyList.get(user);
-
-            for (Long uid : user.getFriends()) {
-                User u = users.stream().filter(x -> x.getId().equals(uid)).toList().get(0);
-                userList.add(u);
-            }
-        });
+    private UserGraph(CsrGraph graph, User[] users) {
+        this.graph = graph;
+        this.users = users;
     }
 
     /**
-     * Depth first search algorithm
+     * Getter for graph
      *
-     * @param currentUser    the current user visited by dfs
-     * @param componentIndex the index of the current component
+     * @return the CSR graph of the users
      */
-    private void DFS(User currentUser, int componentIndex) {
-        visitedComponents.put(currentUser, componentIndex);
-
-        for (User other : adjacencyList.get(currentUser))
-            if (visitedComponents.get(other) == 0)
-                DFS(other, componentIndex);
+    public CsrGraph getGraph() {
+        return graph;
     }
 
     /**
@@ -69,90 +54,110 @@ public class UserGraph {
      * @return a list of connected components (graphs)
      */
     public List<UserGraph> getConnectedComponents() {
-        Set<User> userSet = adjacencyList.keySet();
-        userSet.forEach(user -> visitedComponents.put(user, 0));
-
-        int currentComponentIndex = 0;
-        for (User user : userSet)
-            if (visitedComponents.get(user) == 0) {
-                currentComponentIndex++;
-                DFS(user, currentComponentIndex);
-            }
+        int[][] componentVertices = graph.getConnectedComponents().getAllVertices();
 
         List<UserGraph> components = new ArrayList<>();
-        for (int index = 1; index <= currentComponentIndex; index++) {
-            int finalIndex = index;
+        for (int[] vertices : componentVertices) {
+            User[] componentUsers = new User[vertices.length];
+            for (int i = 0; i < vertices.length; i++)
+                componentUsers[i] = users[vertices[i]];
 
-            UserGraph component = new UserGraph(visitedComponents.keySet().
-                    stream().filter(x -> visitedComponents.get(x).equals(finalIndex)).toList());
-            components.add(component);
+            components.add(new UserGraph(graph.getSubgraph(vertices), componentUsers));
         }
 
         return components;
     }
 
     /**
-     * Generates the longest paths in the graph starting from a given user
+     * Gets the number of connected components
      *
-     * @param currentUser the current user
+     * @return the number of components
      */
-    private void generateLongestPaths(User currentUser) {
-        visited.put(currentUser, true);
-
-        boolean hasVisitedNeighbors = false;
-        for (User other : adjacencyList.get(currentUser))
-            if (!visited.get(other)) {
-                hasVisitedNeighbors = true;
-                distances.put(other, distances.get(currentUser) + 1);
-
-                generateLongestPaths(other);
-            }
-
-        if (!hasVisitedNeighbors && distances.get(currentUser) > maxPathLength)
-            maxPathLength = distances.get(currentUser);
-
-        visited.put(currentUser, false);
+    public int getConnectedComponentsCount() {
+        return graph.getConnectedComponents().getCount();
     }
 
     /**
-     * Finds the length of the longest path in the graph
+     * Gets the connected component with the largest sociability, measured with the metric of the engine
+     * If several components have the same value, the one containing the smallest user id is chosen.
+     * The components are evaluated from the largest to the smallest, so the components too small
+     * to beat the best value found are skipped
      *
-     * @return the length of the path
+     * @param engine the engine which computes the metric
+     * @return the connected component (graph) together with its sociability,
+     * null if the graph has no users
      */
-    public int getMaxPathLength() {
-        List<User> users = new ArrayList<>(adjacencyList.keySet());
-
-        maxPathLength = 0;
-        for (User u : users) {
-            users.forEach(user -> visited.put(user, false));
-            users.forEach(user -> distances.put(user, 0));
+    public Pair<UserGraph, SociabilityResult> getMostSociableComponent(SociabilityEngine engine) {
+        List<UserGraph> connectedComponents = getConnectedComponents();
 
-            generateLongestPaths(u);
+        Integer[] order = new Integer[connectedComponents.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> -connectedComponents.get(i).users.length)
+                .thenComparingInt(i -> i));
+
+        int maxIndex = -1;
+        SociabilityResult maxResult = null;
+        for (int index : order) {
+            UserGraph component = connectedComponents.get(index);
+
+            int upperBound = component.users.length - 1; // every metric is at most the length of a path
+            if (maxResult != null && (upperBound < maxResult.getValue()
+                    || (upperBound == maxResult.getValue() && index > maxIndex)))
+                continue;
+
+            SociabilityResult result = engine.evaluate(component.graph);
+            if (maxResult == null || result.getValue() > maxResult.getValue()
+                    || (result.getValue() == maxResult.getValue() && index < maxIndex)) {
+                maxIndex = index;
+                maxResult = result;
+            }
         }
 
-        return maxPathLength;
+        if (maxResult == null)
+            return null;
+
+        return new Pair<>(connectedComponents.get(maxIndex), maxResult);
     }
 
     /**
-     * Gets the connected component with the longest maximum path
+     * Gets the connected component with the largest average clustering coefficient, the density
+     * of the friendships around its users
+     * If several components have the same coefficient, the one with more triangles is chosen,
+     * then the one containing the smallest user id
      *
-     * @return the connected component (graph)
+     * @param clustering the triangles of the vertices of the graph
+     * @param minSize    the minimum number of users of the component
+     * @return the connected component (graph) together with its density,
+     * null if no component has enough users
      */
-    public UserGraph getConnectedComponentMaxPath() {
-        List<UserGraph> connectedComponents = getConnectedComponents();
-
-        int maxLength = -1;
-        UserGraph maxComponent = null;
-        for (UserGraph component : connectedComponents) {
-            int length = component.getMaxPathLength();
-
-            if (length > maxLength) {
-                maxLength = length;
-                maxComponent = component;
+    public Pair<UserGraph, DensityResult> getDensestComponent(ClusteringResult clustering, int minSize) {
+        int[][] componentVertices = graph.getConnectedComponents().getAllVertices();
+
+        int[] maxVertices = null;
+        DensityResult maxResult = null;
+        for (int[] vertices : componentVertices) {
+            if (vertices.length < minSize)
+                continue;
+
+            DensityResult result = clustering.getDensity(vertices);
+            if (maxResult == null
+                    || result.getAverageClusteringCoefficient() > maxResult.getAverageClusteringCoefficient()
+                    || (result.getAverageClusteringCoefficient() == maxResult.getAverageClusteringCoefficient()
+                    && result.getTriangleCount() > maxResult.getTriangleCount())) {
+                maxVertices = vertices;
+                maxResult = result;
             }
         }
 
-        return maxComponent;
+        if (maxResult == null)
+            return null;
+
+        User[] componentUsers = new User[maxVertices.length];
+        for (int i = 0; i < maxVertices.length; i++)
+            componentUsers[i] = users[maxVertices[i]];
+
+        return new Pair<>(new UserGraph(graph.getSubgraph(maxVertices), componentUsers), maxResult);
     }
 
     /**
@@ -161,6 +166,6 @@ public class UserGraph {
      * @return the users
      */
     public Iterable<User> getUsers() {
-        return adjacencyList.keySet();
+        return Arrays.asList(users);
     }
 }
@@ -1,19 +1,36 @@
 package toysocialnetwork.toysocialnetworkfx.ui;
 
+import javafx.util.Pair;
 import toysocialnetwork.toysocialnetworkfx.domain.Friendship;
 import toysocialnetwork.toysocialnetworkfx.domain.Sender;
 import toysocialnetwork.toysocialnetworkfx.domain.Status;
 import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.dto.UserScoreDTO;
 import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
+import toysocialnetwork.toysocialnetworkfx.service.AnalyticsService;
+import toysocialnetwork.toysocialnetworkfx.service.BetweennessJobResult;
+import toysocialnetwork.toysocialnetworkfx.service.CommunityJobResult;
 import toysocialnetwork.toysocialnetworkfx.service.FriendshipService;
+import toysocialnetwork.toysocialnetworkfx.service.InfluenceJobResult;
 import toysocialnetwork.toysocialnetworkfx.service.ServiceException;
 import toysocialnetwork.toysocialnetworkfx.service.UserService;
+import toysocialnetwork.toysocialnetworkfx.service.graph.CommunityAlgorithm;
+import toysocialnetwork.toysocialnetworkfx.service.graph.DensityResult;
+import toysocialnetwork.toysocialnetworkfx.service.graph.ProgressMonitor;
+import toysocialnetwork.toysocialnetworkfx.service.graph.SociabilityMetric;
+import toysocialnetwork.toysocialnetworkfx.service.graph.SociabilityResult;
 import toysocialnetwork.toysocialnetworkfx.utils.Constants;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 /**
  * Implementation of a user interface in the console
@@ -21,17 +38,21 @@ import java.util.Scanner;
 public class ConsoleUI {
     private final UserService userService;
     private final FriendshipService friendshipService;
+    private final AnalyticsService analyticsService;
     private static final Scanner scanner = new Scanner(System.in);
+    private static final int DEFAULT_DENSE_COMMUNITY_SIZE = 3;
 
     /**
      * Constructor for ConsoleUI
      *
      * @param userService       reference to the user service
      * @param friendshipService reference to the friendship service
+     * @param analyticsService  reference to the analytics service
      */
-    public ConsoleUI(UserService userService, FriendshipService friendshipService) {
+    public ConsoleUI(UserService userService, FriendshipService friendshipService, AnalyticsService analyticsService) {
         this.userService = userService;
         this.friendshipService = friendshipService;
+        this.analyticsService = analyticsService;
     }
 
     /**
@@ -56,6 +77,17 @@ public class ConsoleUI {
                 case "deleteFriendship" -> deleteFriendship();
                 case "communities" -> communities();
                 case "mostSociable" -> mostSociable();
+                case "density" -> density();
+                case "densest" -> densest();
+                case "core" -> core();
+                case "mutualFriends" -> mutualFriends();
+                case "degrees" -> degrees();
+                case "withinHops" -> withinHops();
+                case "influence" -> influence();
+                case "topInfluencers" -> topInfluencers();
+                case "bridges" -> bridges();
+                case "detectCommunities" -> detectCommunities();
+                case "userCommunity" -> userCommunity();
                 case "help" -> printMenu();
                 case "exit" -> running = false;
                 default -> System.out.println("Invalid command: " + option);
@@ -67,10 +99,10 @@ public class ConsoleUI {
      * Prints the users stored in the application
      */
     private void printUsers() {
-        Iterable<User> users = userService.findAllUsers();
-
         System.out.println("Users list:");
-        users.forEach(System.out::println);
+        try (Stream<User> users = userService.streamAllUsers()) {
+            users.forEach(System.out::println);
+        }
         System.out.println();
     }
 
@@ -149,10 +181,10 @@ public class ConsoleUI {
      * Prints the friendships stored in the application
      */
     private void printFriendships() {
-        Iterable<Friendship> friendships = friendshipService.findAllFriendships();
-
         System.out.println("Friendships list:");
-        friendships.forEach(System.out::println);
+        try (Stream<Friendship> friendships = friendshipService.streamAllFriendships()) {
+            friendships.forEach(System.out::println);
+        }
         System.out.println();
     }
 
@@ -235,21 +267,378 @@ public class ConsoleUI {
      * Prints the most sociable community in the network
      */
     private void mostSociable() {
-        List<User> community = friendshipService.getMostSociableCommunity();
+        System.out.print("Metric (longestPath, diameter, ifub) [longestPath]: ");
+        String stringMetric = scanner.nextLine().trim();
+
+        SociabilityMetric metric;
+        switch (stringMetric) {
+            case "", "longestPath" -> metric = SociabilityMetric.LONGEST_PATH;
+            case "diameter" -> metric = SociabilityMetric.DIAMETER;
+            case "ifub" -> metric = SociabilityMetric.IFUB_DIAMETER;
+            default -> {
+                System.out.println("Invalid metric\n");
+                return;
+            }
+        }
+
+        Pair<List<User>, SociabilityResult> community = friendshipService.getMostSociableCommunity(metric);
 
-        if (community.size() == 0) {
+        if (community.getKey().size() == 0) {
             System.out.println("No community\n");
 
             return;
         }
 
-        System.out.println("The most sociable community: ");
-        for (User user : community) {
+        System.out.println("The most sociable community (" + community.getValue() + "): ");
+        for (User user : community.getKey()) {
             System.out.println(user);
         }
+        if (!community.getValue().isExact())
+            System.out.println("The longest path search ran out of time, the community may not be the most sociable one");
+        System.out.println();
+    }
+
+    /**
+     * Prints the triangles and the clustering coefficients of the network
+     */
+    private void density() {
+        System.out.println("Network density: " + friendshipService.getNetworkDensity() + "\n");
+    }
+
+    /**
+     * Prints the community with the densest friendships
+     */
+    private void densest() {
+        try {
+            System.out.print("Minimum community size [" + DEFAULT_DENSE_COMMUNITY_SIZE + "]: ");
+            String stringMinSize = scanner.nextLine().trim();
+            int minSize = stringMinSize.isEmpty() ? DEFAULT_DENSE_COMMUNITY_SIZE : Integer.parseInt(stringMinSize);
+
+            Pair<List<User>, DensityResult> community = friendshipService.getDensestCommunity(minSize);
+            if (community.getKey().isEmpty()) {
+                System.out.println("No community with at least " + minSize + " users\n");
+
+                return;
+            }
+
+            System.out.println("The densest community (" + community.getValue() + "): ");
+            for (User user : community.getKey()) {
+                System.out.println(user);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for the community size\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the members of a k-core of the network, by default the densely connected core (the largest k),
+     * or the core number of a user
+     */
+    private void core() {
+        try {
+            System.out.print("User id, to show only its core number [none]: ");
+            String stringUserId = scanner.nextLine().trim();
+            if (!stringUserId.isEmpty()) {
+                Long userId = Long.parseLong(stringUserId);
+                System.out.println("Core number: " + friendshipService.getCoreNumber(userId) + "\n");
+
+                return;
+            }
+
+            System.out.print("Order of the core [largest]: ");
+            String stringK = scanner.nextLine().trim();
+
+            int k;
+            List<User> members;
+            if (stringK.isEmpty()) {
+                Pair<Integer, List<User>> maxCore = friendshipService.getMaxCore();
+                k = maxCore.getKey();
+                members = maxCore.getValue();
+            } else {
+                k = Integer.parseInt(stringK);
+                members = friendshipService.getCoreMembers(k);
+            }
+
+            System.out.println("The " + k + "-core (" + members.size() + " users):");
+            for (User user : members) {
+                System.out.println(user);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for id or order\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the mutual friends of two users
+     */
+    private void mutualFriends() {
+        try {
+            System.out.print("First user id: ");
+            Long firstUserId = Long.parseLong(scanner.nextLine());
+            System.out.print("Second user id: ");
+            Long secondUserId = Long.parseLong(scanner.nextLine());
+
+            List<User> mutualFriends = friendshipService.getMutualFriends(firstUserId, secondUserId);
+            System.out.println(mutualFriends.size() + " mutual friends:");
+            for (User user : mutualFriends) {
+                System.out.println(user);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for id\n");
+        }
+    }
+
+    /**
+     * Prints a shortest path of friendships between two users
+     */
+    private void degrees() {
+        try {
+            System.out.print("First user id: ");
+            Long fromUserId = Long.parseLong(scanner.nextLine());
+            System.out.print("Second user id: ");
+            Long toUserId = Long.parseLong(scanner.nextLine());
+            System.out.print("Maximum number of friendships [unlimited]: ");
+            String stringMaxHops = scanner.nextLine().trim();
+            int maxHops = stringMaxHops.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(stringMaxHops);
+
+            List<User> path = friendshipService.getShortestFriendshipPath(fromUserId, toUserId, maxHops);
+            if (path.isEmpty()) {
+                System.out.println("No path\n");
+
+                return;
+            }
+
+            System.out.println("Degrees of separation: " + (path.size() - 1));
+            for (User user : path) {
+                System.out.println(user);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for id or number of friendships\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the users which can be reached from a user through a number of friendships
+     */
+    private void withinHops() {
+        try {
+            System.out.print("User id: ");
+            Long userId = Long.parseLong(scanner.nextLine());
+            System.out.print("Number of friendships: ");
+            int hops = Integer.parseInt(scanner.nextLine());
+
+            List<User> users = friendshipService.getUsersWithinHops(userId, hops);
+            System.out.println(users.size() + " users within " + hops + " friendships:");
+            for (User user : users) {
+                System.out.println(user);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for id or number of friendships\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the influence scoring job, which computes and stores the PageRank and the eigenvector centrality
+     * of all the users
+     */
+    private void influence() {
+        try {
+            System.out.print("Damping factor [" + AnalyticsService.DEFAULT_DAMPING + "]: ");
+            String stringDamping = scanner.nextLine().trim();
+            double damping = stringDamping.isEmpty() ? AnalyticsService.DEFAULT_DAMPING :
+                    Double.parseDouble(stringDamping);
+            System.out.print("Tolerance [" + AnalyticsService.DEFAULT_TOLERANCE + "]: ");
+            String stringTolerance = scanner.nextLine().trim();
+            double tolerance = stringTolerance.isEmpty() ? AnalyticsService.DEFAULT_TOLERANCE :
+                    Double.parseDouble(stringTolerance);
+            System.out.print("Maximum number of iterations [" + AnalyticsService.DEFAULT_MAX_ITERATIONS + "]: ");
+            String stringMaxIterations = scanner.nextLine().trim();
+            int maxIterations = stringMaxIterations.isEmpty() ? AnalyticsService.DEFAULT_MAX_ITERATIONS :
+                    Integer.parseInt(stringMaxIterations);
+
+            InfluenceJobResult result = analyticsService.runInfluenceJob(damping, tolerance, maxIterations);
+            System.out.println(result + "\n");
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for the damping factor, tolerance or number of iterations\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the users with the largest stored influence scores
+     */
+    private void topInfluencers() {
+        try {
+            System.out.print("Number of users: ");
+            int count = Integer.parseInt(scanner.nextLine().trim());
+            System.out.print("Score (pageRank, eigenvector) [pageRank]: ");
+            String stringScore = scanner.nextLine().trim();
+
+            List<UserScoreDTO> scores;
+            switch (stringScore) {
+                case "", "pageRank" -> scores = analyticsService.getTopByPageRank(count);
+                case "eigenvector" -> scores = analyticsService.getTopByEigenvectorCentrality(count);
+                default -> {
+                    System.out.println("Invalid score\n");
+                    return;
+                }
+            }
+
+            if (scores.isEmpty()) {
+                System.out.println("No scores, run the influence command first\n");
+
+                return;
+            }
+
+            for (UserScoreDTO score : scores) {
+                System.out.println(score);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for the number of users\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the betweenness centrality job and prints the users which bridge the most shortest paths
+     * The job runs on its own thread while the progress is printed every second; pressing Enter cancels it
+     */
+    private void bridges() {
+        double errorBound;
+        double confidence;
+        int count;
+        try {
+            System.out.print("Error bound, 0 for the exact scores [" + AnalyticsService.DEFAULT_ERROR_BOUND + "]: ");
+            String stringErrorBound = scanner.nextLine().trim();
+            errorBound = stringErrorBound.isEmpty() ? AnalyticsService.DEFAULT_ERROR_BOUND :
+                    Double.parseDouble(stringErrorBound);
+            System.out.print("Confidence [" + AnalyticsService.DEFAULT_CONFIDENCE + "]: ");
+            String stringConfidence = scanner.nextLine().trim();
+            confidence = stringConfidence.isEmpty() ? AnalyticsService.DEFAULT_CONFIDENCE :
+                    Double.parseDouble(stringConfidence);
+            System.out.print("Number of users: ");
+            count = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for the error bound, confidence or number of users\n");
+            return;
+        }
+
+        ProgressMonitor monitor = new ProgressMonitor();
+        CompletableFuture<BetweennessJobResult> job = CompletableFuture.supplyAsync(
+                () -> analyticsService.runBetweennessJob(errorBound, confidence, count, monitor));
+        System.out.println("Running, press Enter to cancel");
+
+        BetweennessJobResult result;
+        try {
+            while (true) {
+                try {
+                    result = job.get(1, TimeUnit.SECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (System.in.available() > 0) {
+                        scanner.nextLine();
+                        monitor.cancel();
+                        System.out.println("Cancelling...");
+                    } else if (monitor.getTotal() > 0)
+                        System.out.printf("%.1f%% (%d of %d users)%n", monitor.getFraction() * 100,
+                                monitor.getCompleted(), monitor.getTotal());
+                }
+            }
+        } catch (ExecutionException e) {
+            System.out.println(e.getCause() instanceof ServiceException ? e.getCause().getMessage() :
+                    "The job failed: " + e.getCause() + "\n");
+            return;
+        } catch (InterruptedException | IOException e) {
+            monitor.cancel();
+            System.out.println("The job was interrupted\n");
+            return;
+        }
+
+        System.out.println(result);
+        for (Pair<User, Double> user : result.getTopUsers()) {
+            System.out.printf("%s - %.6f%n", user.getKey(), user.getValue());
+        }
         System.out.println();
     }
 
+    /**
+     * Runs the community detection job, which detects and stores the community of every user
+     */
+    private void detectCommunities() {
+        System.out.print("Algorithm (louvain, labelPropagation) [louvain]: ");
+        String stringAlgorithm = scanner.nextLine().trim();
+
+        CommunityAlgorithm algorithm;
+        switch (stringAlgorithm) {
+            case "", "louvain" -> algorithm = CommunityAlgorithm.LOUVAIN;
+            case "labelPropagation" -> algorithm = CommunityAlgorithm.LABEL_PROPAGATION;
+            default -> {
+                System.out.println("Invalid algorithm\n");
+                return;
+            }
+        }
+
+        System.out.print("Start from the stored communities (yes, no) [yes]: ");
+        String stringIncremental = scanner.nextLine().trim();
+        boolean incremental;
+        switch (stringIncremental) {
+            case "", "yes" -> incremental = true;
+            case "no" -> incremental = false;
+            default -> {
+                System.out.println("Invalid answer\n");
+                return;
+            }
+        }
+
+        try {
+            CommunityJobResult result = analyticsService.runCommunityDetection(algorithm, incremental);
+            System.out.println(result + "\n");
+        } catch (ServiceException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Prints the stored community of a user
+     */
+    private void userCommunity() {
+        try {
+            System.out.print("User id: ");
+            Long userId = Long.parseLong(scanner.nextLine());
+
+            List<User> community = analyticsService.getCommunityOf(userId);
+            if (community.isEmpty()) {
+                System.out.println("No community, run the detectCommunities command first\n");
+
+                return;
+            }
+
+            System.out.println("Community of " + community.size() + " users:");
+            for (User user : community) {
+                System.out.println(user);
+            }
+            System.out.println();
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid value for id\n");
+        }
+    }
+
     /**
      * Prints the menu of the application
      */
@@ -271,6 +660,17 @@ public class ConsoleUI {
                  [Statistics]
                   communities - shows the number of communities in the network
                   mostSociable - shows the most sociable community in the network
+                  density - shows the triangles and the clustering coefficients of the network
+                  densest - shows the community with the densest friendships (largest average clustering)
+                  core - shows the densely connected core of the network (k-core) or the core number of a user
+                  mutualFriends - shows the mutual friends of two users
+                  degrees - shows the shortest path of friendships between two users
+                  withinHops - shows the users reachable from a user through a number of friendships
+                  influence - computes and stores the PageRank and eigenvector centrality of all the users
+                  topInfluencers - shows the users with the largest stored influence scores
+                  bridges - computes the betweenness centrality, shows the users bridging the most shortest paths
+                  detectCommunities - detects and stores the communities with Louvain or label propagation
+                  userCommunity - shows the stored community of a user
                   
                  [Misc]
                   help - prints this menu
@@ -0,0 +1,109 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import toysocialnetwork.toysocialnetworkfx.domain.User;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.UserValidator;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.ValidationException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileRepositoryLoadTest {
+    // large enough to be split into chunks when there are several processors
+    private static final int LINE_COUNT = 30_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void csvSnapshotLoadsLikeSavingTheLinesOneByOne() throws IOException {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            int choice = random.nextInt(100);
+            long id = choice < 5 && i > 0 ? 1 + random.nextInt(i) : i + 1; // a duplicate id
+            int name = choice >= 5 && choice < 10 && i > 0 ? random.nextInt(i) : i; // a duplicate username
+            if (choice >= 10 && choice < 13)
+                lines.add("");
+            lines.add(id + ";user" + name + ";First" + i + ";Last" + i + ";password" + i + ";" +
+                    (i % 3 == 0 ? "" : (i + 2) + "," + (i + 3)));
+        }
+        Path path = this.write("users.csv", lines, random);
+
+        UserFileRepository expected = new UserFileRepository(new UserValidator(), directory.resolve("expected.csv")
+                .toString());
+        for (String line : Files.readAllLines(path))
+            if (!line.isEmpty())
+                expected.save(expected.extractEntityFrom(Arrays.asList(line.split(";"))));
+        expected.close();
+
+        UserFileRepository repository = new UserFileRepository(new UserValidator(), path.toString());
+        assertEquals(contentOf(expected), contentOf(repository));
+        repository.close();
+    }
+
+    @Test
+    void firstInvalidLineIsReported() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < LINE_COUNT; i++)
+            lines.add((i + 1) + ";user" + i + ";First" + i + ";Last" + i + ";password" + i + ";");
+        lines.set(LINE_COUNT / 2, "-1;invalid;First;Last;password;");
+        lines.set(LINE_COUNT - 10, "not a number;invalid;First;Last;password;");
+        Path validationFirst = this.write("validation.csv", lines, new Random(1));
+
+        lines.set(LINE_COUNT / 3, "7;user;First;Last;password;1,x");
+        Path parsingFirst = this.write("parsing.csv", lines, new Random(2));
+
+        ValidationException validation = assertThrows(ValidationException.class,
+                () -> new UserFileRepository(new UserValidator(), validationFirst.toString()));
+        assertEquals("Invalid id\n", validation.getMessage());
+        assertThrows(NumberFormatException.class,
+                () -> new UserFileRepository(new UserValidator(), parsingFirst.toString()));
+    }
+
+    @Test
+    void lineEndsAndEmptyLinesAreHandled() throws IOException {
+        Path path = directory.resolve("users.csv");
+        Files.writeString(path, "\r\n1;ana;Ana;Pop;secret;2,3\r\n\n\r\n2;ion;Ion;Ionescu;secret;1\n" +
+                "3;dan;Dan;Dan;secret;\r\n\n4;eva;Eva;Eva;secret;1,2,3", StandardCharsets.UTF_8);
+
+        UserFileRepository repository = new UserFileRepository(new UserValidator(), path.toString());
+        assertEquals(List.of(2L, 3L), repository.findById(1L).orElseThrow().getFriends());
+        assertEquals(List.of(1L), repository.findById(2L).orElseThrow().getFriends());
+        assertTrue(repository.findById(3L).orElseThrow().getFriends().isEmpty());
+        assertEquals(List.of(1L, 2L, 3L), repository.findById(4L).orElseThrow().getFriends());
+        assertEquals("eva", repository.findById(4L).orElseThrow().getUsername());
+        repository.close();
+    }
+
+    private Path write(String name, List<String> lines, Random random) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String line : lines) // some lines end with CRLF
+            content.append(line).append(random.nextInt(4) == 0 ? "\r\n" : "\n");
+
+        Path path = directory.resolve(name);
+        Files.writeString(path, content, StandardCharsets.UTF_8);
+
+        return path;
+    }
+
+    private static TreeMap<Long, String> contentOf(UserFileRepository repository) {
+        TreeMap<Long, String> content = new TreeMap<>();
+        for (User user : repository.findAll())
+            content.put(user.getId(), repository.createEntityAsString(user));
+
+        return content;
+    }
+}
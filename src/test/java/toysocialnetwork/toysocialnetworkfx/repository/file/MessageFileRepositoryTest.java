@@ -0,0 +1,141 @@
+package toysocialnetwork.toysocialnetworkfx.repository.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import toysocialnetwork.toysocialnetworkfx.domain.Message;
+import toysocialnetwork.toysocialnetworkfx.domain.validators.MessageValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageFileRepositoryTest {
+    private static final int SEGMENT_SIZE = 1 << 16;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void idOfDeletedNewestMessageIsNotReusedAfterReopen() {
+        MessageFileRepository repository = this.open();
+        for (int i = 0; i < 4; i++)
+            repository.save(new Message(1L, 2L, "message " + i, START.plusMinutes(i)));
+        repository.delete(4L);
+        repository.close();
+
+        repository = this.open();
+        Message message = new Message(3L, 4L, "another conversation", START.plusMinutes(10));
+        repository.save(message);
+        repository.close();
+
+        assertTrue(message.getId() > 4, "the id of the deleted message was reused: " + message.getId());
+        repository = this.open();
+        assertEquals(List.of(message), repository.getMessagesBetween(3L, 4L));
+        assertEquals(3, repository.getMessagesBetween(1L, 2L).size());
+        assertEquals(4, count(repository.findAll()));
+        repository.close();
+    }
+
+    @Test
+    void idOfDeletedNewestMessageIsNotReusedAfterRebuild() throws IOException {
+        MessageFileRepository repository = this.open();
+        for (int i = 0; i < 4; i++)
+            repository.save(new Message(1L, 2L, "message " + i, START.plusMinutes(i)));
+        repository.delete(4L);
+        repository.close();
+        Files.delete(directory.resolve("messages.index"));
+
+        repository = this.open();
+        Message message = new Message(1L, 2L, "after the rebuild", START.plusMinutes(10));
+        repository.save(message);
+
+        assertTrue(message.getId() > 4, "the id of the deleted message was reused: " + message.getId());
+        repository.close();
+    }
+
+    @Test
+    void reopenAndRebuildKeepTheMessages() throws IOException {
+        Random random = new Random(42);
+        TreeMap<Long, Message> expected = new TreeMap<>();
+        long highestId = 0;
+        MessageFileRepository repository = this.open();
+
+        for (int step = 0; step < 5000; step++) {
+            int operation = random.nextInt(100);
+            if (operation < 50 || expected.isEmpty()) {
+                Message message = new Message(1L + random.nextInt(4), 1L + random.nextInt(4),
+                        "message " + step + "x".repeat(random.nextInt(200)), START.plusSeconds(random.nextInt(1000)));
+                repository.save(message);
+                assertTrue(message.getId() > highestId, "the id " + message.getId() + " was reused");
+                highestId = message.getId();
+                expected.put(message.getId(), message);
+            } else if (operation < 70) {
+                Long id = random.nextBoolean() ? expected.lastKey() : expected.firstKey();
+                Message stored = expected.get(id);
+                Message updated = new Message(stored.getFromUser(), stored.getToUser(), "updated " + step,
+                        stored.getSentDate());
+                updated.setId(id);
+                repository.update(updated);
+                expected.put(id, updated);
+            } else if (operation < 95) {
+                // the newest message is deleted often, its id must not be given to a new message
+                Long id = random.nextBoolean() ? expected.lastKey() : expected.firstKey();
+                assertEquals(expected.remove(id), repository.delete(id).orElseThrow());
+            } else {
+                repository.close();
+                if (random.nextBoolean())
+                    Files.delete(directory.resolve("messages.index"));
+                repository = this.open();
+                assertMessages(expected, repository);
+            }
+        }
+        repository.close();
+
+        repository = this.open();
+        assertMessages(expected, repository);
+        repository.close();
+    }
+
+    private MessageFileRepository open() {
+        return new MessageFileRepository(new MessageValidator(), directory.toString(), SEGMENT_SIZE, 50);
+    }
+
+    private static void assertMessages(TreeMap<Long, Message> expected, MessageFileRepository repository) {
+        List<Message> all = new ArrayList<>();
+        repository.findAll().forEach(all::add);
+        assertEquals(new ArrayList<>(expected.values()), all);
+        for (Message message : all)
+            assertEquals(message.getMessageBody(), repository.findById(message.getId()).orElseThrow().getMessageBody());
+
+        for (long first = 1; first <= 4; first++) {
+            for (long second = first; second <= 4; second++) {
+                List<Message> conversation = new ArrayList<>();
+                for (Message message : expected.values())
+                    if (Math.min(message.getFromUser(), message.getToUser()) == first &&
+                            Math.max(message.getFromUser(), message.getToUser()) == second)
+                        conversation.add(message);
+                conversation.sort(Comparator.comparing(Message::getSentDate).thenComparing(Message::getId));
+
+                assertEquals(conversation, repository.getMessagesBetween(first, second));
+            }
+        }
+    }
+
+    private static int count(Iterable<Message> messages) {
+        int count = 0;
+        for (Message ignored : messages)
+            count++;
+
+        return count;
+    }
+}